@@ -0,0 +1,65 @@
+package com.example.shop.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Page;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bounded Caffeine caches (W-TinyLFU eviction) instead of the unbounded ConcurrentMapCache
+ * Spring falls back to when no CacheManager is defined.
+ */
+@Configuration
+@EnableConfigurationProperties(CacheSpecProperties.class)
+public class CacheConfig {
+
+    public static final List<String> CACHE_NAMES = List.of("products", "productById", "categories");
+
+    @Bean
+    public CacheManager cacheManager(CacheSpecProperties properties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCaffeine(builder(properties.getDefaults()));
+
+        Set<String> names = new LinkedHashSet<>(CACHE_NAMES);
+        names.addAll(properties.getSpecs().keySet());
+        for (String name : names) {
+            cacheManager.registerCustomCache(name, builder(properties.specFor(name)).build());
+        }
+        return cacheManager;
+    }
+
+    private Caffeine<Object, Object> builder(CacheSpecProperties.Spec spec) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (spec.getMaximumWeight() != null) {
+            builder = builder.maximumWeight(spec.getMaximumWeight()).weigher(CacheConfig::weigh);
+        } else if (spec.getMaximumSize() != null) {
+            builder = builder.maximumSize(spec.getMaximumSize());
+        }
+        if (spec.getExpireAfterWrite() != null) {
+            builder = builder.expireAfterWrite(spec.getExpireAfterWrite());
+        }
+        if (spec.getExpireAfterAccess() != null) {
+            builder = builder.expireAfterAccess(spec.getExpireAfterAccess());
+        }
+        return builder;
+    }
+
+    static int weigh(Object key, Object value) {
+        if (value instanceof Page<?> page) {
+            return Math.max(1, page.getNumberOfElements());
+        }
+        if (value instanceof Collection<?> collection) {
+            return Math.max(1, collection.size());
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.shop.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-cache sizing and expiry, bound from the {@code cache.*} section of application.yml.
+ * Caches without an entry in {@code specs} fall back to {@code defaults}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "cache")
+public class CacheSpecProperties {
+
+    private Spec defaults = new Spec();
+
+    private Map<String, Spec> specs = new LinkedHashMap<>();
+
+    public Spec specFor(String cacheName) {
+        Spec spec = specs.get(cacheName);
+        if (spec == null) {
+            // YAML keys without bracket notation are lower-cased by the binder
+            spec = specs.get(cacheName.toLowerCase());
+        }
+        return spec != null ? spec : defaults;
+    }
+
+    @Getter
+    @Setter
+    public static class Spec {
+
+        /** Maximum number of entries; ignored when maximumWeight is set. */
+        private Long maximumSize = 1000L;
+
+        /** Maximum total weight; page and list values weigh one unit per element. */
+        private Long maximumWeight;
+
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+        private Duration expireAfterAccess;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.shop.config;
+
+import com.example.shop.service.InvalidationTransport;
+import com.example.shop.service.LoopbackInvalidationTransport;
+import com.example.shop.service.MulticastInvalidationTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+
+/**
+ * Transport for cache invalidations between backend instances. A single instance needs none;
+ * instances sharing a network segment use UDP multicast.
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    public InvalidationTransport invalidationTransport(
+            @Value("${cluster.invalidation.transport:none}") String transport,
+            @Value("${cluster.invalidation.group:239.255.42.1}") String group,
+            @Value("${cluster.invalidation.port:45600}") int port,
+            @Value("${cluster.invalidation.interface:}") String interfaceName,
+            @Value("${cluster.invalidation.ttl:1}") int ttl) {
+        return switch (transport) {
+            case "none" -> InvalidationTransport.NONE;
+            case "loopback" -> new LoopbackInvalidationTransport();
+            case "multicast" -> new MulticastInvalidationTransport(new InetSocketAddress(group, port),
+                    networkInterface(interfaceName), ttl);
+            default -> throw new IllegalArgumentException("Unknown cluster.invalidation.transport: " + transport);
+        };
+    }
+
+    private static NetworkInterface networkInterface(String name) {
+        if (name.isBlank()) {
+            return null;
+        }
+        try {
+            NetworkInterface networkInterface = NetworkInterface.getByName(name);
+            if (networkInterface == null) {
+                throw new IllegalArgumentException("No network interface named " + name);
+            }
+            return networkInterface;
+        } catch (SocketException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
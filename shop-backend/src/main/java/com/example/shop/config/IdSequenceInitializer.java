@@ -0,0 +1,61 @@
+package com.example.shop.config;
+
+import com.example.shop.model.IdSequences;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves every id sequence past the ids already in its table. Tables created while entities used
+ * IDENTITY columns keep their rows, but the new sequences start at 1 and would hand out ids that
+ * are taken. Runs before the other startup runners so no insert sees a stale sequence.
+ *
+ * <p>Sequences are only ever moved forward: real sequences are read and restarted if behind,
+ * table-backed ones (MySQL) are raised with a conditional update.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IdSequenceInitializer implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    public IdSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (Map.Entry<String, String> entry : IdSequences.BY_TABLE.entrySet()) {
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from " + entry.getKey(), Long.class);
+            if (maxId != null) {
+                ensureAbove(entry.getValue(), maxId);
+            }
+        }
+    }
+
+    // A pooled sequence value v reserves ids (v - ALLOCATION_SIZE, v], so the next value must be
+    // at least maxId + ALLOCATION_SIZE for the whole block to be free
+    private void ensureAbove(String sequence, long maxId) {
+        long floor = maxId + IdSequences.ALLOCATION_SIZE;
+        SequenceSupport sequences = dialect.getSequenceSupport();
+        if (sequences.supportsSequences()) {
+            Long next = jdbcTemplate.queryForObject(sequences.getSequenceNextValString(sequence), Long.class);
+            if (next != null && next < floor) {
+                jdbcTemplate.execute("alter sequence " + sequence + " restart with " + floor);
+            }
+        } else {
+            jdbcTemplate.update("update " + sequence + " set next_val = ? where next_val < ?", floor, floor);
+        }
+    }
+}
@@ -44,8 +44,11 @@ public class SecurityConfig {
                         .requestMatchers(
                                 "/auth/**",
                                 "/api/products",
+                                "/api/products/batch",
                                 "/api/products/{id}",
                                 "/api/categories",
+                                "/api/categories/tree",
+                                "/api/guest-cart",
                                 "/uploads/**",
                                 "/swagger-ui.html",
                                 "/swagger-ui/**",
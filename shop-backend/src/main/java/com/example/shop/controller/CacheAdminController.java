@@ -0,0 +1,41 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.CacheStatsResponse;
+import com.example.shop.service.CacheAdminService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/caches")
+@PreAuthorize("hasRole('ADMIN')")
+public class CacheAdminController {
+
+    private final CacheAdminService cacheAdminService;
+
+    public CacheAdminController(CacheAdminService cacheAdminService) {
+        this.cacheAdminService = cacheAdminService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<CacheStatsResponse>> getAllStats() {
+        return ResponseEntity.ok(cacheAdminService.getAllStats());
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<CacheStatsResponse> getStats(@PathVariable String name) {
+        return ResponseEntity.ok(cacheAdminService.getStats(name));
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> clear(@PathVariable String name) {
+        cacheAdminService.clear(name);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,22 +1,34 @@
 package com.example.shop.controller;
 
 import com.example.shop.dto.AddCartItemRequest;
+import com.example.shop.dto.CartPatchRequest;
 import com.example.shop.dto.CartResponse;
+import com.example.shop.dto.CouponRequest;
 import com.example.shop.dto.UpdateCartItemRequest;
 import com.example.shop.service.CartService;
+import com.example.shop.util.CartETags;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+/**
+ * Every cart response carries an ETag. Mutations honour {@code If-Match} and answer 412 when the
+ * cart changed since the client read it; without the header they apply unconditionally.
+ */
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
@@ -28,43 +40,88 @@ public class CartController {
     }
 
     @GetMapping
-    public ResponseEntity<CartResponse> getCart(@AuthenticationPrincipal UserDetails principal) {
+    public ResponseEntity<CartResponse> getCart(@AuthenticationPrincipal UserDetails principal,
+                                                WebRequest webRequest) {
         CartResponse cart = cartService.getOrCreateCart(principal.getUsername());
-        return ResponseEntity.ok(cart);
+        String etag = CartETags.cart(cart);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return withETag(cart);
+    }
+
+    /** Applies several add, update and remove operations in one request; all or none take effect. */
+    @PatchMapping
+    public ResponseEntity<CartResponse> applyOperations(
+            @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody CartPatchRequest request
+    ) {
+        CartResponse cart = cartService.applyOperations(principal.getUsername(), request.getOperations(), ifMatch);
+        return withETag(cart);
     }
 
     @PostMapping("/items")
     public ResponseEntity<CartResponse> addItem(
             @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody AddCartItemRequest request
     ) {
-        CartResponse cart = cartService.addItem(principal.getUsername(), request);
-        return ResponseEntity.ok(cart);
+        CartResponse cart = cartService.addItem(principal.getUsername(), request, ifMatch);
+        return withETag(cart);
     }
 
     @PutMapping("/items/{itemId}")
     public ResponseEntity<CartResponse> updateItem(
             @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @PathVariable Long itemId,
             @Valid @RequestBody UpdateCartItemRequest request
     ) {
-        CartResponse cart = cartService.updateItem(principal.getUsername(), itemId, request);
-        return ResponseEntity.ok(cart);
+        CartResponse cart = cartService.updateItem(principal.getUsername(), itemId, request, ifMatch);
+        return withETag(cart);
     }
 
     @DeleteMapping("/items/{itemId}")
     public ResponseEntity<CartResponse> removeItem(
             @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @PathVariable Long itemId
     ) {
-        CartResponse cart = cartService.removeItem(principal.getUsername(), itemId);
-        return ResponseEntity.ok(cart);
+        CartResponse cart = cartService.removeItem(principal.getUsername(), itemId, ifMatch);
+        return withETag(cart);
     }
 
     @DeleteMapping
-    public ResponseEntity<CartResponse> clearCart(@AuthenticationPrincipal UserDetails principal) {
-        CartResponse cart = cartService.clearCart(principal.getUsername());
-        return ResponseEntity.ok(cart);
+    public ResponseEntity<CartResponse> clearCart(
+            @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        CartResponse cart = cartService.clearCart(principal.getUsername(), ifMatch);
+        return withETag(cart);
+    }
+
+    @PutMapping("/coupon")
+    public ResponseEntity<CartResponse> applyCoupon(
+            @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody CouponRequest request
+    ) {
+        CartResponse cart = cartService.applyCoupon(principal.getUsername(), request.getCode(), ifMatch);
+        return withETag(cart);
+    }
+
+    @DeleteMapping("/coupon")
+    public ResponseEntity<CartResponse> removeCoupon(
+            @AuthenticationPrincipal UserDetails principal,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        CartResponse cart = cartService.removeCoupon(principal.getUsername(), ifMatch);
+        return withETag(cart);
+    }
+
+    private static ResponseEntity<CartResponse> withETag(CartResponse cart) {
+        return ResponseEntity.ok().eTag(CartETags.cart(cart)).body(cart);
     }
 }
 
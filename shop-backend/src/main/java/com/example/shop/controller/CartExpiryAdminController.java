@@ -0,0 +1,26 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.CartExpiryStatsResponse;
+import com.example.shop.service.CartExpiryService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/cart-expiry")
+@PreAuthorize("hasRole('ADMIN')")
+public class CartExpiryAdminController {
+
+    private final CartExpiryService cartExpiryService;
+
+    public CartExpiryAdminController(CartExpiryService cartExpiryService) {
+        this.cartExpiryService = cartExpiryService;
+    }
+
+    @GetMapping
+    public ResponseEntity<CartExpiryStatsResponse> getStats() {
+        return ResponseEntity.ok(cartExpiryService.getStats());
+    }
+}
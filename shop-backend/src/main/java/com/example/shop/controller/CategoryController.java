@@ -2,7 +2,11 @@ package com.example.shop.controller;
 
 import com.example.shop.dto.CategoryRequest;
 import com.example.shop.dto.CategoryResponse;
+import com.example.shop.dto.CategoryTreeResponse;
+import com.example.shop.service.CategoryCountService;
+import com.example.shop.service.CategoryCounts;
 import com.example.shop.service.CategoryService;
+import com.example.shop.util.CatalogETags;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,7 +18,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -23,9 +29,11 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CategoryCountService categoryCountService;
 
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, CategoryCountService categoryCountService) {
         this.categoryService = categoryService;
+        this.categoryCountService = categoryCountService;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -53,8 +61,32 @@ public class CategoryController {
     }
 
     @GetMapping
-    public ResponseEntity<List<CategoryResponse>> listAll() {
-        return ResponseEntity.ok(categoryService.listAll());
+    public ResponseEntity<List<CategoryResponse>> listAll(
+            @RequestParam(defaultValue = "false") boolean withCounts,
+            WebRequest webRequest
+    ) {
+        if (!withCounts) {
+            String etag = CatalogETags.categories(categoryService.getGeneration());
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(categoryService.listAll());
+        }
+
+        CategoryCounts counts = categoryCountService.getCounts();
+        String etag = CatalogETags.categoriesWithCounts(categoryService.getGeneration(), counts.version());
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(categoryCountService.withCounts(categoryService.listAll(), counts));
     }
-}
 
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryTreeResponse>> getTree(WebRequest webRequest) {
+        String etag = CatalogETags.categoryTree(categoryService.getGeneration());
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(categoryService.getTree());
+    }
+}
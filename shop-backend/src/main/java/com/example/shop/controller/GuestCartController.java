@@ -0,0 +1,54 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.CartPatchRequest;
+import com.example.shop.dto.CartResponse;
+import com.example.shop.service.GuestCartService;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Carts for shoppers who have not signed in. The client keeps the cart as a signed token, sends
+ * it in the {@value #GUEST_CART_HEADER} header and stores the token returned with each change.
+ */
+@RestController
+@RequestMapping("/api/guest-cart")
+public class GuestCartController {
+
+    public static final String GUEST_CART_HEADER = "X-Guest-Cart";
+
+    private final GuestCartService guestCartService;
+
+    public GuestCartController(GuestCartService guestCartService) {
+        this.guestCartService = guestCartService;
+    }
+
+    @GetMapping
+    public ResponseEntity<CartResponse> getCart(
+            @RequestHeader(value = GUEST_CART_HEADER, required = false) String token
+    ) {
+        return toResponse(guestCartService.get(token));
+    }
+
+    /** Same operations as {@code PATCH /api/cart}; UPDATE and REMOVE take the product id as item id. */
+    @PatchMapping
+    public ResponseEntity<CartResponse> applyOperations(
+            @RequestHeader(value = GUEST_CART_HEADER, required = false) String token,
+            @Valid @RequestBody CartPatchRequest request
+    ) {
+        return toResponse(guestCartService.applyOperations(token, request.getOperations()));
+    }
+
+    private static ResponseEntity<CartResponse> toResponse(GuestCartService.GuestCart cart) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (cart.token() != null) {
+            response.header(GUEST_CART_HEADER, cart.token());
+        }
+        return response.body(cart.cart());
+    }
+}
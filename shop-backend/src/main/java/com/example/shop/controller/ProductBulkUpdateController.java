@@ -0,0 +1,35 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.BulkPriceUpdateRequest;
+import com.example.shop.dto.BulkStockUpdateRequest;
+import com.example.shop.dto.BulkUpdateResponse;
+import com.example.shop.service.ProductBulkUpdateService;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/products/bulk")
+@PreAuthorize("hasRole('ADMIN')")
+public class ProductBulkUpdateController {
+
+    private final ProductBulkUpdateService productBulkUpdateService;
+
+    public ProductBulkUpdateController(ProductBulkUpdateService productBulkUpdateService) {
+        this.productBulkUpdateService = productBulkUpdateService;
+    }
+
+    @PatchMapping("/price")
+    public ResponseEntity<BulkUpdateResponse> updatePrices(@Valid @RequestBody BulkPriceUpdateRequest request) {
+        return ResponseEntity.ok(productBulkUpdateService.updatePrices(request));
+    }
+
+    @PatchMapping("/stock")
+    public ResponseEntity<BulkUpdateResponse> updateStock(@Valid @RequestBody BulkStockUpdateRequest request) {
+        return ResponseEntity.ok(productBulkUpdateService.updateStock(request));
+    }
+}
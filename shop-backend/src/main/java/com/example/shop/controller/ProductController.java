@@ -1,9 +1,14 @@
 package com.example.shop.controller;
 
+import com.example.shop.dto.ImageUploadResponse;
+import com.example.shop.dto.ProductBatchRequest;
 import com.example.shop.dto.ProductRequest;
 import com.example.shop.dto.ProductResponse;
-import com.example.shop.service.FileStorageService;
+import com.example.shop.service.ImageUploadService;
+import com.example.shop.service.InventoryService;
+import com.example.shop.service.PopularityService;
 import com.example.shop.service.ProductService;
+import com.example.shop.util.CatalogETags;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -20,20 +25,30 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
 
     private final ProductService productService;
-    private final FileStorageService fileStorageService;
+    private final InventoryService inventoryService;
+    private final PopularityService popularityService;
+    private final ImageUploadService imageUploadService;
 
-    public ProductController(ProductService productService, FileStorageService fileStorageService) {
+    public ProductController(ProductService productService,
+                             InventoryService inventoryService,
+                             PopularityService popularityService,
+                             ImageUploadService imageUploadService) {
         this.productService = productService;
-        this.fileStorageService = fileStorageService;
+        this.inventoryService = inventoryService;
+        this.popularityService = popularityService;
+        this.imageUploadService = imageUploadService;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -62,18 +77,44 @@ public class ProductController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/{id}/image")
-    public ResponseEntity<ProductResponse> uploadImage(
+    public ResponseEntity<ImageUploadResponse> uploadImage(
             @PathVariable Long id,
             @RequestParam("file") MultipartFile file
     ) {
-        String imageUrl = fileStorageService.storeFile(file);
-        ProductResponse response = productService.updateImage(id, imageUrl);
-        return ResponseEntity.ok(response);
+        // Processed in the background; the product shows the new image once the status is COMPLETED
+        ImageUploadResponse response = imageUploadService.submit(id, file);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/products/" + id + "/image/status"))
+                .body(response);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/{id}/image/status")
+    public ResponseEntity<ImageUploadResponse> getImageStatus(@PathVariable Long id) {
+        return ResponseEntity.ok(imageUploadService.getStatus(id));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponse> getById(@PathVariable Long id) {
-        return ResponseEntity.ok(productService.getById(id));
+    public ResponseEntity<ProductResponse> getById(@PathVariable Long id, WebRequest webRequest) {
+        ProductResponse product = inventoryService.withCurrentStock(productService.getById(id));
+        // Revalidations are views too
+        popularityService.recordView(id);
+        String etag = CatalogETags.product(product);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(product);
+    }
+
+    @GetMapping("/batch")
+    public ResponseEntity<List<ProductResponse>> getBatch(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(inventoryService.withCurrentStock(productService.getByIds(ids)));
+    }
+
+    // POST variant for id lists too long for a query string
+    @PostMapping("/batch")
+    public ResponseEntity<List<ProductResponse>> postBatch(@Valid @RequestBody ProductBatchRequest request) {
+        return ResponseEntity.ok(inventoryService.withCurrentStock(productService.getByIds(request.getIds())));
     }
 
     @GetMapping
@@ -84,8 +125,10 @@ public class ProductController {
             @RequestParam(required = false) BigDecimal maxPrice,
             @RequestParam(required = false) Boolean active,
             @RequestParam(required = false) Boolean inStock,
-            @PageableDefault(size = 20, sort = "createdAt") Pageable pageable
+            @PageableDefault(size = 20, sort = "createdAt") Pageable pageable,
+            WebRequest webRequest
     ) {
+        long generation = productService.searchGeneration(categoryId);
         Page<ProductResponse> page = productService.search(
                 categoryId,
                 search,
@@ -95,6 +138,11 @@ public class ProductController {
                 inStock,
                 pageable
         );
-        return ResponseEntity.ok(page);
+        Page<ProductResponse> current = inventoryService.withCurrentStock(page);
+        String etag = CatalogETags.page(generation, current);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(current);
     }
 }
@@ -0,0 +1,56 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.PromotionRequest;
+import com.example.shop.dto.PromotionResponse;
+import com.example.shop.service.PromotionService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/promotions")
+@PreAuthorize("hasRole('ADMIN')")
+public class PromotionController {
+
+    private final PromotionService promotionService;
+
+    public PromotionController(PromotionService promotionService) {
+        this.promotionService = promotionService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<PromotionResponse>> listAll() {
+        return ResponseEntity.ok(promotionService.listAll());
+    }
+
+    @PostMapping
+    public ResponseEntity<PromotionResponse> create(@Valid @RequestBody PromotionRequest request) {
+        PromotionResponse response = promotionService.create(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<PromotionResponse> update(
+            @PathVariable Long id,
+            @Valid @RequestBody PromotionRequest request
+    ) {
+        return ResponseEntity.ok(promotionService.update(id, request));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable Long id) {
+        promotionService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+}
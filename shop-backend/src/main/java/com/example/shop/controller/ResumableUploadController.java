@@ -0,0 +1,71 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.ImageUploadResponse;
+import com.example.shop.dto.UploadInitRequest;
+import com.example.shop.dto.UploadSessionResponse;
+import com.example.shop.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Resumable product image uploads: start an upload, PUT its chunks (raw bytes, any order, in
+ * parallel), then complete it to queue the file as the product's image.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@PreAuthorize("hasRole('ADMIN')")
+public class ResumableUploadController {
+
+    private final ResumableUploadService resumableUploadService;
+
+    public ResumableUploadController(ResumableUploadService resumableUploadService) {
+        this.resumableUploadService = resumableUploadService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> start(@Valid @RequestBody UploadInitRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(resumableUploadService.start(request));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionResponse> getStatus(@PathVariable String id) {
+        return ResponseEntity.ok(resumableUploadService.getStatus(id));
+    }
+
+    // The body is read from the request stream, not bound, so the chunk is never buffered
+    @PutMapping("/{id}/chunks/{index}")
+    public ResponseEntity<Void> uploadChunk(@PathVariable String id, @PathVariable int index,
+                                            HttpServletRequest request) throws IOException {
+        resumableUploadService.writeChunk(id, index, request.getInputStream());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<ImageUploadResponse> complete(@PathVariable String id) {
+        // Processed in the background, like a single-request image upload
+        ImageUploadResponse response = resumableUploadService.complete(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/products/" + response.getProductId() + "/image/status"))
+                .body(response);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id) {
+        resumableUploadService.cancel(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.shop.controller;
+
+import com.example.shop.service.FileStorageService;
+import com.example.shop.service.OpenFileCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves uploaded files without copying them through heap buffers.
+ *
+ * <p>On Tomcat the body is handed to the connector's sendfile support, which transfers the file
+ * straight from the page cache to the socket once the request thread returns. Elsewhere it is
+ * written with {@link java.nio.channels.FileChannel#transferTo}. Open channels are kept in an
+ * {@link OpenFileCache}.
+ *
+ * <p>Supports single byte ranges (including {@code If-Range}), {@code If-None-Match}, and
+ * precompressed {@code .br} / {@code .gz} siblings of a file when the client accepts them.
+ * Content-hashed files are cacheable for a year; anything else must be revalidated.
+ */
+@RestController
+public class UploadController {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final Pattern CONTENT_HASHED = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]+)?");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+            .getHeaderValue();
+    private static final String REVALIDATE = CacheControl.noCache().getHeaderValue();
+
+    private record Encoding(String name, String suffix) {
+    }
+
+    private static final Encoding[] PRECOMPRESSED = {new Encoding("br", ".br"), new Encoding("gzip", ".gz")};
+
+    private final FileStorageService fileStorageService;
+    private final OpenFileCache openFileCache;
+
+    public UploadController(FileStorageService fileStorageService, OpenFileCache openFileCache) {
+        this.fileStorageService = fileStorageService;
+        this.openFileCache = openFileCache;
+    }
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String url = request.getRequestURI().substring(request.getContextPath().length());
+        Path path = fileStorageService.resolve(url);
+        String fileName = path != null ? path.getFileName().toString() : "";
+        if (path == null || !fileStorageService.isServable(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Encoding encoding = null;
+        OpenFileCache.Handle handle = null;
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        for (Encoding candidate : PRECOMPRESSED) {
+            if (accepts(acceptEncoding, candidate.name())) {
+                handle = tryOpen(path.resolveSibling(fileName + candidate.suffix()));
+                if (handle != null) {
+                    encoding = candidate;
+                    break;
+                }
+            }
+        }
+        if (handle == null) {
+            handle = tryOpen(path);
+        }
+        if (handle == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try (OpenFileCache.Handle file = handle) {
+            String etag = etag(fileName, file, encoding);
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL,
+                    CONTENT_HASHED.matcher(fileName).matches() ? IMMUTABLE : REVALIDATE);
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, file.lastModified());
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            if (encoding != null) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.name());
+            }
+
+            long size = file.size();
+            long start = 0;
+            long end = size;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                Matcher matcher = RANGE.matcher(range.trim());
+                // Multiple ranges are legal to ignore; the whole file is sent instead
+                if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                    if (matcher.group(1).isEmpty()) {
+                        start = Math.max(0, size - parse(matcher.group(2)));
+                    } else {
+                        start = parse(matcher.group(1));
+                        if (!matcher.group(2).isEmpty()) {
+                            end = Math.min(size - 1, parse(matcher.group(2))) + 1;
+                        }
+                    }
+                    if (start >= size || start >= end) {
+                        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                        return;
+                    }
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+                }
+            }
+            response.setContentLengthLong(end - start);
+            if ("HEAD".equals(request.getMethod()) || end == start) {
+                return;
+            }
+
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                Path served = encoding != null ? path.resolveSibling(fileName + encoding.suffix()) : path;
+                request.setAttribute(SENDFILE_FILENAME, served.toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += file.channel().transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    private OpenFileCache.Handle tryOpen(Path path) throws IOException {
+        try {
+            return openFileCache.open(path);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private static String etag(String fileName, OpenFileCache.Handle file, Encoding encoding) {
+        String base = CONTENT_HASHED.matcher(fileName).matches()
+                ? fileName.substring(0, 64)
+                : Long.toHexString(file.size()) + "-" + Long.toHexString(file.lastModified());
+        return "\"" + base + (encoding != null ? "-" + encoding.name() : "") + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] params = part.trim().split(";");
+            if (params[0].trim().equals(coding)) {
+                return params.length < 2 || !params[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static long parse(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
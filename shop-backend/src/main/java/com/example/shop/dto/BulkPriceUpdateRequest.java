@@ -0,0 +1,30 @@
+package com.example.shop.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Exactly one of {@code percent} (e.g. -10 for 10% off), {@code amount} (added to the price)
+ * or {@code price} (replaces it) must be set. Results are rounded to cents and never go below zero.
+ */
+@Getter
+@Setter
+public class BulkPriceUpdateRequest {
+
+    @Valid
+    @NotNull
+    private BulkProductFilter filter;
+
+    @DecimalMin(value = "-100", inclusive = false)
+    private BigDecimal percent;
+
+    private BigDecimal amount;
+
+    @DecimalMin("0")
+    private BigDecimal price;
+}
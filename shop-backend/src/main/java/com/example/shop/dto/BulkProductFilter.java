@@ -0,0 +1,31 @@
+package com.example.shop.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Selects the products a bulk update applies to. All given criteria must match; a category
+ * also matches its subcategories.
+ */
+@Getter
+@Setter
+public class BulkProductFilter {
+
+    private Long categoryId;
+
+    @Size(max = 10000)
+    private List<Long> productIds;
+
+    private BigDecimal minPrice;
+
+    private BigDecimal maxPrice;
+
+    public boolean isEmpty() {
+        return categoryId == null && (productIds == null || productIds.isEmpty())
+                && minPrice == null && maxPrice == null;
+    }
+}
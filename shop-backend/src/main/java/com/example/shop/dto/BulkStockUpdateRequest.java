@@ -0,0 +1,25 @@
+package com.example.shop.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Exactly one of {@code delta} (added to the stock, floored at zero) or {@code quantity}
+ * (replaces it) must be set.
+ */
+@Getter
+@Setter
+public class BulkStockUpdateRequest {
+
+    @Valid
+    @NotNull
+    private BulkProductFilter filter;
+
+    private Integer delta;
+
+    @Min(0)
+    private Integer quantity;
+}
@@ -0,0 +1,12 @@
+package com.example.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkUpdateResponse {
+
+    private int matched;
+    private int updated;
+}
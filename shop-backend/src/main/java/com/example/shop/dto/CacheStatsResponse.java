@@ -0,0 +1,23 @@
+package com.example.shop.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class CacheStatsResponse {
+
+    private String name;
+    private long estimatedSize;
+    private Long maximum;
+    private boolean weighted;
+    private Long weightedSize;
+    private String expireAfterWrite;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long evictionWeight;
+}
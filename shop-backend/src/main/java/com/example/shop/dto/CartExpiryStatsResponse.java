@@ -0,0 +1,22 @@
+package com.example.shop.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Builder
+public class CartExpiryStatsResponse {
+
+    // Null until the first sweep has run
+    private Instant lastRunAt;
+    private int lastRunCarts;
+    private int lastRunItems;
+    // Since the application started
+    private long runs;
+    private long totalCarts;
+    private long totalItems;
+}
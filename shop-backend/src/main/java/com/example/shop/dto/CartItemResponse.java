@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Getter
 @Setter
@@ -16,6 +17,10 @@ public class CartItemResponse {
     private String productName;
     private Integer quantity;
     private BigDecimal priceAtAddTime;
+    // Before discounts
     private BigDecimal lineTotal;
+    private BigDecimal discount;
+    // Names of the promotions that discounted this line
+    private List<String> promotions;
 }
 
@@ -0,0 +1,30 @@
+package com.example.shop.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One change in a {@link CartPatchRequest}. {@code ADD} takes {@code productId} and
+ * {@code quantity}, {@code UPDATE} takes {@code itemId} and {@code quantity}, {@code REMOVE}
+ * takes {@code itemId}.
+ */
+@Getter
+@Setter
+public class CartOperation {
+
+    public enum Type {
+        ADD, UPDATE, REMOVE
+    }
+
+    @NotNull
+    private Type type;
+
+    private Long productId;
+
+    private Long itemId;
+
+    @Min(1)
+    private Integer quantity;
+}
@@ -0,0 +1,22 @@
+package com.example.shop.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/** Cart changes applied together, in order; if any of them is invalid none is applied. */
+@Getter
+@Setter
+public class CartPatchRequest {
+
+    public static final int MAX_OPERATIONS = 100;
+
+    @NotEmpty
+    @Size(max = MAX_OPERATIONS)
+    private List<@Valid @NotNull CartOperation> operations;
+}
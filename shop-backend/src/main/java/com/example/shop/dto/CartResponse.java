@@ -16,7 +16,13 @@ public class CartResponse {
     private Long id;
     private Long userId;
     private List<CartItemResponse> items;
+    // Before discounts; totalAmount is after them
+    private BigDecimal subtotal;
+    private BigDecimal discountAmount;
     private BigDecimal totalAmount;
+    private String couponCode;
+    // False while couponCode is set but its promotions are no longer live
+    private boolean couponApplied;
     private Instant lastUpdated;
 }
 
@@ -1,5 +1,6 @@
 package com.example.shop.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -8,7 +9,7 @@ import java.time.Instant;
 
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 public class CategoryResponse {
 
     private Long id;
@@ -17,5 +18,18 @@ public class CategoryResponse {
     private boolean active;
     private Instant createdAt;
     private Instant updatedAt;
+
+    // Only present when the list is requested with withCounts=true; totals include subcategories
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long activeProductCount;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long inStockProductCount;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalActiveProductCount;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalInStockProductCount;
 }
 
@@ -0,0 +1,16 @@
+package com.example.shop.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class CategoryTreeResponse {
+
+    private Long id;
+    private String name;
+    private boolean active;
+    private List<CategoryTreeResponse> children;
+}
@@ -0,0 +1,15 @@
+package com.example.shop.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class CouponRequest {
+
+    @NotBlank
+    @Size(max = 40)
+    private String code;
+}
@@ -0,0 +1,27 @@
+package com.example.shop.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Builder
+public class ImageUploadResponse {
+
+    private String uploadId;
+    private Long productId;
+    private String status;
+    // The pipeline stage running, or the one that failed
+    private String stage;
+    private String fileName;
+    private long fileSize;
+    private String message;
+    // Set once the product shows the new image
+    private String imageUrl;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,31 @@
+package com.example.shop.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class ImportJobResponse {
+
+    private String jobId;
+    private String status;
+    private String format;
+    private String fileName;
+    private long fileSize;
+    private long bytesRead;
+    private int progressPercent;
+    private long rowsProcessed;
+    private long imported;
+    private long failed;
+    private String message;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    // Capped; failed may exceed errors.size()
+    private List<ImportRowError> errors;
+}
@@ -0,0 +1,12 @@
+package com.example.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ImportRowError {
+
+    private long line;
+    private String message;
+}
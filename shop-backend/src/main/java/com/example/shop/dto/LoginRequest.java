@@ -15,5 +15,8 @@ public class LoginRequest {
 
     @NotBlank
     private String password;
+
+    // Optional; the cart built before signing in, merged into the user's cart
+    private String guestCartToken;
 }
 
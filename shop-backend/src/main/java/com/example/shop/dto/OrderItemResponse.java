@@ -17,5 +17,6 @@ public class OrderItemResponse {
     private Integer quantity;
     private BigDecimal priceEach;
     private BigDecimal subtotal;
+    private BigDecimal discount;
 }
 
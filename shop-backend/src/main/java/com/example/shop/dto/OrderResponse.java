@@ -18,6 +18,8 @@ public class OrderResponse {
     private Long id;
     private Long userId;
     private BigDecimal totalAmount;
+    private BigDecimal discountAmount;
+    private String couponCode;
     private OrderStatus status;
     private PaymentStatus paymentStatus;
     private String paymentReference;
@@ -9,7 +9,7 @@ import java.time.Instant;
 
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 public class ProductResponse {
 
     private Long id;
@@ -20,6 +20,10 @@ public class ProductResponse {
     private Long categoryId;
     private String categoryName;
     private String imageUrl;
+    // Resized variants of imageUrl under immutable URLs; null until generated, fall back to imageUrl
+    private String imageThumbnailUrl;
+    private String imageCardUrl;
+    private String imageDetailUrl;
     private boolean active;
     private Instant createdAt;
     private Instant updatedAt;
@@ -0,0 +1,61 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.PromotionType;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@code PERCENTAGE} needs {@code percentOff}, {@code BUY_X_GET_Y} needs {@code buyQuantity} and
+ * {@code getQuantity}, {@code TIERED} needs {@code tiers}. At most one of {@code productId} and
+ * {@code categoryId} may be set; with neither the rule covers every product.
+ */
+@Getter
+@Setter
+public class PromotionRequest {
+
+    @NotBlank
+    @Size(max = 100)
+    private String name;
+
+    @NotNull
+    private PromotionType type;
+
+    private Long productId;
+
+    private Long categoryId;
+
+    @Size(max = 40)
+    @Pattern(regexp = "[A-Za-z0-9_-]+")
+    private String couponCode;
+
+    @DecimalMin(value = "0.00", inclusive = false)
+    @DecimalMax("100.00")
+    private BigDecimal percentOff;
+
+    @Min(1)
+    private Integer buyQuantity;
+
+    @Min(1)
+    private Integer getQuantity;
+
+    @Size(max = 20)
+    private List<@Valid @NotNull PromotionTierDto> tiers;
+
+    private Instant startsAt;
+
+    private Instant endsAt;
+
+    private Boolean active;
+}
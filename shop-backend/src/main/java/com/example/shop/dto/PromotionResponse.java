@@ -0,0 +1,32 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.PromotionType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class PromotionResponse {
+
+    private Long id;
+    private String name;
+    private PromotionType type;
+    private Long productId;
+    private Long categoryId;
+    private String couponCode;
+    private BigDecimal percentOff;
+    private Integer buyQuantity;
+    private Integer getQuantity;
+    private List<PromotionTierDto> tiers;
+    private Instant startsAt;
+    private Instant endsAt;
+    private boolean active;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
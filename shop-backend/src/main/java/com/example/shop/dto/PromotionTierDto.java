@@ -0,0 +1,27 @@
+package com.example.shop.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionTierDto {
+
+    @NotNull
+    @DecimalMin("0.00")
+    private BigDecimal minSubtotal;
+
+    @NotNull
+    @DecimalMin(value = "0.00", inclusive = false)
+    @DecimalMax("100.00")
+    private BigDecimal percentOff;
+}
@@ -0,0 +1,27 @@
+package com.example.shop.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+/** Starts a resumable upload; {@code chunkSize} defaults to the server's configured size. */
+@Getter
+@Setter
+public class UploadInitRequest {
+
+    @NotNull
+    private Long productId;
+
+    @NotBlank
+    @Size(max = 255)
+    private String fileName;
+
+    @NotNull
+    @Min(1)
+    private Long size;
+
+    private Integer chunkSize;
+}
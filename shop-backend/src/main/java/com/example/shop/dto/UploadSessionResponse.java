@@ -0,0 +1,25 @@
+package com.example.shop.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class UploadSessionResponse {
+
+    private String uploadId;
+    private Long productId;
+    private String fileName;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    // Chunks already stored; a resuming client sends only the others
+    private List<Integer> receivedChunks;
+    private Instant createdAt;
+    private Instant expiresAt;
+}
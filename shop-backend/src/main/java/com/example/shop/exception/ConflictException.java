@@ -0,0 +1,9 @@
+package com.example.shop.exception;
+
+/** The request lost a race for the resource, for example a second complete of one upload; answered with 409. */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
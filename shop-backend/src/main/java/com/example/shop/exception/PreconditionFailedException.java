@@ -0,0 +1,9 @@
+package com.example.shop.exception;
+
+/** A conditional request's {@code If-Match} no longer matches the resource; answered with 412. */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.shop.exception;
+
+import java.time.Duration;
+
+/** Work the server cannot take on right now, such as a full job queue; answered with 503 and {@code Retry-After}. */
+public class ServiceBusyException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceBusyException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,17 +1,22 @@
 package com.example.shop.model;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -23,7 +28,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carts")
+// One cart per user; concurrent first requests race to insert it and the loser reads the winner's
+@Table(
+        name = "carts",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_carts_user", columnNames = "user_id")
+        },
+        // Order of the expiry sweep; see CartRepository.findIdle
+        indexes = {
+                @Index(name = "idx_carts_last_updated", columnList = "last_updated, id")
+        }
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -32,7 +47,8 @@ import java.util.List;
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_seq")
+    @SequenceGenerator(name = "cart_seq", sequenceName = "cart_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -42,8 +58,18 @@ public class Cart {
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<CartItem> items = new ArrayList<>();
 
+    @Column(nullable = false)
     private Instant lastUpdated;
 
+    // Normalized (upper-case); checked against the live promotions whenever the cart is priced
+    @Column(length = 40)
+    private String couponCode;
+
+    // Bumped by every write to the cart or its items; see CartRepository.claimVersion
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     public void prePersist() {
         this.lastUpdated = Instant.now();
@@ -0,0 +1,28 @@
+package com.example.shop.model;
+
+import java.util.Map;
+
+/**
+ * Id generators shared by all entities. Ids come from pooled sequences that hand out blocks of
+ * {@link #ALLOCATION_SIZE}, so Hibernate can assign ids without a round trip per insert and
+ * batch the inserts themselves. On databases without sequences (MySQL) Hibernate keeps each
+ * sequence in a single-row table of the same name.
+ */
+public final class IdSequences {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    /** Sequence name by the table whose ids it generates. */
+    public static final Map<String, String> BY_TABLE = Map.of(
+            "users", "user_seq",
+            "categories", "category_seq",
+            "products", "product_seq",
+            "carts", "cart_seq",
+            "cart_items", "cart_item_seq",
+            "orders", "order_seq",
+            "order_items", "order_item_seq"
+    );
+
+    private IdSequences() {
+    }
+}
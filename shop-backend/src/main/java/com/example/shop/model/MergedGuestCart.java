@@ -0,0 +1,62 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * A guest cart token that has been merged into a user's cart, kept until the token expires so
+ * the same token is never merged twice.
+ */
+@Entity
+@Table(name = "merged_guest_carts")
+@Getter
+@Setter
+@NoArgsConstructor
+public class MergedGuestCart implements Persistable<String> {
+
+    @Id
+    @Column(length = 36)
+    private String tokenId;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    @Transient
+    private boolean isNew;
+
+    public static MergedGuestCart newFor(String tokenId, Instant expiresAt) {
+        MergedGuestCart merged = new MergedGuestCart();
+        merged.setTokenId(tokenId);
+        merged.setExpiresAt(expiresAt);
+        merged.isNew = true;
+        return merged;
+    }
+
+    @Override
+    public String getId() {
+        return tokenId;
+    }
+
+    // Ids are assigned, so save() would otherwise select before every insert
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Accumulated view and sales counts per product, and the decayed popularity score derived from
+ * them. Written only by the periodic flush in PopularityService, never by request threads.
+ */
+@Entity
+@Table(name = "product_stats", indexes = {
+        @Index(name = "idx_product_stats_score", columnList = "score")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductStats implements Persistable<Long> {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(nullable = false)
+    private long viewCount;
+
+    @Column(nullable = false)
+    private long salesCount;
+
+    @Column(nullable = false)
+    private double score;
+
+    private Instant updatedAt;
+
+    @Transient
+    private boolean isNew;
+
+    public static ProductStats newFor(Long productId) {
+        ProductStats stats = new ProductStats();
+        stats.setProductId(productId);
+        stats.isNew = true;
+        return stats;
+    }
+
+    @Override
+    public Long getId() {
+        return productId;
+    }
+
+    // Ids are product ids, so save() would otherwise select before every insert
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.shop.model;
+
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OrderBy;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pricing rule. It applies to one product, to a category and all its subcategories, or, with
+ * neither set, to every product. Rules with a coupon code only apply to carts carrying that code.
+ */
+@Entity
+@Table(
+        name = "promotions",
+        indexes = {
+                @Index(name = "idx_promotions_active", columnList = "active")
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Promotion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "promotion_seq")
+    @SequenceGenerator(name = "promotion_seq", sequenceName = "promotion_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private PromotionType type;
+
+    // Scope; plain ids because rules are compiled into an in-memory index, never navigated
+    private Long productId;
+
+    private Long categoryId;
+
+    // Stored upper-case
+    @Column(length = 40)
+    private String couponCode;
+
+    @Column(precision = 5, scale = 2)
+    private BigDecimal percentOff;
+
+    private Integer buyQuantity;
+
+    private Integer getQuantity;
+
+    @ElementCollection
+    @CollectionTable(name = "promotion_tiers", joinColumns = @JoinColumn(name = "promotion_id"))
+    @OrderBy("minSubtotal")
+    @Builder.Default
+    private List<PromotionTier> tiers = new ArrayList<>();
+
+    private Instant startsAt;
+
+    private Instant endsAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private boolean active = true;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    @PrePersist
+    public void prePersist() {
+        Instant now = Instant.now();
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedAt = Instant.now();
+    }
+}
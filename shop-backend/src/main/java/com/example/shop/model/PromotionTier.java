@@ -0,0 +1,24 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionTier {
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal minSubtotal;
+
+    @Column(nullable = false, precision = 5, scale = 2)
+    private BigDecimal percentOff;
+}
@@ -0,0 +1,13 @@
+package com.example.shop.model;
+
+public enum PromotionType {
+
+    /** {@code percentOff} off every matching line. */
+    PERCENTAGE,
+
+    /** Of every {@code buyQuantity + getQuantity} units of a product in the cart, {@code getQuantity} are free. */
+    BUY_X_GET_Y,
+
+    /** The best tier reached by the subtotal of all matching lines sets the percentage off them. */
+    TIERED
+}
@@ -0,0 +1,60 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Number of product columns (image and image variants) pointing at an uploaded file. Files whose
+ * count dropped to zero, or that never got a row, are removed by the upload sweeper.
+ */
+@Entity
+@Table(name = "stored_files")
+@Getter
+@Setter
+@NoArgsConstructor
+public class StoredFile implements Persistable<String> {
+
+    @Id
+    @Column(length = 255)
+    private String url;
+
+    @Column(nullable = false)
+    private int refCount;
+
+    @Transient
+    private boolean isNew;
+
+    public static StoredFile newFor(String url, int refCount) {
+        StoredFile file = new StoredFile();
+        file.setUrl(url);
+        file.setRefCount(refCount);
+        file.isNew = true;
+        return file;
+    }
+
+    @Override
+    public String getId() {
+        return url;
+    }
+
+    // Ids are assigned, so save() would otherwise select before every insert
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+
+/** A chunk of an {@link UploadSession} that has been written and flushed to disk. */
+@Entity
+@Table(name = "upload_chunks")
+@IdClass(UploadChunk.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadChunk implements Persistable<UploadChunk.Key> {
+
+    @Id
+    @Column(name = "session_id", length = 36)
+    private String sessionId;
+
+    @Id
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    @Override
+    public Key getId() {
+        return new Key(sessionId, chunkIndex);
+    }
+
+    // Rows are only ever inserted or deleted, so skip the select-before-merge on save
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String sessionId;
+        private Integer chunkIndex;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * A resumable upload in progress. The data goes into a preallocated part file; which chunks have
+ * arrived is recorded as {@link UploadChunk} rows, so an interrupted upload can be resumed even
+ * after a restart.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Getter
+@Setter
+@NoArgsConstructor
+public class UploadSession implements Persistable<String> {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    // The product whose image the finished upload becomes
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false, length = 255)
+    private String fileName;
+
+    @Column(nullable = false)
+    private long totalSize;
+
+    @Column(nullable = false)
+    private int chunkSize;
+
+    @Column(nullable = false)
+    private int chunkCount;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Transient
+    private boolean isNew;
+
+    public static UploadSession newSession(String id) {
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.isNew = true;
+        return session;
+    }
+
+    /** Size of the given chunk; only the last one may be shorter than chunkSize. */
+    public long chunkLength(int index) {
+        return Math.min(chunkSize, totalSize - (long) index * chunkSize);
+    }
+
+    // Ids are assigned, so save() would otherwise select before every insert
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
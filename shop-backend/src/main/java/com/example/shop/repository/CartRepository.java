@@ -2,14 +2,72 @@ package com.example.shop.repository;
 
 import com.example.shop.model.Cart;
 import com.example.shop.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
 
     @EntityGraph(attributePaths = {"items", "items.product"})
     Optional<Cart> findByUser(User user);
+
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<Cart> findByUserId(Long userId);
+
+    @EntityGraph(attributePaths = {"items"})
+    Optional<Cart> findWithItemsById(Long id);
+
+    /**
+     * Compare-and-set on the cart's version: bumps it only if it is still {@code version}.
+     * Returns 0 when another writer got there first. Writers that rewrite a cart's items claim
+     * the cart this way before loading it.
+     */
+    @Modifying
+    @Query("update Cart c set c.version = c.version + 1, c.lastUpdated = :lastUpdated "
+            + "where c.id = :id and c.version = :version")
+    int claimVersion(@Param("id") Long id, @Param("version") Long version, @Param("lastUpdated") Instant lastUpdated);
+
+    @Modifying
+    @Query("update Cart c set c.lastUpdated = :now where c.lastUpdated is null")
+    int backfillLastUpdated(@Param("now") Instant now);
+
+    /**
+     * Carts last written before {@code cutoff}, oldest first, that come after the keyset position
+     * ({@code afterTime}, {@code afterId}). Walks idx_carts_last_updated; never scans carts already swept.
+     */
+    @Query("select c.id as id, c.user.id as userId, c.lastUpdated as lastUpdated from Cart c "
+            + "where c.lastUpdated < :cutoff "
+            + "and (c.lastUpdated > :afterTime or (c.lastUpdated = :afterTime and c.id > :afterId)) "
+            + "order by c.lastUpdated, c.id")
+    List<IdleCart> findIdle(@Param("cutoff") Instant cutoff,
+                            @Param("afterTime") Instant afterTime,
+                            @Param("afterId") Long afterId,
+                            Pageable page);
+
+    /**
+     * Locks those of the given carts that are still idle. A cart written since it was selected is
+     * left out, and writers claiming a locked cart wait until the sweep's transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Cart c where c.id in :ids and c.lastUpdated < :cutoff")
+    List<Cart> lockIdle(@Param("ids") Collection<Long> ids, @Param("cutoff") Instant cutoff);
+
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id in :cartIds")
+    int deleteItemsByCartIds(@Param("cartIds") Collection<Long> cartIds);
+
+    @Modifying
+    @Query("delete from Cart c where c.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
 
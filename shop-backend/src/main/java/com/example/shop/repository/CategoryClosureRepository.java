@@ -0,0 +1,49 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.CategoryClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CategoryClosureRepository extends JpaRepository<CategoryClosure, CategoryClosure.Key> {
+
+    @Query("select c.descendantId from CategoryClosure c where c.ancestorId = :id")
+    List<Long> findDescendantIds(@Param("id") Long id);
+
+    @Query("select c.ancestorId from CategoryClosure c where c.descendantId = :id and c.depth > 0")
+    List<Long> findStrictAncestorIds(@Param("id") Long id);
+
+    /** Links a new leaf to itself and to every ancestor of its parent. */
+    @Modifying
+    @Query(value = "insert into category_closure (ancestor_id, descendant_id, depth) "
+            + "select ancestor_id, :id, depth + 1 from category_closure where descendant_id = :parentId",
+            nativeQuery = true)
+    int insertPathsFromAncestorsOf(@Param("parentId") Long parentId, @Param("id") Long id);
+
+    @Modifying
+    @Query(value = "insert into category_closure (ancestor_id, descendant_id, depth) values (:id, :id, 0)",
+            nativeQuery = true)
+    int insertSelf(@Param("id") Long id);
+
+    /** Attaches the whole subtree rooted at {@code id} below {@code parentId}. */
+    @Modifying
+    @Query(value = "insert into category_closure (ancestor_id, descendant_id, depth) "
+            + "select a.ancestor_id, d.descendant_id, a.depth + d.depth + 1 "
+            + "from category_closure a cross join category_closure d "
+            + "where a.descendant_id = :parentId and d.ancestor_id = :id",
+            nativeQuery = true)
+    int insertSubtreePaths(@Param("parentId") Long parentId, @Param("id") Long id);
+
+    @Modifying
+    @Query("delete from CategoryClosure c where c.ancestorId in :ancestorIds and c.descendantId in :descendantIds")
+    int deletePaths(@Param("ancestorIds") Collection<Long> ancestorIds,
+                    @Param("descendantIds") Collection<Long> descendantIds);
+
+    @Modifying
+    @Query("delete from CategoryClosure c where c.ancestorId = :id or c.descendantId = :id")
+    int deleteAllPathsOf(@Param("id") Long id);
+}
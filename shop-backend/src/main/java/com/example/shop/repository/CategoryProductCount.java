@@ -0,0 +1,13 @@
+package com.example.shop.repository;
+
+/**
+ * Per-category product counts from a single grouped query; rolled up to ancestors in memory.
+ */
+public interface CategoryProductCount {
+
+    Long getCategoryId();
+
+    Long getActiveCount();
+
+    Long getInStockCount();
+}
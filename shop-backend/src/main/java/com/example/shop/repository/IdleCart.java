@@ -0,0 +1,13 @@
+package com.example.shop.repository;
+
+import java.time.Instant;
+
+/** A cart the expiry sweep may delete, and its position in the sweep's (lastUpdated, id) order. */
+public interface IdleCart {
+
+    Long getId();
+
+    Long getUserId();
+
+    Instant getLastUpdated();
+}
@@ -0,0 +1,16 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.MergedGuestCart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface MergedGuestCartRepository extends JpaRepository<MergedGuestCart, String> {
+
+    @Modifying
+    @Query("delete from MergedGuestCart m where m.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
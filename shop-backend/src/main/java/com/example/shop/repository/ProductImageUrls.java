@@ -0,0 +1,13 @@
+package com.example.shop.repository;
+
+/** The upload URLs a product row refers to; variants are null until generated. */
+public interface ProductImageUrls {
+
+    String getImageUrl();
+
+    String getImageThumbnailUrl();
+
+    String getImageCardUrl();
+
+    String getImageDetailUrl();
+}
@@ -0,0 +1,23 @@
+package com.example.shop.repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * The columns a product listing is sorted and filtered on, read for every product when the
+ * in-memory listing index is built.
+ */
+public interface ProductListingRow {
+
+    Long getId();
+
+    Long getCategoryId();
+
+    BigDecimal getPrice();
+
+    String getName();
+
+    Instant getCreatedAt();
+
+    Boolean getActive();
+}
@@ -5,9 +5,40 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>,
+        ProductSearchRepository {
 
     Page<Product> findByActiveTrue(Pageable pageable);
+
+    @Query("select p from Product p left join fetch p.category where p.id in :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select p.id as id, p.stockQuantity as stockQuantity from Product p where p.id in :ids")
+    List<ProductStock> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select p.category.id as categoryId, count(p) as activeCount, "
+            + "sum(case when p.stockQuantity > 0 then 1 else 0 end) as inStockCount "
+            + "from Product p where p.active = true and p.category is not null group by p.category.id")
+    List<CategoryProductCount> countActiveByCategory();
+
+    @Query("select p.id as id, c.id as categoryId, p.price as price, p.name as name, "
+            + "p.createdAt as createdAt, p.active as active from Product p left join p.category c")
+    List<ProductListingRow> findAllListingRows();
+
+    @Query("select p.id as id, c.id as categoryId, p.price as price, p.name as name, "
+            + "p.createdAt as createdAt, p.active as active from Product p left join p.category c "
+            + "where p.id in :ids")
+    List<ProductListingRow> findListingRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select p.imageUrl as imageUrl, p.imageThumbnailUrl as imageThumbnailUrl, "
+            + "p.imageCardUrl as imageCardUrl, p.imageDetailUrl as imageDetailUrl "
+            + "from Product p where p.imageUrl is not null")
+    List<ProductImageUrls> findAllImageUrls();
 }
 
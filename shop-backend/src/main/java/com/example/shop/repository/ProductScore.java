@@ -0,0 +1,8 @@
+package com.example.shop.repository;
+
+public interface ProductScore {
+
+    Long getProductId();
+
+    Double getScore();
+}
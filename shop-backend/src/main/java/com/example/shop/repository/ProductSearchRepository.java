@@ -0,0 +1,17 @@
+package com.example.shop.repository;
+
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface ProductSearchRepository {
+
+    /**
+     * Same filtering, sorting and paging as {@code findAll(spec, pageable)}, but selects
+     * {@link ProductResponse}s directly with the category joined once: no managed entities,
+     * no lazy loads per row.
+     */
+    Page<ProductResponse> searchResponses(Specification<Product> spec, Pageable pageable);
+}
@@ -0,0 +1,145 @@
+package com.example.shop.repository;
+
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.model.Category;
+import com.example.shop.model.Product;
+import com.example.shop.model.ProductStats;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+class ProductSearchRepositoryImpl implements ProductSearchRepository {
+
+    static final String POPULARITY = "popularity";
+
+    private static final String NAME = "name";
+    private static final String ID = "id";
+
+    private final EntityManager entityManager;
+
+    ProductSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Page<ProductResponse> searchResponses(Specification<Product> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        Join<Product, Category> category = root.join("category", JoinType.LEFT);
+        // Selections are read back by alias, so their order does not matter
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("name").alias("name"),
+                root.get("description").alias("description"),
+                root.get("price").alias("price"),
+                root.get("stockQuantity").alias("stockQuantity"),
+                category.get("id").alias("categoryId"),
+                category.get("name").alias("categoryName"),
+                root.get("imageUrl").alias("imageUrl"),
+                root.get("imageThumbnailUrl").alias("imageThumbnailUrl"),
+                root.get("imageCardUrl").alias("imageCardUrl"),
+                root.get("imageDetailUrl").alias("imageDetailUrl"),
+                root.get("active").alias("active"),
+                root.get("createdAt").alias("createdAt"),
+                root.get("updatedAt").alias("updatedAt"));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(toOrders(pageable.getSort(), root, query, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<ProductResponse> content = typedQuery.getResultList().stream()
+                .map(ProductSearchRepositoryImpl::toResponse)
+                .toList();
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    private static ProductResponse toResponse(Tuple row) {
+        return ProductResponse.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .description(row.get("description", String.class))
+                .price(row.get("price", BigDecimal.class))
+                .stockQuantity(row.get("stockQuantity", Integer.class))
+                .categoryId(row.get("categoryId", Long.class))
+                .categoryName(row.get("categoryName", String.class))
+                .imageUrl(row.get("imageUrl", String.class))
+                .imageThumbnailUrl(row.get("imageThumbnailUrl", String.class))
+                .imageCardUrl(row.get("imageCardUrl", String.class))
+                .imageDetailUrl(row.get("imageDetailUrl", String.class))
+                .active(row.get("active", Boolean.class))
+                .createdAt(row.get("createdAt", Instant.class))
+                .updatedAt(row.get("updatedAt", Instant.class))
+                .build();
+    }
+
+    /**
+     * Spring Data's orders, plus the derived {@code popularity} property: the product's score in
+     * product_stats, or 0 without one, so descending lists the most popular first. Names sort by
+     * lower(name) and ties by id, matching the order of {@code ProductListingIndex}, so a listing
+     * reads the same whether the index or this query answers it.
+     */
+    private static List<Order> toOrders(Sort sort, Root<Product> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        List<Order> orders = new ArrayList<>();
+        Sort.Order last = null;
+        for (Sort.Order order : sort) {
+            last = order;
+            if (POPULARITY.equals(order.getProperty())) {
+                Subquery<Double> score = query.subquery(Double.class);
+                Root<ProductStats> stats = score.from(ProductStats.class);
+                score.select(stats.get("score")).where(cb.equal(stats.get("productId"), root.get("id")));
+                Expression<Double> popularity = cb.coalesce(score, 0.0);
+                orders.add(order.isAscending() ? cb.asc(popularity) : cb.desc(popularity));
+            } else if (NAME.equals(order.getProperty())) {
+                Expression<String> name = cb.lower(root.get(NAME));
+                orders.add(order.isAscending() ? cb.asc(name) : cb.desc(name));
+            } else {
+                orders.addAll(QueryUtils.toOrders(Sort.by(order), root, cb));
+            }
+        }
+        if (!ID.equals(last.getProperty())) {
+            orders.add(last.isAscending() ? cb.asc(root.get(ID)) : cb.desc(root.get(ID)));
+        }
+        return orders;
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(cb.count(root));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.ProductStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductStatsRepository extends JpaRepository<ProductStats, Long> {
+
+    @Query("select s.productId as productId, s.score as score from ProductStats s where s.score > 0")
+    List<ProductScore> findAllScores();
+
+    @Query("select s.productId as productId, s.score as score from ProductStats s where s.productId in :ids")
+    List<ProductScore> findScores(@Param("ids") Collection<Long> productIds);
+
+    @Query("select s.productId from ProductStats s where s.productId in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> productIds);
+
+    /** Adds to the row in place, so flushes from several nodes never overwrite each other. */
+    @Modifying
+    @Query("update ProductStats s set s.viewCount = s.viewCount + :views, s.salesCount = s.salesCount + :sales, "
+            + "s.score = s.score + :delta, s.updatedAt = :now where s.productId = :id")
+    int addCounts(@Param("id") Long productId, @Param("views") long views, @Param("sales") long sales,
+                  @Param("delta") double delta, @Param("now") Instant now);
+
+    /** Ages every score at once; relative order is unchanged. */
+    @Modifying
+    @Query("update ProductStats s set s.score = s.score * :factor")
+    int decayScores(@Param("factor") double factor);
+}
@@ -0,0 +1,11 @@
+package com.example.shop.repository;
+
+/**
+ * Closed projection used to (re)load the in-memory inventory view without materializing products.
+ */
+public interface ProductStock {
+
+    Long getId();
+
+    Integer getStockQuantity();
+}
@@ -0,0 +1,16 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.Promotion;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface PromotionRepository extends JpaRepository<Promotion, Long> {
+
+    @EntityGraph(attributePaths = {"tiers"})
+    List<Promotion> findByActiveTrue();
+
+    @EntityGraph(attributePaths = {"tiers"})
+    List<Promotion> findAllByOrderByIdAsc();
+}
@@ -0,0 +1,31 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    /** Returns 0 when the file has no row yet. */
+    @Modifying
+    @Query("update StoredFile f set f.refCount = f.refCount + :count where f.url = :url")
+    int addReferences(@Param("url") String url, @Param("count") int count);
+
+    @Modifying
+    @Query("update StoredFile f set f.refCount = case when f.refCount > :count then f.refCount - :count else 0 end "
+            + "where f.url = :url")
+    int removeReferences(@Param("url") String url, @Param("count") int count);
+
+    @Query("select f.url from StoredFile f where f.url in :urls and f.refCount > 0")
+    List<String> findReferencedUrls(@Param("urls") Collection<String> urls);
+
+    /** Deletes the row unless a reference was added since the sweeper looked at it. */
+    @Modifying
+    @Query("delete from StoredFile f where f.url = :url and f.refCount = 0")
+    int deleteUnreferenced(@Param("url") String url);
+}
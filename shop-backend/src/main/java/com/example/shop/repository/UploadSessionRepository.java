@@ -0,0 +1,20 @@
+package com.example.shop.repository;
+
+import com.example.shop.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    List<UploadSession> findByCreatedAtBefore(Instant cutoff);
+
+    /** Returns 0 when the upload was already deleted, by a concurrent complete or cancel. */
+    @Modifying
+    @Query("delete from UploadSession s where s.id = :id")
+    int deleteSession(@Param("id") String id);
+}
@@ -25,17 +25,20 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final EmailService emailService;
+    private final GuestCartService guestCartService;
 
     public AuthService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
                        AuthenticationManager authenticationManager,
                        JwtUtil jwtUtil,
-                       EmailService emailService) {
+                       EmailService emailService,
+                       GuestCartService guestCartService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.emailService = emailService;
+        this.guestCartService = guestCartService;
     }
 
     @Transactional
@@ -67,6 +70,15 @@ public class AuthService {
                 new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
         );
 
+        if (request.getGuestCartToken() != null && !request.getGuestCartToken().isBlank()) {
+            try {
+                guestCartService.mergeIntoUserCart(authentication.getName(), request.getGuestCartToken());
+            } catch (RuntimeException ex) {
+                // The guest cart is a convenience; signing in must not fail because of it
+                System.err.println("Failed to merge guest cart for " + authentication.getName() + ": " + ex.getMessage());
+            }
+        }
+
         String token = jwtUtil.generateToken(authentication.getName());
         return AuthResponse.builder()
                 .accessToken(token)
@@ -0,0 +1,75 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CacheStatsResponse;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Service
+public class CacheAdminService {
+
+    private final CacheManager cacheManager;
+
+    public CacheAdminService(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public List<CacheStatsResponse> getAllStats() {
+        return cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(this::getStats)
+                .collect(Collectors.toList());
+    }
+
+    public CacheStatsResponse getStats(String name) {
+        Cache cache = getCache(name);
+        if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+            return CacheStatsResponse.builder().name(name).build();
+        }
+
+        CacheStats stats = nativeCache.stats();
+        Policy<?, ?> policy = nativeCache.policy();
+        Long maximum = policy.eviction().map(Policy.Eviction::getMaximum).orElse(null);
+        boolean weighted = policy.eviction().map(Policy.Eviction::isWeighted).orElse(false);
+        Long weightedSize = policy.eviction()
+                .filter(Policy.Eviction::isWeighted)
+                .map(e -> e.weightedSize().orElse(0L))
+                .orElse(null);
+        String expireAfterWrite = policy.expireAfterWrite()
+                .map(e -> Duration.ofSeconds(e.getExpiresAfter(TimeUnit.SECONDS)).toString())
+                .orElse(null);
+
+        return CacheStatsResponse.builder()
+                .name(name)
+                .estimatedSize(nativeCache.estimatedSize())
+                .maximum(maximum)
+                .weighted(weighted)
+                .weightedSize(weightedSize)
+                .expireAfterWrite(expireAfterWrite)
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .evictionWeight(stats.evictionWeight())
+                .build();
+    }
+
+    public void clear(String name) {
+        getCache(name).clear();
+    }
+
+    private Cache getCache(String name) {
+        // Checked first: CaffeineCacheManager would otherwise create unknown caches on demand
+        if (!cacheManager.getCacheNames().contains(name)) {
+            throw new IllegalArgumentException("Cache not found");
+        }
+        return cacheManager.getCache(name);
+    }
+}
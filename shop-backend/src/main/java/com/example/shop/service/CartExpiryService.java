@@ -0,0 +1,149 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CartExpiryStatsResponse;
+import com.example.shop.model.Cart;
+import com.example.shop.repository.CartRepository;
+import com.example.shop.repository.IdleCart;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Deletes abandoned carts: carts not written for {@code cart.expiry.idle-after}, with their items.
+ *
+ * <p>The sweep walks idle carts oldest first along idx_carts_last_updated, {@code cart.expiry.batch-size}
+ * at a time, resuming each batch from the (lastUpdated, id) of the previous one. Every batch is
+ * deleted in its own short transaction, so row locks are held for one batch only. Carts held in
+ * memory by {@link CartStore} were used within its idle timeout and are skipped; a cart written
+ * between being selected and being locked is kept.
+ *
+ * <p>What the last sweep deleted, and the totals since startup, are served to admins at
+ * {@code GET /api/admin/cart-expiry}.
+ */
+@Service
+public class CartExpiryService {
+
+    /** Rows deleted by one sweep. */
+    public record Result(int carts, int items) {
+    }
+
+    private final CartRepository cartRepository;
+    private final CartStore cartStore;
+    private final ClusterInvalidationBus invalidationBus;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration idleAfter;
+    private final int batchSize;
+    // Guarded by this
+    private Instant lastRunAt;
+    private Result lastRun = new Result(0, 0);
+    private long runs;
+    private long totalCarts;
+    private long totalItems;
+
+    public CartExpiryService(CartRepository cartRepository,
+                             CartStore cartStore,
+                             ClusterInvalidationBus invalidationBus,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${cart.expiry.idle-after:30d}") Duration idleAfter,
+                             @Value("${cart.expiry.batch-size:500}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.cartStore = cartStore;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleAfter = idleAfter;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Carts written outside JPA may have no lastUpdated, and the sweep would never see them. They
+     * count as written now, so they expire once idle-after has passed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillLastUpdated() {
+        cartRepository.backfillLastUpdated(Instant.now());
+    }
+
+    /** Returns the number of carts and items deleted. */
+    @Scheduled(fixedDelayString = "${cart.expiry.interval:PT1H}", initialDelayString = "${cart.expiry.interval:PT1H}")
+    public Result expireIdle() {
+        Instant cutoff = Instant.now().minus(idleAfter);
+        Instant afterTime = Instant.EPOCH;
+        Long afterId = 0L;
+        int carts = 0;
+        int items = 0;
+        while (true) {
+            List<IdleCart> batch = cartRepository.findIdle(cutoff, afterTime, afterId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            IdleCart last = batch.get(batch.size() - 1);
+            afterTime = last.getLastUpdated();
+            afterId = last.getId();
+
+            List<Long> expired = batch.stream()
+                    .filter(cart -> !cartStore.isHeld(cart.getUserId()))
+                    .map(IdleCart::getId)
+                    .toList();
+            if (!expired.isEmpty()) {
+                Result deleted = transactionTemplate.execute(status -> deleteBatch(expired, cutoff));
+                carts += deleted.carts();
+                items += deleted.items();
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        Result result = new Result(carts, items);
+        recordRun(result);
+        return result;
+    }
+
+    public synchronized CartExpiryStatsResponse getStats() {
+        return CartExpiryStatsResponse.builder()
+                .lastRunAt(lastRunAt)
+                .lastRunCarts(lastRun.carts())
+                .lastRunItems(lastRun.items())
+                .runs(runs)
+                .totalCarts(totalCarts)
+                .totalItems(totalItems)
+                .build();
+    }
+
+    private synchronized void recordRun(Result result) {
+        lastRunAt = Instant.now();
+        lastRun = result;
+        runs++;
+        totalCarts += result.carts();
+        totalItems += result.items();
+    }
+
+    private Result deleteBatch(List<Long> cartIds, Instant cutoff) {
+        List<Cart> locked = cartRepository.lockIdle(cartIds, cutoff);
+        if (locked.isEmpty()) {
+            return new Result(0, 0);
+        }
+        List<Long> ids = locked.stream().map(Cart::getId).toList();
+        List<Long> userIds = locked.stream().map(cart -> cart.getUser().getId()).toList();
+        int items = cartRepository.deleteItemsByCartIds(ids);
+        int carts = cartRepository.deleteByIds(ids);
+        afterCommit(() -> {
+            // A user who came back meanwhile gets a fresh cart on their next request
+            cartStore.evictClean(userIds);
+            invalidationBus.broadcast(InvalidationTopic.CARTS, userIds);
+        });
+        return new Result(carts, items);
+    }
+}
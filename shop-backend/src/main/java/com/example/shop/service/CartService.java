@@ -2,190 +2,327 @@ package com.example.shop.service;
 
 import com.example.shop.dto.AddCartItemRequest;
 import com.example.shop.dto.CartItemResponse;
+import com.example.shop.dto.CartOperation;
 import com.example.shop.dto.CartResponse;
+import com.example.shop.dto.ProductResponse;
 import com.example.shop.dto.UpdateCartItemRequest;
-import com.example.shop.model.Cart;
-import com.example.shop.model.CartItem;
-import com.example.shop.model.Product;
-import com.example.shop.model.User;
-import com.example.shop.repository.CartItemRepository;
-import com.example.shop.repository.CartRepository;
-import com.example.shop.repository.ProductRepository;
-import com.example.shop.repository.UserRepository;
+import com.example.shop.exception.PreconditionFailedException;
+import com.example.shop.util.CartETags;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
+/**
+ * Cart operations on the in-memory carts of {@link CartStore}. Products are read through the
+ * product cache and stock through {@link InventoryService}, so a quantity change on a warm cart
+ * runs no queries at all. Every response is priced by {@link PromotionEngine}, with the cart's
+ * coupon if it has one.
+ *
+ * <p>Every mutation takes the client's {@code If-Match} value (null when absent) and is rejected
+ * with {@link PreconditionFailedException} if the cart no longer has that ETag, so two tabs
+ * editing the same cart cannot silently overwrite each other.
+ */
 @Service
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
+    private final CartStore cartStore;
+    private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final PromotionEngine promotionEngine;
 
-    public CartService(CartRepository cartRepository,
-                       CartItemRepository cartItemRepository,
-                       ProductRepository productRepository,
-                       UserRepository userRepository) {
-        this.cartRepository = cartRepository;
-        this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
-        this.userRepository = userRepository;
+    public CartService(CartStore cartStore,
+                       ProductService productService,
+                       InventoryService inventoryService,
+                       PromotionEngine promotionEngine) {
+        this.cartStore = cartStore;
+        this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.promotionEngine = promotionEngine;
     }
 
-    @Transactional
     public CartResponse getOrCreateCart(String userEmail) {
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        Cart cart = cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart c = new Cart();
-                    c.setUser(user);
-                    return cartRepository.save(c);
-                });
-
-        return toResponse(cart);
+        return cartStore.read(userEmail, this::toResponse);
     }
 
-    @Transactional
-    public CartResponse addItem(String userEmail, AddCartItemRequest request) {
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+    public CartResponse addItem(String userEmail, AddCartItemRequest request, String ifMatch) {
+        ProductResponse product = productService.getById(request.getProductId());
+        int stock = stockOf(product.getId());
 
-        if (!product.isActive() || product.getStockQuantity() <= 0) {
+        if (!product.isActive() || stock <= 0) {
             throw new IllegalArgumentException("Product is not available");
         }
 
-        Cart cart = cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart c = new Cart();
-                    c.setUser(user);
-                    return cartRepository.save(c);
-                });
-
-        Optional<CartItem> existingItemOpt = cart.getItems().stream()
-                .filter(i -> i.getProduct().getId().equals(product.getId()))
-                .findFirst();
-
-        int newQuantity;
-        if (existingItemOpt.isPresent()) {
-            CartItem item = existingItemOpt.get();
-            newQuantity = item.getQuantity() + request.getQuantity();
-            if (newQuantity > product.getStockQuantity()) {
+        return cartStore.update(userEmail, whenMatching(ifMatch, cart -> {
+            CartState.Line existing = cart.getLine(product.getId());
+            int newQuantity = existing != null
+                    ? existing.getQuantity() + request.getQuantity()
+                    : request.getQuantity();
+            if (newQuantity > stock) {
                 throw new IllegalArgumentException(
-                        "Requested quantity exceeds available stock. Available: " + product.getStockQuantity()
+                        "Requested quantity exceeds available stock. Available: " + stock
                 );
             }
-            item.setQuantity(newQuantity);
-        } else {
-            if (request.getQuantity() > product.getStockQuantity()) {
+            if (existing != null) {
+                cart.setQuantity(existing, newQuantity);
+            } else {
+                cart.addLine(product.getId(), product.getName(), product.getCategoryId(), newQuantity,
+                        product.getPrice());
+            }
+        }), this::toResponse);
+    }
+
+    public CartResponse updateItem(String userEmail, Long itemId, UpdateCartItemRequest request, String ifMatch) {
+        return cartStore.update(userEmail, whenMatching(ifMatch, cart -> {
+            CartState.Line item = cart.getLineByItemId(itemId);
+            if (item == null) {
+                throw new IllegalArgumentException("Cart item not found");
+            }
+
+            int stock = stockOf(item.getProductId());
+            if (request.getQuantity() > stock) {
                 throw new IllegalArgumentException(
-                        "Requested quantity exceeds available stock. Available: " + product.getStockQuantity()
+                        "Requested quantity exceeds available stock. Available: " + stock
                 );
             }
-            CartItem item = CartItem.builder()
-                    .cart(cart)
-                    .product(product)
-                    .quantity(request.getQuantity())
-                    .priceAtAddTime(product.getPrice())
-                    .build();
-            cart.getItems().add(item);
-        }
 
-        Cart saved = cartRepository.save(cart);
-        return toResponse(saved);
+            cart.setQuantity(item, request.getQuantity());
+        }), this::toResponse);
     }
 
-    @Transactional
-    public CartResponse updateItem(String userEmail, Long itemId, UpdateCartItemRequest request) {
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+    public CartResponse removeItem(String userEmail, Long itemId, String ifMatch) {
+        return cartStore.update(userEmail, whenMatching(ifMatch, cart -> {
+            CartState.Line item = cart.getLineByItemId(itemId);
+            if (item == null) {
+                throw new IllegalArgumentException("Cart item not found");
+            }
+            cart.removeLine(item.getProductId());
+        }), this::toResponse);
+    }
 
-        CartItem item = cart.getItems().stream()
-                .filter(i -> i.getId().equals(itemId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+    /**
+     * Applies several cart changes at once: the products being added are resolved in one
+     * {@link ProductService#getByIds} call, stock for every affected product is read with one
+     * {@link InventoryService#getStock(java.util.Collection)} call, and the changes are validated
+     * against the quantities they leave before any is applied, so an invalid change rejects the
+     * whole batch. Lines added by the batch are written in a single transaction.
+     */
+    public CartResponse applyOperations(String userEmail, List<CartOperation> operations, String ifMatch) {
+        return cartStore.update(userEmail, whenMatching(ifMatch, prepareOperations(operations)), this::toResponse);
+    }
 
-        Product product = item.getProduct();
-        if (request.getQuantity() > product.getStockQuantity()) {
-            throw new IllegalArgumentException(
-                    "Requested quantity exceeds available stock. Available: " + product.getStockQuantity()
-            );
+    /**
+     * Resolves the products a batch adds and returns the mutation applying it, for
+     * {@link #applyOperations} and for guest carts, which are not held by {@link CartStore}.
+     */
+    Consumer<CartState> prepareOperations(List<CartOperation> operations) {
+        List<Long> addedProductIds = operations.stream()
+                .filter(op -> op.getType() == CartOperation.Type.ADD)
+                .map(CartOperation::getProductId)
+                .filter(Objects::nonNull)
+                .toList();
+        Map<Long, ProductResponse> products = new HashMap<>();
+        if (!addedProductIds.isEmpty()) {
+            productService.getByIds(addedProductIds).forEach(product -> products.put(product.getId(), product));
         }
 
-        item.setQuantity(request.getQuantity());
-        Cart saved = cartRepository.save(cart);
-        return toResponse(saved);
-    }
+        return cart -> {
+            // Quantity each affected product ends up with, 0 for removed lines
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            Set<Long> added = new HashSet<>();
+            for (CartOperation op : operations) {
+                switch (op.getType()) {
+                    case ADD -> {
+                        ProductResponse product = products.get(requireField(op.getProductId(), "productId"));
+                        if (product == null) {
+                            throw new IllegalArgumentException("Product not found");
+                        }
+                        if (!product.isActive()) {
+                            throw new IllegalArgumentException("Product is not available");
+                        }
+                        int quantity = requireField(op.getQuantity(), "quantity");
+                        int base = quantities.containsKey(product.getId())
+                                ? quantities.get(product.getId())
+                                : currentQuantity(cart, product.getId());
+                        quantities.put(product.getId(), base + quantity);
+                        added.add(product.getId());
+                    }
+                    case UPDATE -> quantities.put(lineOf(cart, op).getProductId(),
+                            requireField(op.getQuantity(), "quantity"));
+                    case REMOVE -> quantities.put(lineOf(cart, op).getProductId(), 0);
+                }
+            }
 
-    @Transactional
-    public CartResponse removeItem(String userEmail, Long itemId) {
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+            Map<Long, Integer> stock = inventoryService.getStock(quantities.keySet());
+            quantities.forEach((productId, quantity) -> {
+                if (quantity == 0) {
+                    return;
+                }
+                Integer available = stock.get(productId);
+                if (available == null) {
+                    throw new IllegalArgumentException("Product not found");
+                }
+                if (added.contains(productId) && available <= 0) {
+                    throw new IllegalArgumentException("Product is not available");
+                }
+                if (quantity > available) {
+                    throw new IllegalArgumentException(
+                            "Requested quantity exceeds available stock. Available: " + available
+                    );
+                }
+            });
 
-        boolean removed = cart.getItems().removeIf(i -> i.getId().equals(itemId));
-        if (!removed) {
-            throw new IllegalArgumentException("Cart item not found");
-        }
+            quantities.forEach((productId, quantity) -> {
+                CartState.Line line = cart.getLine(productId);
+                if (quantity == 0) {
+                    cart.removeLine(productId);
+                } else if (line == null) {
+                    ProductResponse product = products.get(productId);
+                    cart.addLine(productId, product.getName(), product.getCategoryId(), quantity, product.getPrice());
+                } else if (line.getQuantity() != quantity) {
+                    cart.setQuantity(line, quantity);
+                }
+            });
+        };
+    }
+
+    /**
+     * Adds a guest cart's lines to the user's cart, in the one write that gives the new lines
+     * their ids. Quantities are capped at the stock now available, and products no longer for
+     * sale are skipped, so signing in never fails because of the guest cart.
+     */
+    public CartResponse mergeGuestCart(String userEmail, CartState guest) {
+        Map<Long, Integer> stock = guest.getLines().isEmpty()
+                ? Map.of()
+                : inventoryService.getStock(guest.getLines().stream().map(CartState.Line::getProductId).toList());
+        return cartStore.update(userEmail, cart -> {
+            for (CartState.Line line : guest.getLines()) {
+                int available = stock.getOrDefault(line.getProductId(), 0);
+                CartState.Line existing = cart.getLine(line.getProductId());
+                if (existing != null) {
+                    int quantity = Math.min(existing.getQuantity() + line.getQuantity(), available);
+                    if (quantity > existing.getQuantity()) {
+                        cart.setQuantity(existing, quantity);
+                    }
+                } else if (available > 0) {
+                    cart.addLine(line.getProductId(), line.getProductName(), line.getCategoryId(),
+                            Math.min(line.getQuantity(), available), line.getPriceAtAddTime());
+                }
+            }
+        }, this::toResponse);
+    }
 
-        Cart saved = cartRepository.save(cart);
-        return toResponse(saved);
+    public CartResponse clearCart(String userEmail, String ifMatch) {
+        return cartStore.update(userEmail, whenMatching(ifMatch, CartState::clear), this::toResponse);
     }
 
-    @Transactional
-    public CartResponse clearCart(String userEmail) {
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+    /**
+     * Sets the coupon the cart is priced with, replacing any earlier one. Only a code with a live
+     * promotion is accepted; a code that expires later stays on the cart but no longer applies.
+     */
+    public CartResponse applyCoupon(String userEmail, String couponCode, String ifMatch) {
+        if (!promotionEngine.isValidCoupon(couponCode)) {
+            throw new IllegalArgumentException("Invalid coupon code");
+        }
+        String normalized = CompiledPromotions.normalizeCoupon(couponCode);
+        return cartStore.update(userEmail, whenMatching(ifMatch, cart -> cart.setCouponCode(normalized)),
+                this::toResponse);
+    }
 
-        cart.getItems().clear();
-        Cart saved = cartRepository.save(cart);
-        return toResponse(saved);
+    public CartResponse removeCoupon(String userEmail, String ifMatch) {
+        return cartStore.update(userEmail, whenMatching(ifMatch, cart -> cart.setCouponCode(null)),
+                this::toResponse);
     }
 
-    public CartResponse toResponse(Cart cart) {
-        List<CartItemResponse> items = cart.getItems().stream()
-                .map(this::toItemResponse)
-                .collect(Collectors.toList());
+    public CartResponse toResponse(CartState cart) {
+        List<CartState.Line> lines = List.copyOf(cart.getLines());
+        // Priced with the products' current categories, as checkout does, not the ones held on the lines
+        Map<Long, Long> categoryIds = productService.getCategoryIds(
+                lines.stream().map(CartState.Line::getProductId).toList());
+        List<PricingLine> pricingLines = lines.stream()
+                .map(line -> new PricingLine(line.getProductId(),
+                        categoryIds.getOrDefault(line.getProductId(), line.getCategoryId()),
+                        line.getPriceAtAddTime(), line.getQuantity()))
+                .toList();
+        PricedCart priced = promotionEngine.price(pricingLines, cart.getCouponCode());
 
-        BigDecimal total = items.stream()
-                .map(CartItemResponse::getLineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        List<CartItemResponse> items = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            items.add(toItemResponse(lines.get(i), priced.lines().get(i)));
+        }
 
         return CartResponse.builder()
-                .id(cart.getId())
-                .userId(cart.getUser().getId())
+                .id(cart.getCartId())
+                .userId(cart.getUserId())
                 .items(items)
-                .totalAmount(total)
+                .subtotal(priced.subtotal())
+                .discountAmount(priced.discount())
+                .totalAmount(priced.total())
+                .couponCode(cart.getCouponCode())
+                .couponApplied(priced.couponCode() != null)
                 .lastUpdated(cart.getLastUpdated())
                 .build();
     }
 
-    private CartItemResponse toItemResponse(CartItem item) {
+    /** Runs the mutation only if the cart still has the ETag the client last saw. */
+    private Consumer<CartState> whenMatching(String ifMatch, Consumer<CartState> mutation) {
+        return cart -> {
+            if (!CartETags.matches(ifMatch, CartETags.cart(toResponse(cart)))) {
+                throw new PreconditionFailedException("The cart has changed; reload it and try again");
+            }
+            mutation.accept(cart);
+        };
+    }
+
+    private static int currentQuantity(CartState cart, Long productId) {
+        CartState.Line line = cart.getLine(productId);
+        return line != null ? line.getQuantity() : 0;
+    }
+
+    private static CartState.Line lineOf(CartState cart, CartOperation op) {
+        CartState.Line line = cart.getLineByItemId(requireField(op.getItemId(), "itemId"));
+        if (line == null) {
+            throw new IllegalArgumentException("Cart item not found");
+        }
+        return line;
+    }
+
+    private static <T> T requireField(T value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException(field + " is required for this operation");
+        }
+        return value;
+    }
+
+    private int stockOf(Long productId) {
+        Integer stock = inventoryService.getStock(productId);
+        if (stock == null) {
+            throw new IllegalArgumentException("Product not found");
+        }
+        return stock;
+    }
+
+    private CartItemResponse toItemResponse(CartState.Line item, PricedCart.Line priced) {
         BigDecimal lineTotal = item.getPriceAtAddTime()
                 .multiply(BigDecimal.valueOf(item.getQuantity()));
 
         return CartItemResponse.builder()
-                .id(item.getId())
-                .productId(item.getProduct().getId())
-                .productName(item.getProduct().getName())
+                .id(item.getItemId())
+                .productId(item.getProductId())
+                .productName(item.getProductName())
                 .quantity(item.getQuantity())
                 .priceAtAddTime(item.getPriceAtAddTime())
                 .lineTotal(lineTotal)
+                .discount(priced.discount())
+                .promotions(priced.promotions())
                 .build();
     }
 }
-
@@ -0,0 +1,305 @@
+package com.example.shop.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A user's cart as held in memory by {@link CartStore}: one line per product, in the order they
+ * were added. Only touched while holding the state's monitor, which {@link CartStore} takes for
+ * every read, mutation and flush.
+ */
+public final class CartState {
+
+    public static final class Line {
+        // Null until the line has been written to cart_items
+        private Long itemId;
+        private final Long productId;
+        private final String productName;
+        // As of when the line was added or loaded; promotions by category match on it
+        private final Long categoryId;
+        private int quantity;
+        private final BigDecimal priceAtAddTime;
+
+        Line(Long itemId, Long productId, String productName, Long categoryId, int quantity,
+             BigDecimal priceAtAddTime) {
+            this.itemId = itemId;
+            this.productId = productId;
+            this.productName = productName;
+            this.categoryId = categoryId;
+            this.quantity = quantity;
+            this.priceAtAddTime = priceAtAddTime;
+        }
+
+        public Long getItemId() {
+            return itemId;
+        }
+
+        void setItemId(Long itemId) {
+            this.itemId = itemId;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public Long getCategoryId() {
+            return categoryId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getPriceAtAddTime() {
+            return priceAtAddTime;
+        }
+    }
+
+    private final Long userId;
+    private final String email;
+    private Long cartId;
+    // Version of the carts row this state was last loaded from or flushed to
+    private Long cartVersion;
+    private final Map<Long, Line> lines = new LinkedHashMap<>();
+    // Quantities by product as of cartVersion; what the last flush or load saw in the database
+    private final Map<Long, Integer> base = new HashMap<>();
+    // Normalized coupon code, and the one the database holds as of cartVersion
+    private String couponCode;
+    private String baseCoupon;
+    private Instant lastUpdated;
+    // Bumped by every mutation; the state is dirty while it differs from flushedVersion
+    private long version;
+    private long flushedVersion;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+    // Set under the monitor when the store drops this state; holders then load the cart again
+    private boolean evicted;
+
+    CartState(Long userId, String email) {
+        this.userId = userId;
+        this.email = email;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getCartId() {
+        return cartId;
+    }
+
+    public Instant getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public Collection<Line> getLines() {
+        return lines.values();
+    }
+
+    public Line getLine(Long productId) {
+        return lines.get(productId);
+    }
+
+    public Line getLineByItemId(Long itemId) {
+        for (Line line : lines.values()) {
+            if (itemId.equals(line.itemId)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    public void addLine(Long productId, String productName, Long categoryId, int quantity,
+                        BigDecimal priceAtAddTime) {
+        lines.put(productId, new Line(null, productId, productName, categoryId, quantity, priceAtAddTime));
+        modified();
+    }
+
+    public void setQuantity(Line line, int quantity) {
+        line.quantity = quantity;
+        modified();
+    }
+
+    public void removeLine(Long productId) {
+        if (lines.remove(productId) != null) {
+            modified();
+        }
+    }
+
+    public String getCouponCode() {
+        return couponCode;
+    }
+
+    public void setCouponCode(String couponCode) {
+        if (!Objects.equals(this.couponCode, couponCode)) {
+            this.couponCode = couponCode;
+            modified();
+        }
+    }
+
+    public void clear() {
+        if (!lines.isEmpty()) {
+            lines.clear();
+            modified();
+        }
+    }
+
+    String getEmail() {
+        return email;
+    }
+
+    void setCartId(Long cartId) {
+        this.cartId = cartId;
+    }
+
+    void setLastUpdated(Instant lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    Long getCartVersion() {
+        return cartVersion;
+    }
+
+    /** Adds a line read from the database, without marking the cart modified. */
+    void loadLine(Long itemId, Long productId, String productName, Long categoryId, int quantity,
+                  BigDecimal priceAtAddTime) {
+        lines.put(productId, new Line(itemId, productId, productName, categoryId, quantity, priceAtAddTime));
+        base.put(productId, quantity);
+    }
+
+    /** Sets the coupon read from the database, without marking the cart modified. */
+    void loadCoupon(String couponCode) {
+        this.couponCode = couponCode;
+        this.baseCoupon = couponCode;
+    }
+
+    /** Records that the database now holds exactly these lines, at the given cart version. */
+    void synced(Long cartVersion) {
+        this.cartVersion = cartVersion;
+        baseCoupon = couponCode;
+        base.clear();
+        lines.values().forEach(line -> base.put(line.productId, line.quantity));
+    }
+
+    Map<Long, Integer> baseSnapshot() {
+        return new HashMap<>(base);
+    }
+
+    String getBaseCoupon() {
+        return baseCoupon;
+    }
+
+    /** Undoes {@link #synced} after the transaction holding a flush rolled back. */
+    void restoreBase(Map<Long, Integer> base, String baseCoupon, Long cartVersion) {
+        this.cartVersion = cartVersion;
+        this.baseCoupon = baseCoupon;
+        this.base.clear();
+        this.base.putAll(base);
+    }
+
+    /**
+     * Records that an order took these products and the coupon out of the database copy as well,
+     * at the given cart version.
+     */
+    void removedInDatabase(Collection<Long> productIds, Long cartVersion) {
+        this.cartVersion = cartVersion;
+        productIds.forEach(base::remove);
+        baseCoupon = null;
+    }
+
+    /**
+     * Three-way merge with a newer database copy of the cart, which another writer changed since
+     * this state was last synced. Lines this state changed keep its quantity (or stay removed);
+     * every other line is taken from {@code latest}, and the coupon likewise. Afterwards this state is based on
+     * {@code latest}, and is dirty if it still differs from it.
+     */
+    void rebase(List<Line> latest, String latestCoupon, Long latestVersion) {
+        Map<Long, Line> theirs = new LinkedHashMap<>();
+        latest.forEach(line -> theirs.put(line.productId, line));
+        Map<Long, Line> merged = new LinkedHashMap<>();
+        for (Line mine : lines.values()) {
+            Line their = theirs.get(mine.productId);
+            if (Objects.equals(base.get(mine.productId), mine.quantity)) {
+                // Unchanged here: theirs wins, including their removal
+                if (their != null) {
+                    merged.put(mine.productId, their);
+                }
+            } else {
+                mine.itemId = their != null ? their.itemId : null;
+                merged.put(mine.productId, mine);
+            }
+        }
+        for (Line their : theirs.values()) {
+            boolean removedHere = base.containsKey(their.productId) && !lines.containsKey(their.productId);
+            if (!merged.containsKey(their.productId) && !removedHere) {
+                merged.put(their.productId, their);
+            }
+        }
+        lines.clear();
+        lines.putAll(merged);
+        if (Objects.equals(baseCoupon, couponCode)) {
+            couponCode = latestCoupon;
+        }
+        baseCoupon = latestCoupon;
+        cartVersion = latestVersion;
+        base.clear();
+        theirs.values().forEach(line -> base.put(line.productId, line.quantity));
+        modified();
+    }
+
+    List<Line> lineSnapshot() {
+        return new ArrayList<>(lines.values());
+    }
+
+    boolean hasUnsavedLines() {
+        return lines.values().stream().anyMatch(line -> line.itemId == null);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    boolean isDirty() {
+        return version != flushedVersion;
+    }
+
+    void flushed(long flushedVersion) {
+        this.flushedVersion = flushedVersion;
+    }
+
+    /** Forces the next flush to rewrite the cart, e.g. after the transaction holding a flush rolled back. */
+    void markDirty() {
+        this.flushedVersion = -1;
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    void evicted() {
+        this.evicted = true;
+    }
+
+    long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    private void modified() {
+        version++;
+        lastUpdated = Instant.now();
+    }
+}
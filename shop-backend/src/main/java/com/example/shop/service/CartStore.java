@@ -0,0 +1,420 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Cart;
+import com.example.shop.model.CartItem;
+import com.example.shop.model.Product;
+import com.example.shop.model.User;
+import com.example.shop.repository.CartRepository;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Carts held in memory by user id, so cart requests neither look up the user nor reload the cart.
+ *
+ * <p>A cart is loaded once, on its user's first request, and mutated in memory. Changes are
+ * written behind: every {@code cart.store.flush-interval} each modified cart is written in one
+ * transaction, however many mutations it took since the last flush. Two cases write at once:
+ * a mutation that adds a line, because the API identifies lines by their {@code cart_items} id,
+ * and checkout, which flushes the cart inside the order transaction before reading it. Everything
+ * still pending is flushed on shutdown. A crash loses at most one flush interval of quantity
+ * changes and removals.
+ *
+ * <p>Unmodified carts not used for {@code cart.store.idle-timeout} are dropped from memory. With
+ * several nodes each flush is broadcast, and the other nodes drop that user's cart unless they
+ * hold unflushed changes to it; a user's requests are expected to stay on one node.
+ *
+ * <p>Writes are optimistic and never lock the cart row while deciding what to write. A flush
+ * first claims the cart with a compare-and-set on its version; if another node or the order
+ * path wrote it since this state was synced, the state is merged with the latest copy (see
+ * {@link CartState#rebase}) and the flush retried.
+ *
+ * <p>The map's own locks are never held while waiting for a cart's monitor: carts are loaded
+ * before they are put in the map, and a cart is marked evicted under its monitor but removed from
+ * the map outside it. A request that finds its cart marked evicted loads it again.
+ */
+@Component
+public class CartStore {
+
+    static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final CartRepository cartRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ClusterInvalidationBus invalidationBus;
+    private final TransactionTemplate transactionTemplate;
+    private final long idleTimeoutMillis;
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+    // Principals are emails; resolved once per cached cart
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+
+    public CartStore(CartRepository cartRepository,
+                     UserRepository userRepository,
+                     ProductRepository productRepository,
+                     ClusterInvalidationBus invalidationBus,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${cart.store.idle-timeout:30m}") Duration idleTimeout) {
+        this.cartRepository = cartRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+    }
+
+    /** Reads the user's cart, loading (and if need be creating) it on first use. */
+    public <T> T read(String email, Function<CartState, T> reader) {
+        while (true) {
+            CartState state = state(email);
+            synchronized (state) {
+                if (!state.isEvicted()) {
+                    state.touch();
+                    return reader.apply(state);
+                }
+            }
+            carts.remove(state.getUserId(), state);
+        }
+    }
+
+    /**
+     * Applies a mutation to the user's cart and reads the result. Lines it adds are written before
+     * the read so they have ids; anything else is written by the next flush.
+     */
+    public <T> T update(String email, Consumer<CartState> mutation, Function<CartState, T> reader) {
+        while (true) {
+            CartState state = state(email);
+            synchronized (state) {
+                if (!state.isEvicted()) {
+                    state.touch();
+                    mutation.accept(state);
+                    if (state.hasUnsavedLines()) {
+                        try {
+                            flush(state);
+                        } catch (DataIntegrityViolationException ex) {
+                            discard(state);
+                            throw ex;
+                        }
+                    }
+                    return reader.apply(state);
+                }
+            }
+            carts.remove(state.getUserId(), state);
+        }
+    }
+
+    /**
+     * Writes the user's pending changes as part of the current (order) transaction, so the order
+     * sees the cart the user last saw. If that transaction rolls back, the cart is written again
+     * by the next flush.
+     */
+    public void flushForCheckout(String email) {
+        Long userId = userIds.get(email);
+        CartState state = userId != null ? carts.get(userId) : null;
+        if (state == null) {
+            return;
+        }
+        List<CartState.Line> unsaved = new ArrayList<>();
+        Long syncedVersion;
+        Map<Long, Integer> syncedBase;
+        String syncedCoupon;
+        synchronized (state) {
+            if (state.isEvicted() || !state.isDirty()) {
+                return;
+            }
+            state.getLines().stream().filter(line -> line.getItemId() == null).forEach(unsaved::add);
+            syncedVersion = state.getCartVersion();
+            syncedBase = state.baseSnapshot();
+            syncedCoupon = state.getBaseCoupon();
+            flush(state);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        synchronized (state) {
+                            // Nothing of that flush reached the database
+                            unsaved.forEach(line -> line.setItemId(null));
+                            state.restoreBase(syncedBase, syncedCoupon, syncedVersion);
+                            state.markDirty();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the ordered products and the redeemed coupon from the user's cart once the order has
+     * committed; {@code cartVersion} is the version the order left the cart at.
+     */
+    public void checkedOut(String email, Collection<Long> productIds, Long cartVersion) {
+        Long userId = userIds.get(email);
+        CartState state = userId != null ? carts.get(userId) : null;
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            boolean wasDirty = state.isDirty();
+            productIds.forEach(state::removeLine);
+            state.setCouponCode(null);
+            // The order transaction already deleted those rows
+            state.removedInDatabase(productIds, cartVersion);
+            if (!wasDirty) {
+                state.flushed(state.getVersion());
+            }
+        }
+    }
+
+    /** Writes every cart changed since its last flush. */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval:PT2S}",
+            initialDelayString = "${cart.store.flush-interval:PT2S}")
+    public int flushDirty() {
+        int flushed = 0;
+        for (CartState state : carts.values()) {
+            synchronized (state) {
+                if (!state.isDirty()) {
+                    continue;
+                }
+                try {
+                    flush(state);
+                    flushed++;
+                } catch (DataIntegrityViolationException ex) {
+                    // Will never succeed, e.g. a product in the cart was deleted; start over from the database
+                    System.err.println("Dropped unwritable cart of user " + state.getUserId() + ": " + ex.getMessage());
+                    discard(state);
+                } catch (RuntimeException ex) {
+                    // Left dirty and retried by the next flush
+                    System.err.println("Failed to flush cart of user " + state.getUserId() + ": " + ex.getMessage());
+                }
+            }
+        }
+        return flushed;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void flushOnShutdown() {
+        flushDirty();
+    }
+
+    @Scheduled(fixedDelayString = "${cart.store.eviction-interval:PT1M}",
+            initialDelayString = "${cart.store.eviction-interval:PT1M}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        carts.values().removeIf(state -> {
+            synchronized (state) {
+                if (state.isDirty() || state.getLastAccessMillis() >= cutoff) {
+                    return false;
+                }
+                state.evicted();
+                userIds.remove(state.getEmail(), state.getUserId());
+                return true;
+            }
+        });
+    }
+
+    /** Carts another node wrote; they are reloaded here on next use. */
+    @EventListener
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        if (event.topic() != InvalidationTopic.CARTS) {
+            return;
+        }
+        evictClean(event.ids());
+    }
+
+    /** Drops these users' carts unless they hold unflushed changes, which are written as usual. */
+    void evictClean(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            CartState state = carts.get(userId);
+            if (state == null) {
+                continue;
+            }
+            synchronized (state) {
+                if (state.isDirty()) {
+                    continue;
+                }
+                state.evicted();
+            }
+            carts.remove(userId, state);
+        }
+    }
+
+    int size() {
+        return carts.size();
+    }
+
+    /** Whether the user's cart is in memory, i.e. was used within the idle timeout. */
+    boolean isHeld(Long userId) {
+        return carts.containsKey(userId);
+    }
+
+    /** Drops the state for good; caller holds its monitor. */
+    private void discard(CartState state) {
+        state.evicted();
+        carts.remove(state.getUserId(), state);
+        userIds.remove(state.getEmail(), state.getUserId());
+    }
+
+    private CartState state(String email) {
+        Long userId = userIds.get(email);
+        if (userId == null) {
+            User user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+            userId = user.getId();
+            userIds.put(email, userId);
+        }
+        CartState state = carts.get(userId);
+        if (state != null) {
+            return state;
+        }
+        // Not computeIfAbsent, which would hold the map's lock through the queries
+        CartState loaded = load(userId, email);
+        CartState raced = carts.putIfAbsent(userId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    /**
+     * Loads the user's cart, creating it if there is none. Creation is an insert that may lose
+     * to a concurrent one (another node, or a request that raced this one); uk_carts_user then
+     * rejects the second cart and the winner's is read instead.
+     */
+    private CartState load(Long userId, String email) {
+        CartState state = transactionTemplate.execute(status ->
+                cartRepository.findByUserId(userId).map(cart -> toState(cart, email)).orElse(null));
+        if (state != null) {
+            return state;
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                Cart created = new Cart();
+                created.setUser(userRepository.getReferenceById(userId));
+                return toState(cartRepository.saveAndFlush(created), email);
+            });
+        } catch (DataIntegrityViolationException ex) {
+            return transactionTemplate.execute(status -> cartRepository.findByUserId(userId)
+                    .map(cart -> toState(cart, email))
+                    .orElseThrow(() -> ex));
+        }
+    }
+
+    private static CartState toState(Cart cart, String email) {
+        CartState state = new CartState(cart.getUser().getId(), email);
+        state.setCartId(cart.getId());
+        state.setLastUpdated(cart.getLastUpdated());
+        state.loadCoupon(cart.getCouponCode());
+        for (CartItem item : cart.getItems()) {
+            Product product = item.getProduct();
+            Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+            state.loadLine(item.getId(), product.getId(), product.getName(), categoryId,
+                    item.getQuantity(), item.getPriceAtAddTime());
+        }
+        state.synced(cart.getVersion());
+        return state;
+    }
+
+    /**
+     * Writes the state, merging it with the latest copy of the cart and retrying when another
+     * writer got there first. Caller holds the state's monitor.
+     */
+    private void flush(CartState state) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(state);
+                return;
+            } catch (OptimisticLockingFailureException ex) {
+                if (attempt == MAX_FLUSH_ATTEMPTS) {
+                    throw ex;
+                }
+                rebase(state);
+            }
+        }
+    }
+
+    private void rebase(CartState state) {
+        transactionTemplate.executeWithoutResult(status -> cartRepository.findByUserId(state.getUserId())
+                .ifPresent(cart -> state.rebase(toState(cart, state.getEmail()).lineSnapshot(), cart.getCouponCode(),
+                        cart.getVersion())));
+    }
+
+    /** Writes the state's lines and coupon over the cart's rows, if the cart is still at the state's version. */
+    private void write(CartState state) {
+        long version = state.getVersion();
+        List<CartState.Line> lines = state.lineSnapshot();
+        String couponCode = state.getCouponCode();
+        Map<CartItem, CartState.Line> inserted = new HashMap<>();
+        Cart saved = transactionTemplate.execute(status -> {
+            Cart cart;
+            if (cartRepository.claimVersion(state.getCartId(), state.getCartVersion(), state.getLastUpdated()) == 1) {
+                cart = cartRepository.findWithItemsById(state.getCartId()).orElseThrow();
+            } else if (cartRepository.existsById(state.getCartId())) {
+                // Lost the claim; returning instead of throwing keeps an enclosing transaction usable
+                return null;
+            } else {
+                // Recreated if it was deleted meanwhile
+                cart = new Cart();
+                cart.setUser(userRepository.getReferenceById(state.getUserId()));
+            }
+            cart.setCouponCode(couponCode);
+            Map<Long, CartItem> existing = new HashMap<>();
+            for (CartItem item : cart.getItems()) {
+                existing.put(item.getId(), item);
+            }
+            for (CartState.Line line : lines) {
+                CartItem item = line.getItemId() != null ? existing.remove(line.getItemId()) : null;
+                if (item == null) {
+                    item = CartItem.builder()
+                            .cart(cart)
+                            .product(productRepository.getReferenceById(line.getProductId()))
+                            .quantity(line.getQuantity())
+                            .priceAtAddTime(line.getPriceAtAddTime())
+                            .build();
+                    cart.getItems().add(item);
+                    inserted.put(item, line);
+                } else {
+                    item.setQuantity(line.getQuantity());
+                }
+            }
+            // Removed lines; deleted through orphan removal
+            cart.getItems().removeAll(Set.copyOf(existing.values()));
+            if (cart.getId() == null) {
+                cartRepository.save(cart);
+            }
+            // Persists the new items in place, so they carry their ids afterwards
+            cartRepository.flush();
+            return cart;
+        });
+        if (saved == null) {
+            throw new OptimisticLockingFailureException("Cart " + state.getCartId() + " was changed concurrently");
+        }
+        inserted.forEach((item, line) -> line.setItemId(item.getId()));
+        state.setCartId(saved.getId());
+        // Read back after commit: Hibernate bumps the version again when the item list changed
+        state.synced(saved.getVersion());
+        state.flushed(version);
+        Long userId = state.getUserId();
+        afterCommit(() -> invalidationBus.broadcast(InvalidationTopic.CARTS, List.of(userId)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CategoryResponse;
+import com.example.shop.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Cached per-category product counts, recomputed with one grouped query when stale.
+ *
+ * <p>Product writes mark the counts stale immediately. Stock changes only matter when a product
+ * runs out or comes back, and orders can cause many of those in a burst, so they are debounced:
+ * the counts keep being served until {@code refresh-delay} has passed since the first such change,
+ * then all of them are picked up by a single recount.
+ */
+@Service
+public class CategoryCountService {
+
+    private final ProductRepository productRepository;
+    private final CategoryHierarchy categoryHierarchy;
+    private final long stockRefreshDelayMillis;
+    // Seeded with the start time so ETags issued before a restart are never reused for other data
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    private volatile CategoryCounts counts;
+    private volatile boolean stale = true;
+    private volatile long stockChangedAt;
+
+    public CategoryCountService(ProductRepository productRepository,
+                                CategoryHierarchy categoryHierarchy,
+                                @Value("${catalog.category-counts.refresh-delay:30s}") Duration stockRefreshDelay) {
+        this.productRepository = productRepository;
+        this.categoryHierarchy = categoryHierarchy;
+        this.stockRefreshDelayMillis = stockRefreshDelay.toMillis();
+    }
+
+    public CategoryCounts getCounts() {
+        CategoryCounts current = counts;
+        if (needsRefresh(current)) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    /** Copies of the given categories with their counts filled in; cached responses are never mutated. */
+    public List<CategoryResponse> withCounts(List<CategoryResponse> categories, CategoryCounts snapshot) {
+        return categories.stream()
+                .map(category -> {
+                    CategoryCounts.Counts c = snapshot.get(category.getId());
+                    return category.toBuilder()
+                            .activeProductCount(c.active())
+                            .inStockProductCount(c.inStock())
+                            .totalActiveProductCount(c.totalActive())
+                            .totalInStockProductCount(c.totalInStock())
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /** A product was created, deleted, or changed category or active flag. */
+    public void productsChanged() {
+        afterCommit(() -> stale = true);
+    }
+
+    /** Product writes committed on another node; their search pages changed, so may the counts. */
+    @EventListener
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        if (event.topic() == InvalidationTopic.SEARCH_PAGES || event.topic() == InvalidationTopic.ALL_SEARCH_PAGES) {
+            stale = true;
+        }
+    }
+
+    /** A product went in or out of stock. */
+    public void stockAvailabilityChanged() {
+        afterCommit(() -> {
+            if (stockChangedAt == 0L) {
+                stockChangedAt = System.currentTimeMillis();
+            }
+        });
+    }
+
+    private boolean needsRefresh(CategoryCounts current) {
+        if (current == null || stale || current.tree() != categoryHierarchy.current()) {
+            return true;
+        }
+        long changedAt = stockChangedAt;
+        return changedAt != 0L && System.currentTimeMillis() - changedAt >= stockRefreshDelayMillis;
+    }
+
+    private synchronized CategoryCounts refresh() {
+        CategoryCounts current = counts;
+        if (!needsRefresh(current)) {
+            return current;
+        }
+        // Clear the flags before querying so a change committed during the query triggers another recount
+        stale = false;
+        stockChangedAt = 0L;
+        CategoryTree tree = categoryHierarchy.current();
+        current = CategoryCounts.of(version.incrementAndGet(), tree, productRepository.countActiveByCategory());
+        counts = current;
+        return current;
+    }
+}
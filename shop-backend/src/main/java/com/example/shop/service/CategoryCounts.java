@@ -0,0 +1,47 @@
+package com.example.shop.service;
+
+import com.example.shop.repository.CategoryProductCount;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable product counts per category. {@code active}/{@code inStock} count products assigned
+ * directly to the category; the {@code total} variants include every subcategory.
+ */
+public record CategoryCounts(long version, CategoryTree tree, Map<Long, Counts> byCategory) {
+
+    public static final Counts NONE = new Counts(0, 0, 0, 0);
+
+    public record Counts(long active, long inStock, long totalActive, long totalInStock) {
+    }
+
+    public static CategoryCounts of(long version, CategoryTree tree, List<CategoryProductCount> rows) {
+        Map<Long, long[]> sums = new HashMap<>();
+        for (CategoryProductCount row : rows) {
+            long active = row.getActiveCount() != null ? row.getActiveCount() : 0L;
+            long inStock = row.getInStockCount() != null ? row.getInStockCount() : 0L;
+            long[] own = sums.computeIfAbsent(row.getCategoryId(), id -> new long[4]);
+            own[0] += active;
+            own[1] += inStock;
+            List<Long> lineage = tree.ancestorsOrSelf(row.getCategoryId());
+            if (lineage.isEmpty()) {
+                lineage = List.of(row.getCategoryId());
+            }
+            for (Long ancestorId : lineage) {
+                long[] rolled = sums.computeIfAbsent(ancestorId, id -> new long[4]);
+                rolled[2] += active;
+                rolled[3] += inStock;
+            }
+        }
+        Map<Long, Counts> byCategory = new HashMap<>();
+        sums.forEach((id, s) -> byCategory.put(id, new Counts(s[0], s[1], s[2], s[3])));
+        return new CategoryCounts(version, tree, Collections.unmodifiableMap(byCategory));
+    }
+
+    public Counts get(Long categoryId) {
+        return byCategory.getOrDefault(categoryId, NONE);
+    }
+}
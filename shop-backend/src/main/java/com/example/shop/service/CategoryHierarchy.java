@@ -0,0 +1,42 @@
+package com.example.shop.service;
+
+import com.example.shop.repository.CategoryRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the current {@link CategoryTree}. {@link CategoryService} publishes a new snapshot after
+ * each committed category write; everything else only reads.
+ */
+@Component
+public class CategoryHierarchy {
+
+    private final CategoryRepository categoryRepository;
+    private volatile CategoryTree tree;
+
+    public CategoryHierarchy(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    public CategoryTree current() {
+        CategoryTree current = tree;
+        if (current == null) {
+            current = load();
+            tree = current;
+        }
+        return current;
+    }
+
+    /** Builds a snapshot from the database, including uncommitted writes of the calling transaction. */
+    public CategoryTree load() {
+        return CategoryTree.of(categoryRepository.findAll());
+    }
+
+    public void publish(CategoryTree snapshot) {
+        this.tree = snapshot;
+    }
+
+    /** Another node changed the categories; the next read loads a fresh snapshot. */
+    public void invalidate() {
+        this.tree = null;
+    }
+}
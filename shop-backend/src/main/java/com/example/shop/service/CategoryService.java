@@ -2,23 +2,68 @@ package com.example.shop.service;
 
 import com.example.shop.dto.CategoryRequest;
 import com.example.shop.dto.CategoryResponse;
+import com.example.shop.dto.CategoryTreeResponse;
 import com.example.shop.model.Category;
+import com.example.shop.model.CategoryClosure;
+import com.example.shop.repository.CategoryClosureRepository;
 import com.example.shop.repository.CategoryRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Category CRUD. Every write also maintains the {@code category_closure} table, which lets
+ * product filters match a category together with all of its subcategories, and publishes a new
+ * {@link CategoryTree} snapshot once the transaction commits. Other nodes are notified through
+ * the {@link ClusterInvalidationBus} and reload their snapshot and category list.
+ */
 @Service
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CategoryClosureRepository closureRepository;
+    private final CategoryHierarchy categoryHierarchy;
+    private final ProductCacheInvalidator productCacheInvalidator;
+    private final ClusterInvalidationBus invalidationBus;
+    // Seeded with the start time so ETags issued before a restart are never reused for other data
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
 
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository,
+                           CategoryClosureRepository closureRepository,
+                           CategoryHierarchy categoryHierarchy,
+                           ProductCacheInvalidator productCacheInvalidator,
+                           ClusterInvalidationBus invalidationBus) {
         this.categoryRepository = categoryRepository;
+        this.closureRepository = closureRepository;
+        this.categoryHierarchy = categoryHierarchy;
+        this.productCacheInvalidator = productCacheInvalidator;
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * Categories seeded or edited outside this service have no closure rows; rebuild the table
+     * from the parent references whenever its size does not match the hierarchy.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initHierarchy() {
+        CategoryTree tree = categoryHierarchy.load();
+        List<CategoryClosure> rows = tree.closureRows();
+        if (closureRepository.count() != rows.size()) {
+            closureRepository.deleteAllInBatch();
+            closureRepository.saveAll(rows);
+        }
+        categoryHierarchy.publish(tree);
     }
 
     @Transactional
@@ -35,6 +80,11 @@ public class CategoryService {
             category.setParentCategory(parent);
         }
         Category saved = categoryRepository.save(category);
+        closureRepository.insertSelf(saved.getId());
+        if (saved.getParentCategory() != null) {
+            closureRepository.insertPathsFromAncestorsOf(saved.getParentCategory().getId(), saved.getId());
+        }
+        hierarchyChanged();
         return toResponse(saved);
     }
 
@@ -43,6 +93,7 @@ public class CategoryService {
     public CategoryResponse update(Long id, CategoryRequest request) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Category not found"));
+        Long previousParentId = parentId(category);
         category.setName(request.getName());
         if (request.getActive() != null) {
             category.setActive(request.getActive());
@@ -50,11 +101,19 @@ public class CategoryService {
         if (request.getParentCategoryId() != null) {
             Category parent = categoryRepository.findById(request.getParentCategoryId())
                     .orElseThrow(() -> new IllegalArgumentException("Parent category not found"));
+            if (closureRepository.findDescendantIds(id).contains(parent.getId())) {
+                throw new IllegalArgumentException("Category cannot be moved under itself or one of its subcategories");
+            }
             category.setParentCategory(parent);
         } else {
             category.setParentCategory(null);
         }
         Category saved = categoryRepository.save(category);
+        if (!Objects.equals(previousParentId, request.getParentCategoryId())) {
+            moveSubtree(id, request.getParentCategoryId());
+        }
+        productCacheInvalidator.categoryChanged(id);
+        hierarchyChanged();
         return toResponse(saved);
     }
 
@@ -64,7 +123,30 @@ public class CategoryService {
         if (!categoryRepository.existsById(id)) {
             throw new IllegalArgumentException("Category not found");
         }
+        if (closureRepository.findDescendantIds(id).size() > 1) {
+            throw new IllegalArgumentException("Category has subcategories; move or delete them first");
+        }
+        closureRepository.deleteAllPathsOf(id);
         categoryRepository.deleteById(id);
+        hierarchyChanged();
+    }
+
+    /** Categories changed on another node. */
+    @EventListener(condition = "#event.topic() == T(com.example.shop.service.InvalidationTopic).CATEGORIES")
+    @CacheEvict(value = {"categories"}, allEntries = true)
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        categoryHierarchy.invalidate();
+        generation.incrementAndGet();
+    }
+
+    /** Changes whenever the category list does; used as the list's ETag. */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /** The whole hierarchy, served from the in-memory snapshot without touching the database. */
+    public List<CategoryTreeResponse> getTree() {
+        return categoryHierarchy.current().roots();
     }
 
     @Cacheable(value = "categories")
@@ -76,15 +158,42 @@ public class CategoryService {
     }
 
     public CategoryResponse toResponse(Category category) {
-        Long parentId = category.getParentCategory() != null ? category.getParentCategory().getId() : null;
         return CategoryResponse.builder()
                 .id(category.getId())
                 .name(category.getName())
-                .parentCategoryId(parentId)
+                .parentCategoryId(parentId(category))
                 .active(category.isActive())
                 .createdAt(category.getCreatedAt())
                 .updatedAt(category.getUpdatedAt())
                 .build();
     }
-}
 
+    /**
+     * Detaches the subtree rooted at {@code id} from its old ancestors and links every node in it
+     * to the new parent's ancestors. Paths inside the subtree are left untouched.
+     */
+    private void moveSubtree(Long id, Long newParentId) {
+        List<Long> subtree = closureRepository.findDescendantIds(id);
+        List<Long> oldAncestors = closureRepository.findStrictAncestorIds(id);
+        if (!oldAncestors.isEmpty()) {
+            closureRepository.deletePaths(oldAncestors, subtree);
+        }
+        if (newParentId != null) {
+            closureRepository.insertSubtreePaths(newParentId, id);
+        }
+    }
+
+    // Load the new snapshot inside the transaction so it sees this write, publish it after commit
+    private void hierarchyChanged() {
+        CategoryTree snapshot = categoryHierarchy.load();
+        afterCommit(() -> {
+            categoryHierarchy.publish(snapshot);
+            generation.incrementAndGet();
+            invalidationBus.broadcast(InvalidationTopic.CATEGORIES);
+        });
+    }
+
+    private static Long parentId(Category category) {
+        return category.getParentCategory() != null ? category.getParentCategory().getId() : null;
+    }
+}
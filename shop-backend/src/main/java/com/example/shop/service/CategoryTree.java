@@ -0,0 +1,120 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CategoryTreeResponse;
+import com.example.shop.model.Category;
+import com.example.shop.model.CategoryClosure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the category hierarchy. Built from a single {@code findAll()} and
+ * replaced wholesale after every committed category write, so readers never lock and never
+ * walk lazy parent references.
+ */
+public final class CategoryTree {
+
+    private record Node(Long id, String name, boolean active, Long parentId, List<Long> childIds) {
+    }
+
+    private final Map<Long, Node> nodes;
+    private final List<CategoryTreeResponse> roots;
+
+    private CategoryTree(Map<Long, Node> nodes) {
+        this.nodes = nodes;
+        List<CategoryTreeResponse> rootResponses = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.parentId() == null || !nodes.containsKey(node.parentId())) {
+                rootResponses.add(toResponse(node));
+            }
+        }
+        this.roots = List.copyOf(rootResponses);
+    }
+
+    public static CategoryTree of(Collection<Category> categories) {
+        List<Category> sorted = new ArrayList<>(categories);
+        sorted.sort(Comparator.comparing(Category::getName, String.CASE_INSENSITIVE_ORDER));
+
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (Category category : sorted) {
+            Long parentId = parentId(category);
+            if (parentId != null) {
+                children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(category.getId());
+            }
+        }
+        Map<Long, Node> nodes = new LinkedHashMap<>();
+        for (Category category : sorted) {
+            nodes.put(category.getId(), new Node(category.getId(), category.getName(), category.isActive(),
+                    parentId(category), List.copyOf(children.getOrDefault(category.getId(), List.of()))));
+        }
+        return new CategoryTree(Collections.unmodifiableMap(nodes));
+    }
+
+    public boolean contains(Long categoryId) {
+        return nodes.containsKey(categoryId);
+    }
+
+    public Set<Long> ids() {
+        return nodes.keySet();
+    }
+
+    /** The category itself followed by its parent, grandparent, and so on up to the root. */
+    public List<Long> ancestorsOrSelf(Long categoryId) {
+        List<Long> path = new ArrayList<>();
+        Node node = nodes.get(categoryId);
+        while (node != null && path.size() <= nodes.size()) {
+            path.add(node.id());
+            node = node.parentId() != null ? nodes.get(node.parentId()) : null;
+        }
+        return path;
+    }
+
+    public List<Long> descendantsOrSelf(Long categoryId) {
+        List<Long> result = new ArrayList<>();
+        if (!nodes.containsKey(categoryId)) {
+            return result;
+        }
+        result.add(categoryId);
+        for (int i = 0; i < result.size(); i++) {
+            result.addAll(nodes.get(result.get(i)).childIds());
+        }
+        return result;
+    }
+
+    public List<CategoryTreeResponse> roots() {
+        return roots;
+    }
+
+    /** Every closure row this hierarchy implies, used to backfill the closure table. */
+    public List<CategoryClosure> closureRows() {
+        List<CategoryClosure> rows = new ArrayList<>();
+        for (Long id : nodes.keySet()) {
+            List<Long> path = ancestorsOrSelf(id);
+            for (int depth = 0; depth < path.size(); depth++) {
+                rows.add(new CategoryClosure(path.get(depth), id, depth));
+            }
+        }
+        return rows;
+    }
+
+    private CategoryTreeResponse toResponse(Node node) {
+        return CategoryTreeResponse.builder()
+                .id(node.id())
+                .name(node.name())
+                .active(node.active())
+                .children(node.childIds().stream().map(id -> toResponse(nodes.get(id))).toList())
+                .build();
+    }
+
+    // Reading the id of a lazy proxy does not initialise it
+    private static Long parentId(Category category) {
+        return category.getParentCategory() != null ? category.getParentCategory().getId() : null;
+    }
+}
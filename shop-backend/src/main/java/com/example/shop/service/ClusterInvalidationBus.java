@@ -0,0 +1,82 @@
+package com.example.shop.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the per-node caches and in-memory views of several backend instances coherent.
+ *
+ * <p>Each node caches locally; whatever it invalidates after a commit it also broadcasts here.
+ * Messages from other nodes are republished on one background thread as
+ * {@link ClusterInvalidationEvent}s, which the owning components apply to their local state.
+ * A node's own messages coming back through the transport are dropped.
+ */
+@Component
+public class ClusterInvalidationBus implements DisposableBean {
+
+    // Keeps a multicast datagram of 8 KB comfortably within limits
+    static final int MAX_IDS_PER_MESSAGE = 200;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final InvalidationTransport transport;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ClusterInvalidationBus(InvalidationTransport transport, ApplicationEventPublisher eventPublisher) {
+        this.transport = transport;
+        this.eventPublisher = eventPublisher;
+        transport.start(this::receive);
+    }
+
+    public void broadcast(InvalidationTopic topic) {
+        broadcast(topic, List.of());
+    }
+
+    /**
+     * Sends the invalidation to the other nodes. Call it from the after-commit action that applies
+     * the same change locally. Failures are reported but never propagate into the caller.
+     */
+    public void broadcast(InvalidationTopic topic, Collection<Long> ids) {
+        List<Long> all = List.copyOf(ids);
+        try {
+            if (all.isEmpty()) {
+                transport.send(new InvalidationMessage(nodeId, topic, all));
+            }
+            for (int from = 0; from < all.size(); from += MAX_IDS_PER_MESSAGE) {
+                List<Long> chunk = all.subList(from, Math.min(all.size(), from + MAX_IDS_PER_MESSAGE));
+                transport.send(new InvalidationMessage(nodeId, topic, chunk));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to broadcast " + topic + " invalidation: " + e.getMessage());
+        }
+    }
+
+    void receive(InvalidationMessage message) {
+        if (nodeId.equals(message.origin())) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            try {
+                eventPublisher.publishEvent(new ClusterInvalidationEvent(message.topic(), message.ids()));
+            } catch (RuntimeException e) {
+                System.err.println("Failed to apply " + message.topic() + " invalidation: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+    }
+}
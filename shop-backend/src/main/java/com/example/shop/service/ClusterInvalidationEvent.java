@@ -0,0 +1,10 @@
+package com.example.shop.service;
+
+import java.util.List;
+
+/**
+ * Published locally when another node reports an invalidation. Listeners apply the change to
+ * their own node only and must not broadcast it again.
+ */
+public record ClusterInvalidationEvent(InvalidationTopic topic, List<Long> ids) {
+}
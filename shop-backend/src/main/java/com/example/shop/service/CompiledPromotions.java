@@ -0,0 +1,237 @@
+package com.example.shop.service;
+
+import com.example.shop.model.PromotionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The active promotions indexed for pricing. Built once per rule or category change; pricing a
+ * cart then only visits the rules indexed under each line's product and category plus the
+ * catch-all rules, so its cost is O(lines + matching rules) however many rules exist.
+ *
+ * <p>Category rules are indexed under their category and every subcategory of it, as of the
+ * {@link CategoryTree} they were compiled against. Coupon rules get an index per code.
+ *
+ * <p>Per line, the automatic rule giving the largest discount applies (ties go to the older
+ * rule); rules do not stack. A valid coupon then applies its own best rule to what is left.
+ */
+final class CompiledPromotions {
+
+    // Must precede EMPTY, whose construction uses it
+    private static final PromotionRule[] NONE = new PromotionRule[0];
+
+    static final CompiledPromotions EMPTY = new CompiledPromotions(List.of(), null);
+
+    private final List<PromotionRule> rules;
+    private final CategoryTree tree;
+    private final RuleIndex automatic;
+    private final Map<String, RuleIndex> coupons;
+
+    private CompiledPromotions(List<PromotionRule> rules, CategoryTree tree) {
+        this.rules = rules;
+        this.tree = tree;
+        Map<String, List<PromotionRule>> byCoupon = new HashMap<>();
+        List<PromotionRule> automaticRules = new ArrayList<>();
+        for (PromotionRule rule : rules) {
+            if (rule.couponCode != null) {
+                byCoupon.computeIfAbsent(rule.couponCode, code -> new ArrayList<>()).add(rule);
+            } else {
+                automaticRules.add(rule);
+            }
+        }
+        this.automatic = new RuleIndex(automaticRules, tree);
+        this.coupons = new HashMap<>();
+        byCoupon.forEach((code, couponRules) -> coupons.put(code, new RuleIndex(couponRules, tree)));
+    }
+
+    static CompiledPromotions compile(List<PromotionRule> rules, CategoryTree tree) {
+        return new CompiledPromotions(List.copyOf(rules), tree);
+    }
+
+    List<PromotionRule> rules() {
+        return rules;
+    }
+
+    CategoryTree tree() {
+        return tree;
+    }
+
+    static String normalizeCoupon(String code) {
+        return code != null ? code.trim().toUpperCase(Locale.ROOT) : null;
+    }
+
+    /** A code is valid while at least one of its rules is live. */
+    boolean isValidCoupon(String code, long now) {
+        RuleIndex index = code != null ? coupons.get(normalizeCoupon(code)) : null;
+        return index != null && index.anyLive(now);
+    }
+
+    /** Automatic rules pricing this line looks at, live or not; what pricing it costs. */
+    int rulesVisited(PricingLine line) {
+        return automatic.candidates(line);
+    }
+
+    PricedCart price(List<PricingLine> lines, String couponCode, long now) {
+        RuleIndex coupon = isValidCoupon(couponCode, now) ? coupons.get(normalizeCoupon(couponCode)) : null;
+        int count = lines.size();
+        long[] unitPrices = new long[count];
+        long[] gross = new long[count];
+        for (int i = 0; i < count; i++) {
+            PricingLine line = lines.get(i);
+            unitPrices[i] = PromotionRule.cents(line.unitPrice());
+            gross[i] = unitPrices[i] * line.quantity();
+        }
+
+        // Tiered rules look at the subtotal of every line they match; only matched rules get an entry
+        Map<PromotionRule, long[]> scopes = null;
+        if (automatic.hasTiered || (coupon != null && coupon.hasTiered)) {
+            scopes = new IdentityHashMap<>();
+            for (int i = 0; i < count; i++) {
+                PricingLine line = lines.get(i);
+                automatic.addTieredScopes(line, gross[i], now, scopes);
+                if (coupon != null) {
+                    coupon.addTieredScopes(line, gross[i], now, scopes);
+                }
+            }
+        }
+
+        List<PricedCart.Line> priced = new ArrayList<>(count);
+        long subtotal = 0;
+        long discount = 0;
+        Best best = new Best();
+        for (int i = 0; i < count; i++) {
+            PricingLine line = lines.get(i);
+            automatic.best(line, gross[i], unitPrices[i], now, scopes, best.reset());
+            long lineDiscount = best.discount;
+            PromotionRule applied = best.rule;
+            PromotionRule couponApplied = null;
+            if (coupon != null) {
+                coupon.best(line, gross[i] - lineDiscount, unitPrices[i], now, scopes, best.reset());
+                lineDiscount += best.discount;
+                couponApplied = best.rule;
+            }
+            List<String> names = applied == null
+                    ? (couponApplied == null ? List.of() : List.of(couponApplied.name))
+                    : (couponApplied == null ? List.of(applied.name) : List.of(applied.name, couponApplied.name));
+            priced.add(new PricedCart.Line(PromotionRule.money(gross[i]), PromotionRule.money(lineDiscount), names));
+            subtotal += gross[i];
+            discount += lineDiscount;
+        }
+        return new PricedCart(priced, PromotionRule.money(subtotal), PromotionRule.money(discount),
+                PromotionRule.money(subtotal - discount), coupon != null ? normalizeCoupon(couponCode) : null);
+    }
+
+    /** Mutable accumulator reused across lines, so pricing allocates nothing per candidate rule. */
+    private static final class Best {
+        PromotionRule rule;
+        long discount;
+
+        Best reset() {
+            rule = null;
+            discount = 0;
+            return this;
+        }
+
+        void offer(PromotionRule candidate, long candidateDiscount) {
+            if (candidateDiscount > discount
+                    || (candidateDiscount == discount && candidateDiscount > 0 && candidate.id < rule.id)) {
+                rule = candidate;
+                discount = candidateDiscount;
+            }
+        }
+    }
+
+    private static final class RuleIndex {
+
+        private final Map<Long, PromotionRule[]> byProduct = new HashMap<>();
+        private final Map<Long, PromotionRule[]> byCategory = new HashMap<>();
+        private final PromotionRule[] global;
+        private final PromotionRule[] all;
+        final boolean hasTiered;
+
+        RuleIndex(List<PromotionRule> rules, CategoryTree tree) {
+            Map<Long, List<PromotionRule>> products = new HashMap<>();
+            Map<Long, List<PromotionRule>> categories = new HashMap<>();
+            List<PromotionRule> everywhere = new ArrayList<>();
+            boolean tiered = false;
+            for (PromotionRule rule : rules) {
+                tiered |= rule.type == PromotionType.TIERED;
+                if (rule.productId != null) {
+                    products.computeIfAbsent(rule.productId, id -> new ArrayList<>()).add(rule);
+                } else if (rule.categoryId != null) {
+                    List<Long> covered = tree != null ? tree.descendantsOrSelf(rule.categoryId) : List.of();
+                    for (Long categoryId : covered.isEmpty() ? List.of(rule.categoryId) : covered) {
+                        categories.computeIfAbsent(categoryId, id -> new ArrayList<>()).add(rule);
+                    }
+                } else {
+                    everywhere.add(rule);
+                }
+            }
+            products.forEach((id, list) -> byProduct.put(id, list.toArray(NONE)));
+            categories.forEach((id, list) -> byCategory.put(id, list.toArray(NONE)));
+            this.global = everywhere.toArray(NONE);
+            this.all = rules.toArray(NONE);
+            this.hasTiered = tiered;
+        }
+
+        int candidates(PricingLine line) {
+            int count = byProduct.getOrDefault(line.productId(), NONE).length + global.length;
+            if (line.categoryId() != null) {
+                count += byCategory.getOrDefault(line.categoryId(), NONE).length;
+            }
+            return count;
+        }
+
+        boolean anyLive(long now) {
+            return Arrays.stream(all).anyMatch(rule -> rule.isLive(now));
+        }
+
+        void addTieredScopes(PricingLine line, long gross, long now, Map<PromotionRule, long[]> scopes) {
+            addTieredScopes(byProduct.getOrDefault(line.productId(), NONE), gross, now, scopes);
+            if (line.categoryId() != null) {
+                addTieredScopes(byCategory.getOrDefault(line.categoryId(), NONE), gross, now, scopes);
+            }
+            addTieredScopes(global, gross, now, scopes);
+        }
+
+        private static void addTieredScopes(PromotionRule[] rules, long gross, long now,
+                                            Map<PromotionRule, long[]> scopes) {
+            for (PromotionRule rule : rules) {
+                if (rule.type == PromotionType.TIERED && rule.isLive(now)) {
+                    scopes.computeIfAbsent(rule, r -> new long[1])[0] += gross;
+                }
+            }
+        }
+
+        void best(PricingLine line, long amount, long unitPrice, long now, Map<PromotionRule, long[]> scopes,
+                  Best best) {
+            if (amount <= 0) {
+                return;
+            }
+            offer(byProduct.getOrDefault(line.productId(), NONE), line, amount, unitPrice, now, scopes, best);
+            if (line.categoryId() != null) {
+                offer(byCategory.getOrDefault(line.categoryId(), NONE), line, amount, unitPrice, now, scopes, best);
+            }
+            offer(global, line, amount, unitPrice, now, scopes, best);
+        }
+
+        private static void offer(PromotionRule[] rules, PricingLine line, long amount, long unitPrice, long now,
+                                  Map<PromotionRule, long[]> scopes, Best best) {
+            for (PromotionRule rule : rules) {
+                if (!rule.isLive(now)) {
+                    continue;
+                }
+                long scopeSubtotal = scopes != null && rule.type == PromotionType.TIERED
+                        ? scopes.get(rule)[0]
+                        : 0;
+                best.offer(rule, rule.discount(amount, unitPrice, line.quantity(), scopeSubtotal));
+            }
+        }
+    }
+}
@@ -5,19 +5,64 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Upload storage. Every file is named by the SHA-256 of its content, so identical uploads share
+ * one file and a URL always refers to the same bytes. Storing content that already exists only
+ * refreshes the file's modification time, which keeps it safe from the upload sweeper
+ * ({@link StoredFileService}) until the new reference is recorded.
+ *
+ * <p>Compressible uploads (SVG) also get a gzip copy next to them, named {@code <file>.gz},
+ * which is served to clients accepting gzip. Precompressed copies share their file's lifetime.
+ */
 @Service
 public class FileStorageService {
 
+    /** Generated files (image variants) live under this prefix and are served as immutable. */
+    public static final String IMMUTABLE_PREFIX = "/uploads/v/";
+
+    private static final String URL_PREFIX = "/uploads/";
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+    private static final Set<String> COMPRESSIBLE = Set.of(".svg");
+    private static final List<String> PRECOMPRESSED_SUFFIXES = List.of(".br", ".gz");
+
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String SPOOL_PREFIX = "spool-";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
     private final Path fileStorageLocation;
+    private final Path partsLocation;
+    // Serializes placing a file against the sweeper deleting it
+    private final Object placementLock = new Object();
 
     public FileStorageService(@Value("${file.upload-dir:uploads}") String uploadDir) {
         this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.partsLocation = this.fileStorageLocation.resolve("parts");
         try {
             Files.createDirectories(this.fileStorageLocation);
         } catch (Exception ex) {
@@ -25,6 +70,7 @@ public class FileStorageService {
         }
     }
 
+    /** Hashes the upload while copying it, so the content is read exactly once. */
     public String storeFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File is empty");
@@ -35,35 +81,301 @@ public class FileStorageService {
             throw new IllegalArgumentException("Filename is empty");
         }
 
-        String fileExtension = "";
-        int lastDotIndex = originalFilename.lastIndexOf('.');
-        if (lastDotIndex > 0) {
-            fileExtension = originalFilename.substring(lastDotIndex);
+        String fileExtension = extensionOf(originalFilename);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(this.fileStorageLocation, "tmp-", fileExtension);
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String fileName = HexFormat.of().formatHex(digest.digest()) + fileExtension;
+            Path target = this.fileStorageLocation.resolve(fileName);
+            if (place(temp, target) && COMPRESSIBLE.contains(fileExtension)) {
+                precompress(target);
+            }
+            return URL_PREFIX + fileName;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + originalFilename + ". Please try again!", ex);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /** Hex SHA-256 of a local file, read once through a fixed-size buffer. */
+    public String contentHash(Path file) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Moves a local file whose {@link #contentHash} is already known into storage and returns its
+     * URL. If the content is already stored, {@code source} is left for the caller to delete.
+     */
+    public String publishLocalFile(Path source, String contentHash, String fileExtension) {
+        if (!CONTENT_HASH.matcher(contentHash).matches() || !(fileExtension.isEmpty()
+                || EXTENSION.matcher(fileExtension).matches())) {
+            throw new IllegalArgumentException("Invalid stored file name");
+        }
+        String fileName = contentHash + fileExtension;
+        Path target = this.fileStorageLocation.resolve(fileName);
+        try {
+            if (place(source, target) && COMPRESSIBLE.contains(fileExtension)) {
+                precompress(target);
+            }
+            return URL_PREFIX + fileName;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + fileName + ". Please try again!", ex);
+        }
+    }
+
+    /**
+     * An empty file to spool an upload into before it is processed, next to the resumable upload
+     * parts so it is neither served nor swept, and can be moved into place.
+     */
+    public Path createSpoolFile(String fileExtension) {
+        try {
+            Files.createDirectories(this.partsLocation);
+            return Files.createTempFile(this.partsLocation, SPOOL_PREFIX, fileExtension);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file. Please try again!", ex);
+        }
+    }
+
+    /** Deletes spool files left behind (by a restart) that were last written before {@code cutoff}. */
+    public int deleteSpoolFilesModifiedBefore(Instant cutoff) {
+        if (!Files.isDirectory(this.partsLocation)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(this.partsLocation)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().startsWith(SPOOL_PREFIX))
+                    .filter(path -> modifiedBefore(path, cutoff))
+                    .toList()) {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return deleted;
+    }
+
+    /**
+     * A new file for a resumable upload to be written into, outside the served and swept uploads
+     * but on the same file system, so {@link #publishLocalFile} can move it into place.
+     */
+    public Path createPartFile(String uploadId, long size) {
+        Path file = partFile(uploadId);
+        try {
+            Files.createDirectories(file.getParent());
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(size);
+            }
+            return file;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create upload file. Please try again!", ex);
+        }
+    }
+
+    public Path partFile(String uploadId) {
+        return this.partsLocation.resolve(uploadId + ".part");
+    }
+
+    /** Upload ids with a part file last written before {@code cutoff}. */
+    public List<String> listPartsModifiedBefore(Instant cutoff) {
+        if (!Files.isDirectory(this.partsLocation)) {
+            return List.of();
         }
+        try (Stream<Path> files = Files.list(this.partsLocation)) {
+            return files.filter(path -> modifiedBefore(path, cutoff))
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".part"))
+                    .map(name -> name.substring(0, name.length() - ".part".length()))
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 
-        String fileName = UUID.randomUUID().toString() + fileExtension;
-        Path targetLocation = this.fileStorageLocation.resolve(fileName);
+    /** The lower-cased extension of a client-supplied file name, or "" if it has none or an odd one. */
+    public static String extensionOf(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex <= 0) {
+            return "";
+        }
+        String extension = fileName.substring(lastDotIndex).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
 
+    /** Stores generated content under {@link #IMMUTABLE_PREFIX}, named by its hash. */
+    public String storeImmutable(byte[] content, String extension) {
+        String fileName = HexFormat.of().formatHex(sha256().digest(content)) + extension;
+        Path directory = this.fileStorageLocation.resolve("v");
+        Path temp = null;
         try {
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            return "/uploads/" + fileName;
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "tmp-", extension);
+            Files.write(temp, content);
+            place(temp, directory.resolve(fileName));
+            return IMMUTABLE_PREFIX + fileName;
         } catch (IOException ex) {
             throw new RuntimeException("Could not store file " + fileName + ". Please try again!", ex);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /** Whether a resolved path is a stored file itself, not a temp, part or precompressed file. */
+    public boolean isServable(Path path) {
+        String fileName = path.getFileName().toString();
+        return !path.startsWith(this.partsLocation) && !fileName.startsWith("tmp-") && !isPrecompressed(fileName);
+    }
+
+    /** Whether the name is a precompressed copy of another file rather than a file of its own. */
+    public static boolean isPrecompressed(String fileName) {
+        return PRECOMPRESSED_SUFFIXES.stream().anyMatch(fileName::endsWith);
+    }
+
+    /** The URL a precompressed copy belongs to; any other URL is returned as is. */
+    public static String originalOf(String fileUrl) {
+        for (String suffix : PRECOMPRESSED_SUFFIXES) {
+            if (fileUrl.endsWith(suffix)) {
+                return fileUrl.substring(0, fileUrl.length() - suffix.length());
+            }
+        }
+        return fileUrl;
+    }
+
+    /** The local file behind an {@code /uploads/...} URL, or null for anything else. */
+    public Path resolve(String fileUrl) {
+        if (fileUrl == null || !fileUrl.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        Path filePath = this.fileStorageLocation.resolve(fileUrl.substring(URL_PREFIX.length())).normalize();
+        return filePath.startsWith(this.fileStorageLocation) ? filePath : null;
+    }
+
+    /**
+     * URLs of all stored files, including leftover temp files but not resumable upload parts, last
+     * written before {@code cutoff}.
+     */
+    public List<String> listModifiedBefore(Instant cutoff) {
+        try (Stream<Path> files = Files.walk(this.fileStorageLocation)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> !path.startsWith(this.partsLocation))
+                    .filter(path -> modifiedBefore(path, cutoff))
+                    .map(path -> URL_PREFIX + this.fileStorageLocation.relativize(path).toString().replace('\\', '/'))
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Deletes the file unless it was written or re-stored at or after {@code cutoff}.
+     * Returns whether it was deleted.
+     */
+    public boolean deleteIfModifiedBefore(String fileUrl, Instant cutoff) {
+        Path filePath = resolve(fileUrl);
+        if (filePath == null) {
+            return false;
+        }
+        synchronized (placementLock) {
+            if (!modifiedBefore(filePath, cutoff)) {
+                return false;
+            }
+            try {
+                return Files.deleteIfExists(filePath);
+            } catch (IOException ex) {
+                return false;
+            }
         }
     }
 
     public void deleteFile(String fileUrl) {
-        if (fileUrl == null || !fileUrl.startsWith("/uploads/")) {
+        Path filePath = resolve(fileUrl);
+        if (filePath == null) {
             return;
         }
 
-        String fileName = fileUrl.substring("/uploads/".length());
-        Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-
         try {
             Files.deleteIfExists(filePath);
         } catch (IOException ex) {
             // Log error but don't throw - file might not exist
         }
     }
+
+    /** Moves the temp file to {@code target}; returns false if the content was already stored. */
+    private boolean place(Path temp, Path target) throws IOException {
+        synchronized (placementLock) {
+            if (Files.exists(target)) {
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return false;
+            }
+            move(temp, target);
+            return true;
+        }
+    }
+
+    // Readers must never see a partial file under the final name
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void precompress(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), "tmp-", ".gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                Files.copy(file, out);
+            }
+            move(temp, file.resolveSibling(file.getFileName() + ".gz"));
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    private static boolean modifiedBefore(Path path, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(cutoff);
+        } catch (NoSuchFileException ex) {
+            return false;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // A leftover temp file is collected by the sweeper
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
 }
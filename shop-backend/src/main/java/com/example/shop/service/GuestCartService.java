@@ -0,0 +1,171 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CartOperation;
+import com.example.shop.dto.CartResponse;
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.model.MergedGuestCart;
+import com.example.shop.repository.MergedGuestCartRepository;
+import com.example.shop.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Carts of shoppers who have not signed in. The cart lives entirely in a token held by the
+ * client: product id, quantity and price per line, signed with a key derived from the JWT secret
+ * (see {@link JwtUtil#generateGuestCartToken}). Nothing is stored server-side while the guest
+ * browses, so browsing writes nothing to the database; products and stock are read through their caches.
+ *
+ * <p>Guest lines have no {@code cart_items} row, so their product id serves as item id. Each
+ * change returns a new token. A token that is invalid or has expired reads as an empty cart.
+ * On sign-in the token's lines are merged into the user's cart in one write, see
+ * {@link CartService#mergeGuestCart}. The token's id is recorded in {@code merged_guest_carts}
+ * until it expires, so a token replayed on a later sign-in, on any instance, is not merged again.
+ */
+@Service
+public class GuestCartService {
+
+    static final int MAX_LINES = 50;
+
+    private final CartService cartService;
+    private final ProductService productService;
+    private final JwtUtil jwtUtil;
+    private final MergedGuestCartRepository mergedGuestCartRepository;
+    private final long ttlMillis;
+
+    public GuestCartService(CartService cartService,
+                            ProductService productService,
+                            JwtUtil jwtUtil,
+                            MergedGuestCartRepository mergedGuestCartRepository,
+                            @Value("${cart.guest.ttl:7d}") Duration ttl) {
+        this.cartService = cartService;
+        this.productService = productService;
+        this.jwtUtil = jwtUtil;
+        this.mergedGuestCartRepository = mergedGuestCartRepository;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public record GuestCart(String token, CartResponse cart) {
+    }
+
+    public GuestCart get(String token) {
+        return new GuestCart(token, cartService.toResponse(decode(verify(token))));
+    }
+
+    /** Applies a batch of changes, all or nothing, as {@link CartService#applyOperations} does. */
+    public GuestCart applyOperations(String token, List<CartOperation> operations) {
+        CartState cart = decode(verify(token));
+        cartService.prepareOperations(operations).accept(cart);
+        if (cart.getLines().size() > MAX_LINES) {
+            throw new IllegalArgumentException(
+                    "A guest cart holds at most " + MAX_LINES + " products; sign in to add more");
+        }
+        cart.getLines().stream()
+                .filter(line -> line.getItemId() == null)
+                .forEach(line -> line.setItemId(line.getProductId()));
+        return new GuestCart(encode(cart), cartService.toResponse(cart));
+    }
+
+    /**
+     * Merges the guest cart into the user's cart; a token that no longer reads as a cart, or that
+     * was merged before, is ignored. If the merge fails the token is released, so it can be merged
+     * on the next sign-in.
+     */
+    public void mergeIntoUserCart(String userEmail, String token) {
+        Claims claims = verify(token);
+        CartState guest = decode(claims);
+        if (guest.getLines().isEmpty() || !claimForMerge(claims)) {
+            return;
+        }
+        try {
+            cartService.mergeGuestCart(userEmail, guest);
+        } catch (RuntimeException ex) {
+            mergedGuestCartRepository.deleteById(claims.getId());
+            throw ex;
+        }
+    }
+
+    /** Forgets merged tokens once they have expired and can no longer be presented. */
+    @Scheduled(fixedDelayString = "${cart.guest.purge-interval:PT1H}",
+            initialDelayString = "${cart.guest.purge-interval:PT1H}")
+    @Transactional
+    public int purgeMergedTokens() {
+        return mergedGuestCartRepository.deleteExpired(Instant.now());
+    }
+
+    /** Records the token as merged; false if it already was, here or on another instance. */
+    private boolean claimForMerge(Claims claims) {
+        try {
+            mergedGuestCartRepository.saveAndFlush(
+                    MergedGuestCart.newFor(claims.getId(), claims.getExpiration().toInstant()));
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            return false;
+        }
+    }
+
+    private String encode(CartState cart) {
+        String lines = cart.getLines().stream()
+                .map(line -> line.getProductId() + ":" + line.getQuantity() + ":"
+                        + line.getPriceAtAddTime().toPlainString())
+                .collect(Collectors.joining(","));
+        return jwtUtil.generateGuestCartToken(lines, ttlMillis);
+    }
+
+    /** Reads a token back into a detached cart; products no longer for sale are dropped. */
+    private CartState decode(Claims claims) {
+        CartState cart = new CartState(null, null);
+        List<String[]> entries = parse(claims);
+        if (entries.isEmpty()) {
+            return cart;
+        }
+        List<Long> productIds = new ArrayList<>();
+        entries.forEach(entry -> productIds.add(Long.valueOf(entry[0])));
+        Map<Long, ProductResponse> products = new HashMap<>();
+        productService.getByIds(productIds).forEach(product -> products.put(product.getId(), product));
+        for (String[] entry : entries) {
+            ProductResponse product = products.get(Long.valueOf(entry[0]));
+            if (product != null && product.isActive()) {
+                cart.loadLine(product.getId(), product.getId(), product.getName(), product.getCategoryId(),
+                        Integer.parseInt(entry[1]), new BigDecimal(entry[2]));
+            }
+        }
+        return cart;
+    }
+
+    /** The token's claims, or null if it is missing, invalid or has expired. */
+    private Claims verify(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            return jwtUtil.extractGuestCartClaims(token);
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static List<String[]> parse(Claims claims) {
+        String lines = claims != null ? JwtUtil.guestCartOf(claims) : null;
+        List<String[]> entries = new ArrayList<>();
+        if (lines != null && !lines.isEmpty()) {
+            for (String line : lines.split(",")) {
+                entries.add(line.split(":"));
+            }
+        }
+        return entries;
+    }
+}
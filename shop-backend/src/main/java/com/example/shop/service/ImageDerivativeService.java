@@ -0,0 +1,144 @@
+package com.example.shop.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Generates the {@link ImageVariant}s of an uploaded product image on a background executor.
+ *
+ * <p>Each variant is scaled down to fit its size (never up) and stored under its content hash,
+ * so its URL can be served with a one-year immutable cache lifetime. Images with transparency are
+ * written as PNG, everything else as JPEG. Until the variants are recorded on the product,
+ * clients show the original upload.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final FileStorageService fileStorageService;
+    private final ProductService productService;
+    private final TaskExecutor imageExecutor;
+
+    public ImageDerivativeService(FileStorageService fileStorageService,
+                                  ProductService productService,
+                                  @Qualifier("imageProcessingExecutor") TaskExecutor imageExecutor) {
+        this.fileStorageService = fileStorageService;
+        this.productService = productService;
+        this.imageExecutor = imageExecutor;
+    }
+
+    /** Queues variant generation for the product's newly stored image. */
+    public void generateVariants(Long productId, String imageUrl) {
+        try {
+            imageExecutor.execute(() -> {
+                try {
+                    Map<ImageVariant, String> variants = createVariants(imageUrl);
+                    if (!variants.isEmpty()) {
+                        productService.updateImageVariants(productId, imageUrl, variants);
+                    }
+                } catch (RuntimeException ex) {
+                    System.err.println("Could not generate image variants for product " + productId + ": "
+                            + ex.getMessage());
+                }
+            });
+        } catch (TaskRejectedException ex) {
+            // The product keeps serving its original image
+            System.err.println("Image variant queue full; skipped product " + productId);
+        }
+    }
+
+    /** Variant URLs by variant, or an empty map when the file is not an image ImageIO can read. */
+    Map<ImageVariant, String> createVariants(String imageUrl) {
+        Path source = fileStorageService.resolve(imageUrl);
+        return source != null ? createVariants(source) : Map.of();
+    }
+
+    /** Creates and stores the variants of a local image file, as {@link #createVariants(String)}. */
+    Map<ImageVariant, String> createVariants(Path source) {
+        BufferedImage original;
+        try (InputStream in = Files.newInputStream(source)) {
+            original = ImageIO.read(in);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (original == null) {
+            return Map.of();
+        }
+
+        boolean transparent = original.getColorModel().hasAlpha();
+        Map<ImageVariant, String> urls = new EnumMap<>(ImageVariant.class);
+        for (ImageVariant variant : ImageVariant.values()) {
+            BufferedImage scaled = scale(original, variant.getMaxDimension(), transparent);
+            urls.put(variant, transparent
+                    ? fileStorageService.storeImmutable(png(scaled), ".png")
+                    : fileStorageService.storeImmutable(jpeg(scaled), ".jpg"));
+        }
+        return urls;
+    }
+
+    static BufferedImage scale(BufferedImage source, int maxDimension, boolean transparent) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        // Also re-encodes images already small enough, so variants never carry the upload's metadata
+        BufferedImage target = new BufferedImage(width, height,
+                transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] jpeg(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] png(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImageUploadResponse;
+
+import java.time.Instant;
+
+/**
+ * Progress of one product image upload through {@link ImageUploadService}. Written by the
+ * pipeline thread, read by status requests.
+ */
+class ImageUploadJob {
+
+    enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    enum Stage { VALIDATE, HASH, TRANSFORM, PUBLISH, UPDATE_PRODUCT }
+
+    private final String id;
+    private final Long productId;
+    private final String fileName;
+    private final long fileSize;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Stage stage;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String message;
+    private volatile String imageUrl;
+
+    ImageUploadJob(String id, Long productId, String fileName, long fileSize) {
+        this.id = id;
+        this.productId = productId;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    Long getProductId() {
+        return productId;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void stage(Stage next) {
+        if (startedAt == null) {
+            startedAt = Instant.now();
+            status = Status.RUNNING;
+        }
+        stage = next;
+    }
+
+    void completed(String url) {
+        imageUrl = url;
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void failed(String reason) {
+        message = reason;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    ImageUploadResponse toResponse() {
+        return ImageUploadResponse.builder()
+                .uploadId(id)
+                .productId(productId)
+                .status(status.name())
+                .stage(stage != null ? stage.name() : null)
+                .fileName(fileName)
+                .fileSize(fileSize)
+                .message(message)
+                .imageUrl(imageUrl)
+                .createdAt(createdAt)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+}
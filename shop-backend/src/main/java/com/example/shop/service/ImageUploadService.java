@@ -0,0 +1,198 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImageUploadResponse;
+import com.example.shop.exception.ServiceBusyException;
+import com.example.shop.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Product image uploads, processed off the request thread.
+ *
+ * <p>The request only spools the upload to disk (a rename when the container already has it on disk)
+ * and queues a job; it is acknowledged before any of the work below. A bounded executor then runs
+ * the stages in order: validate that the file is an image, hash it, generate the resized
+ * variants, publish the original under its hash, and point the product at the image and its
+ * variants in one write. Completed resumable uploads go through the same stages. When the queue
+ * is full new uploads are refused, so a bulk onboarding cannot pile up work or hold request
+ * threads; the client is told to retry after {@link #RETRY_AFTER}.
+ *
+ * <p>The latest upload per product is kept in memory for status requests, so status is only
+ * known to the instance that accepted the upload. An upload overtaken by a newer one for the
+ * same product never replaces its image.
+ */
+@Service
+public class ImageUploadService {
+
+    private static final Duration JOB_RETENTION = Duration.ofHours(24);
+    static final Duration RETRY_AFTER = Duration.ofSeconds(30);
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final FileStorageService fileStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final TaskExecutor uploadExecutor;
+    private final Map<Long, ImageUploadJob> latestByProduct = new ConcurrentHashMap<>();
+
+    public ImageUploadService(ProductRepository productRepository,
+                              ProductService productService,
+                              FileStorageService fileStorageService,
+                              ImageDerivativeService imageDerivativeService,
+                              @Qualifier("imageUploadExecutor") TaskExecutor uploadExecutor) {
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.fileStorageService = fileStorageService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.uploadExecutor = uploadExecutor;
+    }
+
+    public ImageUploadResponse submit(Long productId, MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        String originalFilename = file.getOriginalFilename();
+        if (originalFilename == null || originalFilename.isEmpty()) {
+            throw new IllegalArgumentException("Filename is empty");
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new IllegalArgumentException("Product not found");
+        }
+
+        Path spool = fileStorageService.createSpoolFile(FileStorageService.extensionOf(originalFilename));
+        try {
+            // The File overload lets the container move a multipart file already on disk
+            file.transferTo(spool.toFile());
+        } catch (IOException ex) {
+            deleteQuietly(spool);
+            throw new RuntimeException("Could not store file " + originalFilename + ". Please try again!", ex);
+        }
+        try {
+            return enqueue(productId, originalFilename, file.getSize(), spool);
+        } catch (ServiceBusyException ex) {
+            deleteQuietly(spool);
+            throw ex;
+        }
+    }
+
+    /**
+     * Queues a file already on local disk, such as a completed resumable upload, through the same
+     * stages as {@link #submit}. The job owns the file once queued and deletes it when done; when
+     * the queue is full the file is left in place for the caller.
+     */
+    public ImageUploadResponse submitLocalFile(Long productId, String fileName, Path file) {
+        try {
+            return enqueue(productId, fileName, Files.size(file), file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private ImageUploadResponse enqueue(Long productId, String fileName, long size, Path spool) {
+        String extension = FileStorageService.extensionOf(fileName);
+        ImageUploadJob job = new ImageUploadJob(UUID.randomUUID().toString(), productId, fileName, size);
+        // Registered before it can run, so the job sees itself as the latest upload
+        ImageUploadJob previous = latestByProduct.put(productId, job);
+        try {
+            uploadExecutor.execute(() -> run(job, spool, extension));
+        } catch (TaskRejectedException ex) {
+            if (previous != null) {
+                latestByProduct.replace(productId, job, previous);
+            } else {
+                latestByProduct.remove(productId, job);
+            }
+            throw new ServiceBusyException("Too many image uploads are queued; try again later", RETRY_AFTER);
+        }
+        return job.toResponse();
+    }
+
+    /** The product's most recent upload, while it is running or for a day after it finished. */
+    public ImageUploadResponse getStatus(Long productId) {
+        ImageUploadJob job = latestByProduct.get(productId);
+        if (job == null) {
+            throw new IllegalArgumentException("No image upload found for product " + productId);
+        }
+        return job.toResponse();
+    }
+
+    void run(ImageUploadJob job, Path spool, String extension) {
+        try {
+            job.stage(ImageUploadJob.Stage.VALIDATE);
+            if (!isImage(spool, extension)) {
+                job.failed("Not a supported image");
+                return;
+            }
+
+            job.stage(ImageUploadJob.Stage.HASH);
+            String contentHash = fileStorageService.contentHash(spool);
+
+            job.stage(ImageUploadJob.Stage.TRANSFORM);
+            // Empty for formats ImageIO cannot decode (SVG); clients then show the original
+            Map<ImageVariant, String> variants = imageDerivativeService.createVariants(spool);
+
+            job.stage(ImageUploadJob.Stage.PUBLISH);
+            String imageUrl = fileStorageService.publishLocalFile(spool, contentHash, extension);
+
+            job.stage(ImageUploadJob.Stage.UPDATE_PRODUCT);
+            if (latestByProduct.get(job.getProductId()) != job) {
+                job.failed("Replaced by a newer upload");
+                return;
+            }
+            productService.updateImage(job.getProductId(), imageUrl, variants);
+            job.completed(imageUrl);
+        } catch (RuntimeException ex) {
+            System.err.println("Image upload " + job.getId() + " for product " + job.getProductId() + " failed: "
+                    + ex.getMessage());
+            job.failed(ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName());
+        } finally {
+            // Already gone if it was moved into place
+            deleteQuietly(spool);
+        }
+    }
+
+    /**
+     * Forgets finished uploads after a day, and deletes spool files of uploads that never finished
+     * because the application stopped.
+     */
+    @Scheduled(fixedDelayString = "${file.sweep-interval:PT1H}", initialDelayString = "${file.sweep-interval:PT1H}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(JOB_RETENTION);
+        latestByProduct.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+        fileStorageService.deleteSpoolFilesModifiedBefore(cutoff);
+    }
+
+    private static boolean isImage(Path file, String extension) {
+        // ImageIO has no SVG reader; SVG is stored as is, without variants
+        if (".svg".equals(extension)) {
+            return true;
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            return in != null && ImageIO.getImageReaders(in).hasNext();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // Collected by the next purge
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.shop.service;
+
+/** Resized copies generated for every product image, by the longest side they may have. */
+public enum ImageVariant {
+
+    /** Cart lines, order items, admin tables. */
+    THUMBNAIL(160),
+
+    /** Product cards in listings. */
+    CARD(480),
+
+    /** The product detail page. */
+    DETAIL(1200);
+
+    private final int maxDimension;
+
+    ImageVariant(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+}
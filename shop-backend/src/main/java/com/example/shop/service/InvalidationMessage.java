@@ -0,0 +1,38 @@
+package com.example.shop.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One invalidation as sent between nodes. On the wire it is a single UTF-8 line:
+ * {@code <origin> <topic> [id,id,...]}.
+ */
+public record InvalidationMessage(String origin, InvalidationTopic topic, List<Long> ids) {
+
+    public InvalidationMessage {
+        ids = List.copyOf(ids);
+    }
+
+    public byte[] encode() {
+        StringBuilder line = new StringBuilder(origin).append(' ').append(topic.name());
+        for (int i = 0; i < ids.size(); i++) {
+            line.append(i == 0 ? ' ' : ',').append(ids.get(i));
+        }
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static InvalidationMessage decode(byte[] data, int offset, int length) {
+        String[] parts = new String(data, offset, length, StandardCharsets.UTF_8).trim().split(" ", 3);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Malformed invalidation message");
+        }
+        List<Long> ids = new ArrayList<>();
+        if (parts.length == 3) {
+            for (String id : parts[2].split(",")) {
+                ids.add(Long.valueOf(id));
+            }
+        }
+        return new InvalidationMessage(parts[0], InvalidationTopic.valueOf(parts[1]), ids);
+    }
+}
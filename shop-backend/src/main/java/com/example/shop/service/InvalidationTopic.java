@@ -0,0 +1,47 @@
+package com.example.shop.service;
+
+/**
+ * What a cluster invalidation message refers to. The ids carried with it are interpreted per
+ * topic; topics without ids ignore them.
+ */
+public enum InvalidationTopic {
+
+    /** Product ids to evict from "productById". */
+    PRODUCT_CACHE,
+
+    /** Clear "productById" entirely. */
+    PRODUCT_CACHE_CLEAR,
+
+    /** Category ids (with their ancestors) whose search pages changed, plus the unfiltered pages. */
+    SEARCH_PAGES,
+
+    /** Every search page changed. */
+    ALL_SEARCH_PAGES,
+
+    /** Product ids whose content changed without moving between pages; pages holding them are dropped. */
+    PRODUCT_CONTENT,
+
+    /** The category list or hierarchy changed. */
+    CATEGORIES,
+
+    /** Product ids whose listing entries (category, price, name, active flag) changed. */
+    LISTINGS,
+
+    /** The listing index must be rebuilt from the database. */
+    LISTINGS_REBUILD,
+
+    /** Product ids whose stock changed. */
+    STOCK,
+
+    /** Product ids with new popularity scores. */
+    POPULARITY,
+
+    /** Popularity scores were decayed. */
+    POPULARITY_DECAY,
+
+    /** User ids whose carts were written. */
+    CARTS,
+
+    /** Promotions changed; the pricing index is reloaded. */
+    PROMOTIONS
+}
@@ -0,0 +1,30 @@
+package com.example.shop.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation messages between nodes. Delivery is best effort: caches still expire on
+ * their own, so a lost message means a stale entry until its TTL, not forever.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /** For single-node deployments: nothing is sent or received. */
+    InvalidationTransport NONE = new InvalidationTransport() {
+        @Override
+        public void start(Consumer<InvalidationMessage> receiver) {
+        }
+
+        @Override
+        public void send(InvalidationMessage message) {
+        }
+    };
+
+    /** Starts delivering incoming messages; a node may receive its own messages back. */
+    void start(Consumer<InvalidationMessage> receiver);
+
+    void send(InvalidationMessage message);
+
+    @Override
+    default void close() {
+    }
+}
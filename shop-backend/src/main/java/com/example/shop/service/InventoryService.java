@@ -0,0 +1,157 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.ProductStock;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * In-memory view of product stock, loaded lazily from the database and dropped after every
+ * committed stock change, so the next read reloads the committed value. Cached
+ * {@link ProductResponse}s carry only static catalog data; the stock shown to clients is merged
+ * from this view at read time, so orders never have to evict the product caches. Other nodes are
+ * told which products changed and drop them from their own view the same way.
+ */
+@Service
+public class InventoryService {
+
+    private final ProductRepository productRepository;
+    private final ProductCacheInvalidator cacheInvalidator;
+    private final CategoryCountService categoryCountService;
+    private final ClusterInvalidationBus invalidationBus;
+    private final Map<Long, Integer> stock = new ConcurrentHashMap<>();
+    // Bumped before every eviction; a load that overlapped one may have read stale stock and is not kept
+    private final AtomicLong evictions = new AtomicLong();
+
+    public InventoryService(ProductRepository productRepository,
+                            ProductCacheInvalidator cacheInvalidator,
+                            CategoryCountService categoryCountService,
+                            ClusterInvalidationBus invalidationBus) {
+        this.productRepository = productRepository;
+        this.cacheInvalidator = cacheInvalidator;
+        this.categoryCountService = categoryCountService;
+        this.invalidationBus = invalidationBus;
+    }
+
+    public Integer getStock(Long productId) {
+        return getStock(List.of(productId)).get(productId);
+    }
+
+    /** Returns current stock for the given ids, loading all misses with a single query. */
+    public Map<Long, Integer> getStock(Collection<Long> productIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : productIds) {
+            Integer quantity = stock.get(id);
+            if (quantity != null) {
+                result.put(id, quantity);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long seen = evictions.get();
+            List<ProductStock> rows = productRepository.findStockByIdIn(missing);
+            for (ProductStock row : rows) {
+                result.put(row.getId(), row.getStockQuantity());
+            }
+            if (evictions.get() == seen) {
+                List<ProductStock> kept = new ArrayList<>();
+                for (ProductStock row : rows) {
+                    if (stock.putIfAbsent(row.getId(), row.getStockQuantity()) == null) {
+                        kept.add(row);
+                    }
+                }
+                // An eviction between the check above and the puts would not see them; take them back
+                if (evictions.get() != seen) {
+                    kept.forEach(row -> stock.remove(row.getId(), row.getStockQuantity()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a stock change made in the current transaction. The product is dropped from the
+     * view once the transaction commits, rather than set to {@code newStock}: commits racing on
+     * the same product may run their callbacks in either order. Search pages are invalidated only when the product switches between
+     * in stock and out of stock, since that is the only change the inStock filter can see.
+     */
+    public void stockChanged(Long productId, Long categoryId, int previousStock, int newStock) {
+        evict(productId);
+        if ((previousStock > 0) != (newStock > 0)) {
+            cacheInvalidator.productsChanged(categoryId);
+            categoryCountService.stockAvailabilityChanged();
+        }
+    }
+
+    public void evict(Long productId) {
+        evictAll(List.of(productId));
+    }
+
+    /** Drops many products from the view after a set-based update; they reload on next read. */
+    public void evictAll(Collection<Long> productIds) {
+        List<Long> ids = List.copyOf(productIds);
+        afterCommit(() -> {
+            drop(ids);
+            invalidationBus.broadcast(InvalidationTopic.STOCK, ids);
+        });
+    }
+
+    /** Stock another node committed; those products are reloaded on next read. */
+    @EventListener
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        if (event.topic() == InvalidationTopic.STOCK) {
+            drop(event.ids());
+        }
+    }
+
+    private void drop(Collection<Long> productIds) {
+        evictions.incrementAndGet();
+        productIds.forEach(stock::remove);
+    }
+
+    public ProductResponse withCurrentStock(ProductResponse response) {
+        if (response == null || response.getId() == null) {
+            return response;
+        }
+        return merge(response, getStock(response.getId()));
+    }
+
+    public List<ProductResponse> withCurrentStock(List<ProductResponse> responses) {
+        Map<Long, Integer> current = getStock(responses.stream()
+                .map(ProductResponse::getId)
+                .collect(Collectors.toList()));
+        return responses.stream()
+                .map(response -> merge(response, current.get(response.getId())))
+                .collect(Collectors.toList());
+    }
+
+    public Page<ProductResponse> withCurrentStock(Page<ProductResponse> page) {
+        Map<Long, Integer> current = getStock(page.getContent().stream()
+                .map(ProductResponse::getId)
+                .collect(Collectors.toList()));
+        return page.map(response -> merge(response, current.get(response.getId())));
+    }
+
+    // Cached responses are shared, so never mutate them in place
+    private ProductResponse merge(ProductResponse response, Integer currentStock) {
+        if (currentStock == null || currentStock.equals(response.getStockQuantity())) {
+            return response;
+        }
+        return response.toBuilder().stockQuantity(currentStock).build();
+    }
+}
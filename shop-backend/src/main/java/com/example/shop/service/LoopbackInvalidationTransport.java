@@ -0,0 +1,33 @@
+package com.example.shop.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Connects every instance in the same JVM, so tests can run several "nodes" side by side.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private static final List<LoopbackInvalidationTransport> NODES = new CopyOnWriteArrayList<>();
+
+    private volatile Consumer<InvalidationMessage> receiver;
+
+    @Override
+    public void start(Consumer<InvalidationMessage> receiver) {
+        this.receiver = receiver;
+        NODES.add(this);
+    }
+
+    @Override
+    public void send(InvalidationMessage message) {
+        for (LoopbackInvalidationTransport node : NODES) {
+            node.receiver.accept(message);
+        }
+    }
+
+    @Override
+    public void close() {
+        NODES.remove(this);
+    }
+}
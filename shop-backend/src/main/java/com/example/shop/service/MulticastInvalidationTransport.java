@@ -0,0 +1,95 @@
+package com.example.shop.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.function.Consumer;
+
+/**
+ * UDP multicast between the nodes of one network segment: one datagram per message, no
+ * acknowledgements. Every node joins the same group and port.
+ */
+public class MulticastInvalidationTransport implements InvalidationTransport {
+
+    // Room for a full message of ClusterInvalidationBus.MAX_IDS_PER_MESSAGE ids
+    static final int MAX_DATAGRAM_SIZE = 8192;
+
+    private final InetSocketAddress group;
+    private final NetworkInterface networkInterface;
+    private final int timeToLive;
+
+    private MulticastSocket socket;
+    private volatile boolean running;
+
+    /**
+     * @param networkInterface interface to join the group on, or {@code null} for the system default
+     * @param timeToLive       router hops a datagram may cross; 1 keeps it on the local subnet
+     */
+    public MulticastInvalidationTransport(InetSocketAddress group, NetworkInterface networkInterface, int timeToLive) {
+        this.group = group;
+        this.networkInterface = networkInterface;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public synchronized void start(Consumer<InvalidationMessage> receiver) {
+        try {
+            socket = new MulticastSocket(group.getPort());
+            socket.setTimeToLive(timeToLive);
+            if (networkInterface != null) {
+                socket.setNetworkInterface(networkInterface);
+            }
+            socket.joinGroup(group, networkInterface);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not join invalidation group " + group, e);
+        }
+        running = true;
+        Thread listener = new Thread(() -> receive(receiver), "cache-invalidation-receiver");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void send(InvalidationMessage message) {
+        byte[] data = message.encode();
+        try {
+            socket.send(new DatagramPacket(data, data.length, group));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (socket != null) {
+            try {
+                socket.leaveGroup(group, networkInterface);
+            } catch (IOException e) {
+                // Closing the socket below leaves the group anyway
+            }
+            socket.close();
+        }
+    }
+
+    private void receive(Consumer<InvalidationMessage> receiver) {
+        byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+        while (running) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+                receiver.accept(InvalidationMessage.decode(packet.getData(), packet.getOffset(), packet.getLength()));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Cache invalidation receive failed: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Ignoring malformed cache invalidation from " + packet.getSocketAddress()
+                        + ": " + e.getMessage());
+            }
+        }
+    }
+}
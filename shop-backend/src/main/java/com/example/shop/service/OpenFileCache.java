@@ -0,0 +1,159 @@
+package com.example.shop.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used set of open read-only {@link FileChannel}s for served uploads, so a hot
+ * product image is opened once rather than on every request. Channels are only read with
+ * positional transfers, which are safe to share between threads. A channel evicted while in use
+ * is closed when its last user releases it.
+ */
+@Component
+public class OpenFileCache implements DisposableBean {
+
+    /** An open file; close it when the response is written. */
+    public final class Handle implements AutoCloseable {
+
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public FileChannel channel() {
+            return entry.channel;
+        }
+
+        public long size() {
+            return entry.size;
+        }
+
+        public long lastModified() {
+            return entry.lastModified;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final FileChannel channel;
+        private final long size;
+        private final long lastModified;
+        // Guarded by the cache
+        private int users;
+        private boolean evicted;
+
+        private Entry(FileChannel channel, long size, long lastModified) {
+            this.channel = channel;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final Map<Path, Entry> entries;
+
+    public OpenFileCache(@Value("${file.serving.max-open-files:256}") int maxOpenFiles) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                if (size() <= maxOpenFiles) {
+                    return false;
+                }
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /** Opens the file, or reuses its cached channel. Throws {@link NoSuchFileException} if it is gone. */
+    public Handle open(Path path) throws IOException {
+        // Uploads are never rewritten in place, but the sweeper may delete them
+        if (!Files.isRegularFile(path)) {
+            synchronized (this) {
+                Entry stale = entries.remove(path);
+                if (stale != null) {
+                    evict(stale);
+                }
+            }
+            throw new NoSuchFileException(path.toString());
+        }
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                entry.users++;
+                return new Handle(entry);
+            }
+        }
+
+        // Opened outside the lock; if another thread cached the same file meanwhile, use that one
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        Entry opened;
+        try {
+            opened = new Entry(channel, channel.size(), Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        synchronized (this) {
+            Entry entry = entries.putIfAbsent(path, opened);
+            if (entry != null) {
+                closeQuietly(channel);
+            } else {
+                entry = opened;
+            }
+            entry.users++;
+            return new Handle(entry);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        entries.values().forEach(this::evict);
+        entries.clear();
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.users--;
+        if (entry.evicted && entry.users == 0) {
+            closeQuietly(entry.channel);
+        }
+    }
+
+    // Called with the lock held
+    private void evict(Entry entry) {
+        entry.evicted = true;
+        if (entry.users == 0) {
+            closeQuietly(entry.channel);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // Nothing left to do with a read-only channel
+        }
+    }
+}
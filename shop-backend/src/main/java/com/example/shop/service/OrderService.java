@@ -20,12 +20,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
 @Service
 public class OrderService {
 
@@ -34,17 +38,32 @@ public class OrderService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final InventoryService inventoryService;
+    private final PopularityService popularityService;
+    private final CartStore cartStore;
+    private final PromotionEngine promotionEngine;
+    private final ProductService productService;
 
     public OrderService(OrderRepository orderRepository,
                        CartRepository cartRepository,
                        ProductRepository productRepository,
                        UserRepository userRepository,
-                       EmailService emailService) {
+                       EmailService emailService,
+                       InventoryService inventoryService,
+                       PopularityService popularityService,
+                       CartStore cartStore,
+                       PromotionEngine promotionEngine,
+                       ProductService productService) {
         this.orderRepository = orderRepository;
         this.cartRepository = cartRepository;
         this.productRepository = productRepository;
         this.userRepository = userRepository;
         this.emailService = emailService;
+        this.inventoryService = inventoryService;
+        this.popularityService = popularityService;
+        this.cartStore = cartStore;
+        this.promotionEngine = promotionEngine;
+        this.productService = productService;
     }
 
     @Transactional
@@ -52,6 +71,8 @@ public class OrderService {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
+        // Cart changes may still be waiting for the write-behind flush
+        cartStore.flushForCheckout(userEmail);
         Cart cart = cartRepository.findByUser(user)
                 .orElseThrow(() -> new IllegalArgumentException("Cart is empty"));
 
@@ -59,9 +80,11 @@ public class OrderService {
             throw new IllegalArgumentException("Cart is empty");
         }
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        List<OrderItem> orderItems = new java.util.ArrayList<>();
-
+        // Lines are priced as the cart shows them, at the price when added and with the categories
+        // the cart is priced with, so the order total is the cart total
+        Map<Long, Long> categoryIds = productService.getCategoryIds(
+                cart.getItems().stream().map(item -> item.getProduct().getId()).toList());
+        List<PricingLine> pricingLines = new ArrayList<>();
         for (CartItem cartItem : cart.getItems()) {
             Product product = cartItem.getProduct();
             if (!product.isActive() || product.getStockQuantity() < cartItem.getQuantity()) {
@@ -69,18 +92,27 @@ public class OrderService {
                         "Product " + product.getName() + " is not available in requested quantity"
                 );
             }
+            pricingLines.add(new PricingLine(product.getId(),
+                    categoryIds.getOrDefault(product.getId(), categoryId(product)),
+                    cartItem.getPriceAtAddTime(), cartItem.getQuantity()));
+        }
+        // A coupon that is no longer valid is dropped silently, as the cart already shows it unapplied
+        PricedCart priced = promotionEngine.price(pricingLines, cart.getCouponCode());
 
-            BigDecimal priceEach = product.getPrice();
-            BigDecimal subtotal = priceEach.multiply(BigDecimal.valueOf(cartItem.getQuantity()));
-            totalAmount = totalAmount.add(subtotal);
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (int i = 0; i < cart.getItems().size(); i++) {
+            CartItem cartItem = cart.getItems().get(i);
+            Product product = cartItem.getProduct();
+            PricedCart.Line pricedLine = priced.lines().get(i);
 
             OrderItem orderItem = OrderItem.builder()
                     .order(null)
                     .product(product)
                     .productNameSnapshot(product.getName())
                     .quantity(cartItem.getQuantity())
-                    .priceEach(priceEach)
-                    .subtotal(subtotal)
+                    .priceEach(cartItem.getPriceAtAddTime())
+                    .subtotal(pricedLine.lineTotal())
+                    .discount(pricedLine.discount())
                     .build();
             orderItems.add(orderItem);
         }
@@ -88,7 +120,9 @@ public class OrderService {
         Order order = Order.builder()
                 .user(user)
                 .items(orderItems)
-                .totalAmount(totalAmount)
+                .totalAmount(priced.total())
+                .discountAmount(priced.discount())
+                .couponCode(priced.couponCode())
                 .status(OrderStatus.CREATED)
                 .paymentStatus(PaymentStatus.PAID)
                 .paymentReference("PAY-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase())
@@ -98,14 +132,25 @@ public class OrderService {
             item.setOrder(order);
         }
 
+        Map<Long, Integer> sold = new HashMap<>();
         for (CartItem cartItem : cart.getItems()) {
             Product product = cartItem.getProduct();
-            product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
+            sold.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
+            int previousStock = product.getStockQuantity();
+            product.setStockQuantity(previousStock - cartItem.getQuantity());
             productRepository.save(product);
+            inventoryService.stockChanged(product.getId(), categoryId(product), previousStock,
+                    product.getStockQuantity());
         }
 
+        popularityService.recordSales(sold);
+
         cart.getItems().clear();
+        cart.setCouponCode(null);
+        // Also bumps the cart's version, so the order fails if a cart flush from another node got in first
+        cart.setLastUpdated(Instant.now());
         cartRepository.save(cart);
+        afterCommit(() -> cartStore.checkedOut(userEmail, sold.keySet(), cart.getVersion()));
 
         Order saved = orderRepository.save(order);
         emailService.sendOrderConfirmationEmail(
@@ -145,8 +190,11 @@ public class OrderService {
 
         for (OrderItem item : order.getItems()) {
             Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
+            int previousStock = product.getStockQuantity();
+            product.setStockQuantity(previousStock + item.getQuantity());
             productRepository.save(product);
+            inventoryService.stockChanged(product.getId(), categoryId(product), previousStock,
+                    product.getStockQuantity());
         }
 
         order.setStatus(OrderStatus.CANCELLED);
@@ -183,6 +231,10 @@ public class OrderService {
         }
     }
 
+    private static Long categoryId(Product product) {
+        return product.getCategory() != null ? product.getCategory().getId() : null;
+    }
+
     public OrderResponse toResponse(Order order) {
         List<OrderItemResponse> items = order.getItems().stream()
                 .map(this::toItemResponse)
@@ -192,6 +244,8 @@ public class OrderService {
                 .id(order.getId())
                 .userId(order.getUser().getId())
                 .totalAmount(order.getTotalAmount())
+                .discountAmount(order.getDiscountAmount())
+                .couponCode(order.getCouponCode())
                 .status(order.getStatus())
                 .paymentStatus(order.getPaymentStatus())
                 .paymentReference(order.getPaymentReference())
@@ -208,6 +262,7 @@ public class OrderService {
                 .quantity(item.getQuantity())
                 .priceEach(item.getPriceEach())
                 .subtotal(item.getSubtotal())
+                .discount(item.getDiscount())
                 .build();
     }
 }
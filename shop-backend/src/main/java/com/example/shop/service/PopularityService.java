@@ -0,0 +1,220 @@
+package com.example.shop.service;
+
+import com.example.shop.model.ProductStats;
+import com.example.shop.repository.ProductScore;
+import com.example.shop.repository.ProductStatsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Product view and sales counters behind {@code sort=popularity}.
+ *
+ * <p>Views and sales are counted in memory with {@link LongAdder}s, which stay cheap under
+ * contention, and written to {@code product_stats} every {@code flush-interval}: rows missing for
+ * new products are created first, then one transaction adds each product's counts with an UPDATE
+ * that increments the columns in place and reads the new scores back. Flushes from several nodes
+ * and a concurrent decay therefore never overwrite each other. Serving a product never writes to
+ * the database.
+ *
+ * <p>Each view adds 1 to a product's score and each unit sold adds {@code sale-weight}. Every
+ * {@code decay-interval} all scores are multiplied by the factor that halves them over
+ * {@code half-life}, with one UPDATE, so recent activity outweighs old.
+ *
+ * <p>With several nodes, each flushes its own counters and broadcasts the products it wrote;
+ * the others re-read those scores. A decay is broadcast too, and a node that has seen one within
+ * the current interval skips its own, so the scores decay once per interval, not once per node.
+ */
+@Service
+public class PopularityService {
+
+    private static final class Counter {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder sales = new LongAdder();
+        // Totals written by the last successful flush; only touched under the service lock
+        private long flushedViews;
+        private long flushedSales;
+    }
+
+    private record Pending(Counter counter, long views, long sales) {
+
+        long newViews() {
+            return views - counter.flushedViews;
+        }
+
+        long newSales() {
+            return sales - counter.flushedSales;
+        }
+    }
+
+    private final ProductStatsRepository statsRepository;
+    private final ProductListingIndex listingIndex;
+    private final ClusterInvalidationBus invalidationBus;
+    private final TransactionTemplate transactionTemplate;
+    private final double saleWeight;
+    private final double decayFactor;
+    private final long decayIntervalMillis;
+    // Counters are kept once created; there is at most one per product
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    // Mirrors product_stats.score; guarded by this
+    private final Map<Long, Double> scores = new HashMap<>();
+    // Last decay run here or reported by another node; guarded by this
+    private long lastDecayAt;
+
+    public PopularityService(ProductStatsRepository statsRepository,
+                             ProductListingIndex listingIndex,
+                             ClusterInvalidationBus invalidationBus,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${catalog.popularity.sale-weight:10}") double saleWeight,
+                             @Value("${catalog.popularity.half-life:7d}") Duration halfLife,
+                             @Value("${catalog.popularity.decay-interval:PT1H}") Duration decayInterval) {
+        this.statsRepository = statsRepository;
+        this.listingIndex = listingIndex;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.saleWeight = saleWeight;
+        this.decayFactor = Math.pow(0.5, (double) decayInterval.toMillis() / halfLife.toMillis());
+        this.decayIntervalMillis = decayInterval.toMillis();
+    }
+
+    public void recordView(Long productId) {
+        counter(productId).views.increment();
+    }
+
+    /** Units sold per product; counted once the order commits. */
+    public void recordSales(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sold = Map.copyOf(quantities);
+        afterCommit(() -> sold.forEach((productId, quantity) -> counter(productId).sales.add(quantity)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        scores.clear();
+        for (ProductScore score : statsRepository.findAllScores()) {
+            scores.put(score.getProductId(), score.getScore());
+        }
+        listingIndex.scoresChanged(Map.copyOf(scores));
+    }
+
+    /**
+     * Writes everything counted since the last flush. On failure the counters keep their totals
+     * and the next flush retries them.
+     */
+    @Scheduled(fixedDelayString = "${catalog.popularity.flush-interval:PT30S}",
+            initialDelayString = "${catalog.popularity.flush-interval:PT30S}")
+    public synchronized void flush() {
+        Map<Long, Pending> pending = new HashMap<>();
+        counters.forEach((productId, counter) -> {
+            Pending p = new Pending(counter, counter.views.sum(), counter.sales.sum());
+            if (p.newViews() > 0 || p.newSales() > 0) {
+                pending.put(productId, p);
+            }
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        createMissingRows(pending.keySet());
+        Map<Long, Double> written = transactionTemplate.execute(status -> write(pending));
+        pending.values().forEach(p -> {
+            p.counter().flushedViews = p.views();
+            p.counter().flushedSales = p.sales();
+        });
+        scores.putAll(written);
+        listingIndex.scoresChanged(Map.copyOf(scores));
+        invalidationBus.broadcast(InvalidationTopic.POPULARITY, written.keySet());
+    }
+
+    @Scheduled(fixedRateString = "${catalog.popularity.decay-interval:PT1H}",
+            initialDelayString = "${catalog.popularity.decay-interval:PT1H}")
+    public synchronized void decay() {
+        // Another node already decayed this interval; allow some drift between the schedules
+        if (System.currentTimeMillis() - lastDecayAt < decayIntervalMillis * 9 / 10) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> statsRepository.decayScores(decayFactor));
+        decayed();
+        invalidationBus.broadcast(InvalidationTopic.POPULARITY_DECAY);
+    }
+
+    /** Scores written or decayed by another node. */
+    @EventListener
+    public synchronized void onClusterInvalidation(ClusterInvalidationEvent event) {
+        switch (event.topic()) {
+            case POPULARITY -> {
+                for (ProductStats stats : statsRepository.findAllById(event.ids())) {
+                    scores.put(stats.getProductId(), stats.getScore());
+                }
+                listingIndex.scoresChanged(Map.copyOf(scores));
+            }
+            case POPULARITY_DECAY -> decayed();
+            default -> {
+            }
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void decayed() {
+        lastDecayAt = System.currentTimeMillis();
+        scores.replaceAll((productId, score) -> score * decayFactor);
+        listingIndex.scoresChanged(Map.copyOf(scores));
+    }
+
+    private Counter counter(Long productId) {
+        return counters.computeIfAbsent(productId, id -> new Counter());
+    }
+
+    /** Inserts empty rows for products never flushed before; rows another node just created are kept. */
+    private void createMissingRows(Set<Long> productIds) {
+        Set<Long> missing = new HashSet<>(productIds);
+        statsRepository.findExistingIds(productIds).forEach(missing::remove);
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    statsRepository.saveAllAndFlush(missing.stream().map(ProductStats::newFor).toList()));
+        } catch (DataIntegrityViolationException ex) {
+            // Another node created some of them; create the rest one at a time
+            for (Long productId : missing) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            statsRepository.saveAndFlush(ProductStats.newFor(productId)));
+                } catch (DataIntegrityViolationException created) {
+                    // Created by another node
+                }
+            }
+        }
+    }
+
+    private Map<Long, Double> write(Map<Long, Pending> pending) {
+        Instant now = Instant.now();
+        pending.forEach((productId, p) -> statsRepository.addCounts(productId, p.newViews(), p.newSales(),
+                p.newViews() + p.newSales() * saleWeight, now));
+        // Includes whatever other nodes and decays committed before these updates
+        return statsRepository.findScores(pending.keySet()).stream()
+                .collect(Collectors.toMap(ProductScore::getProductId, ProductScore::getScore));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.shop.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Result of {@link PromotionEngine#price}: one {@link Line} per input line, in input order.
+ * {@code couponCode} is the normalized code if the one given is currently valid, else null.
+ */
+public record PricedCart(List<Line> lines, BigDecimal subtotal, BigDecimal discount, BigDecimal total,
+                         String couponCode) {
+
+    /** {@code lineTotal} is before discounts; {@code promotions} names the rules that discounted it. */
+    public record Line(BigDecimal lineTotal, BigDecimal discount, List<String> promotions) {
+    }
+}
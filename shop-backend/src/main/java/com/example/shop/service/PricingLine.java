@@ -0,0 +1,7 @@
+package com.example.shop.service;
+
+import java.math.BigDecimal;
+
+/** One line to price: a product, the category it is in (null if none), its unit price and quantity. */
+public record PricingLine(Long productId, Long categoryId, BigDecimal unitPrice, int quantity) {
+}
@@ -0,0 +1,190 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.BulkPriceUpdateRequest;
+import com.example.shop.dto.BulkProductFilter;
+import com.example.shop.dto.BulkStockUpdateRequest;
+import com.example.shop.dto.BulkUpdateResponse;
+import com.example.shop.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Price and stock changes for many products at once, each applied as set-based UPDATEs.
+ *
+ * <p>The affected ids and categories are read first, and the UPDATE targets exactly those ids, so
+ * a product that starts or stops matching the filter meanwhile is neither updated without being
+ * invalidated nor missing from the reported count. Afterwards only those products' cache entries
+ * and the search pages of their categories are invalidated.
+ */
+@Service
+public class ProductBulkUpdateService {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    // Ids per UPDATE, keeping the IN list well within driver parameter limits
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+
+    private final EntityManager entityManager;
+    private final ProductCacheInvalidator cacheInvalidator;
+    private final InventoryService inventoryService;
+    private final CategoryCountService categoryCountService;
+    private final ProductListingIndex listingIndex;
+
+    public ProductBulkUpdateService(EntityManager entityManager,
+                                    ProductCacheInvalidator cacheInvalidator,
+                                    InventoryService inventoryService,
+                                    CategoryCountService categoryCountService,
+                                    ProductListingIndex listingIndex) {
+        this.entityManager = entityManager;
+        this.cacheInvalidator = cacheInvalidator;
+        this.inventoryService = inventoryService;
+        this.categoryCountService = categoryCountService;
+        this.listingIndex = listingIndex;
+    }
+
+    @Transactional
+    public BulkUpdateResponse updatePrices(BulkPriceUpdateRequest request) {
+        long adjustments = Stream.of(request.getPercent(), request.getAmount(), request.getPrice())
+                .filter(Objects::nonNull)
+                .count();
+        if (adjustments != 1) {
+            throw new IllegalArgumentException("Exactly one of percent, amount or price must be set");
+        }
+        Affected affected = findAffected(request.getFilter());
+        if (affected.ids().isEmpty()) {
+            return new BulkUpdateResponse(0, 0);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Product> update = cb.createCriteriaUpdate(Product.class);
+        Root<Product> root = update.from(Product.class);
+        Expression<BigDecimal> current = root.get("price");
+        Expression<BigDecimal> newPrice;
+        if (request.getPrice() != null) {
+            newPrice = cb.literal(request.getPrice());
+        } else if (request.getPercent() != null) {
+            BigDecimal factor = HUNDRED.add(request.getPercent()).divide(HUNDRED);
+            newPrice = round(cb, cb.prod(current, factor));
+        } else {
+            newPrice = atLeastZero(cb, round(cb, cb.sum(current, request.getAmount())), BigDecimal.ZERO);
+        }
+        update.set(root.<BigDecimal>get("price"), newPrice);
+        update.set(root.<Instant>get("updatedAt"), Instant.now());
+        int updated = executeForIds(update, root, affected.ids());
+
+        // Set-based updates bypass entity events, so the price-sorted listings are rebuilt
+        listingIndex.invalidate();
+        cacheInvalidator.evictProducts(affected.ids());
+        cacheInvalidator.productsChanged(affected.categoryIds().toArray(Long[]::new));
+        return new BulkUpdateResponse(affected.ids().size(), updated);
+    }
+
+    @Transactional
+    public BulkUpdateResponse updateStock(BulkStockUpdateRequest request) {
+        if ((request.getDelta() == null) == (request.getQuantity() == null)) {
+            throw new IllegalArgumentException("Exactly one of delta or quantity must be set");
+        }
+        Affected affected = findAffected(request.getFilter());
+        if (affected.ids().isEmpty()) {
+            return new BulkUpdateResponse(0, 0);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Product> update = cb.createCriteriaUpdate(Product.class);
+        Root<Product> root = update.from(Product.class);
+        Expression<Integer> newStock = request.getQuantity() != null
+                ? cb.literal(request.getQuantity())
+                : atLeastZero(cb, cb.sum(root.<Integer>get("stockQuantity"), request.getDelta()), 0);
+        update.set(root.<Integer>get("stockQuantity"), newStock);
+        update.set(root.<Instant>get("updatedAt"), Instant.now());
+        int updated = executeForIds(update, root, affected.ids());
+
+        // Stock is served from the inventory view, so cached responses stay valid; the view and
+        // anything that filters on availability do not
+        inventoryService.evictAll(affected.ids());
+        cacheInvalidator.productsChanged(affected.categoryIds().toArray(Long[]::new));
+        categoryCountService.productsChanged();
+        return new BulkUpdateResponse(affected.ids().size(), updated);
+    }
+
+    private int executeForIds(CriteriaUpdate<Product> update, Root<Product> root, List<Long> ids) {
+        int updated = 0;
+        for (int from = 0; from < ids.size(); from += UPDATE_CHUNK_SIZE) {
+            update.where(root.get("id").in(ids.subList(from, Math.min(ids.size(), from + UPDATE_CHUNK_SIZE))));
+            updated += entityManager.createQuery(update).executeUpdate();
+        }
+        return updated;
+    }
+
+    private record Affected(List<Long> ids, Set<Long> categoryIds) {
+    }
+
+    private Affected findAffected(BulkProductFilter filter) {
+        if (filter.isEmpty()) {
+            throw new IllegalArgumentException("At least one filter (categoryId, productIds, minPrice, maxPrice) is required");
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        query.multiselect(root.get("id"), root.get("category").get("id"))
+                .where(filter(root, query, cb, filter));
+
+        List<Long> ids = new ArrayList<>();
+        Set<Long> categoryIds = new LinkedHashSet<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            ids.add(row.get(0, Long.class));
+            Long categoryId = row.get(1, Long.class);
+            if (categoryId != null) {
+                categoryIds.add(categoryId);
+            }
+        }
+        return new Affected(ids, categoryIds);
+    }
+
+    private static Predicate filter(Root<Product> root, CommonAbstractCriteria query, CriteriaBuilder cb,
+                                    BulkProductFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getCategoryId() != null) {
+            predicates.add(ProductSpecification.inCategoryTree(root, query, cb, filter.getCategoryId()));
+        }
+        if (filter.getProductIds() != null && !filter.getProductIds().isEmpty()) {
+            predicates.add(root.get("id").in(filter.getProductIds()));
+        }
+        if (filter.getMinPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+        }
+        return cb.and(predicates.toArray(Predicate[]::new));
+    }
+
+    private static Expression<BigDecimal> round(CriteriaBuilder cb, Expression<? extends Number> value) {
+        return cb.function("round", BigDecimal.class, value, cb.literal(2));
+    }
+
+    private static <N extends Number & Comparable<N>> Expression<N> atLeastZero(CriteriaBuilder cb,
+                                                                                Expression<N> value, N zero) {
+        return cb.<N>selectCase()
+                .when(cb.lessThan(value, zero), zero)
+                .otherwise(value);
+    }
+}
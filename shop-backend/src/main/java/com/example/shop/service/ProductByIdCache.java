@@ -0,0 +1,60 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ProductResponse;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Multi-key access to the "productById" cache, which the {@code @Cacheable} abstraction only
+ * exposes one key at a time.
+ */
+@Component
+public class ProductByIdCache {
+
+    private final CacheManager cacheManager;
+
+    public ProductByIdCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public Map<Long, ProductResponse> getAllPresent(Collection<Long> ids) {
+        Map<Long, ProductResponse> result = new HashMap<>();
+        Cache cache = cacheManager.getCache(ProductCacheInvalidator.PRODUCT_CACHE);
+        if (cache == null) {
+            return result;
+        }
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?>) {
+            @SuppressWarnings("unchecked")
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                    (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+            nativeCache.getAllPresent(ids).forEach((key, value) -> {
+                if (key instanceof Long id && value instanceof ProductResponse product) {
+                    result.put(id, product);
+                }
+            });
+            return result;
+        }
+        for (Long id : ids) {
+            ProductResponse product = cache.get(id, ProductResponse.class);
+            if (product != null) {
+                result.put(id, product);
+            }
+        }
+        return result;
+    }
+
+    public void putAll(Collection<ProductResponse> products) {
+        Cache cache = cacheManager.getCache(ProductCacheInvalidator.PRODUCT_CACHE);
+        if (cache == null) {
+            return;
+        }
+        for (ProductResponse product : products) {
+            cache.put(product.getId(), product);
+        }
+    }
+}
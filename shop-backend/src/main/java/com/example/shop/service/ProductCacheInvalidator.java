@@ -0,0 +1,207 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ProductResponse;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Targeted invalidation for the "products" and "productById" caches.
+ *
+ * <p>Search pages are keyed by a generation counter: pages filtered by category use that
+ * category's generation, unfiltered pages use the global one. A category filter also matches
+ * subcategories, so a product write bumps its category and every ancestor of it. A write that
+ * can change which products a page contains bumps only the counters it affects. Writes that change a product's
+ * content but not its membership in any page (image updates) evict just the pages holding it.
+ *
+ * <p>All invalidation runs after the surrounding transaction commits, so a concurrent reader
+ * cannot re-cache the pre-commit state under the new generation. Each invalidation is also
+ * broadcast on the {@link ClusterInvalidationBus}, and other nodes apply it to their own caches.
+ */
+@Component
+public class ProductCacheInvalidator {
+
+    public static final String SEARCH_CACHE = "products";
+    public static final String PRODUCT_CACHE = "productById";
+
+    private final CacheManager cacheManager;
+    private final CategoryHierarchy categoryHierarchy;
+    private final ClusterInvalidationBus invalidationBus;
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final Map<Long, AtomicLong> categoryGenerations = new ConcurrentHashMap<>();
+
+    public ProductCacheInvalidator(CacheManager cacheManager, CategoryHierarchy categoryHierarchy,
+                                   ClusterInvalidationBus invalidationBus) {
+        this.cacheManager = cacheManager;
+        this.categoryHierarchy = categoryHierarchy;
+        this.invalidationBus = invalidationBus;
+    }
+
+    public ProductSearchKey searchKey(
+            Long categoryId,
+            String search,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            Boolean active,
+            Boolean inStock,
+            Pageable pageable
+    ) {
+        return new ProductSearchKey(generation(categoryId), categoryId, search, minPrice, maxPrice,
+                active, inStock, pageable);
+    }
+
+    public long generation(Long categoryId) {
+        if (categoryId == null) {
+            return globalGeneration.get();
+        }
+        AtomicLong generation = categoryGenerations.get(categoryId);
+        return generation != null ? generation.get() : 0L;
+    }
+
+    /**
+     * A product was created, deleted, or changed in a way that may move it in or out of pages
+     * (category, price, name, stock, active flag). Pass both old and new category ids on moves.
+     */
+    public void productsChanged(Long... categoryIds) {
+        List<Long> ids = Arrays.stream(categoryIds).filter(Objects::nonNull).toList();
+        afterCommit(() -> {
+            bumpCategories(ids);
+            invalidationBus.broadcast(InvalidationTopic.SEARCH_PAGES, ids);
+        });
+    }
+
+    /** Many products changed at once (bulk writes); every search page is invalidated. */
+    public void allProductsChanged() {
+        afterCommit(() -> {
+            bumpAllGenerations();
+            invalidationBus.broadcast(InvalidationTopic.ALL_SEARCH_PAGES);
+        });
+    }
+
+    /** The product's cached representation changed but no page membership did. */
+    public void productContentChanged(Long productId) {
+        afterCommit(() -> {
+            evictPagesContaining(productId);
+            invalidationBus.broadcast(InvalidationTopic.PRODUCT_CONTENT, List.of(productId));
+        });
+    }
+
+    public void evictProduct(Long productId) {
+        evictProducts(List.of(productId));
+    }
+
+    public void evictProducts(Collection<Long> productIds) {
+        List<Long> ids = List.copyOf(productIds);
+        afterCommit(() -> {
+            evictFromProductCache(ids);
+            invalidationBus.broadcast(InvalidationTopic.PRODUCT_CACHE, ids);
+        });
+    }
+
+    /**
+     * A category was renamed or re-parented; its products carry the old name in their responses,
+     * and a move changes which ancestor filters they match. Both are rare admin operations, so
+     * every category generation is bumped rather than working out the old and new ancestry.
+     */
+    public void categoryChanged(Long categoryId) {
+        afterCommit(() -> {
+            bumpCategory(categoryId);
+            bumpAllGenerations();
+            clearProductCache();
+            invalidationBus.broadcast(InvalidationTopic.ALL_SEARCH_PAGES);
+            invalidationBus.broadcast(InvalidationTopic.PRODUCT_CACHE_CLEAR);
+        });
+    }
+
+    /** Applies an invalidation another node committed; nothing is broadcast again. */
+    @EventListener
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        switch (event.topic()) {
+            case SEARCH_PAGES -> bumpCategories(event.ids());
+            case ALL_SEARCH_PAGES -> bumpAllGenerations();
+            case PRODUCT_CONTENT -> event.ids().forEach(this::evictPagesContaining);
+            case PRODUCT_CACHE -> evictFromProductCache(event.ids());
+            case PRODUCT_CACHE_CLEAR -> clearProductCache();
+            default -> {
+            }
+        }
+    }
+
+    private void bumpCategories(Collection<Long> categoryIds) {
+        CategoryTree tree = categoryHierarchy.current();
+        Set<Long> affected = new HashSet<>();
+        for (Long categoryId : categoryIds) {
+            affected.add(categoryId);
+            affected.addAll(tree.ancestorsOrSelf(categoryId));
+        }
+        affected.forEach(this::bumpCategory);
+        globalGeneration.incrementAndGet();
+    }
+
+    private void evictFromProductCache(Collection<Long> productIds) {
+        Cache cache = cacheManager.getCache(PRODUCT_CACHE);
+        if (cache != null) {
+            productIds.forEach(cache::evict);
+        }
+    }
+
+    private void clearProductCache() {
+        Cache cache = cacheManager.getCache(PRODUCT_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void bumpAllGenerations() {
+        Set<Long> affected = new HashSet<>(categoryHierarchy.current().ids());
+        affected.addAll(categoryGenerations.keySet());
+        affected.forEach(this::bumpCategory);
+        globalGeneration.incrementAndGet();
+    }
+
+    private void bumpCategory(Long categoryId) {
+        if (categoryId != null) {
+            categoryGenerations.computeIfAbsent(categoryId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private void evictPagesContaining(Long productId) {
+        Cache cache = cacheManager.getCache(SEARCH_CACHE);
+        if (cache == null) {
+            return;
+        }
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            nativeCache.asMap().values().removeIf(value -> containsProduct(value, productId));
+        } else {
+            cache.clear();
+        }
+    }
+
+    private static boolean containsProduct(Object value, Long productId) {
+        if (!(value instanceof Page<?> page)) {
+            return false;
+        }
+        for (Object item : page.getContent()) {
+            if (item instanceof ProductResponse product && productId.equals(product.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImportJobResponse;
+import com.example.shop.dto.ImportRowError;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one bulk import. Written by the import thread, read by status requests.
+ */
+class ProductImportJob {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id;
+    private final String fileName;
+    private final ProductImportReader.Format format;
+    private final long fileSize;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String message;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<ImportRowError> errors = new ArrayList<>();
+
+    ProductImportJob(String id, String fileName, ProductImportReader.Format format, long fileSize) {
+        this.id = id;
+        this.fileName = fileName;
+        this.format = format;
+        this.fileSize = fileSize;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    ProductImportReader.Format getFormat() {
+        return format;
+    }
+
+    long getImported() {
+        return imported.get();
+    }
+
+    boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void failed(String reason) {
+        message = reason;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    void rowRead(long bytes) {
+        rowsProcessed.incrementAndGet();
+        bytesRead.set(bytes);
+    }
+
+    void rowsImported(int count) {
+        imported.addAndGet(count);
+    }
+
+    void rowFailed(long line, String reason) {
+        failed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowError(line, reason));
+            }
+        }
+    }
+
+    ImportJobResponse toResponse() {
+        List<ImportRowError> reported;
+        synchronized (errors) {
+            reported = List.copyOf(errors);
+        }
+        long read = status == Status.COMPLETED ? fileSize : bytesRead.get();
+        return ImportJobResponse.builder()
+                .jobId(id)
+                .status(status.name())
+                .format(format.name())
+                .fileName(fileName)
+                .fileSize(fileSize)
+                .bytesRead(read)
+                .progressPercent(fileSize > 0 ? (int) Math.min(100, read * 100 / fileSize) : 100)
+                .rowsProcessed(rowsProcessed.get())
+                .imported(imported.get())
+                .failed(failed.get())
+                .message(message)
+                .createdAt(createdAt)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .errors(reported)
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.shop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads product rows one line at a time from a CSV file (first line is the header) or a
+ * JSON-lines file (one object per line), so an import never holds the whole file in memory.
+ * Field names are matched case-insensitively, ignoring underscores and spaces.
+ *
+ * <p>CSV fields may be quoted, with {@code ""} as an escaped quote; quoted fields cannot span
+ * lines.
+ */
+class ProductImportReader implements Closeable {
+
+    enum Format {
+        CSV, JSONL;
+
+        static Format detect(String requested, String fileName) {
+            String hint = requested != null && !requested.isBlank() ? requested : extension(fileName);
+            return switch (hint.toLowerCase(Locale.ROOT)) {
+                case "csv" -> CSV;
+                case "jsonl", "ndjson", "json" -> JSONL;
+                default -> throw new IllegalArgumentException("Unsupported import format; use csv or jsonl");
+            };
+        }
+
+        private static String extension(String fileName) {
+            int dot = fileName != null ? fileName.lastIndexOf('.') : -1;
+            return dot >= 0 ? fileName.substring(dot + 1) : "";
+        }
+    }
+
+    /** A parsed line; {@code error} is set instead of {@code values} when the line is malformed. */
+    record Row(long line, Map<String, String> values, String error) {
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private List<String> header;
+    private long lineNumber;
+
+    ProductImportReader(BufferedReader reader, Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Returns the next non-blank row, or null at end of input. */
+    Row next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && header == null) {
+                header = parseCsvLine(stripBom(line)).stream().map(ProductImportReader::normalize).toList();
+                continue;
+            }
+            return format == Format.CSV ? csvRow(line) : jsonRow(line);
+        }
+        return null;
+    }
+
+    private Row csvRow(String line) {
+        List<String> fields;
+        try {
+            fields = parseCsvLine(line);
+        } catch (IllegalArgumentException ex) {
+            return new Row(lineNumber, null, ex.getMessage());
+        }
+        if (fields.size() > header.size()) {
+            return new Row(lineNumber, null, "Expected " + header.size() + " fields but found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            values.put(header.get(i), fields.get(i).isEmpty() ? null : fields.get(i));
+        }
+        return new Row(lineNumber, values, null);
+    }
+
+    private Row jsonRow(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(stripBom(line));
+        } catch (JsonProcessingException ex) {
+            return new Row(lineNumber, null, "Malformed JSON: " + ex.getOriginalMessage());
+        }
+        if (node == null || !node.isObject()) {
+            return new Row(lineNumber, null, "Expected a JSON object");
+        }
+        Map<String, String> values = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            values.put(normalize(field.getKey()), value.isNull() ? null : value.asText());
+        }
+        return new Row(lineNumber, values, null);
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").replace(" ", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImportJobResponse;
+import com.example.shop.dto.ProductRequest;
+import com.example.shop.exception.ServiceBusyException;
+import com.example.shop.model.Category;
+import com.example.shop.model.Product;
+import com.example.shop.repository.CategoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product import from CSV or JSON-lines uploads.
+ *
+ * <p>The upload is spooled to a temp file and processed on a background thread: rows are read
+ * one line at a time, categories are resolved from a map loaded once per job, and valid rows are
+ * persisted in chunks of {@code catalog.import.chunk-size}, one transaction per chunk with
+ * Hibernate JDBC batching. If a chunk fails, its rows are retried one by one so only the bad rows
+ * are reported. Product caches are invalidated once, when the job ends.
+ *
+ * <p>Jobs are tracked in memory, so their progress is only known to the instance that accepted
+ * the upload. When the executor queue is full, new imports are refused with a retry hint.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Duration JOB_RETENTION = Duration.ofHours(24);
+    private static final Duration RETRY_AFTER = Duration.ofMinutes(1);
+
+    private final CategoryRepository categoryRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ProductCacheInvalidator cacheInvalidator;
+    private final CategoryCountService categoryCountService;
+    private final TaskExecutor importExecutor;
+    private final int chunkSize;
+    private final Map<String, ProductImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ProductImportService(CategoryRepository categoryRepository,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                ProductCacheInvalidator cacheInvalidator,
+                                CategoryCountService categoryCountService,
+                                @Qualifier("productImportExecutor") TaskExecutor importExecutor,
+                                @Value("${catalog.import.chunk-size:500}") int chunkSize) {
+        this.categoryRepository = categoryRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.cacheInvalidator = cacheInvalidator;
+        this.categoryCountService = categoryCountService;
+        this.importExecutor = importExecutor;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportJobResponse submit(MultipartFile file, String format) {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        ProductImportReader.Format detected = ProductImportReader.Format.detect(format, file.getOriginalFilename());
+
+        Path spool;
+        try {
+            spool = Files.createTempFile("product-import-", ".tmp");
+            file.transferTo(spool);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store import file. Please try again!", ex);
+        }
+
+        purgeExpiredJobs();
+        ProductImportJob job = new ProductImportJob(UUID.randomUUID().toString(), file.getOriginalFilename(),
+                detected, file.getSize());
+        jobs.put(job.getId(), job);
+        try {
+            importExecutor.execute(() -> run(job, spool));
+        } catch (TaskRejectedException ex) {
+            jobs.remove(job.getId());
+            deleteQuietly(spool);
+            throw new ServiceBusyException("Too many imports are queued; try again later", RETRY_AFTER);
+        }
+        return job.toResponse();
+    }
+
+    public ImportJobResponse getJob(String jobId) {
+        ProductImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("Import job not found");
+        }
+        return job.toResponse();
+    }
+
+    void run(ProductImportJob job, Path spool) {
+        job.started();
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(spool));
+             ProductImportReader reader = new ProductImportReader(
+                     new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                     job.getFormat(), objectMapper)) {
+            CategoryLookup categories = new CategoryLookup(categoryRepository.findAll());
+            List<PendingRow> chunk = new ArrayList<>(chunkSize);
+            ProductImportReader.Row row;
+            while ((row = reader.next()) != null) {
+                job.rowRead(in.count);
+                PendingRow pending = validate(job, row, categories);
+                if (pending != null) {
+                    chunk.add(pending);
+                }
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(job, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(job, chunk);
+            }
+            job.completed();
+        } catch (Exception ex) {
+            job.failed(rootMessage(ex));
+        } finally {
+            if (job.getImported() > 0) {
+                cacheInvalidator.allProductsChanged();
+                categoryCountService.productsChanged();
+            }
+            deleteQuietly(spool);
+        }
+    }
+
+    private record PendingRow(long line, ProductRequest request) {
+    }
+
+    private PendingRow validate(ProductImportJob job, ProductImportReader.Row row, CategoryLookup categories) {
+        if (row.error() != null) {
+            job.rowFailed(row.line(), row.error());
+            return null;
+        }
+        ProductRequest request;
+        try {
+            request = toRequest(row.values(), categories);
+        } catch (IllegalArgumentException ex) {
+            job.rowFailed(row.line(), ex.getMessage());
+            return null;
+        }
+        Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            job.rowFailed(row.line(), violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return new PendingRow(row.line(), request);
+    }
+
+    private ProductRequest toRequest(Map<String, String> values, CategoryLookup categories) {
+        ProductRequest request = new ProductRequest();
+        request.setName(values.get("name"));
+        request.setDescription(values.get("description"));
+        request.setPrice(parse(values.get("price"), "price", BigDecimal::new));
+        request.setStockQuantity(parse(values.get("stockquantity"), "stockQuantity", Integer::valueOf));
+        String active = values.get("active");
+        if (active != null) {
+            if (!active.equalsIgnoreCase("true") && !active.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException("active: must be true or false");
+            }
+            request.setActive(Boolean.parseBoolean(active));
+        }
+
+        Long categoryId = parse(values.get("categoryid"), "categoryId", Long::valueOf);
+        String categoryName = values.get("category") != null ? values.get("category") : values.get("categoryname");
+        if (categoryId != null) {
+            if (!categories.ids.contains(categoryId)) {
+                throw new IllegalArgumentException("Category not found: " + categoryId);
+            }
+        } else if (categoryName != null) {
+            categoryId = categories.idsByName.get(categoryName.trim().toLowerCase(Locale.ROOT));
+            if (categoryId == null) {
+                throw new IllegalArgumentException("Category not found: " + categoryName);
+            }
+        }
+        request.setCategoryId(categoryId);
+        return request;
+    }
+
+    private static <T> T parse(String value, String field, Function<String, T> parser) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return parser.apply(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(field + ": not a valid number");
+        }
+    }
+
+    private void writeChunk(ProductImportJob job, List<PendingRow> chunk) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistAll(chunk));
+            job.rowsImported(chunk.size());
+        } catch (RuntimeException chunkFailure) {
+            for (PendingRow row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persistAll(List.of(row)));
+                    job.rowsImported(1);
+                } catch (RuntimeException rowFailure) {
+                    job.rowFailed(row.line(), rootMessage(rowFailure));
+                }
+            }
+        }
+    }
+
+    private void persistAll(List<PendingRow> rows) {
+        for (PendingRow row : rows) {
+            ProductRequest request = row.request();
+            Product product = new Product();
+            product.setName(request.getName());
+            product.setDescription(request.getDescription());
+            product.setPrice(request.getPrice());
+            product.setStockQuantity(request.getStockQuantity());
+            // A reference avoids loading the category; its existence was checked against the lookup
+            product.setCategory(entityManager.getReference(Category.class, request.getCategoryId()));
+            product.setActive(request.getActive() == null || request.getActive());
+            entityManager.persist(product);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void purgeExpiredJobs() {
+        Instant cutoff = Instant.now().minus(JOB_RETENTION);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable root = ex;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // Temp files are cleaned up by the OS eventually
+        }
+    }
+
+    private static final class CategoryLookup {
+        private final Set<Long> ids;
+        private final Map<String, Long> idsByName = new HashMap<>();
+
+        CategoryLookup(List<Category> categories) {
+            this.ids = categories.stream().map(Category::getId).collect(Collectors.toSet());
+            for (Category category : categories) {
+                idsByName.put(category.getName().toLowerCase(Locale.ROOT), category.getId());
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductListingRow;
+import com.example.shop.repository.ProductRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-sorted product id arrays for the common listing shapes, so a category page is an array
+ * slice plus one batch lookup instead of ORDER BY ... OFFSET over the products table.
+ *
+ * <p>There is one listing for the whole catalog and one per category (covering its
+ * subcategories, like the category filter does), each sorted by createdAt, price, name and
+ * popularity, for all products and for active ones only. Descending orders read the same arrays
+ * backwards, and a price range on a price-sorted listing is two binary searches. When
+ * {@link PopularityService} publishes new scores, the popularity columns of the listings holding
+ * a product whose score changed are re-sorted.
+ *
+ * <p>The index is built from one projection query on first use, after bulk writes and whenever
+ * the category tree changes. Single-product writes arrive through {@link ProductListingListener}
+ * and are patched in after commit, before the search cache generations move on. Until then the
+ * writing transaction itself is served from the database so it sees its own changes.
+ *
+ * <p>Committed changes are broadcast as product ids; other nodes re-read just those rows and
+ * patch them into their own index. Bulk writes make every node rebuild.
+ */
+@Component
+public class ProductListingIndex {
+
+    /** Transactions staging more changes than this (imports) rebuild the index instead of patching it. */
+    static final int MAX_INCREMENTAL_CHANGES = 64;
+
+    private static final Long ALL = -1L;
+
+    /** One page of ids in listing order, and the size of the whole filtered listing. */
+    public record IdPage(List<Long> ids, long total) {
+    }
+
+    // nameKey is the name as the database query sorts it: lower(name), compared code unit by code unit
+    private record Entry(long id, Long categoryId, Instant createdAt, long priceCents, String nameKey,
+                         boolean active) {
+
+        static Entry of(Product product) {
+            Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+            return new Entry(product.getId(), categoryId, product.getCreatedAt(),
+                    cents(product.getPrice(), RoundingMode.HALF_UP), nameKey(product.getName()), product.isActive());
+        }
+
+        static Entry of(ProductListingRow row) {
+            return new Entry(row.getId(), row.getCategoryId(), row.getCreatedAt(),
+                    cents(row.getPrice(), RoundingMode.HALF_UP), nameKey(row.getName()),
+                    Boolean.TRUE.equals(row.getActive()));
+        }
+
+        private static String nameKey(String name) {
+            return name != null ? name.toLowerCase(Locale.ROOT) : null;
+        }
+    }
+
+    private enum SortKey {
+        CREATED_AT("createdAt"),
+        PRICE("price"),
+        NAME("name"),
+        // By score, like every other key ascending from the lowest; the most popular first is descending
+        POPULARITY("popularity");
+
+        private final String property;
+
+        SortKey(String property) {
+            this.property = property;
+        }
+
+        static SortKey of(String property) {
+            for (SortKey key : values()) {
+                if (key.property.equals(property)) {
+                    return key;
+                }
+            }
+            return null;
+        }
+
+        Comparator<Entry> order(Map<Long, Double> scores) {
+            Comparator<Entry> order = switch (this) {
+                case CREATED_AT -> Comparator.comparing(Entry::createdAt,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                case PRICE -> Comparator.comparingLong(Entry::priceCents);
+                case NAME -> Comparator.comparing(Entry::nameKey, Comparator.nullsFirst(Comparator.naturalOrder()));
+                case POPULARITY -> Comparator.comparingDouble(entry -> scores.getOrDefault(entry.id(), 0d));
+            };
+            // Ties are broken by id so every entry has exactly one position, as in the database query
+            return order.thenComparingLong(Entry::id);
+        }
+    }
+
+    /** Ids in ascending sort order; for the price sort also the prices in cents, for range searches. */
+    private record Column(long[] ids, long[] prices) {
+    }
+
+    /**
+     * A listing is one column per sort key and variant, indexed by {@link #slot}. Arrays are
+     * never modified once published: writers replace the whole listing in the map.
+     */
+    private static final Column[] EMPTY_LISTING = build(List.of(), Map.of());
+
+    private record State(CategoryTree tree, Map<Long, Entry> entries, Map<Long, Column[]> listings) {
+    }
+
+    private final ProductRepository productRepository;
+    private final CategoryHierarchy categoryHierarchy;
+    private final ClusterInvalidationBus invalidationBus;
+
+    private volatile State state;
+    private volatile boolean stale;
+    // Popularity scores the popularity columns are sorted by; replaced, never modified
+    private volatile Map<Long, Double> scores = Map.of();
+
+    public ProductListingIndex(ProductRepository productRepository, CategoryHierarchy categoryHierarchy,
+                               ClusterInvalidationBus invalidationBus) {
+        this.productRepository = productRepository;
+        this.categoryHierarchy = categoryHierarchy;
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * One page of the listing for this filter, or empty when the index cannot answer it: a
+     * sort on anything but a single createdAt, price, name or popularity order, a price range
+     * without the price sort, inactive-only listings, or a transaction with product writes of
+     * its own.
+     */
+    public Optional<IdPage> find(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Boolean active,
+                                 Pageable pageable) {
+        if (Boolean.FALSE.equals(active) || pageable.isUnpaged() || hasStagedChanges()) {
+            return Optional.empty();
+        }
+        List<Sort.Order> orders = pageable.getSort().toList();
+        if (orders.size() != 1) {
+            return Optional.empty();
+        }
+        Sort.Order order = orders.get(0);
+        SortKey key = SortKey.of(order.getProperty());
+        if (key == null || ((minPrice != null || maxPrice != null) && key != SortKey.PRICE)) {
+            return Optional.empty();
+        }
+
+        Column[] listing = state().listings().getOrDefault(categoryId != null ? categoryId : ALL, EMPTY_LISTING);
+        Column column = listing[slot(key, Boolean.TRUE.equals(active))];
+        int from = 0;
+        int to = column.ids().length;
+        if (minPrice != null) {
+            from = lowerBound(column.prices(), cents(minPrice, RoundingMode.CEILING));
+        }
+        if (maxPrice != null) {
+            to = upperBound(column.prices(), cents(maxPrice, RoundingMode.FLOOR));
+        }
+        int total = Math.max(0, to - from);
+        int size = (int) Math.max(0, Math.min(pageable.getPageSize(), total - pageable.getOffset()));
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int position = (int) pageable.getOffset() + i;
+            ids.add(column.ids()[order.isAscending() ? from + position : to - 1 - position]);
+        }
+        return Optional.of(new IdPage(ids, total));
+    }
+
+    /** A product row was inserted or updated. */
+    public void productWritten(Product product) {
+        stage(product.getId(), Entry.of(product));
+    }
+
+    public void productDeleted(Long productId) {
+        stage(productId, null);
+    }
+
+    /** Products changed without entity events (bulk UPDATEs); the index is rebuilt on the next read. */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            staged().rebuild = true;
+        } else {
+            stale = true;
+            invalidationBus.broadcast(InvalidationTopic.LISTINGS_REBUILD);
+        }
+    }
+
+    /**
+     * New popularity scores: the popularity columns of listings holding a product whose score
+     * changed are re-sorted; all other columns and listings stay as they are.
+     */
+    public synchronized void scoresChanged(Map<Long, Double> snapshot) {
+        Map<Long, Double> previous = scores;
+        scores = snapshot;
+        State current = state;
+        if (!isCurrent(current)) {
+            return;
+        }
+        Set<Long> changed = new HashSet<>(previous.keySet());
+        changed.addAll(snapshot.keySet());
+        Set<Long> affected = new HashSet<>();
+        for (Long productId : changed) {
+            Entry entry = current.entries().get(productId);
+            if (entry != null && !Objects.equals(previous.get(productId), snapshot.get(productId))) {
+                affected.addAll(listingKeys(current.tree(), entry));
+            }
+        }
+        Comparator<Entry> order = SortKey.POPULARITY.order(snapshot);
+        for (Long key : affected) {
+            current.listings().computeIfPresent(key, (k, listing) -> resort(listing, order, current.entries()));
+        }
+    }
+
+    /**
+     * Products written on another node. Their rows are re-read, ids no longer found count as
+     * deleted. Handled before the matching search page invalidation, which that node sends later
+     * on the same ordered channel.
+     */
+    @EventListener
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        switch (event.topic()) {
+            case LISTINGS -> {
+                if (!isCurrent(state)) {
+                    return;
+                }
+                Map<Long, Entry> changes = new LinkedHashMap<>();
+                event.ids().forEach(id -> changes.put(id, null));
+                for (ProductListingRow row : productRepository.findListingRowsByIdIn(event.ids())) {
+                    changes.put(row.getId(), Entry.of(row));
+                }
+                apply(changes);
+            }
+            case LISTINGS_REBUILD -> stale = true;
+            default -> {
+            }
+        }
+    }
+
+    private boolean hasStagedChanges() {
+        return TransactionSynchronizationManager.hasResource(this);
+    }
+
+    private void stage(Long productId, Entry entry) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(Collections.singletonMap(productId, entry));
+            invalidationBus.broadcast(InvalidationTopic.LISTINGS, List.of(productId));
+            return;
+        }
+        StagedChanges staged = staged();
+        if (!staged.rebuild) {
+            staged.changes.put(productId, entry);
+            if (staged.changes.size() > MAX_INCREMENTAL_CHANGES) {
+                staged.rebuild = true;
+                staged.changes.clear();
+            }
+        }
+    }
+
+    private StagedChanges staged() {
+        StagedChanges staged = (StagedChanges) TransactionSynchronizationManager.getResource(this);
+        if (staged == null) {
+            staged = new StagedChanges();
+            TransactionSynchronizationManager.bindResource(this, staged);
+            TransactionSynchronizationManager.registerSynchronization(staged);
+        }
+        return staged;
+    }
+
+    private final class StagedChanges implements TransactionSynchronization {
+
+        // A null value means the product was deleted
+        private final Map<Long, Entry> changes = new LinkedHashMap<>();
+        private boolean rebuild;
+
+        // Runs before the search cache invalidation, so no page is cached from the old listing
+        // under the new generation
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCommit() {
+            if (rebuild) {
+                stale = true;
+                invalidationBus.broadcast(InvalidationTopic.LISTINGS_REBUILD);
+            } else {
+                apply(changes);
+                invalidationBus.broadcast(InvalidationTopic.LISTINGS, changes.keySet());
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ProductListingIndex.this);
+        }
+    }
+
+    private boolean isCurrent(State current) {
+        return current != null && !stale && current.tree() == categoryHierarchy.current();
+    }
+
+    private State state() {
+        State current = state;
+        if (!isCurrent(current)) {
+            current = rebuild();
+        }
+        return current;
+    }
+
+    private synchronized State rebuild() {
+        State current = state;
+        if (isCurrent(current)) {
+            return current;
+        }
+        // Clear the flag before querying so a bulk write committed during the query triggers another rebuild
+        stale = false;
+        CategoryTree tree = categoryHierarchy.current();
+        Map<Long, Entry> entries = new HashMap<>();
+        Map<Long, List<Entry>> members = new HashMap<>();
+        for (ProductListingRow row : productRepository.findAllListingRows()) {
+            Entry entry = Entry.of(row);
+            entries.put(entry.id(), entry);
+            for (Long key : listingKeys(tree, entry)) {
+                members.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+            }
+        }
+        Map<Long, Column[]> listings = new ConcurrentHashMap<>();
+        Map<Long, Double> currentScores = scores;
+        members.forEach((key, list) -> listings.put(key, build(list, currentScores)));
+        current = new State(tree, entries, listings);
+        state = current;
+        return current;
+    }
+
+    /**
+     * Patches committed single-product changes into the current listings. Changes already
+     * contained in the index (a rebuild that read them) are skipped, as are writes that touch none
+     * of the indexed columns, such as stock updates.
+     */
+    private synchronized void apply(Map<Long, Entry> changes) {
+        State current = state;
+        if (!isCurrent(current)) {
+            // Not built yet, or rebuilt from the database on the next read anyway
+            return;
+        }
+        Map<Long, Entry> entries = current.entries();
+        changes.forEach((productId, entry) -> {
+            Entry previous = entries.get(productId);
+            if (Objects.equals(previous, entry)) {
+                return;
+            }
+            if (previous != null) {
+                for (Long key : listingKeys(current.tree(), previous)) {
+                    current.listings().computeIfPresent(key,
+                            (k, listing) -> remove(listing, previous, entries, scores));
+                }
+                entries.remove(productId);
+            }
+            if (entry != null) {
+                entries.put(productId, entry);
+                for (Long key : listingKeys(current.tree(), entry)) {
+                    current.listings().compute(key,
+                            (k, listing) -> insert(listing != null ? listing : EMPTY_LISTING, entry, entries, scores));
+                }
+            }
+        });
+    }
+
+    private static List<Long> listingKeys(CategoryTree tree, Entry entry) {
+        List<Long> keys = new ArrayList<>();
+        keys.add(ALL);
+        if (entry.categoryId() != null) {
+            keys.addAll(tree.ancestorsOrSelf(entry.categoryId()));
+        }
+        return keys;
+    }
+
+    private static int slot(SortKey key, boolean activeOnly) {
+        return key.ordinal() * 2 + (activeOnly ? 1 : 0);
+    }
+
+    private static Column[] build(List<Entry> members, Map<Long, Double> scores) {
+        Column[] listing = new Column[SortKey.values().length * 2];
+        for (SortKey key : SortKey.values()) {
+            List<Entry> sorted = new ArrayList<>(members);
+            sorted.sort(key.order(scores));
+            listing[slot(key, false)] = column(key, sorted);
+            listing[slot(key, true)] = column(key, sorted.stream().filter(Entry::active).toList());
+        }
+        return listing;
+    }
+
+    private static Column column(SortKey key, List<Entry> sorted) {
+        long[] ids = new long[sorted.size()];
+        long[] prices = key == SortKey.PRICE ? new long[sorted.size()] : null;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = sorted.get(i).id();
+            if (prices != null) {
+                prices[i] = sorted.get(i).priceCents();
+            }
+        }
+        return new Column(ids, prices);
+    }
+
+    private static Column[] remove(Column[] listing, Entry entry, Map<Long, Entry> entries,
+                                   Map<Long, Double> scores) {
+        Column[] updated = listing.clone();
+        for (SortKey key : SortKey.values()) {
+            Comparator<Entry> order = key.order(scores);
+            for (boolean activeOnly : new boolean[] {false, true}) {
+                Column column = listing[slot(key, activeOnly)];
+                int position = search(column.ids(), entry, order, entries);
+                if (position >= 0) {
+                    updated[slot(key, activeOnly)] = new Column(without(column.ids(), position),
+                            column.prices() != null ? without(column.prices(), position) : null);
+                }
+            }
+        }
+        return updated;
+    }
+
+    private static Column[] insert(Column[] listing, Entry entry, Map<Long, Entry> entries,
+                                   Map<Long, Double> scores) {
+        Column[] updated = listing.clone();
+        for (SortKey key : SortKey.values()) {
+            Comparator<Entry> order = key.order(scores);
+            for (boolean activeOnly : new boolean[] {false, true}) {
+                if (activeOnly && !entry.active()) {
+                    continue;
+                }
+                Column column = listing[slot(key, activeOnly)];
+                int position = search(column.ids(), entry, order, entries);
+                if (position < 0) {
+                    position = -(position + 1);
+                    updated[slot(key, activeOnly)] = new Column(with(column.ids(), position, entry.id()),
+                            column.prices() != null ? with(column.prices(), position, entry.priceCents()) : null);
+                }
+            }
+        }
+        return updated;
+    }
+
+    private static Column[] resort(Column[] listing, Comparator<Entry> order, Map<Long, Entry> entries) {
+        Column[] updated = listing.clone();
+        for (boolean activeOnly : new boolean[] {false, true}) {
+            int slot = slot(SortKey.POPULARITY, activeOnly);
+            List<Entry> sorted = new ArrayList<>(listing[slot].ids().length);
+            for (long id : listing[slot].ids()) {
+                sorted.add(entries.get(id));
+            }
+            sorted.sort(order);
+            updated[slot] = column(SortKey.POPULARITY, sorted);
+        }
+        return updated;
+    }
+
+    /** {@link Arrays#binarySearch} over ids, comparing the entries they stand for. */
+    private static int search(long[] ids, Entry entry, Comparator<Entry> order, Map<Long, Entry> entries) {
+        int low = 0;
+        int high = ids.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = order.compare(entries.get(ids[mid]), entry);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static long[] without(long[] values, int position) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, position);
+        System.arraycopy(values, position + 1, result, position, result.length - position);
+        return result;
+    }
+
+    private static long[] with(long[] values, int position, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        return result;
+    }
+
+    /** First position holding a value of at least {@code key}. */
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** First position holding a value greater than {@code key}. */
+    private static int upperBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long cents(BigDecimal price, RoundingMode rounding) {
+        if (price == null) {
+            return 0L;
+        }
+        BigInteger cents = price.setScale(2, rounding).unscaledValue();
+        if (cents.bitLength() < Long.SIZE) {
+            return cents.longValue();
+        }
+        return cents.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.shop.service;
+
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+
+/**
+ * Cache key for a product search page. The generation is taken from {@link ProductCacheInvalidator}
+ * when the key is built, so bumping it makes stale pages unreachable without touching other entries.
+ */
+public record ProductSearchKey(
+        long generation,
+        Long categoryId,
+        String search,
+        BigDecimal minPrice,
+        BigDecimal maxPrice,
+        Boolean active,
+        Boolean inStock,
+        Pageable pageable
+) {
+}
@@ -6,30 +6,56 @@ import com.example.shop.model.Category;
 import com.example.shop.model.Product;
 import com.example.shop.repository.CategoryRepository;
 import com.example.shop.repository.ProductRepository;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 public class ProductService {
 
+    public static final int MAX_BATCH_SIZE = 500;
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductCacheInvalidator cacheInvalidator;
+    private final InventoryService inventoryService;
+    private final ProductByIdCache productByIdCache;
+    private final CategoryCountService categoryCountService;
+    private final ProductListingIndex listingIndex;
+    private final StoredFileService storedFileService;
 
     public ProductService(ProductRepository productRepository,
-                          CategoryRepository categoryRepository) {
+                          CategoryRepository categoryRepository,
+                          ProductCacheInvalidator cacheInvalidator,
+                          InventoryService inventoryService,
+                          ProductByIdCache productByIdCache,
+                          CategoryCountService categoryCountService,
+                          ProductListingIndex listingIndex,
+                          StoredFileService storedFileService) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
+        this.cacheInvalidator = cacheInvalidator;
+        this.inventoryService = inventoryService;
+        this.productByIdCache = productByIdCache;
+        this.categoryCountService = categoryCountService;
+        this.listingIndex = listingIndex;
+        this.storedFileService = storedFileService;
     }
 
     @Transactional
-    @CacheEvict(value = {"products", "productById"}, allEntries = true)
     public ProductResponse create(ProductRequest request) {
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new IllegalArgumentException("Category not found"));
@@ -45,14 +71,17 @@ public class ProductService {
         }
 
         Product saved = productRepository.save(product);
+        cacheInvalidator.productsChanged(category.getId());
+        categoryCountService.productsChanged();
         return toResponse(saved);
     }
 
     @Transactional
-    @CacheEvict(value = {"products", "productById"}, allEntries = true)
     public ProductResponse update(Long id, ProductRequest request) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+        Long previousCategoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        int previousStock = product.getStockQuantity();
 
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new IllegalArgumentException("Category not found"));
@@ -67,16 +96,25 @@ public class ProductService {
         }
 
         Product saved = productRepository.save(product);
+        cacheInvalidator.evictProduct(id);
+        cacheInvalidator.productsChanged(previousCategoryId, category.getId());
+        categoryCountService.productsChanged();
+        inventoryService.stockChanged(id, category.getId(), previousStock, saved.getStockQuantity());
         return toResponse(saved);
     }
 
     @Transactional
-    @CacheEvict(value = {"products", "productById"}, allEntries = true)
     public void delete(Long id) {
-        if (!productRepository.existsById(id)) {
-            throw new IllegalArgumentException("Product not found");
-        }
-        productRepository.deleteById(id);
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        productRepository.delete(product);
+        storedFileService.release(product.getImageUrl(), product.getImageThumbnailUrl(), product.getImageCardUrl(),
+                product.getImageDetailUrl());
+        cacheInvalidator.evictProduct(id);
+        cacheInvalidator.productsChanged(categoryId);
+        categoryCountService.productsChanged();
+        inventoryService.evict(id);
     }
 
     @Cacheable(value = "productById", key = "#id")
@@ -87,17 +125,117 @@ public class ProductService {
         return toResponse(product);
     }
 
+    /**
+     * Resolves many products at once: cache hits come from one multi-get on "productById", and
+     * all misses are loaded (with their categories) by a single IN query and cached. Results keep
+     * the order of the requested ids; unknown ids are skipped.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductResponse> getByIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (distinctIds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " products can be requested at once");
+        }
+
+        Map<Long, ProductResponse> found = new HashMap<>(productByIdCache.getAllPresent(distinctIds));
+        List<Long> misses = distinctIds.stream()
+                .filter(id -> !found.containsKey(id))
+                .toList();
+        if (!misses.isEmpty()) {
+            List<ProductResponse> loaded = new ArrayList<>();
+            for (Product product : productRepository.findAllWithCategoryByIdIn(misses)) {
+                ProductResponse response = toResponse(product);
+                found.put(product.getId(), response);
+                loaded.add(response);
+            }
+            productByIdCache.putAll(loaded);
+        }
+
+        return distinctIds.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Current category of each product, read through {@link #getByIds} in batches of
+     * {@link #MAX_BATCH_SIZE}. Carts and orders both price category promotions from this, so a
+     * product moved to another category is discounted the same way in the cart and at checkout.
+     * Unknown ids and uncategorised products are absent from the map.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getCategoryIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, Long> categoryIds = new HashMap<>();
+        for (int from = 0; from < distinctIds.size(); from += MAX_BATCH_SIZE) {
+            List<Long> batch = distinctIds.subList(from, Math.min(from + MAX_BATCH_SIZE, distinctIds.size()));
+            for (ProductResponse product : getByIds(batch)) {
+                if (product.getCategoryId() != null) {
+                    categoryIds.put(product.getId(), product.getCategoryId());
+                }
+            }
+        }
+        return categoryIds;
+    }
+
     @Transactional
-    @CacheEvict(value = {"products", "productById"}, allEntries = true)
     public ProductResponse updateImage(Long id, String imageUrl) {
+        return updateImage(id, imageUrl, Map.of());
+    }
+
+    /** Sets the image together with variants already generated from it, in one write. */
+    @Transactional
+    public ProductResponse updateImage(Long id, String imageUrl, Map<ImageVariant, String> variantUrls) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+        // Released files stay on disk until the upload sweeper finds them unreferenced
+        storedFileService.release(product.getImageUrl(), product.getImageThumbnailUrl(), product.getImageCardUrl(),
+                product.getImageDetailUrl());
+        storedFileService.acquire(imageUrl);
+        if (!variantUrls.isEmpty()) {
+            storedFileService.acquire(variantUrls.get(ImageVariant.THUMBNAIL), variantUrls.get(ImageVariant.CARD),
+                    variantUrls.get(ImageVariant.DETAIL));
+        }
         product.setImageUrl(imageUrl);
+        // The old variants show the previous image; without new ones clients fall back to imageUrl
+        product.setImageThumbnailUrl(variantUrls.get(ImageVariant.THUMBNAIL));
+        product.setImageCardUrl(variantUrls.get(ImageVariant.CARD));
+        product.setImageDetailUrl(variantUrls.get(ImageVariant.DETAIL));
         Product saved = productRepository.save(product);
+        cacheInvalidator.evictProduct(id);
+        cacheInvalidator.productContentChanged(id);
         return toResponse(saved);
     }
 
-    @Cacheable(value = "products")
+    /**
+     * Records the resized variants generated from {@code sourceImageUrl}. Ignored when the
+     * product has been given another image (or deleted) in the meantime.
+     */
+    @Transactional
+    public void updateImageVariants(Long id, String sourceImageUrl, Map<ImageVariant, String> variantUrls) {
+        Product product = productRepository.findById(id).orElse(null);
+        if (product == null || !Objects.equals(product.getImageUrl(), sourceImageUrl)) {
+            return;
+        }
+        storedFileService.release(product.getImageThumbnailUrl(), product.getImageCardUrl(), product.getImageDetailUrl());
+        storedFileService.acquire(variantUrls.get(ImageVariant.THUMBNAIL), variantUrls.get(ImageVariant.CARD),
+                variantUrls.get(ImageVariant.DETAIL));
+        product.setImageThumbnailUrl(variantUrls.get(ImageVariant.THUMBNAIL));
+        product.setImageCardUrl(variantUrls.get(ImageVariant.CARD));
+        product.setImageDetailUrl(variantUrls.get(ImageVariant.DETAIL));
+        productRepository.save(product);
+        cacheInvalidator.evictProduct(id);
+        cacheInvalidator.productContentChanged(id);
+    }
+
+    @Cacheable(value = "products",
+            key = "@productCacheInvalidator.searchKey(#categoryId, #search, #minPrice, #maxPrice, #active, #inStock, #pageable)")
     @Transactional(readOnly = true)
     public Page<ProductResponse> search(
             Long categoryId,
@@ -108,6 +246,16 @@ public class ProductService {
             Boolean inStock,
             Pageable pageable
     ) {
+        // Plain category listings are slices of the pre-sorted id arrays; anything else is a query
+        if ((search == null || search.isBlank()) && inStock == null
+                && (pageable.isUnpaged() || pageable.getPageSize() <= MAX_BATCH_SIZE)) {
+            Optional<ProductListingIndex.IdPage> listed =
+                    listingIndex.find(categoryId, minPrice, maxPrice, active, pageable);
+            if (listed.isPresent()) {
+                return new PageImpl<>(getByIds(listed.get().ids()), pageable, listed.get().total());
+            }
+        }
+
         Specification<Product> spec = Specification.where(ProductSpecification.hasCategory(categoryId))
                 .and(ProductSpecification.nameOrDescriptionContains(search))
                 .and(ProductSpecification.priceGreaterThanOrEqual(minPrice))
@@ -115,8 +263,12 @@ public class ProductService {
                 .and(ProductSpecification.active(active))
                 .and(ProductSpecification.inStock(inStock));
 
-        return productRepository.findAll(spec, pageable)
-                .map(this::toResponse);
+        return productRepository.searchResponses(spec, pageable);
+    }
+
+    /** Generation of the search cache that pages for this category filter are served from. */
+    public long searchGeneration(Long categoryId) {
+        return cacheInvalidator.generation(categoryId);
     }
 
     public ProductResponse toResponse(Product product) {
@@ -132,6 +284,9 @@ public class ProductService {
                 .categoryId(categoryId)
                 .categoryName(categoryName)
                 .imageUrl(product.getImageUrl())
+                .imageThumbnailUrl(product.getImageThumbnailUrl())
+                .imageCardUrl(product.getImageCardUrl())
+                .imageDetailUrl(product.getImageDetailUrl())
                 .active(product.isActive())
                 .createdAt(product.getCreatedAt())
                 .updatedAt(product.getUpdatedAt())
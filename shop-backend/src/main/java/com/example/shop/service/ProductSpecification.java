@@ -1,15 +1,36 @@
 package com.example.shop.service;
 
+import com.example.shop.model.CategoryClosure;
 import com.example.shop.model.Product;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 
 public class ProductSpecification {
 
+    /** Matches products in the category or any of its subcategories, via the closure table. */
     public static Specification<Product> hasCategory(Long categoryId) {
-        return (root, query, cb) ->
-                categoryId == null ? null : cb.equal(root.get("category").get("id"), categoryId);
+        return (root, query, cb) -> {
+            if (categoryId == null) {
+                return null;
+            }
+            return inCategoryTree(root, query, cb, categoryId);
+        };
+    }
+
+    /** The category-tree predicate on its own, so bulk updates can use it without a select query. */
+    public static Predicate inCategoryTree(Root<Product> root, CommonAbstractCriteria query,
+                                           CriteriaBuilder cb, Long categoryId) {
+        Subquery<Long> descendants = query.subquery(Long.class);
+        Root<CategoryClosure> closure = descendants.from(CategoryClosure.class);
+        descendants.select(closure.get("descendantId"))
+                .where(cb.equal(closure.get("ancestorId"), categoryId));
+        return root.get("category").get("id").in(descendants);
     }
 
     public static Specification<Product> nameOrDescriptionContains(String search) {
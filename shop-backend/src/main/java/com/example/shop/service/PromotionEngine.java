@@ -0,0 +1,78 @@
+package com.example.shop.service;
+
+import com.example.shop.repository.PromotionRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prices carts and orders with the active promotions. Both {@link CartService} and
+ * {@link OrderService} price through {@link #price}, so given the same lines and coupon a cart
+ * and the order placed from it get the same discounts.
+ *
+ * <p>Rules are loaded and compiled into {@link CompiledPromotions} whenever they change, here or
+ * on another node. The compiled index also depends on the category hierarchy; when
+ * {@link CategoryHierarchy} publishes a new snapshot the index is rebuilt from the rules already
+ * in memory, on the next pricing call.
+ */
+@Service
+public class PromotionEngine {
+
+    private final PromotionRepository promotionRepository;
+    private final CategoryHierarchy categoryHierarchy;
+    private final AtomicReference<CompiledPromotions> compiled = new AtomicReference<>(CompiledPromotions.EMPTY);
+
+    public PromotionEngine(PromotionRepository promotionRepository, CategoryHierarchy categoryHierarchy) {
+        this.promotionRepository = promotionRepository;
+        this.categoryHierarchy = categoryHierarchy;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void reload() {
+        publish(load());
+    }
+
+    /** Promotions changed on another node. */
+    @EventListener(condition = "#event.topic() == T(com.example.shop.service.InvalidationTopic).PROMOTIONS")
+    @Transactional(readOnly = true)
+    public void onClusterInvalidation(ClusterInvalidationEvent event) {
+        reload();
+    }
+
+    /** Compiles the active rules, including uncommitted writes of the calling transaction. */
+    CompiledPromotions load() {
+        List<PromotionRule> rules = promotionRepository.findByActiveTrue().stream()
+                .map(PromotionRule::of)
+                .toList();
+        return CompiledPromotions.compile(rules, categoryHierarchy.current());
+    }
+
+    void publish(CompiledPromotions promotions) {
+        compiled.set(promotions);
+    }
+
+    public PricedCart price(List<PricingLine> lines, String couponCode) {
+        return current().price(lines, couponCode, System.currentTimeMillis());
+    }
+
+    public boolean isValidCoupon(String couponCode) {
+        return current().isValidCoupon(couponCode, System.currentTimeMillis());
+    }
+
+    private CompiledPromotions current() {
+        CompiledPromotions current = compiled.get();
+        CategoryTree tree = categoryHierarchy.current();
+        if (current.tree() != tree && !current.rules().isEmpty()) {
+            CompiledPromotions rebuilt = CompiledPromotions.compile(current.rules(), tree);
+            // A concurrent reload wins; its index is built from newer rules
+            compiled.compareAndSet(current, rebuilt);
+            return rebuilt;
+        }
+        return current;
+    }
+}
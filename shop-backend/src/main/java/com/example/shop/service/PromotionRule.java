@@ -0,0 +1,107 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Promotion;
+import com.example.shop.model.PromotionTier;
+import com.example.shop.model.PromotionType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * An immutable, pre-digested {@link Promotion}: amounts in minor units (cents) and percentages in
+ * basis points, so evaluating it is plain long arithmetic.
+ */
+final class PromotionRule {
+
+    final long id;
+    final String name;
+    final PromotionType type;
+    final Long productId;
+    final Long categoryId;
+    final String couponCode;
+    private final int basisPoints;
+    private final int buyQuantity;
+    private final int getQuantity;
+    // Ascending thresholds, and the basis points each one unlocks
+    private final long[] tierMinimums;
+    private final int[] tierBasisPoints;
+    private final long startsAt;
+    private final long endsAt;
+
+    PromotionRule(long id, String name, PromotionType type, Long productId, Long categoryId, String couponCode,
+                  BigDecimal percentOff, int buyQuantity, int getQuantity, List<PromotionTier> tiers,
+                  Instant startsAt, Instant endsAt) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.productId = productId;
+        this.categoryId = categoryId;
+        this.couponCode = couponCode;
+        this.basisPoints = percentOff != null ? basisPoints(percentOff) : 0;
+        this.buyQuantity = buyQuantity;
+        this.getQuantity = getQuantity;
+        this.tierMinimums = new long[tiers.size()];
+        this.tierBasisPoints = new int[tiers.size()];
+        List<PromotionTier> sorted = tiers.stream()
+                .sorted((a, b) -> a.getMinSubtotal().compareTo(b.getMinSubtotal()))
+                .toList();
+        for (int i = 0; i < sorted.size(); i++) {
+            tierMinimums[i] = cents(sorted.get(i).getMinSubtotal());
+            tierBasisPoints[i] = basisPoints(sorted.get(i).getPercentOff());
+        }
+        this.startsAt = startsAt != null ? startsAt.toEpochMilli() : Long.MIN_VALUE;
+        this.endsAt = endsAt != null ? endsAt.toEpochMilli() : Long.MAX_VALUE;
+    }
+
+    static PromotionRule of(Promotion promotion) {
+        return new PromotionRule(promotion.getId(), promotion.getName(), promotion.getType(),
+                promotion.getProductId(), promotion.getCategoryId(), promotion.getCouponCode(),
+                promotion.getPercentOff(),
+                promotion.getBuyQuantity() != null ? promotion.getBuyQuantity() : 0,
+                promotion.getGetQuantity() != null ? promotion.getGetQuantity() : 0,
+                promotion.getTiers(), promotion.getStartsAt(), promotion.getEndsAt());
+    }
+
+    boolean isLive(long now) {
+        return startsAt <= now && now < endsAt;
+    }
+
+    /**
+     * Discount on a line, never more than {@code amount}, the part of the line still to pay.
+     * {@code scopeSubtotal} is the gross subtotal of all lines this rule matches (tiered rules only).
+     */
+    long discount(long amount, long unitPrice, int quantity, long scopeSubtotal) {
+        long discount = switch (type) {
+            case PERCENTAGE -> percentOf(amount, basisPoints);
+            case BUY_X_GET_Y -> quantity / (buyQuantity + getQuantity) * (long) getQuantity * unitPrice;
+            case TIERED -> percentOf(amount, tierBasisPoints(scopeSubtotal));
+        };
+        return Math.min(discount, amount);
+    }
+
+    private int tierBasisPoints(long subtotal) {
+        int reached = 0;
+        for (int i = 0; i < tierMinimums.length && tierMinimums[i] <= subtotal; i++) {
+            reached = tierBasisPoints[i];
+        }
+        return reached;
+    }
+
+    private static long percentOf(long amount, int basisPoints) {
+        return (amount * basisPoints + 5_000) / 10_000;
+    }
+
+    static long cents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    static BigDecimal money(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static int basisPoints(BigDecimal percent) {
+        return percent.movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.PromotionRequest;
+import com.example.shop.dto.PromotionResponse;
+import com.example.shop.dto.PromotionTierDto;
+import com.example.shop.model.Promotion;
+import com.example.shop.model.PromotionTier;
+import com.example.shop.repository.CategoryRepository;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.PromotionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.shop.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Promotion CRUD. Every write recompiles the pricing index inside the transaction, publishes it
+ * to {@link PromotionEngine} after commit and tells the other nodes to reload theirs.
+ */
+@Service
+public class PromotionService {
+
+    private final PromotionRepository promotionRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final PromotionEngine promotionEngine;
+    private final ClusterInvalidationBus invalidationBus;
+
+    public PromotionService(PromotionRepository promotionRepository,
+                            ProductRepository productRepository,
+                            CategoryRepository categoryRepository,
+                            PromotionEngine promotionEngine,
+                            ClusterInvalidationBus invalidationBus) {
+        this.promotionRepository = promotionRepository;
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.promotionEngine = promotionEngine;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @Transactional(readOnly = true)
+    public List<PromotionResponse> listAll() {
+        return promotionRepository.findAllByOrderByIdAsc().stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    @Transactional
+    public PromotionResponse create(PromotionRequest request) {
+        Promotion promotion = new Promotion();
+        apply(promotion, request);
+        Promotion saved = promotionRepository.save(promotion);
+        rulesChanged();
+        return toResponse(saved);
+    }
+
+    @Transactional
+    public PromotionResponse update(Long id, PromotionRequest request) {
+        Promotion promotion = promotionRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Promotion not found"));
+        apply(promotion, request);
+        Promotion saved = promotionRepository.save(promotion);
+        rulesChanged();
+        return toResponse(saved);
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        if (!promotionRepository.existsById(id)) {
+            throw new IllegalArgumentException("Promotion not found");
+        }
+        promotionRepository.deleteById(id);
+        rulesChanged();
+    }
+
+    private void apply(Promotion promotion, PromotionRequest request) {
+        validate(request);
+        promotion.setName(request.getName());
+        promotion.setType(request.getType());
+        promotion.setProductId(request.getProductId());
+        promotion.setCategoryId(request.getCategoryId());
+        promotion.setCouponCode(CompiledPromotions.normalizeCoupon(request.getCouponCode()));
+        promotion.setPercentOff(request.getPercentOff());
+        promotion.setBuyQuantity(request.getBuyQuantity());
+        promotion.setGetQuantity(request.getGetQuantity());
+        List<PromotionTier> tiers = new ArrayList<>();
+        if (request.getTiers() != null) {
+            for (PromotionTierDto tier : request.getTiers()) {
+                tiers.add(new PromotionTier(tier.getMinSubtotal(), tier.getPercentOff()));
+            }
+        }
+        if (promotion.getTiers() == null) {
+            promotion.setTiers(tiers);
+        } else {
+            promotion.getTiers().clear();
+            promotion.getTiers().addAll(tiers);
+        }
+        promotion.setStartsAt(request.getStartsAt());
+        promotion.setEndsAt(request.getEndsAt());
+        if (request.getActive() != null) {
+            promotion.setActive(request.getActive());
+        }
+    }
+
+    private void validate(PromotionRequest request) {
+        if (request.getProductId() != null && request.getCategoryId() != null) {
+            throw new IllegalArgumentException("A promotion applies to a product or a category, not both");
+        }
+        if (request.getProductId() != null && !productRepository.existsById(request.getProductId())) {
+            throw new IllegalArgumentException("Product not found");
+        }
+        if (request.getCategoryId() != null && !categoryRepository.existsById(request.getCategoryId())) {
+            throw new IllegalArgumentException("Category not found");
+        }
+        if (request.getStartsAt() != null && request.getEndsAt() != null
+                && !request.getStartsAt().isBefore(request.getEndsAt())) {
+            throw new IllegalArgumentException("startsAt must be before endsAt");
+        }
+        switch (request.getType()) {
+            case PERCENTAGE -> {
+                if (request.getPercentOff() == null) {
+                    throw new IllegalArgumentException("percentOff is required for PERCENTAGE promotions");
+                }
+            }
+            case BUY_X_GET_Y -> {
+                if (request.getBuyQuantity() == null || request.getGetQuantity() == null) {
+                    throw new IllegalArgumentException("buyQuantity and getQuantity are required for BUY_X_GET_Y promotions");
+                }
+            }
+            case TIERED -> {
+                if (request.getTiers() == null || request.getTiers().isEmpty()) {
+                    throw new IllegalArgumentException("tiers are required for TIERED promotions");
+                }
+            }
+        }
+    }
+
+    private void rulesChanged() {
+        CompiledPromotions compiled = promotionEngine.load();
+        afterCommit(() -> {
+            promotionEngine.publish(compiled);
+            invalidationBus.broadcast(InvalidationTopic.PROMOTIONS);
+        });
+    }
+
+    public PromotionResponse toResponse(Promotion promotion) {
+        return PromotionResponse.builder()
+                .id(promotion.getId())
+                .name(promotion.getName())
+                .type(promotion.getType())
+                .productId(promotion.getProductId())
+                .categoryId(promotion.getCategoryId())
+                .couponCode(promotion.getCouponCode())
+                .percentOff(promotion.getPercentOff())
+                .buyQuantity(promotion.getBuyQuantity())
+                .getQuantity(promotion.getGetQuantity())
+                .tiers(promotion.getTiers().stream()
+                        .map(tier -> new PromotionTierDto(tier.getMinSubtotal(), tier.getPercentOff()))
+                        .toList())
+                .startsAt(promotion.getStartsAt())
+                .endsAt(promotion.getEndsAt())
+                .active(promotion.isActive())
+                .createdAt(promotion.getCreatedAt())
+                .updatedAt(promotion.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImageUploadResponse;
+import com.example.shop.dto.UploadInitRequest;
+import com.example.shop.dto.UploadSessionResponse;
+import com.example.shop.exception.ConflictException;
+import com.example.shop.exception.ServiceBusyException;
+import com.example.shop.model.UploadChunk;
+import com.example.shop.model.UploadSession;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.UploadChunkRepository;
+import com.example.shop.repository.UploadSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Chunked, resumable uploads for files too large for a single multipart request.
+ *
+ * <p>A client starts an upload with its total size, then sends the chunks in any order and in
+ * parallel. Each chunk is streamed from the request straight to its offset in a preallocated part
+ * file, so memory use does not depend on the chunk or file size. A chunk is recorded only once it
+ * has been fully written and forced to disk, so after a dropped connection or a restart the client
+ * asks which chunks arrived and resends the rest. Completing the upload hands the part file to
+ * {@link ImageUploadService}, which validates, hashes, transforms and publishes it in the
+ * background like any other image upload.
+ *
+ * <p>Uploads not completed within {@code file.resumable.expiry} are deleted.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadChunkRepository chunkRepository;
+    private final ProductRepository productRepository;
+    private final FileStorageService fileStorageService;
+    private final ImageUploadService imageUploadService;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxSize;
+    private final int defaultChunkSize;
+    private final int maxChunkSize;
+    private final Duration expiry;
+
+    public ResumableUploadService(UploadSessionRepository sessionRepository,
+                                  UploadChunkRepository chunkRepository,
+                                  ProductRepository productRepository,
+                                  FileStorageService fileStorageService,
+                                  ImageUploadService imageUploadService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${file.resumable.max-size:2GB}") DataSize maxSize,
+                                  @Value("${file.resumable.chunk-size:8MB}") DataSize defaultChunkSize,
+                                  @Value("${file.resumable.max-chunk-size:64MB}") DataSize maxChunkSize,
+                                  @Value("${file.resumable.expiry:24h}") Duration expiry) {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+        this.productRepository = productRepository;
+        this.fileStorageService = fileStorageService;
+        this.imageUploadService = imageUploadService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize.toBytes();
+        this.defaultChunkSize = Math.toIntExact(defaultChunkSize.toBytes());
+        this.maxChunkSize = Math.toIntExact(maxChunkSize.toBytes());
+        this.expiry = expiry;
+    }
+
+    public UploadSessionResponse start(UploadInitRequest request) {
+        if (!productRepository.existsById(request.getProductId())) {
+            throw new IllegalArgumentException("Product not found with id: " + request.getProductId());
+        }
+        long size = request.getSize();
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File is larger than the maximum of " + maxSize + " bytes");
+        }
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > maxChunkSize) {
+            throw new IllegalArgumentException(
+                    "Chunk size must be between " + MIN_CHUNK_SIZE + " and " + maxChunkSize + " bytes");
+        }
+
+        UploadSession session = UploadSession.newSession(UUID.randomUUID().toString());
+        session.setProductId(request.getProductId());
+        session.setFileName(request.getFileName());
+        session.setTotalSize(size);
+        session.setChunkSize(chunkSize);
+        session.setChunkCount(Math.toIntExact((size + chunkSize - 1) / chunkSize));
+        session.setCreatedAt(Instant.now());
+        // Sized up front, so chunks can be written at their offsets in any order
+        fileStorageService.createPartFile(session.getId(), size);
+        try {
+            sessionRepository.save(session);
+        } catch (RuntimeException ex) {
+            deleteQuietly(fileStorageService.partFile(session.getId()));
+            throw ex;
+        }
+        return toResponse(session, List.of());
+    }
+
+    /**
+     * Writes one chunk at its offset. The body must be exactly the chunk's length; sending a chunk
+     * again overwrites it with the same bytes, so retries are safe.
+     */
+    public void writeChunk(String uploadId, int index, InputStream body) {
+        UploadSession session = findSession(uploadId);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException(
+                    "Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        long length = session.chunkLength(index);
+        long start = (long) index * session.getChunkSize();
+        long end = start + length;
+
+        // Channels.newChannel copies through a small fixed buffer
+        try (FileChannel file = FileChannel.open(fileStorageService.partFile(uploadId), StandardOpenOption.WRITE);
+             ReadableByteChannel in = Channels.newChannel(body)) {
+            long position = start;
+            while (position < end) {
+                long written = file.transferFrom(in, position, end - position);
+                if (written == 0) {
+                    break;
+                }
+                position += written;
+            }
+            if (position != end || body.read() != -1) {
+                throw new IllegalArgumentException("Chunk " + index + " must be exactly " + length + " bytes");
+            }
+            file.force(false);
+        } catch (NoSuchFileException ex) {
+            throw new IllegalArgumentException("Upload not found: " + uploadId);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        UploadChunk chunk = new UploadChunk(uploadId, index);
+        if (!chunkRepository.existsById(chunk.getId())) {
+            try {
+                chunkRepository.save(chunk);
+            } catch (DataIntegrityViolationException ex) {
+                // The same chunk was retried concurrently and the other request recorded it
+            }
+        }
+    }
+
+    public UploadSessionResponse getStatus(String uploadId) {
+        return toResponse(findSession(uploadId), chunkRepository.findChunkIndexes(uploadId));
+    }
+
+    /**
+     * Ends the upload once every chunk has arrived and queues the assembled file as the product's
+     * image. Of concurrent completes only the first claims the upload; the others get a conflict.
+     * The file, which can be gigabytes, is processed off the request thread.
+     */
+    public ImageUploadResponse complete(String uploadId) {
+        UploadSession session = findSession(uploadId);
+        long missing = session.getChunkCount() - chunkRepository.countBySessionId(uploadId);
+        if (missing > 0) {
+            throw new IllegalArgumentException("Upload is missing " + missing + " of "
+                    + session.getChunkCount() + " chunks");
+        }
+        claim(uploadId);
+        try {
+            return imageUploadService.submitLocalFile(session.getProductId(), session.getFileName(),
+                    fileStorageService.partFile(uploadId));
+        } catch (ServiceBusyException ex) {
+            // Nothing is lost; the client completes the same upload again later
+            restore(session);
+            throw ex;
+        }
+    }
+
+    public void cancel(String uploadId) {
+        findSession(uploadId);
+        deleteSession(uploadId);
+        deleteQuietly(fileStorageService.partFile(uploadId));
+    }
+
+    /**
+     * Deletes uploads started longer than {@code expiry} ago, and part files left without an upload
+     * (a crash between creating the file and saving the upload).
+     */
+    @Scheduled(fixedDelayString = "${file.resumable.purge-interval:PT1H}",
+            initialDelayString = "${file.resumable.purge-interval:PT1H}")
+    public int purgeExpired() {
+        Instant cutoff = Instant.now().minus(expiry);
+        int purged = 0;
+        for (UploadSession session : sessionRepository.findByCreatedAtBefore(cutoff)) {
+            deleteSession(session.getId());
+            deleteQuietly(fileStorageService.partFile(session.getId()));
+            purged++;
+        }
+        for (String uploadId : fileStorageService.listPartsModifiedBefore(cutoff)) {
+            if (!sessionRepository.existsById(uploadId)) {
+                deleteQuietly(fileStorageService.partFile(uploadId));
+            }
+        }
+        return purged;
+    }
+
+    private UploadSession findSession(String uploadId) {
+        return sessionRepository.findById(uploadId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload not found: " + uploadId));
+    }
+
+    /** Deleting the upload is the claim: a concurrent complete or cancel finds it gone. */
+    private void claim(String uploadId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (sessionRepository.deleteSession(uploadId) == 0) {
+                throw new ConflictException("Upload " + uploadId + " is already being completed or was cancelled");
+            }
+            chunkRepository.deleteBySessionId(uploadId);
+        });
+    }
+
+    private void restore(UploadSession claimed) {
+        UploadSession session = UploadSession.newSession(claimed.getId());
+        session.setProductId(claimed.getProductId());
+        session.setFileName(claimed.getFileName());
+        session.setTotalSize(claimed.getTotalSize());
+        session.setChunkSize(claimed.getChunkSize());
+        session.setChunkCount(claimed.getChunkCount());
+        session.setCreatedAt(claimed.getCreatedAt());
+        List<UploadChunk> chunks = IntStream.range(0, claimed.getChunkCount())
+                .mapToObj(index -> new UploadChunk(claimed.getId(), index))
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            sessionRepository.save(session);
+            chunkRepository.saveAll(chunks);
+        });
+    }
+
+    private void deleteSession(String uploadId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            chunkRepository.deleteBySessionId(uploadId);
+            sessionRepository.deleteById(uploadId);
+        });
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session, List<Integer> receivedChunks) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.getId())
+                .productId(session.getProductId())
+                .fileName(session.getFileName())
+                .size(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .chunkCount(session.getChunkCount())
+                .receivedChunks(receivedChunks)
+                .createdAt(session.getCreatedAt())
+                .expiresAt(session.getCreatedAt().plus(expiry))
+                .build();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // Collected by the next purge
+        }
+    }
+}
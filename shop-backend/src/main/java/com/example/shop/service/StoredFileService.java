@@ -0,0 +1,145 @@
+package com.example.shop.service;
+
+import com.example.shop.model.StoredFile;
+import com.example.shop.repository.ProductImageUrls;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.StoredFileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reference counts for uploaded files, and the sweeper that deletes files nothing refers to.
+ *
+ * <p>Product writes add and remove references in their own transaction. Every
+ * {@code sweep-interval} the sweeper deletes files that have no references and have not been
+ * written for {@code unreferenced-grace}: images replaced or whose product was deleted, uploads
+ * that were never attached, variants of an image replaced before they were ready, and leftover
+ * temp files. Precompressed copies follow the file they belong to. The grace period covers the time between storing a file and recording its reference.
+ */
+@Service
+public class StoredFileService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final StoredFileRepository storedFileRepository;
+    private final ProductRepository productRepository;
+    private final FileStorageService fileStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransaction;
+    private final Duration unreferencedGrace;
+
+    public StoredFileService(StoredFileRepository storedFileRepository,
+                             ProductRepository productRepository,
+                             FileStorageService fileStorageService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${file.unreferenced-grace:1h}") Duration unreferencedGrace) {
+        this.storedFileRepository = storedFileRepository;
+        this.productRepository = productRepository;
+        this.fileStorageService = fileStorageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.unreferencedGrace = unreferencedGrace;
+    }
+
+    /** One more reference to each URL; nulls and URLs outside /uploads are ignored. */
+    public void acquire(String... urls) {
+        counts(urls).forEach((url, count) -> {
+            // Concurrent first uploads of the same content race to create the row. It is created
+            // in its own transaction, before this one locks anything, so the loser's duplicate key
+            // only rolls that back; both then count in the caller's transaction.
+            if (!storedFileRepository.existsById(url)) {
+                createRow(url);
+            }
+            if (storedFileRepository.addReferences(url, count) == 0) {
+                // Swept in between
+                storedFileRepository.save(StoredFile.newFor(url, count));
+            }
+        });
+    }
+
+    private void createRow(String url) {
+        try {
+            newTransaction.executeWithoutResult(status ->
+                    storedFileRepository.saveAndFlush(StoredFile.newFor(url, 0)));
+        } catch (DataIntegrityViolationException e) {
+            // Created by a concurrent upload
+        }
+    }
+
+    public void release(String... urls) {
+        counts(urls).forEach(storedFileRepository::removeReferences);
+    }
+
+    /**
+     * Images stored before reference counting have no rows; count them from the products once,
+     * so the sweeper never mistakes them for orphans.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initReferences() {
+        if (storedFileRepository.count() > 0) {
+            return;
+        }
+        Map<String, Integer> references = new HashMap<>();
+        for (ProductImageUrls product : productRepository.findAllImageUrls()) {
+            counts(product.getImageUrl(), product.getImageThumbnailUrl(), product.getImageCardUrl(),
+                    product.getImageDetailUrl())
+                    .forEach((url, count) -> references.merge(url, count, Integer::sum));
+        }
+        storedFileRepository.saveAll(references.entrySet().stream()
+                .map(entry -> StoredFile.newFor(entry.getKey(), entry.getValue()))
+                .toList());
+    }
+
+    /** Returns the number of files deleted. */
+    @Scheduled(fixedDelayString = "${file.sweep-interval:PT1H}", initialDelayString = "${file.sweep-interval:PT1H}")
+    public int sweep() {
+        Instant cutoff = Instant.now().minus(unreferencedGrace);
+        List<String> candidates = fileStorageService.listModifiedBefore(cutoff);
+        int deleted = 0;
+        for (int from = 0; from < candidates.size(); from += SWEEP_BATCH_SIZE) {
+            List<String> batch = candidates.subList(from, Math.min(candidates.size(), from + SWEEP_BATCH_SIZE));
+            Set<String> referenced = new HashSet<>(storedFileRepository.findReferencedUrls(
+                    batch.stream().map(FileStorageService::originalOf).distinct().toList()));
+            for (String url : batch) {
+                if (referenced.contains(FileStorageService.originalOf(url))) {
+                    continue;
+                }
+                // A reference added meanwhile keeps the row; the file was re-stored for it, so its
+                // fresh modification time keeps it too
+                transactionTemplate.executeWithoutResult(status -> storedFileRepository.deleteUnreferenced(url));
+                if (fileStorageService.deleteIfModifiedBefore(url, cutoff)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static Map<String, Integer> counts(String... urls) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String url : urls) {
+            if (url != null && url.startsWith("/uploads/")) {
+                counts.merge(url, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+}
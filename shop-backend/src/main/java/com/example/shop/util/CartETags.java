@@ -0,0 +1,46 @@
+package com.example.shop.util;
+
+import com.example.shop.dto.CartItemResponse;
+import com.example.shop.dto.CartResponse;
+
+import java.util.Objects;
+
+/**
+ * Strong ETags for carts, computed from their contents: the tag changes whenever a line is
+ * added, removed or changes quantity, the coupon changes or a promotion changes the total, on
+ * whichever node the change was made, and is the same again for the same contents after a reload.
+ */
+public final class CartETags {
+
+    private CartETags() {
+    }
+
+    public static String cart(CartResponse cart) {
+        long hash = 17L;
+        for (CartItemResponse item : cart.getItems()) {
+            hash = 31 * hash + Objects.hashCode(item.getId());
+            hash = 31 * hash + Objects.hashCode(item.getProductId());
+            hash = 31 * hash + Objects.hashCode(item.getQuantity());
+        }
+        hash = 31 * hash + Objects.hashCode(cart.getCouponCode());
+        hash = 31 * hash + (cart.getTotalAmount() != null ? cart.getTotalAmount().stripTrailingZeros().hashCode() : 0);
+        return "k" + cart.getId() + "-" + Long.toHexString(hash);
+    }
+
+    /**
+     * Whether an {@code If-Match} header value admits the given tag. A missing header and
+     * {@code *} match anything; weak tags never match, as If-Match uses strong comparison.
+     */
+    public static boolean matches(String ifMatch, String etag) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals("\"" + etag + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
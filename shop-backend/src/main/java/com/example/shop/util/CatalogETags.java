@@ -0,0 +1,52 @@
+package com.example.shop.util;
+
+import com.example.shop.dto.ProductResponse;
+import org.springframework.data.domain.Page;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Strong ETags for catalog responses. Each tag covers every field that can change between two
+ * responses for the same URL: the product's last update, its live stock, and the category name
+ * it is rendered with. Search pages and the category list additionally carry the generation of
+ * the cache they were served from.
+ */
+public final class CatalogETags {
+
+    private CatalogETags() {
+    }
+
+    public static String product(ProductResponse product) {
+        return "p" + product.getId() + "-" + Long.toHexString(fingerprint(17L, product));
+    }
+
+    public static String page(long generation, Page<ProductResponse> page) {
+        long hash = 31 * page.getTotalElements() + page.getNumber();
+        for (ProductResponse product : page.getContent()) {
+            hash = fingerprint(hash, product);
+        }
+        return "s" + generation + "-" + Long.toHexString(hash);
+    }
+
+    public static String categories(long generation) {
+        return "c" + generation;
+    }
+
+    public static String categoriesWithCounts(long generation, long countsVersion) {
+        return "c" + generation + "-n" + countsVersion;
+    }
+
+    public static String categoryTree(long generation) {
+        return "t" + generation;
+    }
+
+    private static long fingerprint(long hash, ProductResponse product) {
+        Instant updatedAt = product.getUpdatedAt();
+        hash = 31 * hash + Objects.hashCode(product.getId());
+        hash = 31 * hash + (updatedAt != null ? updatedAt.toEpochMilli() : 0L);
+        hash = 31 * hash + Objects.hashCode(product.getStockQuantity());
+        hash = 31 * hash + Objects.hashCode(product.getCategoryName());
+        return hash;
+    }
+}
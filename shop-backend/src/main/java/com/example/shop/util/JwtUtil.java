@@ -7,20 +7,30 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Date;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
+    private static final String GUEST_CART_CLAIM = "cart";
+
     private final SecretKey key;
+    // Derived from the same secret, so a guest cart token never verifies as a login token or vice versa
+    private final SecretKey guestCartKey;
     private final long jwtExpirationMs;
 
     public JwtUtil(
             @Value("${jwt.secret}") String secret,
             @Value("${jwt.expiration-ms}") long jwtExpirationMs) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        this.guestCartKey = Keys.hmacShaKeyFor(derive(secret.getBytes(), "guest-cart"));
         this.jwtExpirationMs = jwtExpirationMs;
     }
 
@@ -65,4 +75,48 @@ public class JwtUtil {
     private Date extractExpiration(String token) {
         return extractClaim(token, Claims::getExpiration);
     }
+
+    /** Signs an encoded guest cart; see {@link com.example.shop.service.GuestCartService}. */
+    public String generateGuestCartToken(String cart, long ttlMs) {
+        Date now = new Date();
+        return Jwts.builder()
+                // Identifies the token once it has been merged into a user's cart
+                .id(UUID.randomUUID().toString())
+                .claim(GUEST_CART_CLAIM, cart)
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + ttlMs))
+                .signWith(guestCartKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * The encoded cart in a guest cart token. Throws {@link io.jsonwebtoken.JwtException} if the
+     * token was not signed here, was altered or has expired.
+     */
+    public String extractGuestCart(String token) {
+        return guestCartOf(extractGuestCartClaims(token));
+    }
+
+    /** All claims of a guest cart token, verified as {@link #extractGuestCart} does. */
+    public Claims extractGuestCartClaims(String token) {
+        return Jwts.parser()
+                .verifyWith(guestCartKey)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    public static String guestCartOf(Claims claims) {
+        return claims.get(GUEST_CART_CLAIM, String.class);
+    }
+
+    private static byte[] derive(byte[] secret, String purpose) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 is not available", ex);
+        }
+    }
 }
@@ -1,31 +1,46 @@
 package com.example.shop.controller;
 
+import com.example.shop.config.CorsConfig;
+import com.example.shop.config.CustomUserDetailsService;
+import com.example.shop.config.SecurityConfig;
+import com.example.shop.dto.ImageUploadResponse;
 import com.example.shop.dto.ProductRequest;
 import com.example.shop.dto.ProductResponse;
-import com.example.shop.service.FileStorageService;
+import com.example.shop.service.ImageUploadService;
+import com.example.shop.service.InventoryService;
+import com.example.shop.service.PopularityService;
 import com.example.shop.service.ProductService;
+import com.example.shop.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Arrays;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ProductController.class)
+@Import({SecurityConfig.class, CorsConfig.class})
 class ProductControllerTest {
 
     @Autowired
@@ -35,11 +50,33 @@ class ProductControllerTest {
     private ProductService productService;
 
     @MockBean
-    private FileStorageService fileStorageService;
+    private InventoryService inventoryService;
+
+    @MockBean
+    private PopularityService popularityService;
+
+    @MockBean
+    private ImageUploadService imageUploadService;
+
+    // Dependencies of the application's security configuration
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @MockBean
+    private CustomUserDetailsService userDetailsService;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        // Stock merging is covered separately; pass responses through unchanged
+        when(inventoryService.withCurrentStock(any(ProductResponse.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryService.withCurrentStock(any(Page.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
     @Test
     void testGetProductById_Success() throws Exception {
         // Given
@@ -58,6 +95,33 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.name").value("Laptop"))
                 .andExpect(jsonPath("$.price").value(999.99));
+        verify(popularityService).recordView(1L);
+    }
+
+    @Test
+    void testGetProductById_NotModifiedWhenETagMatches() throws Exception {
+        // Given
+        ProductResponse response = ProductResponse.builder()
+                .id(1L)
+                .name("Laptop")
+                .price(new BigDecimal("999.99"))
+                .stockQuantity(50)
+                .updatedAt(Instant.parse("2024-01-01T00:00:00Z"))
+                .build();
+
+        when(productService.getById(1L)).thenReturn(response);
+
+        String etag = mockMvc.perform(get("/api/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        // When & Then
+        mockMvc.perform(get("/api/products/1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
     }
 
     @Test
@@ -130,4 +194,38 @@ class ProductControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void testUploadImage_AcceptedAndProcessedInBackground() throws Exception {
+        // Given
+        MockMultipartFile file = new MockMultipartFile("file", "laptop.png", "image/png", new byte[] {1, 2, 3});
+        when(imageUploadService.submit(eq(1L), any()))
+                .thenReturn(ImageUploadResponse.builder().uploadId("u-1").productId(1L).status("QUEUED").build());
+
+        // When & Then
+        mockMvc.perform(multipart("/api/products/1/image").file(file).with(csrf()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/products/1/image/status"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+        verify(productService, never()).updateImage(any(), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void testGetImageStatus_ReturnsLatestUpload() throws Exception {
+        // Given
+        when(imageUploadService.getStatus(1L)).thenReturn(ImageUploadResponse.builder()
+                .uploadId("u-1")
+                .productId(1L)
+                .status("COMPLETED")
+                .imageUrl("/uploads/laptop.png")
+                .build());
+
+        // When & Then
+        mockMvc.perform(get("/api/products/1/image/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.imageUrl").value("/uploads/laptop.png"));
+    }
 }
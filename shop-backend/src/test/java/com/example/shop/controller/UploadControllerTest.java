@@ -0,0 +1,141 @@
+package com.example.shop.controller;
+
+import com.example.shop.service.FileStorageService;
+import com.example.shop.service.OpenFileCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadControllerTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path uploadDir;
+
+    private OpenFileCache openFileCache;
+    private UploadController controller;
+    private String url;
+
+    @BeforeEach
+    void setUp() {
+        FileStorageService fileStorageService = new FileStorageService(uploadDir.toString());
+        openFileCache = new OpenFileCache(2);
+        controller = new UploadController(fileStorageService, openFileCache);
+        url = fileStorageService.storeFile(new MockMultipartFile("file", "photo.jpg", "image/jpeg", CONTENT));
+    }
+
+    @AfterEach
+    void tearDown() {
+        openFileCache.destroy();
+    }
+
+    @Test
+    void testServe_WholeFileWithImmutableCaching() throws IOException {
+        MockHttpServletResponse response = serve(get(url));
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals("\"" + url.substring("/uploads/".length(), "/uploads/".length() + 64) + "\"",
+                response.getHeader("ETag"));
+        assertTrue(response.getHeader("Cache-Control").contains("immutable"));
+        assertEquals(1, openFileCache.size());
+    }
+
+    @Test
+    void testServe_SingleRangesAndUnsatisfiableRange() throws IOException {
+        MockHttpServletRequest middle = get(url);
+        middle.addHeader("Range", "bytes=2-4");
+        MockHttpServletRequest suffix = get(url);
+        suffix.addHeader("Range", "bytes=-3");
+        MockHttpServletRequest beyond = get(url);
+        beyond.addHeader("Range", "bytes=10-");
+
+        MockHttpServletResponse partial = serve(middle);
+        MockHttpServletResponse tail = serve(suffix);
+        MockHttpServletResponse unsatisfiable = serve(beyond);
+
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 2-4/10", partial.getHeader("Content-Range"));
+        assertEquals("234", partial.getContentAsString());
+        assertEquals("789", tail.getContentAsString());
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */10", unsatisfiable.getHeader("Content-Range"));
+    }
+
+    @Test
+    void testServe_IfNoneMatchAndStaleIfRange() throws IOException {
+        String etag = serve(get(url)).getHeader("ETag");
+        MockHttpServletRequest revalidate = get(url);
+        revalidate.addHeader("If-None-Match", "\"other\", " + etag);
+        MockHttpServletRequest staleRange = get(url);
+        staleRange.addHeader("Range", "bytes=0-0");
+        staleRange.addHeader("If-Range", "\"other\"");
+
+        MockHttpServletResponse notModified = serve(revalidate);
+        MockHttpServletResponse whole = serve(staleRange);
+
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+        assertEquals(200, whole.getStatus());
+        assertEquals(10, whole.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testServe_PrecompressedCopyWhenAccepted() throws IOException {
+        Path original = uploadDir.resolve(url.substring("/uploads/".length()));
+        Files.write(original.resolveSibling(original.getFileName() + ".gz"), new byte[] {31, -117});
+        MockHttpServletRequest gzip = get(url);
+        gzip.addHeader("Accept-Encoding", "br;q=0, gzip");
+
+        MockHttpServletResponse compressed = serve(gzip);
+        MockHttpServletResponse plain = serve(get(url));
+
+        assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+        assertEquals(2, compressed.getContentAsByteArray().length);
+        assertNotEquals(compressed.getHeader("ETag"), plain.getHeader("ETag"));
+        assertNull(plain.getHeader("Content-Encoding"));
+        assertEquals(404, serve(get(url + ".gz")).getStatus());
+    }
+
+    @Test
+    void testServe_SendfileLeavesBodyToConnector() throws IOException {
+        MockHttpServletRequest request = get(url);
+        request.setAttribute(UploadController.SENDFILE_SUPPORT, Boolean.TRUE);
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(0L, request.getAttribute(UploadController.SENDFILE_START));
+        assertEquals(10L, request.getAttribute(UploadController.SENDFILE_END));
+    }
+
+    @Test
+    void testServe_MissingAndTraversalAreNotFound() throws IOException {
+        assertEquals(404, serve(get("/uploads/missing.jpg")).getStatus());
+        assertEquals(404, serve(get("/uploads/../secret.txt")).getStatus());
+    }
+
+    private MockHttpServletRequest get(String path) {
+        return new MockHttpServletRequest("GET", path);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.serve(request, response);
+        return response;
+    }
+}
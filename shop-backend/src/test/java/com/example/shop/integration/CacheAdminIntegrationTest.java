@@ -0,0 +1,72 @@
+package com.example.shop.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class CacheAdminIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void testGetAllStats_ListsConfiguredCaches() throws Exception {
+        mockMvc.perform(get("/api/admin/caches"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'products')]").exists())
+                .andExpect(jsonPath("$[?(@.name == 'productById')]").exists());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void testGetStats_UnknownCacheIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/admin/caches/no-such-cache"))
+                .andExpect(status().isBadRequest());
+
+        assertFalse(cacheManager.getCacheNames().contains("no-such-cache"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void testClear_EmptiesTheCache() throws Exception {
+        cacheManager.getCache("categories").put("admin-test", "value");
+
+        mockMvc.perform(delete("/api/admin/caches/categories").with(csrf()))
+                .andExpect(status().isNoContent());
+
+        assertNull(cacheManager.getCache("categories").get("admin-test"));
+    }
+
+    @Test
+    @WithMockUser(roles = "CUSTOMER")
+    void testEndpoints_ForbiddenForCustomer() throws Exception {
+        mockMvc.perform(get("/api/admin/caches"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/api/admin/caches/categories").with(csrf()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testEndpoints_RequireAuthentication() throws Exception {
+        mockMvc.perform(get("/api/admin/caches/products"))
+                .andExpect(status().isForbidden());
+    }
+}
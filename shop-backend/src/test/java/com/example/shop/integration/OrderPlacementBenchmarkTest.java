@@ -0,0 +1,107 @@
+package com.example.shop.integration;
+
+import com.example.shop.dto.PlaceOrderRequest;
+import com.example.shop.model.*;
+import com.example.shop.repository.*;
+import com.example.shop.service.EmailService;
+import com.example.shop.service.OrderService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts JDBC statements for one placeOrder with many lines. It writes one order and an item per
+ * line, updates every product and deletes every cart item; each of those groups must go out as a
+ * JDBC batch rather than a statement per row.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class OrderPlacementBenchmarkTest {
+
+    private static final int LINES = 20;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private EmailService emailService;
+
+    @Test
+    void testPlaceOrder_BatchesWritesInsteadOfOneRoundTripPerLine() {
+        // Given
+        User user = userRepository.save(User.builder()
+                .name("Benchmark User")
+                .email("benchmark@example.com")
+                .passwordHash("encodedPassword")
+                .roles(Set.of(Role.CUSTOMER))
+                .build());
+        Category category = categoryRepository.save(Category.builder()
+                .name("Benchmark Category")
+                .active(true)
+                .build());
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (int i = 0; i < LINES; i++) {
+            Product product = productRepository.save(Product.builder()
+                    .name("Benchmark Product " + i)
+                    .price(new BigDecimal("10.00"))
+                    .stockQuantity(100)
+                    .category(category)
+                    .active(true)
+                    .build());
+            cart.getItems().add(CartItem.builder()
+                    .cart(cart)
+                    .product(product)
+                    .quantity(1)
+                    .priceAtAddTime(product.getPrice())
+                    .build());
+        }
+        cartRepository.save(cart);
+        entityManager.flush();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        orderService.placeOrder("benchmark@example.com", new PlaceOrderRequest());
+        entityManager.flush();
+
+        // Then
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(LINES + 1, statistics.getEntityInsertCount());
+        assertEquals(LINES, statistics.getEntityDeleteCount());
+        assertTrue(statistics.getEntityUpdateCount() >= LINES);
+        assertTrue(statements < LINES, "expected batched writes but saw " + statements + " statements");
+    }
+}
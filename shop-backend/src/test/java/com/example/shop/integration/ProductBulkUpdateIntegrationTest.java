@@ -0,0 +1,144 @@
+package com.example.shop.integration;
+
+import com.example.shop.dto.BulkPriceUpdateRequest;
+import com.example.shop.dto.BulkProductFilter;
+import com.example.shop.dto.BulkStockUpdateRequest;
+import com.example.shop.dto.BulkUpdateResponse;
+import com.example.shop.dto.CategoryRequest;
+import com.example.shop.model.Category;
+import com.example.shop.model.Product;
+import com.example.shop.repository.CategoryRepository;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.service.CategoryService;
+import com.example.shop.service.ProductBulkUpdateService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class ProductBulkUpdateIntegrationTest {
+
+    @Autowired
+    private ProductBulkUpdateService productBulkUpdateService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Product shirt;
+    private Product socks;
+    private Product novel;
+
+    @BeforeEach
+    void setUp() {
+        CategoryRequest apparel = new CategoryRequest();
+        apparel.setName("Bulk Apparel");
+        Long apparelId = categoryService.create(apparel).getId();
+
+        CategoryRequest accessories = new CategoryRequest();
+        accessories.setName("Bulk Accessories");
+        accessories.setParentCategoryId(apparelId);
+        Long accessoriesId = categoryService.create(accessories).getId();
+
+        CategoryRequest reading = new CategoryRequest();
+        reading.setName("Bulk Reading");
+        Long readingId = categoryService.create(reading).getId();
+
+        shirt = save("Bulk Shirt", "20.00", 10, categoryRepository.getReferenceById(apparelId));
+        socks = save("Bulk Socks", "5.55", 3, categoryRepository.getReferenceById(accessoriesId));
+        novel = save("Bulk Novel", "12.00", 7, categoryRepository.getReferenceById(readingId));
+        entityManager.flush();
+    }
+
+    @Test
+    void testUpdatePrices_PercentOffCategoryIncludesSubcategories() {
+        // Given
+        BulkPriceUpdateRequest request = new BulkPriceUpdateRequest();
+        request.setFilter(filter(shirt.getCategory().getId()));
+        request.setPercent(new BigDecimal("-10"));
+
+        // When
+        BulkUpdateResponse response = productBulkUpdateService.updatePrices(request);
+
+        // Then
+        entityManager.clear();
+        assertEquals(2, response.getMatched());
+        assertEquals(2, response.getUpdated());
+        assertEquals(new BigDecimal("18.00"), reload(shirt).getPrice());
+        assertEquals(new BigDecimal("5.00"), reload(socks).getPrice());
+        assertEquals(new BigDecimal("12.00"), reload(novel).getPrice());
+    }
+
+    @Test
+    void testUpdateStock_DeltaIsFlooredAtZero() {
+        // Given
+        BulkProductFilter filter = new BulkProductFilter();
+        filter.setProductIds(List.of(socks.getId(), novel.getId()));
+        BulkStockUpdateRequest request = new BulkStockUpdateRequest();
+        request.setFilter(filter);
+        request.setDelta(-5);
+
+        // When
+        BulkUpdateResponse response = productBulkUpdateService.updateStock(request);
+
+        // Then
+        entityManager.clear();
+        assertEquals(2, response.getUpdated());
+        assertEquals(0, reload(socks).getStockQuantity());
+        assertEquals(2, reload(novel).getStockQuantity());
+        assertEquals(10, reload(shirt).getStockQuantity());
+    }
+
+    @Test
+    void testUpdatePrices_RequiresFilterAndSingleAdjustment() {
+        BulkPriceUpdateRequest unfiltered = new BulkPriceUpdateRequest();
+        unfiltered.setFilter(new BulkProductFilter());
+        unfiltered.setPercent(BigDecimal.TEN);
+        assertThrows(IllegalArgumentException.class, () -> productBulkUpdateService.updatePrices(unfiltered));
+
+        BulkPriceUpdateRequest ambiguous = new BulkPriceUpdateRequest();
+        ambiguous.setFilter(filter(shirt.getCategory().getId()));
+        ambiguous.setPercent(BigDecimal.TEN);
+        ambiguous.setAmount(BigDecimal.ONE);
+        assertThrows(IllegalArgumentException.class, () -> productBulkUpdateService.updatePrices(ambiguous));
+    }
+
+    private Product save(String name, String price, int stock, Category category) {
+        return productRepository.save(Product.builder()
+                .name(name)
+                .price(new BigDecimal(price))
+                .stockQuantity(stock)
+                .category(category)
+                .active(true)
+                .build());
+    }
+
+    private Product reload(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow();
+    }
+
+    private static BulkProductFilter filter(Long categoryId) {
+        BulkProductFilter filter = new BulkProductFilter();
+        filter.setCategoryId(categoryId);
+        return filter;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shop.integration;
+
+import com.example.shop.dto.CategoryRequest;
+import com.example.shop.dto.CategoryResponse;
+import com.example.shop.dto.ImportJobResponse;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.service.CategoryService;
+import com.example.shop.service.ProductImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: the import commits its own chunks on a background thread
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductImportIntegrationTest {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private CategoryResponse category;
+
+    @BeforeEach
+    void setUp() {
+        CategoryRequest request = new CategoryRequest();
+        request.setName("Import Test Category");
+        category = categoryService.create(request);
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<Product> imported = productRepository.findAll().stream()
+                .filter(p -> p.getCategory() != null && category.getId().equals(p.getCategory().getId()))
+                .toList();
+        productRepository.deleteAll(imported);
+        categoryService.delete(category.getId());
+    }
+
+    @Test
+    void testCsvImport_WritesValidRowsAndReportsBadOnes() throws Exception {
+        // Given
+        String csv = """
+                name,description,price,stock_quantity,category,active
+                "Desk Lamp","Warm light, dimmable",29.99,40,Import Test Category,true
+                Bookshelf,,not-a-price,5,Import Test Category,
+                Office Chair,Ergonomic,149.00,12,Import Test Category,
+                Mystery Box,,9.99,1,No Such Category,
+                """;
+        MockMultipartFile file = new MockMultipartFile("file", "products.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        // When
+        ImportJobResponse job = awaitCompletion(productImportService.submit(file, null).getJobId());
+
+        // Then
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(4, job.getRowsProcessed());
+        assertEquals(2, job.getImported());
+        assertEquals(2, job.getFailed());
+        assertEquals(List.of(3L, 5L), job.getErrors().stream().map(e -> e.getLine()).toList());
+        assertEquals(2, productRepository.findAll().stream()
+                .filter(p -> p.getCategory() != null && category.getId().equals(p.getCategory().getId()))
+                .count());
+    }
+
+    @Test
+    void testJsonLinesImport_ResolvesCategoryById() throws Exception {
+        // Given
+        String jsonl = "{\"name\":\"Notebook\",\"price\":4.5,\"stockQuantity\":100,\"categoryId\":" + category.getId() + "}\n"
+                + "{\"name\":\"X\",\"price\":1,\"stockQuantity\":1,\"categoryId\":" + category.getId() + "}\n"
+                + "not json\n";
+        MockMultipartFile file = new MockMultipartFile("file", "products.jsonl", "application/x-ndjson",
+                jsonl.getBytes(StandardCharsets.UTF_8));
+
+        // When
+        ImportJobResponse job = awaitCompletion(productImportService.submit(file, null).getJobId());
+
+        // Then
+        assertEquals(1, job.getImported());
+        assertEquals(2, job.getFailed());
+        assertTrue(job.getErrors().get(0).getMessage().startsWith("name:"));
+    }
+
+    private ImportJobResponse awaitCompletion(String jobId) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            ImportJobResponse job = productImportService.getJob(jobId);
+            if ("COMPLETED".equals(job.getStatus()) || "FAILED".equals(job.getStatus())) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        fail("Import did not finish in time");
+        return null;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.shop.integration;
+
+import com.example.shop.dto.CategoryRequest;
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.model.Product;
+import com.example.shop.repository.CategoryRepository;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.service.CategoryService;
+import com.example.shop.service.ProductService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class ProductSearchIntegrationTest {
+
+    private static final int PRODUCTS = 25;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long categoryId;
+
+    @BeforeEach
+    void setUp() {
+        CategoryRequest request = new CategoryRequest();
+        request.setName("Search Statements");
+        categoryId = categoryService.create(request).getId();
+        for (int i = 0; i < PRODUCTS; i++) {
+            productRepository.save(Product.builder()
+                    .name(String.format("Search Product %02d", i))
+                    .price(new BigDecimal("10.00").add(BigDecimal.valueOf(i)))
+                    .stockQuantity(5)
+                    .category(categoryRepository.getReferenceById(categoryId))
+                    .active(true)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testSearch_UsesOneSelectPlusCountRegardlessOfPageSize() {
+        // Given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        Page<ProductResponse> page = productService.search(categoryId, null, null, null, null, null,
+                PageRequest.of(0, 20, Sort.by("name")));
+
+        // Then
+        assertEquals(20, page.getNumberOfElements());
+        assertEquals(PRODUCTS, page.getTotalElements());
+        assertEquals("Search Statements", page.getContent().get(0).getCategoryName());
+        assertEquals("Search Product 00", page.getContent().get(0).getName());
+        assertEquals(2, statistics.getPrepareStatementCount(), "page select and count only");
+        assertEquals(0, statistics.getEntityLoadCount(), "no managed entities");
+    }
+
+    @Test
+    void testSearch_NameSortIgnoresCaseAndBreaksTiesById() {
+        // Given: the same order ProductListingIndex keeps
+        Long first = saveNamed("apple zq");
+        Long second = saveNamed("Banana zq");
+        Long third = saveNamed("APPLE zq");
+
+        // When
+        Page<ProductResponse> ascending = productService.search(categoryId, "zq", null, null, null, null,
+                PageRequest.of(0, 3, Sort.by("name")));
+        Page<ProductResponse> descending = productService.search(categoryId, "zq", null, null, null, null,
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "name")));
+
+        // Then
+        assertEquals(List.of(first, third, second), ascending.map(ProductResponse::getId).getContent());
+        assertEquals(List.of(second, third, first), descending.map(ProductResponse::getId).getContent());
+    }
+
+    private Long saveNamed(String name) {
+        Long id = productRepository.save(Product.builder()
+                .name(name)
+                .price(BigDecimal.ONE)
+                .stockQuantity(1)
+                .category(categoryRepository.getReferenceById(categoryId))
+                .active(true)
+                .build()).getId();
+        entityManager.flush();
+        return id;
+    }
+}
@@ -43,6 +43,9 @@ class AuthServiceTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private GuestCartService guestCartService;
+
     @InjectMocks
     private AuthService authService;
 
@@ -119,5 +122,30 @@ class AuthServiceTest {
         assertEquals("jwt-token", result.getAccessToken());
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtUtil).generateToken("test@example.com");
+        verifyNoInteractions(guestCartService);
+    }
+
+    @Test
+    void testLogin_MergesGuestCart() {
+        // Given
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("test@example.com");
+        loginRequest.setPassword("password123");
+        loginRequest.setGuestCartToken("guest-token");
+
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getName()).thenReturn("test@example.com");
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(jwtUtil.generateToken("test@example.com")).thenReturn("jwt-token");
+        doThrow(new IllegalArgumentException("Product not found"))
+                .when(guestCartService).mergeIntoUserCart("test@example.com", "guest-token");
+
+        // When
+        var result = authService.login(loginRequest);
+
+        // Then: a failed merge does not fail the login
+        assertEquals("jwt-token", result.getAccessToken());
+        verify(guestCartService).mergeIntoUserCart("test@example.com", "guest-token");
     }
 }
@@ -0,0 +1,77 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CacheStatsResponse;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheAdminServiceTest {
+
+    private CaffeineCacheManager cacheManager;
+    private CacheAdminService cacheAdminService;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache("products", Caffeine.newBuilder()
+                .recordStats()
+                .maximumSize(100)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build());
+        cacheManager.registerCustomCache("categories", Caffeine.newBuilder().recordStats().build());
+        cacheAdminService = new CacheAdminService(cacheManager);
+    }
+
+    @Test
+    void testGetAllStats_ListsCachesByName() {
+        List<CacheStatsResponse> stats = cacheAdminService.getAllStats();
+
+        assertEquals(List.of("categories", "products"), stats.stream().map(CacheStatsResponse::getName).toList());
+    }
+
+    @Test
+    void testGetStats_ReportsSizeHitsAndPolicy() {
+        // Given
+        var cache = cacheManager.getCache("products");
+        cache.put(1L, "Laptop");
+        cache.get(1L);
+        cache.get(2L);
+
+        // When
+        CacheStatsResponse stats = cacheAdminService.getStats("products");
+
+        // Then
+        assertEquals(1, stats.getEstimatedSize());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRate());
+        assertEquals(100L, stats.getMaximum());
+        assertFalse(stats.isWeighted());
+        assertEquals("PT5M", stats.getExpireAfterWrite());
+    }
+
+    @Test
+    void testClear_EmptiesTheCache() {
+        // Given
+        cacheManager.getCache("products").put(1L, "Laptop");
+
+        // When
+        cacheAdminService.clear("products");
+
+        // Then
+        assertNull(cacheManager.getCache("products").get(1L));
+    }
+
+    @Test
+    void testUnknownCache_IsRejectedWithoutBeingCreated() {
+        assertThrows(IllegalArgumentException.class, () -> cacheAdminService.getStats("orders"));
+        assertThrows(IllegalArgumentException.class, () -> cacheAdminService.clear("orders"));
+        assertFalse(cacheManager.getCacheNames().contains("orders"));
+    }
+}
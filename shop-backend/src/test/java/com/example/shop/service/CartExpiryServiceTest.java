@@ -0,0 +1,167 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CartExpiryStatsResponse;
+import com.example.shop.model.Cart;
+import com.example.shop.model.User;
+import com.example.shop.repository.CartRepository;
+import com.example.shop.repository.IdleCart;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartExpiryServiceTest {
+
+    private static final Instant OLD = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartStore cartStore;
+
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testExpireIdle_DeletesInBatchesResumingAfterLastRow() {
+        // Given: three idle carts, two per batch
+        CartExpiryService service = service(2);
+        when(cartRepository.findIdle(any(), eq(Instant.EPOCH), eq(0L), any()))
+                .thenReturn(List.of(idle(1L, 11L, OLD), idle(2L, 12L, OLD.plusSeconds(1))));
+        when(cartRepository.findIdle(any(), eq(OLD.plusSeconds(1)), eq(2L), any()))
+                .thenReturn(List.of(idle(3L, 13L, OLD.plusSeconds(2))));
+        when(cartRepository.lockIdle(eq(List.of(1L, 2L)), any())).thenReturn(List.of(cart(1L, 11L), cart(2L, 12L)));
+        when(cartRepository.lockIdle(eq(List.of(3L)), any())).thenReturn(List.of(cart(3L, 13L)));
+        when(cartRepository.deleteItemsByCartIds(List.of(1L, 2L))).thenReturn(5);
+        when(cartRepository.deleteItemsByCartIds(List.of(3L))).thenReturn(1);
+        when(cartRepository.deleteByIds(List.of(1L, 2L))).thenReturn(2);
+        when(cartRepository.deleteByIds(List.of(3L))).thenReturn(1);
+
+        // When
+        CartExpiryService.Result result = service.expireIdle();
+
+        // Then
+        assertEquals(new CartExpiryService.Result(3, 6), result);
+        CartExpiryStatsResponse stats = service.getStats();
+        assertNotNull(stats.getLastRunAt());
+        assertEquals(3, stats.getLastRunCarts());
+        assertEquals(6, stats.getLastRunItems());
+        assertEquals(1, stats.getRuns());
+        verify(cartRepository, times(2)).findIdle(any(), any(), anyLong(), any());
+        verify(cartStore).evictClean(List.of(11L, 12L));
+        verify(invalidationBus).broadcast(InvalidationTopic.CARTS, List.of(11L, 12L));
+        verify(invalidationBus).broadcast(InvalidationTopic.CARTS, List.of(13L));
+    }
+
+    @Test
+    void testExpireIdle_SkipsCartsHeldInMemory() {
+        // Given
+        CartExpiryService service = service(10);
+        when(cartRepository.findIdle(any(), any(), anyLong(), any()))
+                .thenReturn(List.of(idle(1L, 11L, OLD), idle(2L, 12L, OLD)));
+        when(cartStore.isHeld(11L)).thenReturn(true);
+        when(cartRepository.lockIdle(eq(List.of(2L)), any())).thenReturn(List.of(cart(2L, 12L)));
+        when(cartRepository.deleteByIds(List.of(2L))).thenReturn(1);
+
+        // When
+        CartExpiryService.Result result = service.expireIdle();
+
+        // Then
+        assertEquals(1, result.carts());
+        verify(cartRepository, never()).deleteByIds(List.of(1L, 2L));
+    }
+
+    @Test
+    void testExpireIdle_KeepsCartWrittenBeforeItWasLocked() {
+        // Given: the cart was updated between the scan and the lock
+        CartExpiryService service = service(10);
+        when(cartRepository.findIdle(any(), any(), anyLong(), any())).thenReturn(List.of(idle(1L, 11L, OLD)));
+        when(cartRepository.lockIdle(eq(List.of(1L)), any())).thenReturn(List.of());
+
+        // When
+        CartExpiryService.Result result = service.expireIdle();
+
+        // Then
+        assertEquals(new CartExpiryService.Result(0, 0), result);
+        verify(cartRepository, never()).deleteByIds(any());
+        verifyNoInteractions(invalidationBus);
+    }
+
+    @Test
+    void testGetStats_TotalsAddUpAcrossSweeps() {
+        // Given: one cart with two items per sweep
+        CartExpiryService service = service(10);
+        when(cartRepository.findIdle(any(), any(), anyLong(), any())).thenReturn(List.of(idle(1L, 11L, OLD)));
+        when(cartRepository.lockIdle(eq(List.of(1L)), any())).thenReturn(List.of(cart(1L, 11L)));
+        when(cartRepository.deleteItemsByCartIds(List.of(1L))).thenReturn(2);
+        when(cartRepository.deleteByIds(List.of(1L))).thenReturn(1);
+
+        // When
+        service.expireIdle();
+        service.expireIdle();
+
+        // Then
+        CartExpiryStatsResponse stats = service.getStats();
+        assertEquals(2, stats.getRuns());
+        assertEquals(1, stats.getLastRunCarts());
+        assertEquals(2, stats.getTotalCarts());
+        assertEquals(4, stats.getTotalItems());
+    }
+
+    @Test
+    void testBackfillLastUpdated_GivesUndatedCartsTheCurrentTime() {
+        // Given
+        Instant before = Instant.now();
+
+        // When
+        service(10).backfillLastUpdated();
+
+        // Then
+        verify(cartRepository).backfillLastUpdated(argThat(now -> !now.isBefore(before)));
+    }
+
+    private CartExpiryService service(int batchSize) {
+        return new CartExpiryService(cartRepository, cartStore, invalidationBus, transactionManager,
+                Duration.ofDays(30), batchSize);
+    }
+
+    private static Cart cart(Long id, Long userId) {
+        return Cart.builder().id(id).user(User.builder().id(userId).build()).build();
+    }
+
+    private static IdleCart idle(Long id, Long userId, Instant lastUpdated) {
+        return new IdleCart() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Instant getLastUpdated() {
+                return lastUpdated;
+            }
+        };
+    }
+}
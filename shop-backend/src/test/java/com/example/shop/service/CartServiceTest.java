@@ -1,26 +1,37 @@
 package com.example.shop.service;
 
 import com.example.shop.dto.AddCartItemRequest;
+import com.example.shop.dto.CartOperation;
 import com.example.shop.dto.CartResponse;
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.dto.UpdateCartItemRequest;
+import com.example.shop.exception.PreconditionFailedException;
 import com.example.shop.model.*;
-import com.example.shop.repository.CartItemRepository;
 import com.example.shop.repository.CartRepository;
 import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.PromotionRepository;
 import com.example.shop.repository.UserRepository;
+import com.example.shop.util.CartETags;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -30,25 +41,46 @@ class CartServiceTest {
     @Mock
     private CartRepository cartRepository;
 
-    @Mock
-    private CartItemRepository cartItemRepository;
-
     @Mock
     private ProductRepository productRepository;
 
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private PromotionRepository promotionRepository;
+
+    @Mock
+    private CategoryHierarchy categoryHierarchy;
+
+    private PromotionEngine promotionEngine;
     private CartService cartService;
 
     private User user;
-    private Product product;
+    private ProductResponse product;
     private Cart cart;
     private AddCartItemRequest addRequest;
 
     @BeforeEach
     void setUp() {
+        CartStore cartStore = new CartStore(cartRepository, userRepository, productRepository, invalidationBus,
+                transactionManager, Duration.ofMinutes(30));
+        // No promotions unless a test publishes some
+        promotionEngine = new PromotionEngine(promotionRepository, categoryHierarchy);
+        cartService = new CartService(cartStore, productService, inventoryService, promotionEngine);
+
         user = User.builder()
                 .id(1L)
                 .email("test@example.com")
@@ -56,17 +88,11 @@ class CartServiceTest {
                 .roles(Set.of(Role.CUSTOMER))
                 .build();
 
-        Category category = Category.builder()
-                .id(1L)
-                .name("Electronics")
-                .build();
-
-        product = Product.builder()
+        product = ProductResponse.builder()
                 .id(1L)
                 .name("Laptop")
                 .price(new BigDecimal("999.99"))
-                .stockQuantity(10)
-                .category(category)
+                .categoryId(1L)
                 .active(true)
                 .build();
 
@@ -74,18 +100,32 @@ class CartServiceTest {
                 .id(1L)
                 .user(user)
                 .items(new ArrayList<>())
+                .version(0L)
                 .build();
 
         addRequest = new AddCartItemRequest();
         addRequest.setProductId(1L);
         addRequest.setQuantity(2);
+
+        lenient().when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        lenient().when(inventoryService.getStock(1L)).thenReturn(10);
+        lenient().when(cartRepository.claimVersion(anyLong(), anyLong(), any())).thenReturn(1);
+        // Stands in for Hibernate assigning ids to new items on flush
+        lenient().doAnswer(invocation -> {
+            long id = 100;
+            for (CartItem item : cart.getItems()) {
+                if (item.getId() == null) {
+                    item.setId(id++);
+                }
+            }
+            return null;
+        }).when(cartRepository).flush();
     }
 
     @Test
     void testGetOrCreateCart_ExistingCart() {
         // Given
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(cartRepository.findByUser(user)).thenReturn(Optional.of(cart));
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
 
         // When
         CartResponse result = cartService.getOrCreateCart("test@example.com");
@@ -93,49 +133,100 @@ class CartServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(1L, result.getId());
-        verify(cartRepository, never()).save(any(Cart.class));
+        verify(cartRepository, never()).saveAndFlush(any(Cart.class));
     }
 
     @Test
     void testGetOrCreateCart_NewCart() {
         // Given
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(cartRepository.findByUser(user)).thenReturn(Optional.empty());
-        when(cartRepository.save(any(Cart.class))).thenReturn(cart);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.empty());
+        when(cartRepository.saveAndFlush(any(Cart.class))).thenReturn(cart);
 
         // When
         CartResponse result = cartService.getOrCreateCart("test@example.com");
 
         // Then
         assertNotNull(result);
-        verify(cartRepository).save(any(Cart.class));
+        verify(cartRepository).saveAndFlush(any(Cart.class));
     }
 
     @Test
-    void testAddItem_Success() {
+    void testGetOrCreateCart_LoadsUserAndCartOnlyOnce() {
         // Given
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        when(cartRepository.findByUser(user)).thenReturn(Optional.of(cart));
-        when(cartRepository.save(any(Cart.class))).thenReturn(cart);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
 
         // When
-        CartResponse result = cartService.addItem("test@example.com", addRequest);
+        cartService.getOrCreateCart("test@example.com");
+        cartService.getOrCreateCart("test@example.com");
 
         // Then
+        verify(userRepository, times(1)).findByEmail("test@example.com");
+        verify(cartRepository, times(1)).findByUserId(1L);
+    }
+
+    @Test
+    void testAddItem_Success() {
+        // Given
+        when(productService.getById(1L)).thenReturn(product);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartRepository.findWithItemsById(1L)).thenReturn(Optional.of(cart));
+
+        // When
+        CartResponse result = cartService.addItem("test@example.com", addRequest, null);
+
+        // Then: the new line is written at once so it has an id
         assertNotNull(result);
-        verify(cartRepository).save(any(Cart.class));
+        assertEquals(1, result.getItems().size());
+        assertEquals(100L, result.getItems().get(0).getId());
+        assertEquals(new BigDecimal("1999.98"), result.getTotalAmount());
+        verify(cartRepository).flush();
+    }
+
+    @Test
+    void testUpdateItem_ChangesQuantityInMemoryOnly() {
+        // Given
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build());
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        UpdateCartItemRequest request = new UpdateCartItemRequest();
+        request.setQuantity(3);
+
+        // When
+        CartResponse result = cartService.updateItem("test@example.com", 7L, request, null);
+
+        // Then
+        assertEquals(3, result.getItems().get(0).getQuantity());
+        verify(cartRepository, never()).flush();
+        verify(productService, never()).getById(any());
+    }
+
+    @Test
+    void testAddItem_ExceedsStock() {
+        // Given
+        addRequest.setQuantity(11);
+        when(productService.getById(1L)).thenReturn(product);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> {
+            cartService.addItem("test@example.com", addRequest, null);
+        });
+        assertTrue(cartService.getOrCreateCart("test@example.com").getItems().isEmpty());
     }
 
     @Test
     void testAddItem_ProductNotFound() {
         // Given
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+        when(productService.getById(1L)).thenThrow(new IllegalArgumentException("Product not found"));
 
         // When & Then
         assertThrows(IllegalArgumentException.class, () -> {
-            cartService.addItem("test@example.com", addRequest);
+            cartService.addItem("test@example.com", addRequest, null);
         });
     }
 
@@ -143,12 +234,217 @@ class CartServiceTest {
     void testAddItem_ProductNotAvailable() {
         // Given
         product.setActive(false);
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productService.getById(1L)).thenReturn(product);
 
         // When & Then
         assertThrows(IllegalArgumentException.class, () -> {
-            cartService.addItem("test@example.com", addRequest);
+            cartService.addItem("test@example.com", addRequest, null);
         });
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void testApplyOperations_ValidatesStockOnceAndWritesOnce() {
+        // Given: a cart holding product 1, and product 2 being added
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build());
+        ProductResponse mouse = ProductResponse.builder()
+                .id(2L)
+                .name("Mouse")
+                .price(new BigDecimal("19.99"))
+                .active(true)
+                .build();
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartRepository.findWithItemsById(1L)).thenReturn(Optional.of(cart));
+        when(productService.getByIds(List.of(2L, 2L))).thenReturn(List.of(mouse));
+        when(inventoryService.getStock(anyCollection())).thenReturn(Map.of(1L, 10, 2L, 5));
+
+        // When
+        CartResponse result = cartService.applyOperations("test@example.com", List.of(
+                operation(CartOperation.Type.UPDATE, null, 7L, 4),
+                operation(CartOperation.Type.ADD, 2L, null, 1),
+                operation(CartOperation.Type.ADD, 2L, null, 2)), null);
+
+        // Then
+        assertEquals(2, result.getItems().size());
+        assertEquals(4, result.getItems().get(0).getQuantity());
+        assertEquals(3, result.getItems().get(1).getQuantity());
+        verify(inventoryService, times(1)).getStock(anyCollection());
+        verify(inventoryService, never()).getStock(any(Long.class));
+        verify(productService, never()).getById(any());
+        verify(cartRepository, times(1)).flush();
+    }
+
+    @Test
+    void testApplyOperations_InvalidOperationRejectsWholeBatch() {
+        // Given
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build());
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+
+        // When & Then: the removal is valid, the update of an unknown item is not
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations("test@example.com", List.of(
+                operation(CartOperation.Type.REMOVE, null, 7L, null),
+                operation(CartOperation.Type.UPDATE, null, 99L, 2)), null));
+        assertEquals(1, cartService.getOrCreateCart("test@example.com").getItems().size());
+        verify(cartRepository, never()).flush();
+    }
+
+    @Test
+    void testApplyOperations_QuantityAboveStockRejected() {
+        // Given
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(productService.getByIds(List.of(1L))).thenReturn(List.of(product));
+        when(inventoryService.getStock(anyCollection())).thenReturn(Map.of(1L, 2));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations("test@example.com",
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 3)), null));
+        assertTrue(cartService.getOrCreateCart("test@example.com").getItems().isEmpty());
+    }
+
+    @Test
+    void testGetOrCreateCart_ConcurrentCreationReadsWinner() {
+        // Given: another request inserts the user's cart between our read and our insert
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.empty(), Optional.of(cart));
+        when(cartRepository.saveAndFlush(any(Cart.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_carts_user"));
+
+        // When
+        CartResponse result = cartService.getOrCreateCart("test@example.com");
+
+        // Then
+        assertEquals(1L, result.getId());
+    }
+
+    @Test
+    void testUpdateItem_StaleIfMatchRejected() {
+        // Given
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build());
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        String etag = CartETags.cart(cartService.getOrCreateCart("test@example.com"));
+        UpdateCartItemRequest request = new UpdateCartItemRequest();
+        request.setQuantity(2);
+        CartResponse updated = cartService.updateItem("test@example.com", 7L, request, "\"" + etag + "\"");
+
+        // When & Then: a second tab still holding the first ETag
+        request.setQuantity(3);
+        assertThrows(PreconditionFailedException.class,
+                () -> cartService.updateItem("test@example.com", 7L, request, "\"" + etag + "\""));
+        assertEquals(2, cartService.getOrCreateCart("test@example.com").getItems().get(0).getQuantity());
+        assertNotEquals(etag, CartETags.cart(updated));
+    }
+
+    @Test
+    void testApplyCoupon_DiscountsTotal() {
+        // Given
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(2)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build());
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        promotionEngine.publish(CompiledPromotions.compile(List.of(new PromotionRule(1L, "Ten off",
+                PromotionType.PERCENTAGE, null, null, "SAVE10", new BigDecimal("10"), 0, 0, List.of(),
+                null, null)), null));
+
+        // When
+        CartResponse result = cartService.applyCoupon("test@example.com", " save10 ", null);
+
+        // Then: stored normalized, and written by the next flush rather than at once
+        assertEquals("SAVE10", result.getCouponCode());
+        assertTrue(result.isCouponApplied());
+        assertEquals(new BigDecimal("1999.98"), result.getSubtotal());
+        assertEquals(new BigDecimal("200.00"), result.getDiscountAmount());
+        assertEquals(new BigDecimal("1799.98"), result.getTotalAmount());
+        assertEquals(List.of("Ten off"), result.getItems().get(0).getPromotions());
+        verify(cartRepository, never()).flush();
+    }
+
+    @Test
+    void testGetOrCreateCart_PricesWithTheProductsCurrentCategory() {
+        // Given: the line was loaded before the laptop moved into category 5, which has a sale
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("100.00"))
+                .build());
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(productService.getCategoryIds(List.of(1L))).thenReturn(Map.of(1L, 5L));
+        promotionEngine.publish(CompiledPromotions.compile(List.of(new PromotionRule(1L, "Category sale",
+                PromotionType.PERCENTAGE, null, 5L, null, new BigDecimal("10"), 0, 0, List.of(),
+                null, null)), null));
+
+        // When
+        CartResponse result = cartService.getOrCreateCart("test@example.com");
+
+        // Then: discounted as checkout will discount it
+        assertEquals(new BigDecimal("10.00"), result.getDiscountAmount());
+        assertEquals(List.of("Category sale"), result.getItems().get(0).getPromotions());
+    }
+
+    @Test
+    void testApplyCoupon_UnknownCodeRejected() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class,
+                () -> cartService.applyCoupon("test@example.com", "NOPE", null));
+        verify(cartRepository, never()).findByUserId(anyLong());
+    }
+
+    @Test
+    void testMergeGuestCart_AddsLinesInOneWriteWithinStock() {
+        // Given: the user has one laptop; the guest cart has two more and 20 mice, of which 5 are in stock
+        cart.getItems().add(CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build());
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartRepository.findWithItemsById(1L)).thenReturn(Optional.of(cart));
+        when(inventoryService.getStock(anyCollection())).thenReturn(Map.of(1L, 10, 2L, 5));
+        CartState guest = new CartState(null, null);
+        guest.loadLine(1L, 1L, "Laptop", 1L, 2, new BigDecimal("999.99"));
+        guest.loadLine(2L, 2L, "Mouse", 1L, 20, new BigDecimal("19.99"));
+
+        // When
+        CartResponse result = cartService.mergeGuestCart("test@example.com", guest);
+
+        // Then
+        assertEquals(2, result.getItems().size());
+        assertEquals(3, result.getItems().get(0).getQuantity());
+        assertEquals(5, result.getItems().get(1).getQuantity());
+        assertEquals(100L, result.getItems().get(1).getId());
+        verify(cartRepository, times(1)).flush();
+    }
+
+    private static CartOperation operation(CartOperation.Type type, Long productId, Long itemId, Integer quantity) {
+        CartOperation op = new CartOperation();
+        op.setType(type);
+        op.setProductId(productId);
+        op.setItemId(itemId);
+        op.setQuantity(quantity);
+        return op;
     }
 }
@@ -0,0 +1,226 @@
+package com.example.shop.service;
+
+import com.example.shop.model.*;
+import com.example.shop.repository.CartRepository;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartStoreTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private Cart cart;
+    private CartItem item;
+
+    @BeforeEach
+    void setUp() {
+        User user = User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .roles(Set.of(Role.CUSTOMER))
+                .build();
+        cart = Cart.builder()
+                .id(1L)
+                .user(user)
+                .items(new ArrayList<>())
+                .version(0L)
+                .build();
+        item = CartItem.builder()
+                .id(7L)
+                .cart(cart)
+                .product(Product.builder().id(1L).name("Laptop").build())
+                .quantity(1)
+                .priceAtAddTime(new BigDecimal("999.99"))
+                .build();
+        cart.getItems().add(item);
+
+        lenient().when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        lenient().when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        lenient().when(cartRepository.findWithItemsById(1L)).thenReturn(Optional.of(cart));
+        lenient().when(cartRepository.claimVersion(anyLong(), anyLong(), any())).thenReturn(1);
+    }
+
+    @Test
+    void testFlushDirty_CoalescesQuantityChangesIntoOneWrite() {
+        // Given
+        CartStore store = store(Duration.ofMinutes(30));
+        for (int quantity = 2; quantity <= 5; quantity++) {
+            int q = quantity;
+            store.update("test@example.com", cart -> cart.setQuantity(cart.getLine(1L), q), cart -> null);
+        }
+        verify(cartRepository, never()).flush();
+
+        // When
+        int flushed = store.flushDirty();
+
+        // Then
+        assertEquals(1, flushed);
+        assertEquals(5, item.getQuantity());
+        verify(cartRepository, times(1)).flush();
+        verify(invalidationBus).broadcast(InvalidationTopic.CARTS, List.of(1L));
+        assertEquals(0, store.flushDirty());
+    }
+
+    @Test
+    void testFlushDirty_RemovedLineDeletesItem() {
+        // Given
+        CartStore store = store(Duration.ofMinutes(30));
+        store.update("test@example.com", cart -> cart.removeLine(1L), cart -> null);
+
+        // When
+        store.flushDirty();
+
+        // Then
+        assertTrue(cart.getItems().isEmpty());
+    }
+
+    @Test
+    void testFlushForCheckout_WritesOnlyWhenDirty() {
+        // Given
+        CartStore store = store(Duration.ofMinutes(30));
+        store.read("test@example.com", cart -> null);
+
+        // When
+        store.flushForCheckout("test@example.com");
+        store.update("test@example.com", cart -> cart.setQuantity(cart.getLine(1L), 3), cart -> null);
+        store.flushForCheckout("test@example.com");
+
+        // Then
+        verify(cartRepository, times(1)).flush();
+        assertEquals(3, item.getQuantity());
+    }
+
+    @Test
+    void testCheckedOut_DropsOrderedLinesWithoutWriting() {
+        // Given
+        CartStore store = store(Duration.ofMinutes(30));
+        store.read("test@example.com", cart -> null);
+
+        // When
+        store.checkedOut("test@example.com", Set.of(1L), 1L);
+
+        // Then
+        assertTrue(store.read("test@example.com", CartState::getLines).isEmpty());
+        assertEquals(0, store.flushDirty());
+    }
+
+    @Test
+    void testEvictIdle_KeepsCartsWithPendingChanges() {
+        // Given: every cart counts as idle
+        CartStore store = store(Duration.ofMillis(-1));
+        store.update("test@example.com", cart -> cart.setQuantity(cart.getLine(1L), 2), cart -> null);
+
+        // When
+        store.evictIdle();
+
+        // Then
+        assertEquals(1, store.size());
+        store.flushDirty();
+        store.evictIdle();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testOnClusterInvalidation_ReloadsCleanCart() {
+        // Given
+        CartStore store = store(Duration.ofMinutes(30));
+        CartState held = store.read("test@example.com", cart -> cart);
+
+        // When
+        store.onClusterInvalidation(new ClusterInvalidationEvent(InvalidationTopic.CARTS, List.of(1L)));
+        CartState reloaded = store.read("test@example.com", cart -> cart);
+
+        // Then: a request still holding the old state would load the cart again
+        assertTrue(held.isEvicted());
+        assertNotSame(held, reloaded);
+        verify(cartRepository, times(2)).findByUserId(1L);
+        verify(cartRepository, never()).save(any(Cart.class));
+        verify(productRepository, never()).getReferenceById(anyLong());
+    }
+
+    @Test
+    void testOnClusterInvalidation_KeepsCartWithPendingChanges() {
+        // Given
+        CartStore store = store(Duration.ofMinutes(30));
+        store.update("test@example.com", cart -> cart.setQuantity(cart.getLine(1L), 3), cart -> null);
+
+        // When
+        store.onClusterInvalidation(new ClusterInvalidationEvent(InvalidationTopic.CARTS, List.of(1L)));
+
+        // Then
+        int quantity = store.read("test@example.com", cart -> cart.getLine(1L).getQuantity());
+        assertEquals(3, quantity);
+        verify(cartRepository, times(1)).findByUserId(1L);
+    }
+
+    @Test
+    void testFlushDirty_ConcurrentWriteIsMergedAndRetried() {
+        // Given: this node raises product 1 to 4 while another node adds product 2
+        CartStore store = store(Duration.ofMinutes(30));
+        store.update("test@example.com", cart -> cart.setQuantity(cart.getLine(1L), 4), cart -> null);
+        Cart theirs = Cart.builder()
+                .id(1L)
+                .user(cart.getUser())
+                .items(new ArrayList<>())
+                .version(3L)
+                .build();
+        theirs.getItems().add(CartItem.builder().id(7L).cart(theirs).product(item.getProduct())
+                .quantity(1).priceAtAddTime(new BigDecimal("999.99")).build());
+        theirs.getItems().add(CartItem.builder().id(8L).cart(theirs)
+                .product(Product.builder().id(2L).name("Mouse").build())
+                .quantity(2).priceAtAddTime(new BigDecimal("19.99")).build());
+        when(cartRepository.claimVersion(eq(1L), eq(0L), any())).thenReturn(0);
+        when(cartRepository.existsById(1L)).thenReturn(true);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(theirs));
+        when(cartRepository.findWithItemsById(1L)).thenReturn(Optional.of(theirs));
+
+        // When
+        store.flushDirty();
+
+        // Then: both changes survive, and the retry claimed the newer version
+        List<CartState.Line> lines = List.copyOf(store.read("test@example.com", CartState::getLines));
+        assertEquals(2, lines.size());
+        assertEquals(4, lines.get(0).getQuantity());
+        assertEquals(2, lines.get(1).getQuantity());
+        assertEquals(8L, lines.get(1).getItemId());
+        verify(cartRepository).claimVersion(eq(1L), eq(3L), any());
+    }
+
+    private CartStore store(Duration idleTimeout) {
+        return new CartStore(cartRepository, userRepository, productRepository, invalidationBus,
+                transactionManager, idleTimeout);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Category;
+import com.example.shop.repository.CategoryProductCount;
+import com.example.shop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryCountServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryHierarchy categoryHierarchy;
+
+    private CategoryTree tree;
+
+    @BeforeEach
+    void setUp() {
+        Category electronics = category(1L, "Electronics", null);
+        Category laptops = category(2L, "Laptops", electronics);
+        tree = CategoryTree.of(List.of(electronics, laptops));
+        when(categoryHierarchy.current()).thenReturn(tree);
+    }
+
+    @Test
+    void testGetCounts_RollsSubcategoriesUpToAncestors() {
+        // Given
+        CategoryCountService service = new CategoryCountService(productRepository, categoryHierarchy, Duration.ofMinutes(1));
+        when(productRepository.countActiveByCategory()).thenReturn(List.of(row(1L, 2, 1), row(2L, 5, 3)));
+
+        // When
+        CategoryCounts counts = service.getCounts();
+
+        // Then
+        assertEquals(new CategoryCounts.Counts(2, 1, 7, 4), counts.get(1L));
+        assertEquals(new CategoryCounts.Counts(5, 3, 5, 3), counts.get(2L));
+        assertEquals(CategoryCounts.NONE, counts.get(99L));
+    }
+
+    @Test
+    void testGetCounts_RecountsAfterProductWritesButDebouncesStockChanges() {
+        // Given
+        CategoryCountService service = new CategoryCountService(productRepository, categoryHierarchy, Duration.ofMinutes(1));
+        when(productRepository.countActiveByCategory()).thenReturn(List.of(row(2L, 5, 3)));
+        service.getCounts();
+
+        // When
+        service.stockAvailabilityChanged();
+        service.getCounts();
+        service.productsChanged();
+        service.getCounts();
+        service.getCounts();
+
+        // Then
+        verify(productRepository, times(2)).countActiveByCategory();
+    }
+
+    @Test
+    void testGetCounts_RecountsOnceStockDelayHasPassed() {
+        // Given
+        CategoryCountService service = new CategoryCountService(productRepository, categoryHierarchy, Duration.ZERO);
+        when(productRepository.countActiveByCategory()).thenReturn(List.of(row(2L, 5, 3)));
+        service.getCounts();
+
+        // When
+        service.stockAvailabilityChanged();
+        service.stockAvailabilityChanged();
+        service.getCounts();
+        service.getCounts();
+
+        // Then
+        verify(productRepository, times(2)).countActiveByCategory();
+    }
+
+    private static CategoryProductCount row(Long categoryId, long active, long inStock) {
+        return new CategoryProductCount() {
+            @Override
+            public Long getCategoryId() {
+                return categoryId;
+            }
+
+            @Override
+            public Long getActiveCount() {
+                return active;
+            }
+
+            @Override
+            public Long getInStockCount() {
+                return inStock;
+            }
+        };
+    }
+
+    private static Category category(Long id, String name, Category parent) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setParentCategory(parent);
+        return category;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CategoryRequest;
+import com.example.shop.dto.CategoryTreeResponse;
+import com.example.shop.model.Category;
+import com.example.shop.repository.CategoryClosureRepository;
+import com.example.shop.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryServiceTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private CategoryClosureRepository closureRepository;
+
+    @Mock
+    private CategoryHierarchy categoryHierarchy;
+
+    @Mock
+    private ProductCacheInvalidator productCacheInvalidator;
+
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    @InjectMocks
+    private CategoryService categoryService;
+
+    @Test
+    void testCreate_LinksNewCategoryToParentAncestors() {
+        // Given
+        Category parent = category(1L, "Electronics", null);
+        CategoryRequest request = new CategoryRequest();
+        request.setName("Laptops");
+        request.setParentCategoryId(1L);
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(parent));
+        when(categoryRepository.save(any(Category.class))).thenAnswer(invocation -> {
+            Category saved = invocation.getArgument(0);
+            saved.setId(2L);
+            return saved;
+        });
+        when(categoryHierarchy.load()).thenReturn(CategoryTree.of(List.of(parent)));
+
+        // When
+        categoryService.create(request);
+
+        // Then
+        verify(closureRepository).insertSelf(2L);
+        verify(closureRepository).insertPathsFromAncestorsOf(1L, 2L);
+        verify(categoryHierarchy).publish(any(CategoryTree.class));
+    }
+
+    @Test
+    void testUpdate_RejectsMoveUnderOwnSubcategory() {
+        // Given
+        Category electronics = category(1L, "Electronics", null);
+        Category laptops = category(2L, "Laptops", electronics);
+        CategoryRequest request = new CategoryRequest();
+        request.setName("Electronics");
+        request.setParentCategoryId(2L);
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(electronics));
+        when(categoryRepository.findById(2L)).thenReturn(Optional.of(laptops));
+        when(closureRepository.findDescendantIds(1L)).thenReturn(List.of(1L, 2L));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> categoryService.update(1L, request));
+        verify(categoryRepository, never()).save(any());
+    }
+
+    @Test
+    void testDelete_RejectsCategoryWithSubcategories() {
+        // Given
+        when(categoryRepository.existsById(1L)).thenReturn(true);
+        when(closureRepository.findDescendantIds(1L)).thenReturn(List.of(1L, 2L));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> categoryService.delete(1L));
+        verify(categoryRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void testTreeSnapshot_NestsChildrenAndWalksAncestors() {
+        // Given
+        Category electronics = category(1L, "Electronics", null);
+        Category laptops = category(2L, "Laptops", electronics);
+        Category gaming = category(3L, "Gaming Laptops", laptops);
+        Category books = category(4L, "Books", null);
+
+        // When
+        CategoryTree tree = CategoryTree.of(List.of(gaming, books, electronics, laptops));
+
+        // Then
+        List<CategoryTreeResponse> roots = tree.roots();
+        assertEquals(List.of("Books", "Electronics"), roots.stream().map(CategoryTreeResponse::getName).toList());
+        assertEquals("Gaming Laptops", roots.get(1).getChildren().get(0).getChildren().get(0).getName());
+        assertEquals(List.of(3L, 2L, 1L), tree.ancestorsOrSelf(3L));
+        assertEquals(List.of(1L, 2L, 3L), tree.descendantsOrSelf(1L));
+        assertEquals(7, tree.closureRows().size());
+    }
+
+    private static Category category(Long id, String name, Category parent) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setActive(true);
+        category.setParentCategory(parent);
+        return category;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.shop.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterInvalidationBusTest {
+
+    @Mock
+    private ApplicationEventPublisher publisherA;
+
+    @Mock
+    private ApplicationEventPublisher publisherB;
+
+    private LoopbackInvalidationTransport transportA;
+    private LoopbackInvalidationTransport transportB;
+    private ClusterInvalidationBus nodeA;
+    private ClusterInvalidationBus nodeB;
+
+    @BeforeEach
+    void setUp() {
+        transportA = new LoopbackInvalidationTransport();
+        transportB = new LoopbackInvalidationTransport();
+        nodeA = new ClusterInvalidationBus(transportA, publisherA);
+        nodeB = new ClusterInvalidationBus(transportB, publisherB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.destroy();
+        nodeB.destroy();
+        transportA.close();
+        transportB.close();
+    }
+
+    @Test
+    void testBroadcast_DeliveredToOtherNodesOnly() {
+        nodeA.broadcast(InvalidationTopic.PRODUCT_CACHE, List.of(1L, 2L));
+
+        verify(publisherB, timeout(1000))
+                .publishEvent(new ClusterInvalidationEvent(InvalidationTopic.PRODUCT_CACHE, List.of(1L, 2L)));
+        verify(publisherA, after(100).never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void testBroadcast_LargeIdSetsAreSplit() {
+        List<Long> ids = LongStream.rangeClosed(1, ClusterInvalidationBus.MAX_IDS_PER_MESSAGE + 1).boxed().toList();
+
+        nodeA.broadcast(InvalidationTopic.STOCK, ids);
+
+        verify(publisherB, timeout(1000).times(2)).publishEvent(any(ClusterInvalidationEvent.class));
+    }
+
+    @Test
+    void testMessage_EncodeDecodeRoundTrip() {
+        InvalidationMessage withIds = new InvalidationMessage("node-1", InvalidationTopic.LISTINGS, List.of(3L, 40L));
+        InvalidationMessage withoutIds = new InvalidationMessage("node-1", InvalidationTopic.CATEGORIES, List.of());
+
+        byte[] encoded = withIds.encode();
+
+        assertEquals(withIds, InvalidationMessage.decode(encoded, 0, encoded.length));
+        assertEquals(withoutIds, InvalidationMessage.decode(withoutIds.encode(), 0, withoutIds.encode().length));
+        assertThrows(IllegalArgumentException.class,
+                () -> InvalidationMessage.decode("garbage".getBytes(), 0, 7));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Category;
+import com.example.shop.model.PromotionTier;
+import com.example.shop.model.PromotionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledPromotionsTest {
+
+    private static final long NOW = Instant.parse("2026-06-01T12:00:00Z").toEpochMilli();
+
+    private CategoryTree tree;
+
+    @BeforeEach
+    void setUp() {
+        Category apparel = Category.builder().id(1L).name("Apparel").active(true).build();
+        Category shirts = Category.builder().id(2L).name("Shirts").active(true).parentCategory(apparel).build();
+        Category books = Category.builder().id(3L).name("Books").active(true).build();
+        tree = CategoryTree.of(List.of(apparel, shirts, books));
+    }
+
+    @Test
+    void testPrice_CategoryRuleCoversSubcategories() {
+        // Given
+        CompiledPromotions promotions = compile(percentage(1L, "Apparel sale", 1L, "20"));
+
+        // When
+        PricedCart priced = promotions.price(List.of(
+                new PricingLine(10L, 2L, new BigDecimal("25.00"), 2),
+                new PricingLine(11L, 3L, new BigDecimal("12.50"), 1)), null, NOW);
+
+        // Then
+        assertEquals(new BigDecimal("10.00"), priced.lines().get(0).discount());
+        assertEquals(List.of("Apparel sale"), priced.lines().get(0).promotions());
+        assertEquals(new BigDecimal("0.00"), priced.lines().get(1).discount());
+        assertEquals(new BigDecimal("62.50"), priced.subtotal());
+        assertEquals(new BigDecimal("52.50"), priced.total());
+    }
+
+    @Test
+    void testPrice_BuyXGetYDiscountsWholeGroupsOnly() {
+        // Given: buy 2, get 1 free
+        CompiledPromotions promotions = compile(new PromotionRule(1L, "3 for 2", PromotionType.BUY_X_GET_Y,
+                10L, null, null, null, 2, 1, List.of(), null, null));
+
+        // When
+        PricedCart priced = promotions.price(List.of(new PricingLine(10L, null, new BigDecimal("4.00"), 7)),
+                null, NOW);
+
+        // Then: two complete groups of three
+        assertEquals(new BigDecimal("8.00"), priced.discount());
+        assertEquals(new BigDecimal("20.00"), priced.total());
+    }
+
+    @Test
+    void testPrice_TieredRuleUsesSubtotalOfEveryMatchingLine() {
+        // Given
+        CompiledPromotions promotions = compile(new PromotionRule(1L, "Spend more", PromotionType.TIERED,
+                null, 1L, null, null, 0, 0,
+                List.of(new PromotionTier(new BigDecimal("100.00"), new BigDecimal("10")),
+                        new PromotionTier(new BigDecimal("50.00"), new BigDecimal("5"))),
+                null, null));
+
+        // When: 60 + 50 of apparel reaches the 100 tier although neither line does alone
+        PricedCart priced = promotions.price(List.of(
+                new PricingLine(10L, 1L, new BigDecimal("60.00"), 1),
+                new PricingLine(11L, 2L, new BigDecimal("50.00"), 1),
+                new PricingLine(12L, 3L, new BigDecimal("500.00"), 1)), null, NOW);
+
+        // Then
+        assertEquals(new BigDecimal("6.00"), priced.lines().get(0).discount());
+        assertEquals(new BigDecimal("5.00"), priced.lines().get(1).discount());
+        assertEquals(new BigDecimal("0.00"), priced.lines().get(2).discount());
+    }
+
+    @Test
+    void testPrice_BestAutomaticRuleWinsAndCouponStacksOnRemainder() {
+        // Given
+        CompiledPromotions promotions = compile(
+                percentage(1L, "Sitewide", null, "5"),
+                percentage(2L, "Shirts", 2L, "30"),
+                new PromotionRule(3L, "Welcome", PromotionType.PERCENTAGE, null, null, "WELCOME",
+                        new BigDecimal("10"), 0, 0, List.of(), null, null));
+
+        // When
+        PricedCart withoutCoupon = promotions.price(List.of(new PricingLine(10L, 2L, new BigDecimal("100.00"), 1)),
+                null, NOW);
+        PricedCart withCoupon = promotions.price(List.of(new PricingLine(10L, 2L, new BigDecimal("100.00"), 1)),
+                "welcome", NOW);
+
+        // Then: 30% off, then 10% off the remaining 70
+        assertEquals(new BigDecimal("30.00"), withoutCoupon.discount());
+        assertNull(withoutCoupon.couponCode());
+        assertEquals(new BigDecimal("37.00"), withCoupon.discount());
+        assertEquals(List.of("Shirts", "Welcome"), withCoupon.lines().get(0).promotions());
+        assertEquals("WELCOME", withCoupon.couponCode());
+    }
+
+    @Test
+    void testPrice_RulesOutsideTheirWindowDoNotApply() {
+        // Given
+        Instant now = Instant.ofEpochMilli(NOW);
+        CompiledPromotions promotions = compile(
+                new PromotionRule(1L, "Ended", PromotionType.PERCENTAGE, null, null, null, new BigDecimal("50"),
+                        0, 0, List.of(), now.minusSeconds(7200), now.minusSeconds(3600)),
+                new PromotionRule(2L, "Upcoming", PromotionType.PERCENTAGE, null, null, "LATER",
+                        new BigDecimal("50"), 0, 0, List.of(), now.plusSeconds(3600), null));
+
+        // When
+        PricedCart priced = promotions.price(List.of(new PricingLine(10L, null, new BigDecimal("10.00"), 1)),
+                "LATER", NOW);
+
+        // Then
+        assertEquals(new BigDecimal("0.00"), priced.discount());
+        assertNull(priced.couponCode());
+        assertFalse(promotions.isValidCoupon("LATER", NOW));
+        assertTrue(promotions.isValidCoupon("LATER", NOW + 7_200_000));
+    }
+
+    private CompiledPromotions compile(PromotionRule... rules) {
+        return CompiledPromotions.compile(List.of(rules), tree);
+    }
+
+    private static PromotionRule percentage(long id, String name, Long categoryId, String percentOff) {
+        return new PromotionRule(id, name, PromotionType.PERCENTAGE, null, categoryId, null,
+                new BigDecimal(percentOff), 0, 0, List.of(), null, null);
+    }
+}
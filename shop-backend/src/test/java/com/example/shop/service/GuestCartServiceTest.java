@@ -0,0 +1,161 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.CartOperation;
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.model.MergedGuestCart;
+import com.example.shop.repository.MergedGuestCartRepository;
+import com.example.shop.repository.PromotionRepository;
+import com.example.shop.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GuestCartServiceTest {
+
+    @Mock
+    private CartStore cartStore;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private PromotionRepository promotionRepository;
+
+    @Mock
+    private CategoryHierarchy categoryHierarchy;
+
+    @Mock
+    private MergedGuestCartRepository mergedGuestCartRepository;
+
+    private GuestCartService guestCartService;
+
+    @BeforeEach
+    void setUp() {
+        CartService cartService = new CartService(cartStore, productService, inventoryService,
+                new PromotionEngine(promotionRepository, categoryHierarchy));
+        JwtUtil jwtUtil = new JwtUtil("test-secret-key-for-testing-purposes-only-minimum-32-characters", 3600000);
+        guestCartService = new GuestCartService(cartService, productService, jwtUtil, mergedGuestCartRepository,
+                Duration.ofDays(7));
+
+        ProductResponse laptop = ProductResponse.builder()
+                .id(1L)
+                .name("Laptop")
+                .price(new BigDecimal("999.99"))
+                .categoryId(1L)
+                .active(true)
+                .build();
+        lenient().when(productService.getByIds(anyCollection())).thenReturn(List.of(laptop));
+        lenient().when(inventoryService.getStock(anyCollection())).thenReturn(Map.of(1L, 10));
+    }
+
+    @Test
+    void testApplyOperations_CartTravelsInTokenWithoutTouchingTheStore() {
+        // When
+        GuestCartService.GuestCart added = guestCartService.applyOperations(null,
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 2)));
+        GuestCartService.GuestCart updated = guestCartService.applyOperations(added.token(),
+                List.of(operation(CartOperation.Type.UPDATE, null, 1L, 3)));
+        GuestCartService.GuestCart read = guestCartService.get(updated.token());
+
+        // Then: the product id serves as item id
+        assertEquals(1L, added.cart().getItems().get(0).getId());
+        assertEquals(3, read.cart().getItems().get(0).getQuantity());
+        assertEquals(new BigDecimal("2999.97"), read.cart().getTotalAmount());
+        verifyNoInteractions(cartStore);
+    }
+
+    @Test
+    void testGet_TamperedTokenReadsAsEmptyCart() {
+        // Given: the claims of one cart under the signature of another
+        String[] signed = guestCartService.applyOperations(null,
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 2))).token().split("\\.");
+        String[] forged = guestCartService.applyOperations(null,
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 5))).token().split("\\.");
+        String tampered = signed[0] + "." + forged[1] + "." + signed[2];
+
+        // When & Then
+        assertTrue(guestCartService.get(tampered).cart().getItems().isEmpty());
+    }
+
+    @Test
+    void testApplyOperations_QuantityAboveStockRejected() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> guestCartService.applyOperations(null,
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 11))));
+    }
+
+    @Test
+    void testMergeIntoUserCart_InvalidTokenIgnored() {
+        // When
+        guestCartService.mergeIntoUserCart("test@example.com", "not-a-token");
+
+        // Then
+        verify(cartStore, never()).update(any(), any(), any());
+        verifyNoInteractions(mergedGuestCartRepository);
+    }
+
+    @Test
+    void testMergeIntoUserCart_ReplayedTokenMergedOnce() {
+        // Given: the second sign-in finds the token already recorded
+        String token = guestCartService.applyOperations(null,
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 2))).token();
+        when(mergedGuestCartRepository.saveAndFlush(any(MergedGuestCart.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // When
+        guestCartService.mergeIntoUserCart("test@example.com", token);
+        guestCartService.mergeIntoUserCart("test@example.com", token);
+
+        // Then
+        verify(cartStore, times(1)).update(eq("test@example.com"), any(), any());
+        verify(mergedGuestCartRepository, times(2)).saveAndFlush(any(MergedGuestCart.class));
+    }
+
+    @Test
+    void testMergeIntoUserCart_FailedMergeReleasesTheToken() {
+        // Given
+        String token = guestCartService.applyOperations(null,
+                List.of(operation(CartOperation.Type.ADD, 1L, null, 2))).token();
+        when(mergedGuestCartRepository.saveAndFlush(any(MergedGuestCart.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(cartStore.update(eq("test@example.com"), any(), any())).thenThrow(new IllegalStateException("down"));
+
+        // When
+        assertThrows(IllegalStateException.class,
+                () -> guestCartService.mergeIntoUserCart("test@example.com", token));
+
+        // Then: the claim is gone, so the next sign-in merges the cart
+        ArgumentCaptor<MergedGuestCart> claimed = ArgumentCaptor.forClass(MergedGuestCart.class);
+        verify(mergedGuestCartRepository).saveAndFlush(claimed.capture());
+        verify(mergedGuestCartRepository).deleteById(claimed.getValue().getTokenId());
+    }
+
+    private static CartOperation operation(CartOperation.Type type, Long productId, Long itemId, Integer quantity) {
+        CartOperation op = new CartOperation();
+        op.setType(type);
+        op.setProductId(productId);
+        op.setItemId(itemId);
+        op.setQuantity(quantity);
+        return op;
+    }
+}
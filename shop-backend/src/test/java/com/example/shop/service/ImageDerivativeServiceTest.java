@@ -0,0 +1,93 @@
+package com.example.shop.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageDerivativeServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @Mock
+    private ProductService productService;
+
+    private FileStorageService fileStorageService;
+    private ImageDerivativeService imageDerivativeService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService(uploadDir.toString());
+        imageDerivativeService = new ImageDerivativeService(fileStorageService, productService, new SyncTaskExecutor());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateVariants_ScaledDownAndNamedByContentHash() throws IOException {
+        // Given
+        writeImage("original.jpg", 2000, 1000, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        // When
+        imageDerivativeService.generateVariants(1L, "/uploads/original.jpg");
+
+        // Then
+        ArgumentCaptor<Map<ImageVariant, String>> urls = ArgumentCaptor.forClass(Map.class);
+        verify(productService).updateImageVariants(eq(1L), eq("/uploads/original.jpg"), urls.capture());
+        assertEquals(3, urls.getValue().size());
+        for (ImageVariant variant : ImageVariant.values()) {
+            String url = urls.getValue().get(variant);
+            assertTrue(url.matches("/uploads/v/[0-9a-f]{64}\\.jpg"), url);
+            BufferedImage stored = ImageIO.read(fileStorageService.resolve(url).toFile());
+            assertEquals(variant.getMaxDimension(), stored.getWidth());
+            assertEquals(variant.getMaxDimension() / 2, stored.getHeight());
+        }
+    }
+
+    @Test
+    void testCreateVariants_SmallImagesAreNotEnlargedAndTransparencyKept() throws IOException {
+        writeImage("icon.png", 100, 50, BufferedImage.TYPE_INT_ARGB, "png");
+
+        Map<ImageVariant, String> urls = imageDerivativeService.createVariants("/uploads/icon.png");
+
+        // All three variants have the same size and content, so they share one file
+        assertEquals(1, urls.values().stream().distinct().count());
+        String url = urls.get(ImageVariant.DETAIL);
+        assertTrue(url.endsWith(".png"));
+        BufferedImage stored = ImageIO.read(fileStorageService.resolve(url).toFile());
+        assertEquals(100, stored.getWidth());
+        assertTrue(stored.getColorModel().hasAlpha());
+    }
+
+    @Test
+    void testGenerateVariants_NotAnImageLeavesProductUntouched() throws IOException {
+        Files.writeString(uploadDir.resolve("notes.txt"), "not an image");
+
+        imageDerivativeService.generateVariants(1L, "/uploads/notes.txt");
+
+        verify(productService, never()).updateImageVariants(anyLong(), anyString(), any());
+    }
+
+    private void writeImage(String name, int width, int height, int type, String format) throws IOException {
+        ImageIO.write(new BufferedImage(width, height, type), format, uploadDir.resolve(name).toFile());
+    }
+}
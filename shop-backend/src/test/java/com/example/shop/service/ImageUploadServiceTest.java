@@ -0,0 +1,177 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImageUploadResponse;
+import com.example.shop.exception.ServiceBusyException;
+import com.example.shop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageUploadServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductService productService;
+
+    private FileStorageService fileStorageService;
+    private ImageDerivativeService imageDerivativeService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService(uploadDir.toString());
+        imageDerivativeService = new ImageDerivativeService(fileStorageService, productService, new SyncTaskExecutor());
+        lenient().when(productRepository.existsById(1L)).thenReturn(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSubmit_PipelineStoresImageAndVariantsInOneProductUpdate() throws IOException {
+        // Given
+        ImageUploadService uploadService = service(new SyncTaskExecutor());
+
+        // When
+        uploadService.submit(1L, new MockMultipartFile("file", "photo.JPG", "image/jpeg", jpeg(1600, 900)));
+
+        // Then
+        ArgumentCaptor<String> imageUrl = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<ImageVariant, String>> variants = ArgumentCaptor.forClass(Map.class);
+        verify(productService).updateImage(eq(1L), imageUrl.capture(), variants.capture());
+        assertTrue(imageUrl.getValue().matches("/uploads/[0-9a-f]{64}\\.jpg"), imageUrl.getValue());
+        assertTrue(Files.exists(fileStorageService.resolve(imageUrl.getValue())));
+        assertEquals(3, variants.getValue().size());
+        ImageUploadResponse status = uploadService.getStatus(1L);
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(imageUrl.getValue(), status.getImageUrl());
+        assertNoSpoolFilesLeft();
+    }
+
+    @Test
+    void testSubmit_NonImageFailsValidationWithoutTouchingProduct() throws IOException {
+        // Given
+        ImageUploadService uploadService = service(new SyncTaskExecutor());
+
+        // When
+        uploadService.submit(1L, new MockMultipartFile("file", "notes.png", "image/png", "not an image".getBytes()));
+
+        // Then
+        ImageUploadResponse status = uploadService.getStatus(1L);
+        assertEquals("FAILED", status.getStatus());
+        assertEquals("VALIDATE", status.getStage());
+        verifyNoInteractions(productService);
+        assertNoSpoolFilesLeft();
+    }
+
+    @Test
+    void testSubmitLocalFile_CompletedVideoUploadNeverBecomesTheImage() throws IOException {
+        // Given: a finished resumable upload that is not an image
+        ImageUploadService uploadService = service(new SyncTaskExecutor());
+        Path part = fileStorageService.createPartFile("upload-1", 0);
+        Files.write(part, "ftypisom video".getBytes());
+
+        // When
+        uploadService.submitLocalFile(1L, "clip.mp4", part);
+
+        // Then
+        ImageUploadResponse status = uploadService.getStatus(1L);
+        assertEquals("FAILED", status.getStatus());
+        assertEquals("VALIDATE", status.getStage());
+        verifyNoInteractions(productService);
+        assertFalse(Files.exists(part));
+    }
+
+    @Test
+    void testSubmit_OlderUploadFinishingLastDoesNotReplaceNewerImage() throws IOException {
+        // Given: both uploads queued before either runs
+        List<Runnable> queued = new ArrayList<>();
+        ImageUploadService uploadService = service(queued::add);
+        uploadService.submit(1L, new MockMultipartFile("file", "old.jpg", "image/jpeg", jpeg(40, 40)));
+        uploadService.submit(1L, new MockMultipartFile("file", "new.jpg", "image/jpeg", jpeg(50, 50)));
+
+        // When
+        queued.get(0).run();
+
+        // Then
+        verify(productService, never()).updateImage(any(), anyString(), any());
+        assertEquals("new.jpg", uploadService.getStatus(1L).getFileName());
+        assertEquals("QUEUED", uploadService.getStatus(1L).getStatus());
+    }
+
+    @Test
+    void testSubmit_FullQueueRejectsUpload() throws IOException {
+        // Given
+        ImageUploadService uploadService = service(task -> {
+            throw new TaskRejectedException("full");
+        });
+
+        // When
+        ServiceBusyException ex = assertThrows(ServiceBusyException.class, () -> uploadService.submit(1L,
+                new MockMultipartFile("file", "photo.jpg", "image/jpeg", jpeg(40, 40))));
+
+        // Then
+        assertEquals(ImageUploadService.RETRY_AFTER, ex.getRetryAfter());
+        assertThrows(IllegalArgumentException.class, () -> uploadService.getStatus(1L));
+        assertNoSpoolFilesLeft();
+    }
+
+    @Test
+    void testSubmit_UnknownProductRejectedBeforeSpooling() {
+        // Given
+        ImageUploadService uploadService = service(new SyncTaskExecutor());
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> uploadService.submit(99L,
+                new MockMultipartFile("file", "photo.jpg", "image/jpeg", new byte[] {1})));
+        verifyNoInteractions(productService);
+    }
+
+    private ImageUploadService service(TaskExecutor executor) {
+        return new ImageUploadService(productRepository, productService, fileStorageService, imageDerivativeService,
+                executor);
+    }
+
+    private void assertNoSpoolFilesLeft() throws IOException {
+        Path parts = uploadDir.resolve("parts");
+        if (Files.isDirectory(parts)) {
+            try (Stream<Path> files = Files.list(parts)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ProductResponse;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.ProductStock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCacheInvalidator cacheInvalidator;
+
+    @Mock
+    private CategoryCountService categoryCountService;
+
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    @InjectMocks
+    private InventoryService inventoryService;
+
+    @Test
+    void testGetStock_LoadsOnceThenServesFromMemory() {
+        // Given
+        when(productRepository.findStockByIdIn(anyCollection())).thenReturn(List.of(stock(1L, 7)));
+
+        // When
+        Integer first = inventoryService.getStock(1L);
+        Integer second = inventoryService.getStock(1L);
+
+        // Then
+        assertEquals(7, first);
+        assertEquals(7, second);
+        verify(productRepository, times(1)).findStockByIdIn(anyCollection());
+    }
+
+    @Test
+    void testWithCurrentStock_ReturnsCopyWithoutMutatingCachedResponse() {
+        // Given
+        when(productRepository.findStockByIdIn(anyCollection())).thenReturn(List.of(stock(1L, 3)));
+        ProductResponse cached = ProductResponse.builder().id(1L).name("Laptop").stockQuantity(10).build();
+
+        // When
+        ProductResponse merged = inventoryService.withCurrentStock(cached);
+
+        // Then
+        assertEquals(3, merged.getStockQuantity());
+        assertEquals("Laptop", merged.getName());
+        assertEquals(10, cached.getStockQuantity());
+    }
+
+    @Test
+    void testStockChanged_ReloadsCommittedStockOnNextRead() {
+        // Given
+        when(productRepository.findStockByIdIn(anyCollection()))
+                .thenReturn(List.of(stock(1L, 10)), List.of(stock(1L, 8)));
+        inventoryService.getStock(1L);
+
+        // When
+        inventoryService.stockChanged(1L, 2L, 10, 8);
+
+        // Then
+        assertEquals(8, inventoryService.getStock(1L));
+        verify(invalidationBus).broadcast(InvalidationTopic.STOCK, List.of(1L));
+    }
+
+    @Test
+    void testGetStock_LoadRacingWithACommitIsNotKept() {
+        // Given: a change commits while the load is reading the old stock
+        when(productRepository.findStockByIdIn(anyCollection())).thenAnswer(invocation -> {
+            inventoryService.stockChanged(1L, 2L, 10, 8);
+            return List.of(stock(1L, 10));
+        }).thenReturn(List.of(stock(1L, 8)));
+
+        // When
+        Integer racing = inventoryService.getStock(1L);
+        Integer next = inventoryService.getStock(1L);
+
+        // Then: the stale value was returned once but never cached
+        assertEquals(10, racing);
+        assertEquals(8, next);
+    }
+
+    @Test
+    void testGetStock_EvictionJustBeforeCachingIsNotMissed() {
+        // Given: the change commits after the load has checked for evictions, while it caches the row
+        AtomicInteger reads = new AtomicInteger();
+        ProductStock racingRow = new ProductStock() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public Integer getStockQuantity() {
+                if (reads.incrementAndGet() == 2) {
+                    inventoryService.stockChanged(1L, 2L, 10, 8);
+                }
+                return 10;
+            }
+        };
+        when(productRepository.findStockByIdIn(anyCollection()))
+                .thenReturn(List.of(racingRow))
+                .thenReturn(List.of(stock(1L, 8)));
+
+        // When
+        inventoryService.getStock(1L);
+        Integer next = inventoryService.getStock(1L);
+
+        // Then
+        assertEquals(8, next);
+    }
+
+    @Test
+    void testStockChanged_InvalidatesPagesOnlyWhenAvailabilityFlips() {
+        // When
+        inventoryService.stockChanged(1L, 2L, 10, 8);
+        inventoryService.stockChanged(1L, 2L, 8, 0);
+
+        // Then
+        verify(cacheInvalidator, times(1)).productsChanged(any());
+        verify(cacheInvalidator).productsChanged(2L);
+        verify(categoryCountService).stockAvailabilityChanged();
+    }
+
+    private static ProductStock stock(Long id, Integer quantity) {
+        return new ProductStock() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getStockQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -14,13 +14,17 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +45,21 @@ class OrderServiceTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private PopularityService popularityService;
+
+    @Mock
+    private CartStore cartStore;
+
+    @Mock
+    private PromotionEngine promotionEngine;
+
+    @Mock
+    private ProductService productService;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -76,8 +95,13 @@ class OrderServiceTest {
         cart = Cart.builder()
                 .id(1L)
                 .user(user)
-                .items(Arrays.asList(cartItem))
+                .items(new ArrayList<>(List.of(cartItem)))
                 .build();
+
+        // No promotions
+        lenient().when(promotionEngine.price(any(), any())).thenAnswer(invocation ->
+                CompiledPromotions.EMPTY.price(invocation.getArgument(0), invocation.getArgument(1),
+                        System.currentTimeMillis()));
     }
 
     @Test
@@ -101,12 +125,59 @@ class OrderServiceTest {
         assertEquals(OrderStatus.CREATED, result.getStatus());
         assertEquals(PaymentStatus.PAID, result.getPaymentStatus());
         assertNotNull(result.getPaymentReference());
+        assertEquals(new BigDecimal("1999.98"), result.getTotalAmount());
+        assertEquals(new BigDecimal("0.00"), result.getDiscountAmount());
         verify(orderRepository).save(any(Order.class));
         verify(productRepository, atLeastOnce()).save(any(Product.class));
         verify(cartRepository).save(any(Cart.class));
+        verify(inventoryService).stockChanged(1L, null, 10, 8);
+        verify(popularityService).recordSales(Map.of(1L, 2));
+        verify(cartStore).flushForCheckout("test@example.com");
+        verify(cartStore).checkedOut(eq("test@example.com"), eq(Set.of(1L)), any());
         verify(emailService).sendOrderConfirmationEmail(anyString(), anyString(), any(), anyString());
     }
 
+    @Test
+    void testPlaceOrder_AppliesCartCoupon() {
+        // Given
+        PlaceOrderRequest request = new PlaceOrderRequest();
+        cart.setCouponCode("SAVE10");
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(cartRepository.findByUser(user)).thenReturn(Optional.of(cart));
+        doReturn(new PricedCart(
+                List.of(new PricedCart.Line(new BigDecimal("1999.98"), new BigDecimal("200.00"), List.of("Ten off"))),
+                new BigDecimal("1999.98"), new BigDecimal("200.00"), new BigDecimal("1799.98"), "SAVE10"))
+                .when(promotionEngine).price(any(), eq("SAVE10"));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        var result = orderService.placeOrder("test@example.com", request);
+
+        // Then: the coupon is used up
+        assertEquals(new BigDecimal("1799.98"), result.getTotalAmount());
+        assertEquals(new BigDecimal("200.00"), result.getDiscountAmount());
+        assertEquals("SAVE10", result.getCouponCode());
+        assertEquals(new BigDecimal("200.00"), result.getItems().get(0).getDiscount());
+        assertNull(cart.getCouponCode());
+    }
+
+    @Test
+    void testPlaceOrder_ChargesThePriceTheCartShows() {
+        // Given: the product got more expensive after it was added
+        PlaceOrderRequest request = new PlaceOrderRequest();
+        product.setPrice(new BigDecimal("1099.99"));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(cartRepository.findByUser(user)).thenReturn(Optional.of(cart));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        var result = orderService.placeOrder("test@example.com", request);
+
+        // Then
+        assertEquals(new BigDecimal("1999.98"), result.getTotalAmount());
+        assertEquals(new BigDecimal("999.99"), result.getItems().get(0).getPriceEach());
+    }
+
     @Test
     void testPlaceOrder_CartEmpty() {
         // Given
@@ -128,6 +199,24 @@ class OrderServiceTest {
         verify(orderRepository, never()).save(any(Order.class));
     }
 
+    @Test
+    void testPlaceOrder_PricesWithTheSameCategoriesAsTheCart() {
+        // Given: the cart is priced with the product's category from ProductService
+        PlaceOrderRequest request = new PlaceOrderRequest();
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(cartRepository.findByUser(user)).thenReturn(Optional.of(cart));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(productService.getCategoryIds(List.of(1L))).thenReturn(Map.of(1L, 5L));
+
+        // When
+        orderService.placeOrder("test@example.com", request);
+
+        // Then
+        verify(promotionEngine).price(
+                eq(List.of(new PricingLine(1L, 5L, new BigDecimal("999.99"), 2))), any());
+    }
+
     @Test
     void testPlaceOrder_InsufficientStock() {
         // Given
@@ -0,0 +1,164 @@
+package com.example.shop.service;
+
+import com.example.shop.model.ProductStats;
+import com.example.shop.repository.ProductScore;
+import com.example.shop.repository.ProductStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PopularityServiceTest {
+
+    @Mock
+    private ProductStatsRepository statsRepository;
+
+    @Mock
+    private ProductListingIndex listingIndex;
+
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PopularityService popularityService;
+
+    @BeforeEach
+    void setUp() {
+        // Half-life equal to the decay interval: every decay halves the scores
+        popularityService = new PopularityService(statsRepository, listingIndex, invalidationBus, transactionManager,
+                10, Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_AddsCountsInPlaceAndRepublishesStoredScores() {
+        // Given: product 1 has a row, product 2 is new; another node has added to product 1 meanwhile
+        when(statsRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(statsRepository.findScores(any())).thenReturn(List.of(score(1L, 9.0), score(2L, 32.0)));
+        popularityService.recordView(1L);
+        popularityService.recordView(2L);
+        popularityService.recordView(2L);
+        popularityService.recordSales(Map.of(2L, 3));
+
+        // When
+        popularityService.flush();
+
+        // Then
+        ArgumentCaptor<List<ProductStats>> created = ArgumentCaptor.forClass(List.class);
+        verify(statsRepository).saveAllAndFlush(created.capture());
+        assertEquals(List.of(2L), created.getValue().stream().map(ProductStats::getProductId).toList());
+        verify(statsRepository).addCounts(eq(1L), eq(1L), eq(0L), eq(1.0), any());
+        verify(statsRepository).addCounts(eq(2L), eq(2L), eq(3L), eq(32.0), any());
+        verify(statsRepository, never()).saveAll(any());
+        verify(listingIndex).scoresChanged(Map.of(1L, 9.0, 2L, 32.0));
+        verify(invalidationBus).broadcast(InvalidationTopic.POPULARITY, Set.of(1L, 2L));
+    }
+
+    @Test
+    void testFlush_RowCreatedByAnotherNodeIsCounted() {
+        // Given
+        when(statsRepository.findExistingIds(any())).thenReturn(List.of());
+        when(statsRepository.saveAllAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(statsRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(statsRepository.findScores(any())).thenReturn(List.of(score(1L, 4.0)));
+        popularityService.recordView(1L);
+
+        // When
+        popularityService.flush();
+
+        // Then
+        verify(statsRepository).addCounts(eq(1L), eq(1L), eq(0L), eq(1.0), any());
+        verify(listingIndex).scoresChanged(Map.of(1L, 4.0));
+    }
+
+    @Test
+    void testFlush_NothingCountedSinceLastFlushSkipsDatabase() {
+        // Given
+        popularityService.recordView(1L);
+        popularityService.flush();
+
+        // When
+        popularityService.flush();
+
+        // Then
+        verify(statsRepository, times(1)).findExistingIds(any());
+        verify(statsRepository, times(1)).addCounts(any(), anyLong(), anyLong(), anyDouble(), any());
+    }
+
+    @Test
+    void testDecay_OneUpdateAndScoresRepublished() {
+        // Given
+        when(statsRepository.findScores(any())).thenReturn(List.of(score(1L, 2.0)));
+        popularityService.recordView(1L);
+        popularityService.recordView(1L);
+        popularityService.flush();
+
+        // When
+        popularityService.decay();
+
+        // Then
+        verify(statsRepository).decayScores(0.5);
+        verify(listingIndex).scoresChanged(Map.of(1L, 1.0));
+        verify(invalidationBus).broadcast(InvalidationTopic.POPULARITY_DECAY);
+    }
+
+    @Test
+    void testDecay_SkippedAfterAnotherNodeDecayed() {
+        // Given
+        popularityService.onClusterInvalidation(
+                new ClusterInvalidationEvent(InvalidationTopic.POPULARITY_DECAY, List.of()));
+
+        // When
+        popularityService.decay();
+
+        // Then
+        verify(statsRepository, never()).decayScores(anyDouble());
+    }
+
+    @Test
+    void testClusterInvalidation_ReloadsScoresWrittenElsewhere() {
+        // Given
+        ProductStats stats = ProductStats.newFor(3L);
+        stats.setScore(12);
+        when(statsRepository.findAllById(List.of(3L))).thenReturn(List.of(stats));
+
+        // When
+        popularityService.onClusterInvalidation(new ClusterInvalidationEvent(InvalidationTopic.POPULARITY, List.of(3L)));
+
+        // Then
+        verify(listingIndex).scoresChanged(Map.of(3L, 12.0));
+    }
+
+    private static ProductScore score(Long productId, double score) {
+        return new ProductScore() {
+            @Override
+            public Long getProductId() {
+                return productId;
+            }
+
+            @Override
+            public Double getScore() {
+                return score;
+            }
+        };
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Category;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductListingRow;
+import com.example.shop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductListingIndexTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryHierarchy categoryHierarchy;
+
+    @Mock
+    private ClusterInvalidationBus invalidationBus;
+
+    private ProductListingIndex index;
+
+    private record Row(Long id, Long categoryId, BigDecimal price, String name, Instant createdAt, Boolean active)
+            implements ProductListingRow {
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getCategoryId() {
+            return categoryId;
+        }
+
+        @Override
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public Boolean getActive() {
+            return active;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Apparel(1) > Shirts(2), Books(3)
+        Category apparel = Category.builder().id(1L).name("Apparel").active(true).build();
+        Category shirts = Category.builder().id(2L).name("Shirts").active(true).parentCategory(apparel).build();
+        Category books = Category.builder().id(3L).name("Books").active(true).build();
+        // Lenient: the fallback test never reaches the index
+        lenient().when(categoryHierarchy.current()).thenReturn(CategoryTree.of(List.of(apparel, shirts, books)));
+        lenient().when(productRepository.findAllListingRows()).thenReturn(List.of(
+                new Row(1L, 2L, new BigDecimal("15.00"), "Tee", T0, true),
+                new Row(2L, 1L, new BigDecimal("80.00"), "Jacket", T0.plusSeconds(1), true),
+                new Row(3L, 2L, new BigDecimal("45.00"), "sweater", T0.plusSeconds(2), false),
+                new Row(4L, 3L, new BigDecimal("12.00"), "Novel", T0.plusSeconds(3), true)));
+        index = new ProductListingIndex(productRepository, categoryHierarchy, invalidationBus);
+    }
+
+    @Test
+    void testFind_NewestFirstSlicesCategoryWithSubcategories() {
+        Pageable firstPage = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+        ProductListingIndex.IdPage first = index.find(1L, null, null, null, firstPage).orElseThrow();
+        ProductListingIndex.IdPage second = index.find(1L, null, null, null, firstPage.next()).orElseThrow();
+
+        assertEquals(List.of(3L, 2L), first.ids());
+        assertEquals(List.of(1L), second.ids());
+        assertEquals(3, first.total());
+        verify(productRepository, times(1)).findAllListingRows();
+    }
+
+    @Test
+    void testFind_PriceRangeAndActiveOnly() {
+        Pageable byPriceDesc = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "price"));
+
+        ProductListingIndex.IdPage all = index.find(null, new BigDecimal("12.01"), new BigDecimal("45"), null,
+                byPriceDesc).orElseThrow();
+        ProductListingIndex.IdPage active = index.find(null, null, null, true, PageRequest.of(0, 10, Sort.by("name")))
+                .orElseThrow();
+
+        assertEquals(List.of(3L, 1L), all.ids());
+        assertEquals(2, all.total());
+        assertEquals(List.of(2L, 4L, 1L), active.ids());
+    }
+
+    @Test
+    void testFind_NameSortIgnoresCaseAndBreaksTiesById() {
+        // Given: "NOVEL" and "Novel" sort equal, so by id
+        Pageable byName = PageRequest.of(0, 10, Sort.by("name"));
+        index.find(null, null, null, null, byName);
+        index.productWritten(Product.builder().id(5L).name("NOVEL").price(BigDecimal.ONE).createdAt(T0)
+                .active(true).build());
+
+        // When
+        List<Long> ids = index.find(null, null, null, null, byName).orElseThrow().ids();
+
+        // Then
+        assertEquals(List.of(2L, 4L, 5L, 3L, 1L), ids);
+    }
+
+    @Test
+    void testFind_UnsupportedShapesFallBackToQuery() {
+        Pageable byNewest = PageRequest.of(0, 10, Sort.by("createdAt"));
+
+        assertTrue(index.find(null, BigDecimal.ONE, null, null, byNewest).isEmpty());
+        assertTrue(index.find(null, null, null, false, byNewest).isEmpty());
+        assertTrue(index.find(null, null, null, null, PageRequest.of(0, 10, Sort.by("name", "price"))).isEmpty());
+        assertTrue(index.find(null, null, null, null, PageRequest.of(0, 10, Sort.by("stockQuantity"))).isEmpty());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void testProductWritten_PatchesListingsWithoutReload() {
+        Pageable byPrice = PageRequest.of(0, 10, Sort.by("price"));
+        index.find(1L, null, null, null, byPrice);
+
+        // Novel moves into Shirts at a lower price, Jacket is deleted
+        index.productWritten(Product.builder()
+                .id(4L)
+                .name("Novel")
+                .price(new BigDecimal("5.00"))
+                .stockQuantity(3)
+                .category(Category.builder().id(2L).build())
+                .active(true)
+                .createdAt(T0.plusSeconds(3))
+                .build());
+        index.productDeleted(2L);
+
+        assertEquals(List.of(4L, 1L, 3L), index.find(1L, null, null, null, byPrice).orElseThrow().ids());
+        assertEquals(List.of(4L, 1L), index.find(2L, null, null, true, byPrice).orElseThrow().ids());
+        assertEquals(0, index.find(3L, null, null, null, byPrice).orElseThrow().total());
+        verify(productRepository, times(1)).findAllListingRows();
+    }
+
+    @Test
+    void testScoresChanged_ReordersPopularityListingOnly() {
+        Pageable byPopularity = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "popularity"));
+        index.scoresChanged(Map.of(4L, 2.0));
+        assertEquals(List.of(4L, 3L, 2L, 1L), index.find(null, null, null, null, byPopularity).orElseThrow().ids());
+
+        index.scoresChanged(Map.of(4L, 1.0, 3L, 7.5, 2L, 3.0));
+
+        assertEquals(List.of(3L, 2L, 4L, 1L), index.find(null, null, null, null, byPopularity).orElseThrow().ids());
+        assertEquals(List.of(2L, 1L), index.find(1L, null, null, true, byPopularity).orElseThrow().ids());
+        assertEquals(List.of(1L, 2L, 3L, 4L), index.find(null, null, null, null,
+                PageRequest.of(0, 10, Sort.by("createdAt"))).orElseThrow().ids());
+        verify(productRepository, times(1)).findAllListingRows();
+    }
+
+    @Test
+    void testScoresChanged_ResortsListingsHoldingTheChangedProduct() {
+        // Given
+        Pageable leastPopularFirst = PageRequest.of(0, 10, Sort.by("popularity"));
+        index.find(null, null, null, null, leastPopularFirst);
+
+        // When: Tee is in Shirts, under Apparel
+        index.scoresChanged(Map.of(1L, 5.0));
+
+        // Then
+        assertEquals(List.of(3L, 1L), index.find(2L, null, null, null, leastPopularFirst).orElseThrow().ids());
+        assertEquals(List.of(2L, 3L, 1L), index.find(1L, null, null, null, leastPopularFirst).orElseThrow().ids());
+        assertEquals(List.of(4L), index.find(3L, null, null, null, leastPopularFirst).orElseThrow().ids());
+    }
+
+    @Test
+    void testClusterInvalidation_RereadsOnlyChangedRows() {
+        Pageable byPrice = PageRequest.of(0, 10, Sort.by("price"));
+        index.find(null, null, null, null, byPrice);
+        // Another node repriced Tee and deleted Novel
+        when(productRepository.findListingRowsByIdIn(List.of(1L, 4L))).thenReturn(List.of(
+                new Row(1L, 2L, new BigDecimal("99.00"), "Tee", T0, true)));
+
+        index.onClusterInvalidation(new ClusterInvalidationEvent(InvalidationTopic.LISTINGS, List.of(1L, 4L)));
+
+        assertEquals(List.of(3L, 2L, 1L), index.find(null, null, null, null, byPrice).orElseThrow().ids());
+        verify(productRepository, times(1)).findAllListingRows();
+        verifyNoInteractions(invalidationBus);
+    }
+
+    @Test
+    void testInvalidate_RebuildsOnNextRead() {
+        Pageable byName = PageRequest.of(0, 10, Sort.by("name"));
+        index.find(null, null, null, null, byName);
+
+        index.invalidate();
+        index.find(null, null, null, null, byName);
+
+        verify(productRepository, times(2)).findAllListingRows();
+    }
+}
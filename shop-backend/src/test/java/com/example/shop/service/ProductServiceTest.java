@@ -14,16 +14,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +40,24 @@ class ProductServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private ProductCacheInvalidator cacheInvalidator;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private ProductByIdCache productByIdCache;
+
+    @Mock
+    private CategoryCountService categoryCountService;
+
+    @Mock
+    private ProductListingIndex listingIndex;
+
+    @Mock
+    private StoredFileService storedFileService;
+
     @InjectMocks
     private ProductService productService;
 
@@ -84,6 +107,7 @@ class ProductServiceTest {
         assertEquals(new BigDecimal("999.99"), result.getPrice());
         verify(categoryRepository).findById(1L);
         verify(productRepository).save(any(Product.class));
+        verify(cacheInvalidator).productsChanged(1L);
     }
 
     @Test
@@ -125,11 +149,30 @@ class ProductServiceTest {
         });
     }
 
+    @Test
+    void testGetByIds_LoadsOnlyCacheMissesInOneQuery() {
+        // Given
+        ProductResponse cached = ProductResponse.builder().id(2L).name("Phone").build();
+        when(productByIdCache.getAllPresent(List.of(1L, 2L))).thenReturn(Map.of(2L, cached));
+        when(productRepository.findAllWithCategoryByIdIn(List.of(1L))).thenReturn(List.of(product));
+
+        // When
+        List<ProductResponse> result = productService.getByIds(List.of(1L, 2L, 1L));
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals(1L, result.get(0).getId());
+        assertEquals("Electronics", result.get(0).getCategoryName());
+        assertSame(cached, result.get(1));
+        verify(productRepository, times(1)).findAllWithCategoryByIdIn(List.of(1L));
+        verify(productByIdCache).putAll(any());
+    }
+
     @Test
     void testSearchProducts() {
         // Given
-        Page<Product> productPage = new PageImpl<>(Arrays.asList(product));
-        when(productRepository.findAll(any(Specification.class), any(Pageable.class)))
+        Page<ProductResponse> productPage = new PageImpl<>(Arrays.asList(productService.toResponse(product)));
+        when(productRepository.searchResponses(any(Specification.class), any(Pageable.class)))
                 .thenReturn(productPage);
 
         // When
@@ -140,33 +183,117 @@ class ProductServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(productRepository).findAll(any(Specification.class), any(Pageable.class));
+        verify(productRepository).searchResponses(any(Specification.class), any(Pageable.class));
+        verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void testSearchProducts_CategoryListingServedFromIndex() {
+        // Given
+        Pageable pageable = PageRequest.of(1, 1, Sort.by(Sort.Direction.DESC, "price"));
+        ProductResponse cached = productService.toResponse(product);
+        when(listingIndex.find(1L, null, null, true, pageable))
+                .thenReturn(Optional.of(new ProductListingIndex.IdPage(List.of(1L), 3)));
+        when(productByIdCache.getAllPresent(List.of(1L))).thenReturn(Map.of(1L, cached));
+
+        // When
+        Page<ProductResponse> result = productService.search(1L, null, null, null, true, null, pageable);
+
+        // Then
+        assertEquals(List.of(cached), result.getContent());
+        assertEquals(3, result.getTotalElements());
+        verify(productRepository, never()).searchResponses(any(), any());
+    }
+
+    @Test
+    void testSearchProducts_TextSearchBypassesIndex() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 20, Sort.by("name"));
+        when(productRepository.searchResponses(any(Specification.class), any(Pageable.class)))
+                .thenReturn(Page.empty(pageable));
+
+        // When
+        productService.search(null, "lap", null, null, null, null, pageable);
+
+        // Then
+        verifyNoInteractions(listingIndex);
+        verify(productRepository).searchResponses(any(Specification.class), eq(pageable));
+    }
+
+    @Test
+    void testUpdateImage_EvictsOnlyAffectedEntries() {
+        // Given
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        // When
+        productService.updateImage(1L, "/uploads/laptop.png");
+
+        // Then
+        verify(cacheInvalidator).evictProduct(1L);
+        verify(cacheInvalidator).productContentChanged(1L);
+        verify(cacheInvalidator, never()).productsChanged(any());
+    }
+
+    @Test
+    void testUpdateImage_MovesFileReferenceToNewImage() {
+        // Given
+        product.setImageUrl("/uploads/old.png");
+        product.setImageCardUrl("/uploads/v/old-card.jpg");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        // When
+        productService.updateImage(1L, "/uploads/new.png");
+
+        // Then
+        verify(storedFileService).release("/uploads/old.png", null, "/uploads/v/old-card.jpg", null);
+        verify(storedFileService).acquire("/uploads/new.png");
+        assertNull(product.getImageCardUrl());
+    }
+
+    @Test
+    void testUpdateImageVariants_IgnoredWhenImageReplacedMeanwhile() {
+        // Given
+        product.setImageUrl("/uploads/newer.png");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        // When
+        productService.updateImageVariants(1L, "/uploads/laptop.png",
+                Map.of(ImageVariant.THUMBNAIL, "/uploads/v/abc.jpg"));
+
+        // Then
+        assertNull(product.getImageThumbnailUrl());
+        verify(productRepository, never()).save(any(Product.class));
+        verifyNoInteractions(cacheInvalidator);
     }
 
     @Test
     void testDeleteProduct_Success() {
         // Given
-        when(productRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(productRepository).deleteById(1L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        doNothing().when(productRepository).delete(product);
 
         // When
         productService.delete(1L);
 
         // Then
-        verify(productRepository).existsById(1L);
-        verify(productRepository).deleteById(1L);
+        verify(productRepository).findById(1L);
+        verify(productRepository).delete(product);
+        verify(cacheInvalidator).evictProduct(1L);
+        verify(cacheInvalidator).productsChanged(1L);
     }
 
     @Test
     void testDeleteProduct_NotFound() {
         // Given
-        when(productRepository.existsById(anyLong())).thenReturn(false);
+        when(productRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(IllegalArgumentException.class, () -> {
             productService.delete(1L);
         });
 
-        verify(productRepository, never()).deleteById(anyLong());
+        verify(productRepository, never()).delete(any(Product.class));
     }
 }
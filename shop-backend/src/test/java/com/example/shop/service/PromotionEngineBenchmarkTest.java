@@ -0,0 +1,62 @@
+package com.example.shop.service;
+
+import com.example.shop.model.Category;
+import com.example.shop.model.PromotionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prices the same cart against a small and a very large rule set. Evaluating every rule for every
+ * line would visit a thousand times more rules for the large set; with the compiled index only the
+ * rules under each line's product and category are visited, so both visit the same number.
+ */
+class PromotionEngineBenchmarkTest {
+
+    private static final int CATEGORIES = 100;
+    private static final int LINES = 20;
+
+    @Test
+    void testPrice_CostDoesNotGrowWithRuleCount() {
+        // Given
+        List<Category> categories = new ArrayList<>();
+        for (long id = 1; id <= CATEGORIES; id++) {
+            categories.add(Category.builder().id(id).name("Category " + id).active(true).build());
+        }
+        CategoryTree tree = CategoryTree.of(categories);
+        List<PricingLine> cart = new ArrayList<>();
+        for (long i = 0; i < LINES; i++) {
+            cart.add(new PricingLine(i, 1 + i % CATEGORIES, new BigDecimal("19.99"), 2));
+        }
+
+        // When
+        CompiledPromotions small = CompiledPromotions.compile(rules(20), tree);
+        CompiledPromotions large = CompiledPromotions.compile(rules(20_000), tree);
+
+        // Then
+        assertEquals(small.price(cart, null, 0).discount(), large.price(cart, null, 0).discount());
+        for (PricingLine line : cart) {
+            assertEquals(1, small.rulesVisited(line));
+            assertEquals(1, large.rulesVisited(line));
+        }
+    }
+
+    /**
+     * The first 20 rules are per category and discount the cart; the rest target products not in
+     * it, so both rule sets produce the same prices.
+     */
+    private static List<PromotionRule> rules(int count) {
+        List<PromotionRule> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Long categoryId = i < 20 ? (long) (1 + i % CATEGORIES) : null;
+            Long productId = i < 20 ? null : 1_000L + i;
+            rules.add(new PromotionRule(i + 1, "Rule " + i, PromotionType.PERCENTAGE, productId, categoryId, null,
+                    new BigDecimal("10"), 0, 0, List.of(), null, null));
+        }
+        return rules;
+    }
+}
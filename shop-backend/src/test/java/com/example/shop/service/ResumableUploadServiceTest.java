@@ -0,0 +1,204 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ImageUploadResponse;
+import com.example.shop.dto.UploadInitRequest;
+import com.example.shop.dto.UploadSessionResponse;
+import com.example.shop.exception.ConflictException;
+import com.example.shop.exception.ServiceBusyException;
+import com.example.shop.model.UploadChunk;
+import com.example.shop.model.UploadSession;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.UploadChunkRepository;
+import com.example.shop.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    @TempDir
+    Path uploadDir;
+
+    @Mock
+    private UploadSessionRepository sessionRepository;
+
+    @Mock
+    private UploadChunkRepository chunkRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ImageUploadService imageUploadService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private FileStorageService fileStorageService;
+    private ResumableUploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService(uploadDir.toString());
+        uploadService = new ResumableUploadService(sessionRepository, chunkRepository, productRepository,
+                fileStorageService, imageUploadService, transactionManager, DataSize.ofMegabytes(1), DataSize.ofBytes(CHUNK_SIZE),
+                DataSize.ofMegabytes(1), Duration.ofHours(24));
+    }
+
+    @Test
+    void testUpload_ChunksWrittenInParallelAndOutOfOrderAssembleTheFile() throws Exception {
+        // Given: two full chunks and a short last one
+        byte[] content = new byte[2 * CHUNK_SIZE + 1000];
+        new Random(42).nextBytes(content);
+        UploadSession session = start(content.length);
+
+        // When
+        CompletableFuture<?>[] writes = IntStream.of(2, 0, 1)
+                .mapToObj(index -> CompletableFuture.runAsync(() -> uploadService.writeChunk(session.getId(), index,
+                        new ByteArrayInputStream(chunk(content, index)))))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(writes).join();
+        when(chunkRepository.countBySessionId(session.getId())).thenReturn(3L);
+        when(sessionRepository.deleteSession(session.getId())).thenReturn(1);
+        Path partFile = fileStorageService.partFile(session.getId());
+        ImageUploadResponse queued = ImageUploadResponse.builder().productId(7L).status("QUEUED").build();
+        when(imageUploadService.submitLocalFile(7L, "poster.PNG", partFile)).thenReturn(queued);
+        ImageUploadResponse response = uploadService.complete(session.getId());
+
+        // Then: the assembled file is queued as the product image
+        assertSame(queued, response);
+        assertArrayEquals(content, Files.readAllBytes(partFile));
+        verify(chunkRepository, times(3)).save(any(UploadChunk.class));
+        verify(chunkRepository).deleteBySessionId(session.getId());
+    }
+
+    @Test
+    void testComplete_ConcurrentCompleteConflicts() {
+        // Given: another request claimed the upload after this one read it
+        UploadSession session = start(2 * CHUNK_SIZE);
+        when(chunkRepository.countBySessionId(session.getId())).thenReturn(2L);
+        when(sessionRepository.deleteSession(session.getId())).thenReturn(0);
+
+        // When & Then
+        assertThrows(ConflictException.class, () -> uploadService.complete(session.getId()));
+        verify(chunkRepository, never()).deleteBySessionId(any());
+        verifyNoInteractions(imageUploadService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testComplete_FullQueueKeepsTheUpload() {
+        // Given
+        UploadSession session = start(2 * CHUNK_SIZE);
+        when(chunkRepository.countBySessionId(session.getId())).thenReturn(2L);
+        when(sessionRepository.deleteSession(session.getId())).thenReturn(1);
+        when(imageUploadService.submitLocalFile(any(), anyString(), any()))
+                .thenThrow(new ServiceBusyException("busy", Duration.ofSeconds(30)));
+
+        // When
+        assertThrows(ServiceBusyException.class, () -> uploadService.complete(session.getId()));
+
+        // Then: the upload and its chunks are back, so the client can complete it again
+        ArgumentCaptor<UploadSession> restored = ArgumentCaptor.forClass(UploadSession.class);
+        verify(sessionRepository, times(2)).save(restored.capture());
+        assertEquals(session.getId(), restored.getValue().getId());
+        assertEquals(2, restored.getValue().getChunkCount());
+        ArgumentCaptor<List<UploadChunk>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(chunkRepository).saveAll(chunks.capture());
+        assertEquals(List.of(0, 1), chunks.getValue().stream().map(UploadChunk::getChunkIndex).toList());
+        assertTrue(Files.exists(fileStorageService.partFile(session.getId())));
+    }
+
+    @Test
+    void testWriteChunk_WrongLengthIsRejectedAndNotRecorded() {
+        UploadSession session = start(2 * CHUNK_SIZE);
+
+        assertThrows(IllegalArgumentException.class, () -> uploadService.writeChunk(session.getId(), 0,
+                new ByteArrayInputStream(new byte[CHUNK_SIZE - 1])));
+        assertThrows(IllegalArgumentException.class, () -> uploadService.writeChunk(session.getId(), 1,
+                new ByteArrayInputStream(new byte[CHUNK_SIZE + 1])));
+        assertThrows(IllegalArgumentException.class, () -> uploadService.writeChunk(session.getId(), 2,
+                new ByteArrayInputStream(new byte[CHUNK_SIZE])));
+        verify(chunkRepository, never()).save(any());
+    }
+
+    @Test
+    void testComplete_MissingChunksKeepTheUpload() {
+        UploadSession session = start(2 * CHUNK_SIZE);
+        when(chunkRepository.countBySessionId(session.getId())).thenReturn(1L);
+
+        assertThrows(IllegalArgumentException.class, () -> uploadService.complete(session.getId()));
+
+        assertTrue(Files.exists(fileStorageService.partFile(session.getId())));
+        verify(sessionRepository, never()).deleteSession(any());
+    }
+
+    @Test
+    void testStart_RejectsFilesOverTheLimit() {
+        when(productRepository.existsById(7L)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> uploadService.start(request(DataSize.ofMegabytes(2)
+                .toBytes())));
+        verify(sessionRepository, never()).save(any());
+    }
+
+    @Test
+    void testStatus_ListsReceivedChunksForResuming() {
+        UploadSession session = start(3 * CHUNK_SIZE);
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 2));
+
+        UploadSessionResponse status = uploadService.getStatus(session.getId());
+
+        assertEquals(3, status.getChunkCount());
+        assertEquals(List.of(0, 2), status.getReceivedChunks());
+    }
+
+    private UploadSession start(long size) {
+        when(productRepository.existsById(7L)).thenReturn(true);
+        UploadSessionResponse response = uploadService.start(request(size));
+        ArgumentCaptor<UploadSession> saved = ArgumentCaptor.forClass(UploadSession.class);
+        verify(sessionRepository).save(saved.capture());
+        UploadSession session = saved.getValue();
+        assertEquals(response.getUploadId(), session.getId());
+        assertEquals(size, fileStorageService.partFile(session.getId()).toFile().length());
+        lenient().when(sessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        return session;
+    }
+
+    private static UploadInitRequest request(long size) {
+        UploadInitRequest request = new UploadInitRequest();
+        request.setProductId(7L);
+        request.setFileName("poster.PNG");
+        request.setSize(size);
+        return request;
+    }
+
+    private static byte[] chunk(byte[] content, int index) {
+        return Arrays.copyOfRange(content, index * CHUNK_SIZE, Math.min(content.length, (index + 1) * CHUNK_SIZE));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.shop.service;
+
+import com.example.shop.model.StoredFile;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.repository.StoredFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StoredFileServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @Mock
+    private StoredFileRepository storedFileRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private FileStorageService fileStorageService;
+    private StoredFileService storedFileService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService(uploadDir.toString());
+        storedFileService = new StoredFileService(storedFileRepository, productRepository, fileStorageService,
+                transactionManager, Duration.ofHours(1));
+    }
+
+    @Test
+    void testStoreFile_IdenticalUploadsShareOneFile() {
+        String first = fileStorageService.storeFile(new MockMultipartFile("file", "a.PNG", "image/png", new byte[] {1, 2}));
+        String second = fileStorageService.storeFile(new MockMultipartFile("file", "b.png", "image/png", new byte[] {1, 2}));
+
+        assertEquals(first, second);
+        assertTrue(first.matches("/uploads/[0-9a-f]{64}\\.png"), first);
+        assertTrue(Files.exists(fileStorageService.resolve(first)));
+    }
+
+    @Test
+    void testAcquire_CountsRepeatedUrlsOnceAndCreatesMissingRows() {
+        when(storedFileRepository.addReferences("/uploads/v/a.jpg", 2)).thenReturn(1);
+
+        storedFileService.acquire("/uploads/v/a.jpg", "/uploads/v/a.jpg", null, "https://cdn.example.com/x.jpg");
+
+        ArgumentCaptor<StoredFile> saved = ArgumentCaptor.forClass(StoredFile.class);
+        verify(storedFileRepository).saveAndFlush(saved.capture());
+        assertEquals("/uploads/v/a.jpg", saved.getValue().getUrl());
+        assertEquals(0, saved.getValue().getRefCount());
+        assertTrue(saved.getValue().isNew());
+        verify(storedFileRepository).addReferences("/uploads/v/a.jpg", 2);
+        verify(storedFileRepository, never()).save(any());
+    }
+
+    @Test
+    void testAcquire_RowCreatedConcurrentlyIsCounted() {
+        // Given: another upload of the same content inserted the row first
+        when(storedFileRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(storedFileRepository.addReferences("/uploads/v/a.jpg", 1)).thenReturn(1);
+
+        // When
+        storedFileService.acquire("/uploads/v/a.jpg");
+
+        // Then
+        verify(storedFileRepository).addReferences("/uploads/v/a.jpg", 1);
+        verify(storedFileRepository, never()).save(any());
+    }
+
+    @Test
+    void testSweep_DeletesOnlyOldUnreferencedFiles() throws IOException {
+        // Given
+        String orphan = store(new byte[] {1}, Instant.now().minus(Duration.ofHours(2)));
+        String referenced = store(new byte[] {2}, Instant.now().minus(Duration.ofHours(2)));
+        String fresh = store(new byte[] {3}, Instant.now());
+        when(storedFileRepository.findReferencedUrls(anyCollection())).thenReturn(List.of(referenced));
+
+        // When
+        int deleted = storedFileService.sweep();
+
+        // Then
+        assertEquals(1, deleted);
+        assertFalse(Files.exists(fileStorageService.resolve(orphan)));
+        assertTrue(Files.exists(fileStorageService.resolve(referenced)));
+        assertTrue(Files.exists(fileStorageService.resolve(fresh)));
+        verify(storedFileRepository).deleteUnreferenced(orphan);
+        verify(storedFileRepository, never()).deleteUnreferenced(referenced);
+    }
+
+    @Test
+    void testSweep_RestoringContentProtectsIt() throws IOException {
+        // Given: an old orphan that is uploaded again before the sweep
+        String url = store(new byte[] {4}, Instant.now().minus(Duration.ofHours(2)));
+        fileStorageService.storeImmutable(new byte[] {4}, ".jpg");
+
+        // When
+        int deleted = storedFileService.sweep();
+
+        // Then
+        assertEquals(0, deleted);
+        assertTrue(Files.exists(fileStorageService.resolve(url)));
+        verify(storedFileRepository, never()).findReferencedUrls(anyCollection());
+    }
+
+    private String store(byte[] content, Instant modifiedAt) throws IOException {
+        String url = fileStorageService.storeImmutable(content, ".jpg");
+        Files.setLastModifiedTime(fileStorageService.resolve(url), FileTime.from(modifiedAt));
+        return url;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.shop.util;
 
+import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -59,4 +60,45 @@ class JwtUtilTest {
         // Then
         assertFalse(isValid);
     }
+
+    @Test
+    void testGuestCartToken_RoundTrips() {
+        // Given
+        String token = jwtUtil.generateGuestCartToken("1:2:999.99", 3600000);
+
+        // When & Then
+        assertEquals("1:2:999.99", jwtUtil.extractGuestCart(token));
+    }
+
+    @Test
+    void testGuestCartToken_EachTokenHasItsOwnId() {
+        // Given: the same cart encoded twice
+        String first = jwtUtil.generateGuestCartToken("1:2:999.99", 3600000);
+        String second = jwtUtil.generateGuestCartToken("1:2:999.99", 3600000);
+
+        // When & Then
+        assertNotNull(jwtUtil.extractGuestCartClaims(first).getId());
+        assertNotEquals(jwtUtil.extractGuestCartClaims(first).getId(),
+                jwtUtil.extractGuestCartClaims(second).getId());
+    }
+
+    @Test
+    void testGuestCartToken_NotInterchangeableWithLoginToken() {
+        // Given
+        String guestToken = jwtUtil.generateGuestCartToken("1:2:999.99", 3600000);
+        String loginToken = jwtUtil.generateToken("test@example.com");
+
+        // When & Then
+        assertThrows(JwtException.class, () -> jwtUtil.extractUsername(guestToken));
+        assertThrows(JwtException.class, () -> jwtUtil.extractGuestCart(loginToken));
+    }
+
+    @Test
+    void testGuestCartToken_ExpiredRejected() {
+        // Given
+        String token = jwtUtil.generateGuestCartToken("1:2:999.99", -1000);
+
+        // When & Then
+        assertThrows(JwtException.class, () -> jwtUtil.extractGuestCart(token));
+    }
 }
@@ -80,12 +80,10 @@ function AppRoutes() {
             <Route path="/products" element={<Layout><ProductsPage /></Layout>} />
             <Route path="/products/:id" element={<Layout><ProductDetailPage /></Layout>} />
 
+            {/* Signed-out shoppers get a guest cart */}
+            <Route path="/cart" element={<Layout><CartPage /></Layout>} />
+
             {/* Protected Routes */}
-            <Route path="/cart" element={
-                <ProtectedRoute>
-                    <Layout><CartPage /></Layout>
-                </ProtectedRoute>
-            } />
             <Route path="/orders" element={
                 <ProtectedRoute>
                     <Layout><OrdersPage /></Layout>
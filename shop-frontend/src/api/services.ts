@@ -6,11 +6,13 @@ import {
     AuthResponse,
     Product,
     ProductRequest,
+    ImageUpload,
     Category,
     CategoryRequest,
     Cart,
     AddCartItemRequest,
     UpdateCartItemRequest,
+    CartOperation,
     Order,
     PlaceOrderRequest,
     TopProduct,
@@ -60,10 +62,13 @@ export const productsApi = {
     uploadImage: (id: number, file: File) => {
         const formData = new FormData();
         formData.append('file', file);
-        return api.post<Product>(`/api/products/${id}/image`, formData, {
+        return api.post<ImageUpload>(`/api/products/${id}/image`, formData, {
             headers: { 'Content-Type': 'multipart/form-data' },
         });
     },
+
+    getImageStatus: (id: number) =>
+        api.get<ImageUpload>(`/api/products/${id}/image/status`),
 };
 
 // Categories API
@@ -82,21 +87,49 @@ export const categoriesApi = {
 };
 
 // Cart API
+// Mutations take the ETag of the cart they were based on; the server answers 412 if it changed since
+const ifMatch = (etag?: string) => (etag ? { headers: { 'If-Match': etag } } : undefined);
+
 export const cartApi = {
     get: () =>
         api.get<Cart>('/api/cart'),
 
-    addItem: (data: AddCartItemRequest) =>
-        api.post<Cart>('/api/cart/items', data),
+    addItem: (data: AddCartItemRequest, etag?: string) =>
+        api.post<Cart>('/api/cart/items', data, ifMatch(etag)),
+
+    updateItem: (itemId: number, data: UpdateCartItemRequest, etag?: string) =>
+        api.put<Cart>(`/api/cart/items/${itemId}`, data, ifMatch(etag)),
+
+    removeItem: (itemId: number, etag?: string) =>
+        api.delete<Cart>(`/api/cart/items/${itemId}`, ifMatch(etag)),
+
+    clear: (etag?: string) =>
+        api.delete<Cart>('/api/cart', ifMatch(etag)),
+
+    // Applies all operations in one request; if any is invalid, none is applied
+    apply: (operations: CartOperation[], etag?: string) =>
+        api.patch<Cart>('/api/cart', { operations }, ifMatch(etag)),
+
+    applyCoupon: (code: string, etag?: string) =>
+        api.put<Cart>('/api/cart/coupon', { code }, ifMatch(etag)),
+
+    removeCoupon: (etag?: string) =>
+        api.delete<Cart>('/api/cart/coupon', ifMatch(etag)),
+};
 
-    updateItem: (itemId: number, data: UpdateCartItemRequest) =>
-        api.put<Cart>(`/api/cart/items/${itemId}`, data),
+// Guest cart API
+// Signed-out shoppers keep their cart as a signed token; each change returns a new one
+export const GUEST_CART_KEY = 'guestCart';
+const GUEST_CART_HEADER = 'X-Guest-Cart';
+const guestCart = (token?: string) => (token ? { headers: { [GUEST_CART_HEADER]: token } } : undefined);
 
-    removeItem: (itemId: number) =>
-        api.delete<Cart>(`/api/cart/items/${itemId}`),
+export const guestCartApi = {
+    get: (token?: string) =>
+        api.get<Cart>('/api/guest-cart', guestCart(token)),
 
-    clear: () =>
-        api.delete<Cart>('/api/cart'),
+    // Same operations as cartApi.apply; item ids are product ids
+    apply: (operations: CartOperation[], token?: string) =>
+        api.patch<Cart>('/api/guest-cart', { operations }, guestCart(token)),
 };
 
 // Orders API
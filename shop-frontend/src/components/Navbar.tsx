@@ -40,13 +40,13 @@ export function Navbar() {
                 <div className="navbar-links">
                     <Link to="/products" className="nav-link">Products</Link>
 
+                    <Link to="/cart" className="nav-link cart-link">
+                        🛒 Cart
+                        {itemCount > 0 && <span className="cart-badge">{itemCount}</span>}
+                    </Link>
+
                     {isAuthenticated ? (
                         <>
-                            <Link to="/cart" className="nav-link cart-link">
-                                🛒 Cart
-                                {itemCount > 0 && <span className="cart-badge">{itemCount}</span>}
-                            </Link>
-
                             <Link to="/orders" className="nav-link">Orders</Link>
 
                             {isAdmin && (
@@ -2,7 +2,6 @@ import React from 'react';
 import { Link } from 'react-router-dom';
 import { Product } from '../types';
 import { useCart } from '../contexts/CartContext';
-import { useAuth } from '../contexts/AuthContext';
 import './ProductCard.css';
 
 interface ProductCardProps {
@@ -10,7 +9,6 @@ interface ProductCardProps {
 }
 
 export function ProductCard({ product }: ProductCardProps) {
-    const { isAuthenticated } = useAuth();
     const { addItem } = useCart();
     const [isAdding, setIsAdding] = React.useState(false);
     const [added, setAdded] = React.useState(false);
@@ -19,11 +17,6 @@ export function ProductCard({ product }: ProductCardProps) {
         e.preventDefault();
         e.stopPropagation();
 
-        if (!isAuthenticated) {
-            window.location.href = '/login';
-            return;
-        }
-
         setIsAdding(true);
         try {
             await addItem({ productId: product.id, quantity: 1 });
@@ -48,7 +41,7 @@ export function ProductCard({ product }: ProductCardProps) {
         <Link to={`/products/${product.id}`} className="product-card">
             <div className="product-image">
                 {product.imageUrl ? (
-                    <img src={product.imageUrl} alt={product.name} />
+                    <img src={product.imageCardUrl ?? product.imageUrl} alt={product.name} />
                 ) : (
                     <div className="product-image-placeholder">
                         📦
@@ -1,6 +1,6 @@
 import React, { createContext, useContext, useState, useEffect, ReactNode } from 'react';
 import { User, LoginRequest, RegisterRequest } from '../types';
-import { authApi } from '../api';
+import { authApi, GUEST_CART_KEY } from '../api';
 
 interface AuthContextType {
     user: User | null;
@@ -43,7 +43,10 @@ export function AuthProvider({ children }: { children: ReactNode }) {
     }, [token]);
 
     const login = async (data: LoginRequest) => {
-        const response = await authApi.login(data);
+        const guestCartToken = localStorage.getItem(GUEST_CART_KEY) ?? undefined;
+        const response = await authApi.login({ ...data, guestCartToken });
+        // Merged into the user's cart by the login
+        localStorage.removeItem(GUEST_CART_KEY);
         const newToken = response.data.accessToken;
         localStorage.setItem('token', newToken);
         setToken(newToken);
@@ -1,6 +1,7 @@
-import React, { createContext, useContext, useState, useEffect, ReactNode, useCallback } from 'react';
-import { Cart, AddCartItemRequest, UpdateCartItemRequest } from '../types';
-import { cartApi } from '../api';
+import React, { createContext, useContext, useState, useEffect, ReactNode, useCallback, useRef } from 'react';
+import { AxiosError, AxiosResponse } from 'axios';
+import { Cart, AddCartItemRequest, UpdateCartItemRequest, CartOperation } from '../types';
+import { cartApi, guestCartApi, GUEST_CART_KEY } from '../api';
 import { useAuth } from './AuthContext';
 
 interface CartContextType {
@@ -11,11 +12,36 @@ interface CartContextType {
     updateItem: (itemId: number, data: UpdateCartItemRequest) => Promise<void>;
     removeItem: (itemId: number) => Promise<void>;
     clearCart: () => Promise<void>;
+    applyCoupon: (code: string) => Promise<void>;
+    removeCoupon: () => Promise<void>;
     refreshCart: () => Promise<void>;
 }
 
 const CartContext = createContext<CartContextType | undefined>(undefined);
 
+interface PendingOperation {
+    operation: CartOperation;
+    resolve: () => void;
+    reject: (error: unknown) => void;
+}
+
+// A later quantity change or removal of the same line makes an earlier quantity change moot
+function coalesce(pending: PendingOperation[]): CartOperation[] {
+    const operations: CartOperation[] = [];
+    for (const { operation } of pending) {
+        if (operation.type !== 'ADD') {
+            const previous = operations.findIndex(
+                (op) => op.type === 'UPDATE' && op.itemId === operation.itemId
+            );
+            if (previous >= 0) {
+                operations.splice(previous, 1);
+            }
+        }
+        operations.push(operation);
+    }
+    return operations;
+}
+
 export function CartProvider({ children }: { children: ReactNode }) {
     const { isAuthenticated } = useAuth();
     const [cart, setCart] = useState<Cart | null>(null);
@@ -23,45 +49,117 @@ export function CartProvider({ children }: { children: ReactNode }) {
 
     const itemCount = cart?.items?.reduce((sum, item) => sum + item.quantity, 0) ?? 0;
 
+    // ETag of the cart last received; sent as If-Match so edits based on a stale cart are refused
+    const etag = useRef<string | undefined>(undefined);
+
+    const receive = useCallback((response: AxiosResponse<Cart>) => {
+        etag.current = response.headers['etag'];
+        const guestToken = response.headers['x-guest-cart'];
+        if (guestToken) {
+            localStorage.setItem(GUEST_CART_KEY, guestToken);
+        }
+        setCart(response.data);
+    }, []);
+
     const refreshCart = useCallback(async () => {
-        if (!isAuthenticated) {
+        const guestToken = localStorage.getItem(GUEST_CART_KEY) ?? undefined;
+        if (!isAuthenticated && !guestToken) {
+            etag.current = undefined;
             setCart(null);
             return;
         }
 
         setIsLoading(true);
         try {
-            const response = await cartApi.get();
-            setCart(response.data);
+            const response = isAuthenticated ? await cartApi.get() : await guestCartApi.get(guestToken);
+            receive(response);
         } catch (error) {
             console.error('Failed to fetch cart:', error);
         } finally {
             setIsLoading(false);
         }
-    }, [isAuthenticated]);
+    }, [isAuthenticated, receive]);
+
+    // The cart was changed elsewhere (another tab); show the current one before the user retries
+    const onCartError = useCallback((error: unknown) => {
+        if ((error as AxiosError).response?.status === 412) {
+            refreshCart();
+        }
+    }, [refreshCart]);
 
     useEffect(() => {
         refreshCart();
     }, [refreshCart]);
 
-    const addItem = async (data: AddCartItemRequest) => {
-        const response = await cartApi.addItem(data);
-        setCart(response.data);
-    };
+    // Changes made while a request is in flight are sent together as one PATCH once it returns
+    const pending = useRef<PendingOperation[]>([]);
+    const inFlight = useRef(false);
 
-    const updateItem = async (itemId: number, data: UpdateCartItemRequest) => {
-        const response = await cartApi.updateItem(itemId, data);
-        setCart(response.data);
+    const sendPending = useCallback(async () => {
+        if (inFlight.current || pending.current.length === 0) {
+            return;
+        }
+        const batch = pending.current;
+        pending.current = [];
+        inFlight.current = true;
+        try {
+            const operations = coalesce(batch);
+            // Adds are increments and apply to any version of the cart
+            const conditional = operations.some((op) => op.type !== 'ADD');
+            // Signed-out shoppers' carts live in a signed token instead
+            const response = isAuthenticated
+                ? await cartApi.apply(operations, conditional ? etag.current : undefined)
+                : await guestCartApi.apply(operations, localStorage.getItem(GUEST_CART_KEY) ?? undefined);
+            receive(response);
+            batch.forEach((entry) => entry.resolve());
+        } catch (error) {
+            onCartError(error);
+            batch.forEach((entry) => entry.reject(error));
+        } finally {
+            inFlight.current = false;
+            sendPending();
+        }
+    }, [isAuthenticated, receive, onCartError]);
+
+    const enqueue = useCallback((operation: CartOperation) => {
+        const done = new Promise<void>((resolve, reject) => {
+            pending.current.push({ operation, resolve, reject });
+        });
+        // Lets changes made in the same tick join this batch
+        queueMicrotask(sendPending);
+        return done;
+    }, [sendPending]);
+
+    const addItem = (data: AddCartItemRequest) =>
+        enqueue({ type: 'ADD', productId: data.productId, quantity: data.quantity });
+
+    const updateItem = (itemId: number, data: UpdateCartItemRequest) =>
+        enqueue({ type: 'UPDATE', itemId, quantity: data.quantity });
+
+    const removeItem = (itemId: number) =>
+        enqueue({ type: 'REMOVE', itemId });
+
+    const clearCart = async () => {
+        if (!isAuthenticated) {
+            localStorage.removeItem(GUEST_CART_KEY);
+            setCart(null);
+            return;
+        }
+        try {
+            receive(await cartApi.clear(etag.current));
+        } catch (error) {
+            onCartError(error);
+            throw error;
+        }
     };
 
-    const removeItem = async (itemId: number) => {
-        const response = await cartApi.removeItem(itemId);
-        setCart(response.data);
+    // A coupon replaces whatever coupon the cart had, so it needs no If-Match
+    const applyCoupon = async (code: string) => {
+        receive(await cartApi.applyCoupon(code));
     };
 
-    const clearCart = async () => {
-        const response = await cartApi.clear();
-        setCart(response.data);
+    const removeCoupon = async () => {
+        receive(await cartApi.removeCoupon());
     };
 
     return (
@@ -73,6 +171,8 @@ export function CartProvider({ children }: { children: ReactNode }) {
             updateItem,
             removeItem,
             clearCart,
+            applyCoupon,
+            removeCoupon,
             refreshCart
         }}>
             {children}
@@ -1,14 +1,18 @@
 import React, { useState } from 'react';
 import { Link, useNavigate } from 'react-router-dom';
 import { useCart } from '../contexts/CartContext';
+import { useAuth } from '../contexts/AuthContext';
 import { ordersApi } from '../api';
 import './CartPage.css';
 
 export function CartPage() {
-    const { cart, isLoading, updateItem, removeItem, clearCart, refreshCart } = useCart();
+    const { cart, isLoading, updateItem, removeItem, clearCart, applyCoupon, removeCoupon, refreshCart } = useCart();
+    const { isAuthenticated } = useAuth();
     const navigate = useNavigate();
     const [isCheckingOut, setIsCheckingOut] = useState(false);
     const [error, setError] = useState('');
+    const [couponCode, setCouponCode] = useState('');
+    const [couponError, setCouponError] = useState('');
 
     const formatPrice = (price: number) => {
         return new Intl.NumberFormat('en-IN', {
@@ -35,7 +39,24 @@ export function CartPage() {
         }
     };
 
+    const handleApplyCoupon = async (e: React.FormEvent) => {
+        e.preventDefault();
+        setCouponError('');
+        try {
+            await applyCoupon(couponCode.trim());
+            setCouponCode('');
+        } catch (err: unknown) {
+            const error = err as { response?: { data?: { message?: string } } };
+            setCouponError(error.response?.data?.message || 'Could not apply coupon');
+        }
+    };
+
     const handleCheckout = async () => {
+        if (!isAuthenticated) {
+            // Signing in merges this cart into the account's
+            navigate('/login', { state: { from: '/cart' } });
+            return;
+        }
         setError('');
         setIsCheckingOut(true);
         try {
@@ -119,6 +140,11 @@ export function CartPage() {
 
                                 <div className="cart-item-total">
                                     {formatPrice(item.lineTotal)}
+                                    {item.discount > 0 && (
+                                        <span className="cart-item-discount" title={item.promotions.join(', ')}>
+                                            −{formatPrice(item.discount)}
+                                        </span>
+                                    )}
                                 </div>
 
                                 <button
@@ -146,8 +172,39 @@ export function CartPage() {
 
                         <div className="summary-row">
                             <span>Subtotal</span>
-                            <span>{formatPrice(cart.totalAmount)}</span>
+                            <span>{formatPrice(cart.subtotal)}</span>
                         </div>
+                        {cart.discountAmount > 0 && (
+                            <div className="summary-row discount">
+                                <span>Discount</span>
+                                <span>−{formatPrice(cart.discountAmount)}</span>
+                            </div>
+                        )}
+                        {cart.couponCode ? (
+                            <div className="summary-row coupon">
+                                <span>
+                                    Coupon {cart.couponCode}
+                                    {!cart.couponApplied && ' (expired)'}
+                                </span>
+                                <button className="btn btn-ghost btn-sm" onClick={() => removeCoupon()}>
+                                    Remove
+                                </button>
+                            </div>
+                        ) : isAuthenticated && (
+                            <form className="coupon-form" onSubmit={handleApplyCoupon}>
+                                <input
+                                    className="form-input"
+                                    value={couponCode}
+                                    onChange={(e) => setCouponCode(e.target.value)}
+                                    placeholder="Coupon code"
+                                    maxLength={40}
+                                />
+                                <button type="submit" className="btn btn-secondary" disabled={!couponCode.trim()}>
+                                    Apply
+                                </button>
+                            </form>
+                        )}
+                        {couponError && <div className="cart-error">{couponError}</div>}
                         <div className="summary-row">
                             <span>Shipping</span>
                             <span className="free-shipping">Free</span>
@@ -162,7 +219,9 @@ export function CartPage() {
                             onClick={handleCheckout}
                             disabled={isCheckingOut}
                         >
-                            {isCheckingOut ? 'Placing Order...' : 'Proceed to Checkout'}
+                            {isCheckingOut
+                                ? 'Placing Order...'
+                                : isAuthenticated ? 'Proceed to Checkout' : 'Sign in to Checkout'}
                         </button>
 
                         <div className="secure-checkout">
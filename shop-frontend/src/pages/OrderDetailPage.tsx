@@ -169,8 +169,14 @@ export function OrderDetailPage() {
 
                             <div className="summary-row">
                                 <span>Subtotal</span>
-                                <span>{formatPrice(order.totalAmount)}</span>
+                                <span>{formatPrice(order.totalAmount + (order.discountAmount ?? 0))}</span>
                             </div>
+                            {!!order.discountAmount && (
+                                <div className="summary-row">
+                                    <span>Discount{order.couponCode && ` (${order.couponCode})`}</span>
+                                    <span>−{formatPrice(order.discountAmount)}</span>
+                                </div>
+                            )}
                             <div className="summary-row">
                                 <span>Shipping</span>
                                 <span className="free-shipping">Free</span>
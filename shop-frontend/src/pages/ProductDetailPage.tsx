@@ -3,13 +3,11 @@ import { useParams, useNavigate } from 'react-router-dom';
 import { Product } from '../types';
 import { productsApi } from '../api';
 import { useCart } from '../contexts/CartContext';
-import { useAuth } from '../contexts/AuthContext';
 import './ProductDetailPage.css';
 
 export function ProductDetailPage() {
     const { id } = useParams<{ id: string }>();
     const navigate = useNavigate();
-    const { isAuthenticated } = useAuth();
     const { addItem } = useCart();
 
     const [product, setProduct] = useState<Product | null>(null);
@@ -42,11 +40,6 @@ export function ProductDetailPage() {
     };
 
     const handleAddToCart = async () => {
-        if (!isAuthenticated) {
-            navigate('/login', { state: { from: `/products/${id}` } });
-            return;
-        }
-
         if (!product) return;
 
         setIsAdding(true);
@@ -97,7 +90,7 @@ export function ProductDetailPage() {
                 <div className="product-detail">
                     <div className="product-image-section">
                         {product.imageUrl ? (
-                            <img src={product.imageUrl} alt={product.name} className="product-main-image" />
+                            <img src={product.imageDetailUrl ?? product.imageUrl} alt={product.name} className="product-main-image" />
                         ) : (
                             <div className="product-image-placeholder">📦</div>
                         )}
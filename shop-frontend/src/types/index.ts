@@ -29,6 +29,8 @@ export interface RegisterRequest {
 export interface LoginRequest {
     email: string;
     password: string;
+    // Cart built before signing in; merged into the user's cart
+    guestCartToken?: string;
 }
 
 export interface AuthResponse {
@@ -45,6 +47,9 @@ export interface Product {
     categoryId: number;
     categoryName: string;
     imageUrl?: string;
+    imageThumbnailUrl?: string;
+    imageCardUrl?: string;
+    imageDetailUrl?: string;
     active: boolean;
     createdAt: string;
     updatedAt: string;
@@ -59,6 +64,23 @@ export interface ProductRequest {
     active?: boolean;
 }
 
+export type ImageUploadStatus = 'QUEUED' | 'RUNNING' | 'COMPLETED' | 'FAILED';
+
+// Image uploads are processed in the background; poll the status until it is COMPLETED or FAILED
+export interface ImageUpload {
+    uploadId: string;
+    productId: number;
+    status: ImageUploadStatus;
+    stage?: 'VALIDATE' | 'HASH' | 'TRANSFORM' | 'PUBLISH' | 'UPDATE_PRODUCT';
+    fileName: string;
+    fileSize: number;
+    message?: string;
+    imageUrl?: string;
+    createdAt: string;
+    startedAt?: string;
+    finishedAt?: string;
+}
+
 // Category types
 export interface Category {
     id: number;
@@ -82,14 +104,23 @@ export interface CartItem {
     productName: string;
     quantity: number;
     priceAtAddTime: number;
+    // Before discounts
     lineTotal: number;
+    discount: number;
+    promotions: string[];
 }
 
 export interface Cart {
     id: number;
     userId: number;
     items: CartItem[];
+    subtotal: number;
+    discountAmount: number;
+    // After discounts
     totalAmount: number;
+    couponCode?: string;
+    // False while the coupon's promotions are no longer live
+    couponApplied: boolean;
     lastUpdated: string;
 }
 
@@ -102,6 +133,11 @@ export interface UpdateCartItemRequest {
     quantity: number;
 }
 
+export type CartOperation =
+    | { type: 'ADD'; productId: number; quantity: number }
+    | { type: 'UPDATE'; itemId: number; quantity: number }
+    | { type: 'REMOVE'; itemId: number };
+
 // Order types
 export type OrderStatus = 'CREATED' | 'CONFIRMED' | 'SHIPPED' | 'DELIVERED' | 'CANCELLED';
 export type PaymentStatus = 'PENDING' | 'PAID' | 'FAILED' | 'REFUNDED';
@@ -113,12 +149,15 @@ export interface OrderItem {
     quantity: number;
     priceEach: number;
     subtotal: number;
+    discount?: number;
 }
 
 export interface Order {
     id: number;
     userId: number;
     totalAmount: number;
+    discountAmount?: number;
+    couponCode?: string;
     status: OrderStatus;
     paymentStatus: PaymentStatus;
     paymentReference: string;